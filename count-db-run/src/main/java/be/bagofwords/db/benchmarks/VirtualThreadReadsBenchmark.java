@@ -0,0 +1,104 @@
+package be.bagofwords.db.benchmarks;
+
+import be.bagofwords.application.MinimalApplicationDependencies;
+import be.bagofwords.db.DataInterface;
+import be.bagofwords.db.DatabaseCachingType;
+import be.bagofwords.db.combinator.LongCombinator;
+import be.bagofwords.db.filedb.FileDataInterfaceFactory;
+import be.bagofwords.db.methods.LongObjectSerializer;
+import be.bagofwords.logging.Log;
+import be.bagofwords.minidepi.ApplicationManager;
+import be.bagofwords.minidepi.annotations.Inject;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static be.bagofwords.util.Utils.noException;
+
+/**
+ * Measures the throughput of point reads when every request runs in its own (virtual) thread. Virtual threads are only
+ * available when running on JDK 21 or later (build with -Pjdk21), on older JDK's the benchmark only uses a pool of platform threads.
+ */
+
+public class VirtualThreadReadsBenchmark implements Runnable {
+
+    private static final File tmpDbDir = new File("/tmp/virtualThreadReadsBenchmark");
+    private static final int NUM_OF_KEYS = 1000000;
+    private static final int NUM_OF_CONCURRENT_REQUESTS = 10000;
+    private static final int NUM_OF_READS_PER_REQUEST = 100;
+    private static final int NUM_OF_PLATFORM_THREADS = 200;
+
+    public static void main(String[] args) throws IOException {
+        if (tmpDbDir.exists()) {
+            FileUtils.deleteDirectory(tmpDbDir);
+        }
+        Map<String, String> config = new HashMap<>();
+        config.put("data_directory", tmpDbDir.getAbsolutePath());
+        ApplicationManager.run(new VirtualThreadReadsBenchmark(), config);
+    }
+
+    @Inject
+    private MinimalApplicationDependencies minimalApplicationDependencies;
+    @Inject
+    private FileDataInterfaceFactory fileDataInterfaceFactory;
+
+    @Override
+    public void run() {
+        noException(() -> {
+            DataInterface<Long> dataInterface = fileDataInterfaceFactory.dataInterface("virtualThreadReads", Long.class).combinator(new LongCombinator()).serializer(new LongObjectSerializer()).caching(DatabaseCachingType.DIRECT).create();
+            for (long key = 0; key < NUM_OF_KEYS; key++) {
+                dataInterface.write(key, key);
+            }
+            dataInterface.flush();
+            dataInterface.optimizeForReading();
+            Log.i("Platform threads (" + NUM_OF_PLATFORM_THREADS + "): " + measureReads(dataInterface, Executors.newFixedThreadPool(NUM_OF_PLATFORM_THREADS)) + " reads/s");
+            ExecutorService virtualThreadExecutor = createVirtualThreadExecutor();
+            if (virtualThreadExecutor != null) {
+                Log.i("Virtual threads (" + NUM_OF_CONCURRENT_REQUESTS + "): " + measureReads(dataInterface, virtualThreadExecutor) + " reads/s");
+            } else {
+                Log.i("Virtual threads are not available on JDK " + System.getProperty("java.version"));
+            }
+            dataInterface.close();
+        });
+    }
+
+    private long measureReads(DataInterface<Long> dataInterface, ExecutorService executorService) throws InterruptedException {
+        AtomicLong numOfReads = new AtomicLong();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < NUM_OF_CONCURRENT_REQUESTS; i++) {
+            long seed = i;
+            executorService.submit(() -> {
+                Random random = new Random(seed);
+                for (int j = 0; j < NUM_OF_READS_PER_REQUEST; j++) {
+                    long key = random.nextInt(NUM_OF_KEYS);
+                    if (dataInterface.read(key) != key) {
+                        throw new RuntimeException("Unexpected value for key " + key);
+                    }
+                    numOfReads.incrementAndGet();
+                }
+            });
+        }
+        executorService.shutdown();
+        executorService.awaitTermination(1, TimeUnit.HOURS);
+        long taken = Math.max(1, System.currentTimeMillis() - start);
+        return numOfReads.get() * 1000 / taken;
+    }
+
+    private ExecutorService createVirtualThreadExecutor() {
+        try {
+            //Through reflection, so this class still compiles for java 8
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException exp) {
+            return null;
+        }
+    }
+
+}
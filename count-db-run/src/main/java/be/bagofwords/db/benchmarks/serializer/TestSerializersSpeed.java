@@ -0,0 +1,79 @@
+package be.bagofwords.db.benchmarks.serializer;
+
+import be.bagofwords.db.methods.BinaryObjectSerializer;
+import be.bagofwords.db.methods.DataStream;
+import be.bagofwords.db.methods.DataStreamUtils;
+import be.bagofwords.db.methods.JsonObjectSerializer;
+import be.bagofwords.db.methods.ObjectSerializer;
+import be.bagofwords.logging.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the size and the speed of the JSON and the binary serializer for a typical event object
+ */
+
+public class TestSerializersSpeed {
+
+    private static final int NUM_OF_VALUES = 1000000;
+    private static final int NUM_OF_ROUNDS = 5;
+
+    public static void main(String[] args) {
+        List<Event> events = createEvents();
+        for (int round = 0; round < NUM_OF_ROUNDS; round++) {
+            //First rounds warm up the JIT
+            testSerializer("json", new JsonObjectSerializer<>(Event.class), events);
+            testSerializer("binary", new BinaryObjectSerializer<>(Event.class), events);
+        }
+    }
+
+    private static void testSerializer(String name, ObjectSerializer<Event> serializer, List<Event> events) {
+        DataStream ds = new DataStream();
+        long start = System.currentTimeMillis();
+        for (Event event : events) {
+            DataStreamUtils.writeValue(event, ds, serializer);
+        }
+        long writeTime = System.currentTimeMillis() - start;
+        int totalSize = ds.position;
+        DataStream input = new DataStream(ds.buffer);
+        start = System.currentTimeMillis();
+        long checksum = 0;
+        while (input.position < totalSize) {
+            int size = DataStreamUtils.getObjectSize(input, serializer);
+            Event event = serializer.readValue(input, size);
+            checksum += event.userId;
+        }
+        long readTime = System.currentTimeMillis() - start;
+        Log.i(name + ": " + (totalSize / events.size()) + " bytes/value, writing took " + writeTime + "ms, reading took " + readTime + "ms (checksum " + checksum + ")");
+    }
+
+    private static List<Event> createEvents() {
+        Random random = new Random(42);
+        List<Event> events = new ArrayList<>(NUM_OF_VALUES);
+        for (int i = 0; i < NUM_OF_VALUES; i++) {
+            Event event = new Event();
+            event.userId = random.nextInt(1000000);
+            event.timestamp = 1500000000000l + random.nextInt(1000000000);
+            event.type = "type_" + random.nextInt(10);
+            event.url = "http://www.example.com/page/" + random.nextInt(10000);
+            event.duration = random.nextInt(60000);
+            event.score = random.nextDouble();
+            event.mobile = random.nextBoolean();
+            events.add(event);
+        }
+        return events;
+    }
+
+    public static class Event {
+        public long userId;
+        public long timestamp;
+        public String type;
+        public String url;
+        public int duration;
+        public double score;
+        public boolean mobile;
+    }
+
+}
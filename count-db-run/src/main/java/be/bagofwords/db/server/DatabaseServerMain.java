@@ -1,6 +1,7 @@
 package be.bagofwords.db.server;
 
 import be.bagofwords.db.filedb.FileDataInterfaceFactory;
+import be.bagofwords.db.remote.RemoteDataInterfaceNioServer;
 import be.bagofwords.db.remote.RemoteDataInterfaceServer;
 import be.bagofwords.minidepi.ApplicationContext;
 import be.bagofwords.minidepi.ApplicationManager;
@@ -17,8 +18,8 @@ import java.util.Map;
 public class DatabaseServerMain implements Runnable {
 
     public static void main(String[] args) throws IOException {
-        if (args.length != 4) {
-            Log.e("Expected exactly 4 arguments, the directory to store the data files (e.g. /home/some_user/data/), the url of this server (e.g. www.myawesomeserver.com) the port of the data interface server (e.g. 1208) and the port of the virtual file server (e.g. 1209)");
+        if (args.length < 4 || args.length > 6) {
+            Log.e("Expected 4 to 6 arguments, the directory to store the data files (e.g. /home/some_user/data/), the url of this server (e.g. www.myawesomeserver.com) the port of the data interface server (e.g. 1208), the port of the virtual file server (e.g. 1209), optionally the port of the nio data interface server (e.g. 1210, or 0 to not start the nio server) and optionally the host:port of the primary server if this server should be a read-only follower (e.g. myprimaryserver.com:1208)");
         } else {
             Map<String, String> config = new HashMap<>();
             config.put("application_name", "database_server_main");
@@ -26,10 +27,19 @@ public class DatabaseServerMain implements Runnable {
             config.put("server_url", args[1]);
             config.put("socket.port", args[2]);
             config.put("virtual_file_server_port", args[3]);
-            ApplicationManager.run(new DatabaseServerMain(), config);
+            boolean startNioServer = args.length >= 5 && !args[4].equals("0");
+            if (startNioServer) {
+                config.put("nio_socket.port", args[4]);
+            }
+            if (args.length == 6) {
+                config.put("replication.primary", args[5]);
+            }
+            ApplicationManager.run(new DatabaseServerMain(startNioServer), config);
         }
     }
 
+    private final boolean startNioServer;
+
     @Inject
     private FileDataInterfaceFactory fileDataInterfaceFactory;
     @Inject
@@ -43,8 +53,15 @@ public class DatabaseServerMain implements Runnable {
     @Inject
     private ApplicationContext applicationContext;
 
+    public DatabaseServerMain(boolean startNioServer) {
+        this.startNioServer = startNioServer;
+    }
+
     @Override
     public void run() {
+        if (startNioServer) {
+            applicationContext.registerBean(RemoteDataInterfaceNioServer.class);
+        }
         applicationContext.waitUntilTerminated();
     }
 
@@ -1,9 +1,13 @@
 package be.bagofwords.db;
 
 import be.bagofwords.db.combinator.Combinator;
+import be.bagofwords.db.data.CountsArray;
+import be.bagofwords.db.impl.AsyncDataInterfaceExecutor;
 import be.bagofwords.db.impl.UpdateListener;
 import be.bagofwords.db.methods.KeyFilter;
+import be.bagofwords.db.methods.KeyValueAggregator;
 import be.bagofwords.db.methods.ObjectSerializer;
+import be.bagofwords.db.methods.TopCountsAggregator;
 import be.bagofwords.iterator.CloseableIterator;
 import be.bagofwords.iterator.DataIterable;
 import be.bagofwords.iterator.IterableUtils;
@@ -13,7 +17,10 @@ import be.bagofwords.util.HashUtils;
 import be.bagofwords.util.KeyValue;
 import be.bagofwords.util.StreamUtils;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
@@ -60,6 +67,10 @@ public interface DataInterface<T extends Object> extends DataIterable<KeyValue<T
         return IterableUtils.mapIterator(iterator(), KeyValue::getKey);
     }
 
+    default CloseableIterator<Long> keyIterator(KeyFilter keyFilter) {
+        return IterableUtils.mapIterator(iterator(keyFilter), KeyValue::getKey);
+    }
+
     default CloseableIterator<T> valueIterator() {
         return IterableUtils.mapIterator(iterator(), KeyValue::getValue);
     }
@@ -187,6 +198,52 @@ public interface DataInterface<T extends Object> extends DataIterable<KeyValue<T
 
     CloseableIterator<KeyValue<T>> iterator();
 
+    /**
+     * Iterates over all values like {@link #iterator()}, but data interfaces can return the same KeyValue object on every call
+     * to next() and decode values into the previous value (see {@link ObjectSerializer#readValue(byte[], int, int, Object)}).
+     * A returned KeyValue is only valid until the next call to next().
+     */
+
+    default CloseableIterator<KeyValue<T>> cursor() {
+        return iterator();
+    }
+
+    default <R> R aggregate(KeyValueAggregator<T, R> aggregator) {
+        R result = aggregator.createEmptyResult();
+        CloseableIterator<KeyValue<T>> iterator = cursor();
+        while (iterator.hasNext()) {
+            KeyValue<T> next = iterator.next();
+            result = aggregator.add(result, next.getKey(), next.getValue());
+        }
+        iterator.close();
+        return result;
+    }
+
+    /**
+     * @return the k keys with the largest counts, sorted by decreasing count. Only for data interfaces with Long values.
+     */
+
+    default List<KeyValue<Long>> topK(int k) {
+        if (getObjectClass() != Long.class) {
+            throw new RuntimeException("topK is only supported for data interfaces with Long values, " + getName() + " has values of type " + getObjectClass().getName());
+        }
+        CountsArray result = aggregate((KeyValueAggregator<T, CountsArray>) (KeyValueAggregator) new TopCountsAggregator(k, Long.MIN_VALUE));
+        return TopCountsAggregator.toSortedList(result, k);
+    }
+
+    /**
+     * @return all keys with a count strictly larger than the threshold, sorted by decreasing count. Only for data interfaces
+     * with Long values.
+     */
+
+    default List<KeyValue<Long>> keysWithCountAbove(long threshold) {
+        if (getObjectClass() != Long.class) {
+            throw new RuntimeException("keysWithCountAbove is only supported for data interfaces with Long values, " + getName() + " has values of type " + getObjectClass().getName());
+        }
+        CountsArray result = aggregate((KeyValueAggregator<T, CountsArray>) (KeyValueAggregator) new TopCountsAggregator(Integer.MAX_VALUE, threshold));
+        return TopCountsAggregator.toSortedList(result, Integer.MAX_VALUE);
+    }
+
     long apprSize();
 
     long apprDataChecksum();
@@ -286,6 +343,39 @@ public interface DataInterface<T extends Object> extends DataIterable<KeyValue<T
         write(key, null);
     }
 
+    /**
+     * The asynchronous methods below execute the blocking methods on a shared executor. Data interfaces that can execute
+     * these requests without blocking a thread per request override them.
+     */
+
+    default CompletableFuture<T> readAsync(long key) {
+        return CompletableFuture.supplyAsync(() -> read(key), AsyncDataInterfaceExecutor.getExecutorService());
+    }
+
+    /**
+     * @return the values of the keys that were found, in the order of the keys
+     */
+
+    default CompletableFuture<List<KeyValue<T>>> readManyAsync(List<Long> keys) {
+        return CompletableFuture.supplyAsync(() -> {
+            List<KeyValue<T>> result = new ArrayList<>();
+            CloseableIterator<KeyValue<T>> iterator = iterator(IterableUtils.iterator(keys));
+            while (iterator.hasNext()) {
+                result.add(iterator.next());
+            }
+            iterator.close();
+            return result;
+        }, AsyncDataInterfaceExecutor.getExecutorService());
+    }
+
+    default CompletableFuture<Void> writeAsync(long key, T value) {
+        return CompletableFuture.runAsync(() -> write(key, value), AsyncDataInterfaceExecutor.getExecutorService());
+    }
+
+    default CompletableFuture<Void> flushAsync() {
+        return CompletableFuture.runAsync(this::flush, AsyncDataInterfaceExecutor.getExecutorService());
+    }
+
     Combinator<T> getCombinator();
 
     void close();
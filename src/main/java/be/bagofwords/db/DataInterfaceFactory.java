@@ -2,10 +2,12 @@ package be.bagofwords.db;
 
 import be.bagofwords.db.combinator.Combinator;
 import be.bagofwords.db.combinator.OverWriteCombinator;
+import be.bagofwords.db.experimental.id.DirectIdDataInterface;
 import be.bagofwords.db.experimental.id.IdDataInterface;
 import be.bagofwords.db.experimental.id.IdObject;
 import be.bagofwords.db.experimental.index.MultiDataIndexer;
 import be.bagofwords.db.experimental.index.MultiDataInterfaceIndex;
+import be.bagofwords.db.experimental.index.PostingListDataInterfaceIndex;
 import be.bagofwords.db.experimental.index.UniqueDataIndexer;
 import be.bagofwords.db.experimental.index.UniqueDataInterfaceIndex;
 import be.bagofwords.db.impl.BaseDataInterface;
@@ -22,6 +24,8 @@ public interface DataInterfaceFactory {
 
     <T> MultiDataInterfaceIndex<T> multiIndex(DataInterface<T> dataInterface, String nameOfIndex, MultiDataIndexer<T> indexer);
 
+    <T> PostingListDataInterfaceIndex<T> postingListIndex(DataInterface<T> dataInterface, String nameOfIndex, MultiDataIndexer<T> indexer);
+
     <T> UniqueDataInterfaceIndex<T> uniqueIndex(DataInterface<T> dataInterface, String nameOfIndex, UniqueDataIndexer<T> indexer);
 
     DataInterface<Long> createCountDataInterface(String name);
@@ -34,6 +38,10 @@ public interface DataInterfaceFactory {
         return new IdDataInterfaceConfig<T>(dataInterface(name, List.class, objectClass));
     }
 
+    default <T extends IdObject> DirectIdDataInterfaceConfig<T> directIdDataInterface(String name, Class<T> objectClass) {
+        return new DirectIdDataInterfaceConfig<T>(dataInterface(name, IdObject.class), objectClass);
+    }
+
     default <T> DataInterface<T> createDataInterface(String name, Class<T> objectClass) {
         return createDataInterface(name, objectClass, new OverWriteCombinator<>(), new JsonObjectSerializer<>(objectClass));
     }
@@ -52,6 +60,16 @@ public interface DataInterfaceFactory {
                 .create();
     }
 
+    default <T extends IdObject> DirectIdDataInterface<T> createDirectIdDataInterface(String name, Class<T> objectClass) {
+        return directIdDataInterface(name, objectClass).create();
+    }
+
+    default <T extends IdObject> DirectIdDataInterface<T> createDirectIdDataInterface(String name, Class<T> objectClass, Combinator<T> combinator) {
+        return directIdDataInterface(name, objectClass)
+                .combinator(combinator)
+                .create();
+    }
+
     <T> DataInterface<T> createDataInterface(String name, Class<T> objectClass, Combinator<T> combinator, ObjectSerializer<T> objectSerializer);
 
     List<DataInterfaceReference> getAllInterfaces();
@@ -0,0 +1,79 @@
+package be.bagofwords.db;
+
+import be.bagofwords.db.combinator.Combinator;
+import be.bagofwords.db.combinator.OverWriteCombinator;
+import be.bagofwords.db.experimental.id.DirectIdCombinator;
+import be.bagofwords.db.experimental.id.DirectIdDataInterface;
+import be.bagofwords.db.experimental.id.DirectIdObjectSerializer;
+import be.bagofwords.db.experimental.id.IdObject;
+import be.bagofwords.db.methods.JsonObjectSerializer;
+import be.bagofwords.db.methods.ObjectSerializer;
+
+public class DirectIdDataInterfaceConfig<T extends IdObject> {
+
+    public DataInterfaceConfig<IdObject> baseConfig;
+    private final Class<T> objectClass;
+
+    public DirectIdDataInterfaceConfig(DataInterfaceConfig<IdObject> baseConfig, Class<T> objectClass) {
+        this.baseConfig = baseConfig;
+        this.objectClass = objectClass;
+        this.baseConfig.combinator(new DirectIdCombinator<T>(new OverWriteCombinator<>()));
+        this.baseConfig.serializer(new DirectIdObjectSerializer<>(objectClass, new JsonObjectSerializer<>(objectClass)));
+    }
+
+    public DirectIdDataInterfaceConfig<T> cache(boolean cache) {
+        this.baseConfig.cache(cache);
+        return this;
+    }
+
+    public DirectIdDataInterfaceConfig<T> combinator(Combinator<T> combinator) {
+        this.baseConfig.combinator(new DirectIdCombinator<T>(combinator));
+        return this;
+    }
+
+    public DirectIdDataInterfaceConfig<T> dontCache() {
+        this.baseConfig.dontCache();
+        return this;
+    }
+
+    public DirectIdDataInterfaceConfig<T> bloomFilter() {
+        this.baseConfig.bloomFilter();
+        return this;
+    }
+
+    public DirectIdDataInterfaceConfig<T> bloomFilter(boolean bloomFilter) {
+        this.baseConfig.bloomFilter(bloomFilter);
+        return this;
+    }
+
+    public DirectIdDataInterfaceConfig<T> temporary() {
+        this.baseConfig.temporary();
+        return this;
+    }
+
+    public DirectIdDataInterfaceConfig<T> temporary(boolean isTemporary) {
+        this.baseConfig.temporary(isTemporary);
+        return this;
+    }
+
+    public DirectIdDataInterfaceConfig<T> inMemory() {
+        this.baseConfig.inMemory();
+        return this;
+    }
+
+    public DirectIdDataInterfaceConfig<T> caching(DatabaseCachingType cachingType) {
+        this.baseConfig.caching(cachingType);
+        return this;
+    }
+
+    public DirectIdDataInterfaceConfig<T> serializer(ObjectSerializer<T> objectSerializer) {
+        this.baseConfig.serializer(new DirectIdObjectSerializer<>(objectClass, objectSerializer));
+        return this;
+    }
+
+    public DirectIdDataInterface<T> create() {
+        DataInterface<IdObject> baseInterface = baseConfig.create();
+        return new DirectIdDataInterface<>(baseInterface);
+    }
+
+}
@@ -3,9 +3,12 @@ package be.bagofwords.db;
 import be.bagofwords.db.impl.BaseDataInterface;
 import be.bagofwords.db.impl.UpdateListener;
 import be.bagofwords.db.methods.KeyFilter;
+import be.bagofwords.db.methods.KeyValueAggregator;
 import be.bagofwords.iterator.CloseableIterator;
 import be.bagofwords.util.KeyValue;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
@@ -23,6 +26,16 @@ public abstract class LayeredDataInterface<T> extends BaseDataInterface<T> {
         return baseInterface.read(key);
     }
 
+    @Override
+    public CompletableFuture<T> readAsync(long key) {
+        return baseInterface.readAsync(key);
+    }
+
+    @Override
+    public CompletableFuture<List<KeyValue<T>>> readManyAsync(List<Long> keys) {
+        return baseInterface.readManyAsync(keys);
+    }
+
     @Override
     public void write(long key, T value) {
         baseInterface.write(key, value);
@@ -33,6 +46,16 @@ public abstract class LayeredDataInterface<T> extends BaseDataInterface<T> {
         return baseInterface.iterator();
     }
 
+    @Override
+    public CloseableIterator<KeyValue<T>> cursor() {
+        return baseInterface.cursor();
+    }
+
+    @Override
+    public <R> R aggregate(KeyValueAggregator<T, R> aggregator) {
+        return baseInterface.aggregate(aggregator);
+    }
+
     @Override
     public void dropAllData() {
         baseInterface.dropAllData();
@@ -64,6 +87,11 @@ public abstract class LayeredDataInterface<T> extends BaseDataInterface<T> {
         return baseInterface.apprSize();
     }
 
+    @Override
+    public long exactSize() {
+        return baseInterface.exactSize();
+    }
+
     @Override
     public void write(CloseableIterator<KeyValue<T>> entries) {
         baseInterface.write(entries);
@@ -89,6 +117,11 @@ public abstract class LayeredDataInterface<T> extends BaseDataInterface<T> {
         return baseInterface.keyIterator();
     }
 
+    @Override
+    public CloseableIterator<Long> keyIterator(KeyFilter keyFilter) {
+        return baseInterface.keyIterator(keyFilter);
+    }
+
     @Override
     public CloseableIterator<T> valueIterator() {
         return baseInterface.valueIterator();
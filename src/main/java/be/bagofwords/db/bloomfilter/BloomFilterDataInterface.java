@@ -17,6 +17,7 @@ public class BloomFilterDataInterface<T extends Object> extends LayeredDataInter
     private final static double MAX_FPP = INITIAL_FPP * 20;
     private final BaseDataInterface<LongBloomFilterWithCheckSum> bloomFilterDataInterface;
     private final ReentrantLock modifyBloomFilterLock;
+    private final ReentrantLock flushLock;
     private LongBloomFilterWithCheckSum bloomFilter;
     private long currentKeyForNewBloomFilterCreation = Long.MAX_VALUE;
 
@@ -27,6 +28,7 @@ public class BloomFilterDataInterface<T extends Object> extends LayeredDataInter
         super(baseInterface);
         this.bloomFilterDataInterface = bloomFilterDataInterface;
         this.modifyBloomFilterLock = new ReentrantLock();
+        this.flushLock = new ReentrantLock();
         this.bloomFilter = bloomFilterDataInterface.read(getName());
         if (this.bloomFilter != null) {
             actualWriteCount = writeCountOfSavedFilter = this.bloomFilter.getDataCheckSum();
@@ -177,9 +179,14 @@ public class BloomFilterDataInterface<T extends Object> extends LayeredDataInter
     }
 
     @Override
-    public synchronized void flush() {
-        baseInterface.flush();
-        writeBloomFilterToDiskIfNecessary();
+    public void flush() {
+        flushLock.lock();
+        try {
+            baseInterface.flush();
+            writeBloomFilterToDiskIfNecessary();
+        } finally {
+            flushLock.unlock();
+        }
     }
 
     private void writeBloomFilterToDiskIfNecessary() {
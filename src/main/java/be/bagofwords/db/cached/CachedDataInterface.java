@@ -21,6 +21,8 @@ import be.bagofwords.util.SafeThread;
 import be.bagofwords.util.Utils;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 public class CachedDataInterface<T extends Object> extends LayeredDataInterface<T> implements MemoryGobbler {
@@ -34,6 +36,9 @@ public class CachedDataInterface<T extends Object> extends LayeredDataInterface<
     private final MemoryManager memoryManager;
     private final SafeThread initializeCachesThread;
     private long timeOfLastFlushOfWriteBuffer;
+    //If the order of combining values does not matter, every thread writes to its own write buffer
+    private final boolean writeBufferPerThread;
+    private final ReentrantLock flushLock = new ReentrantLock();
 
     public CachedDataInterface(MemoryManager memoryManager, CachesManager cachesManager, DataInterface<T> baseInterface, AsyncJobService asyncJobService) {
         super(baseInterface);
@@ -42,6 +47,7 @@ public class CachedDataInterface<T extends Object> extends LayeredDataInterface<
         this.readCache = cachesManager.createNewCache(getName(), baseInterface.getObjectClass());
         this.readCacheDirty = false;
         this.writeBuffers = new ArrayList<>();
+        this.writeBufferPerThread = baseInterface.getCombinator().isAssociative() && baseInterface.getCombinator().isCommutative();
         for (int i = 0; i < NUM_OF_WRITE_BUFFERS; i++) {
             this.writeBuffers.add(new SwappableDynamicMap());
         }
@@ -64,6 +70,19 @@ public class CachedDataInterface<T extends Object> extends LayeredDataInterface<
         }
     }
 
+    @Override
+    public CompletableFuture<T> readAsync(long key) {
+        KeyValue<T> cachedValue = readCache.get(key);
+        if (cachedValue == null) {
+            return baseInterface.readAsync(key).thenApply(value -> {
+                readCache.put(key, value);
+                return value;
+            });
+        } else {
+            return CompletableFuture.completedFuture(cachedValue.getValue());
+        }
+    }
+
     @Override
     public CloseableIterator<KeyValue<T>> iterator(KeyFilter keyFilter) {
         if (keyFilter instanceof SetKeyFilter && weHaveSomeFreeMemory()) {
@@ -239,24 +258,70 @@ public class CachedDataInterface<T extends Object> extends LayeredDataInterface<
     }
 
     private void unsafeWrite(long key, T value) {
-        int writeBufferInd = (int) (key % NUM_OF_WRITE_BUFFERS);
+        if (writeBufferPerThread && value == null) {
+            deleteFromAllWriteBuffers(key);
+            return;
+        }
+        long stripe = writeBufferPerThread ? Thread.currentThread().getId() : key;
+        int writeBufferInd = (int) (stripe % NUM_OF_WRITE_BUFFERS);
         if (writeBufferInd < 0) {
             writeBufferInd += NUM_OF_WRITE_BUFFERS;
         }
         SwappableDynamicMap writeBuffer = writeBuffers.get(writeBufferInd);
-        synchronized (writeBuffer) {
+        writeBuffer.lock.lock();
+        try {
             KeyValue<T> cachedValue = writeBuffer.getMap().get(key);
             if (cachedValue == null) {
                 //first write of this key
                 writeBuffer.getMap().put(key, value);
             } else {
                 if (value != null && cachedValue.getValue() != null) {
-                    T combinedValue = getCombinator().combine(cachedValue.getValue(), value);
+                    T combinedValue;
+                    if (writeBuffer.combinedKeys.contains(key)) {
+                        //this value was created by the combinator, we can combine in place
+                        combinedValue = getCombinator().combineInto(cachedValue.getValue(), value);
+                    } else {
+                        combinedValue = getCombinator().combine(cachedValue.getValue(), value);
+                        writeBuffer.combinedKeys.add(key);
+                    }
                     writeBuffer.getMap().put(key, combinedValue);
                 } else {
                     writeBuffer.getMap().put(key, value);
+                    writeBuffer.combinedKeys.remove(key);
+                }
+            }
+        } finally {
+            writeBuffer.lock.unlock();
+        }
+    }
+
+    /**
+     * With a write buffer per thread, earlier values of this key can be in any of the write buffers. Only the write buffers
+     * that contain the key are flushed before the delete is written, so the delete is applied after those values. The
+     * flush lock makes sure that no other values of this key are being flushed at the same time.
+     */
+
+    private void deleteFromAllWriteBuffers(long key) {
+        flushLock.lock();
+        try {
+            for (SwappableDynamicMap writeBuffer : writeBuffers) {
+                DynamicMap<T> oldValues = null;
+                writeBuffer.lock.lock();
+                try {
+                    if (writeBuffer.getMap().get(key) != null) {
+                        oldValues = writeBuffer.swap();
+                    }
+                } finally {
+                    writeBuffer.lock.unlock();
+                }
+                if (oldValues != null) {
+                    baseInterface.write(oldValues.iterator());
                 }
             }
+            baseInterface.write(key, null);
+            readCacheDirty = true;
+        } finally {
+            flushLock.unlock();
         }
     }
 
@@ -303,7 +368,8 @@ public class CachedDataInterface<T extends Object> extends LayeredDataInterface<
     }
 
     @Override
-    public synchronized void doCloseImpl() {
+    public void doCloseImpl() {
+        flushLock.lock();
         try {
             stopInitializeCachesThread();
             flush();
@@ -313,13 +379,19 @@ public class CachedDataInterface<T extends Object> extends LayeredDataInterface<
             readCache.clear();
             readCache = null;
             writeBuffers = null;
+            flushLock.unlock();
         }
     }
 
-    public synchronized void flush() {
-        flushWriteBuffer();
-        baseInterface.flush();
-        cleanDirtyReadCache();
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushWriteBuffer();
+            baseInterface.flush();
+            cleanDirtyReadCache();
+        } finally {
+            flushLock.unlock();
+        }
     }
 
     private void cleanDirtyReadCache() {
@@ -330,32 +402,32 @@ public class CachedDataInterface<T extends Object> extends LayeredDataInterface<
         }
     }
 
-    private synchronized long flushWriteBuffer() {
-        //flush values in write cache
-        long valuesRemoved = writeBuffers.parallelStream().collect(Collectors.summingLong(
-                buffer -> {
-                    DynamicMap<T> oldValues;
-                    synchronized (buffer) {
-                        oldValues = buffer.putNew();
-                    }
-                    if (oldValues.size() > 0) {
-                        baseInterface.write(oldValues.iterator());
-                        readCacheDirty = true; //should come after writing values
+    private long flushWriteBuffer() {
+        flushLock.lock();
+        try {
+            //flush values in write cache
+            long valuesRemoved = writeBuffers.parallelStream().collect(Collectors.summingLong(
+                    buffer -> {
+                        DynamicMap<T> oldValues = buffer.swap();
+                        if (oldValues.size() > 0) {
+                            baseInterface.write(oldValues.iterator());
+                            readCacheDirty = true; //should come after writing values
+                        }
+                        return oldValues.size();
                     }
-                    return oldValues.size();
-                }
-        ));
-        timeOfLastFlushOfWriteBuffer = System.currentTimeMillis();
-        return valuesRemoved;
+            ));
+            timeOfLastFlushOfWriteBuffer = System.currentTimeMillis();
+            return valuesRemoved;
+        } finally {
+            flushLock.unlock();
+        }
     }
 
     @Override
     public void dropAllData() {
         stopInitializeCachesThread();
         for (SwappableDynamicMap writeBuffer : writeBuffers) {
-            synchronized (writeBuffer) {
-                writeBuffer.putNew();
-            }
+            writeBuffer.swap();
         }
         readCache.clear();
         baseInterface.dropAllData();
@@ -381,8 +453,11 @@ public class CachedDataInterface<T extends Object> extends LayeredDataInterface<
     private long sizeOfWriteBuffers() {
         long result = 0;
         for (SwappableDynamicMap writeBuffer : writeBuffers) {
-            synchronized (writeBuffer) {
+            writeBuffer.lock.lock();
+            try {
                 result += writeBuffer.getMap().size();
+            } finally {
+                writeBuffer.lock.unlock();
             }
         }
         return result;
@@ -415,16 +490,26 @@ public class CachedDataInterface<T extends Object> extends LayeredDataInterface<
     }
 
     private class SwappableDynamicMap {
+        private final ReentrantLock lock = new ReentrantLock();
         private DynamicMap<T> map;
+        //Keys of which the value in the map was created by the combinator, and not by the caller of write(..)
+        private Set<Long> combinedKeys;
 
         private SwappableDynamicMap() {
             map = new DynamicMap<>(getObjectClass());
+            combinedKeys = new HashSet<>();
         }
 
-        public DynamicMap<T> putNew() {
-            DynamicMap<T> old = map;
-            map = new DynamicMap<>(getObjectClass());
-            return old;
+        public DynamicMap<T> swap() {
+            lock.lock();
+            try {
+                DynamicMap<T> old = map;
+                map = new DynamicMap<>(getObjectClass());
+                combinedKeys = new HashSet<>();
+                return old;
+            } finally {
+                lock.unlock();
+            }
         }
 
         public DynamicMap<T> getMap() {
@@ -8,6 +8,35 @@ public interface Combinator<T extends Object> extends Serializable {
 
     T combine(T first, T second);
 
+    /**
+     * Combines two values, like {@link #combine(Object, Object)}, but is allowed to modify and return the accumulator instead
+     * of creating a new object. Should only be called with an accumulator that is not visible to other code, e.g. a value
+     * that was returned by a previous call to combine(..) or combineInto(..) or that was just deserialized.
+     */
+
+    default T combineInto(T accumulator, T next) {
+        return combine(accumulator, next);
+    }
+
+    /**
+     * Whether combine(combine(a, b), c) equals combine(a, combine(b, c)). If this returns true, values can be combined in
+     * any grouping, e.g. pre-aggregated per thread before they are combined with the values written by other threads.
+     * Sums of floating point values are not associative, because the rounding depends on the grouping.
+     */
+
+    default boolean isAssociative() {
+        return false;
+    }
+
+    /**
+     * Whether combine(a, b) equals combine(b, a). Together with {@link #isAssociative()} this allows to combine values
+     * in any order.
+     */
+
+    default boolean isCommutative() {
+        return false;
+    }
+
     default void addRemoteClasses(RemoteObjectConfig objectConfig) {
         //Don't add any classes by default
     }
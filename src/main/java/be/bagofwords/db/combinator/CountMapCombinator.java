@@ -19,4 +19,14 @@ public class CountMapCombinator<T> implements Combinator<Counter<T>> {
         }
         return firstCloned;
     }
+
+    @Override
+    public boolean isAssociative() {
+        return true;
+    }
+
+    @Override
+    public boolean isCommutative() {
+        return true;
+    }
 }
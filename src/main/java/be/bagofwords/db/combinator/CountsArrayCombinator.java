@@ -0,0 +1,24 @@
+package be.bagofwords.db.combinator;
+
+import be.bagofwords.db.data.CountsArray;
+import be.bagofwords.exec.RemoteClass;
+
+@RemoteClass
+public class CountsArrayCombinator implements Combinator<CountsArray> {
+
+    @Override
+    public CountsArray combine(CountsArray first, CountsArray second) {
+        return CountsArray.merge(first, second);
+    }
+
+    @Override
+    public boolean isAssociative() {
+        return true;
+    }
+
+    @Override
+    public boolean isCommutative() {
+        return true;
+    }
+
+}
@@ -2,6 +2,7 @@ package be.bagofwords.db.combinator;
 
 import be.bagofwords.db.data.CountsList;
 import be.bagofwords.exec.RemoteClass;
+import be.bagofwords.util.Pair;
 
 import java.io.Serializable;
 
@@ -10,11 +11,44 @@ public class CountsListCombinator implements Combinator<CountsList>, Serializabl
 
     @Override
     public CountsList combine(CountsList first, CountsList second) {
-        CountsList result = new CountsList(first);
-        result.addAll(second);
+        //Merge compacted copies in linear time, the caller can still use the original lists
+        first = compactedCopy(first);
+        second = compactedCopy(second);
+        CountsList result = new CountsList(first.size() + second.size());
+        int firstInd = 0;
+        int secondInd = 0;
+        while (firstInd < first.size() || secondInd < second.size()) {
+            Pair<Long, Long> firstValue = firstInd < first.size() ? first.get(firstInd) : null;
+            Pair<Long, Long> secondValue = secondInd < second.size() ? second.get(secondInd) : null;
+            if (secondValue == null || (firstValue != null && firstValue.getFirst() < secondValue.getFirst())) {
+                result.add(firstValue);
+                firstInd++;
+            } else if (firstValue == null || firstValue.getFirst() > secondValue.getFirst()) {
+                result.add(secondValue);
+                secondInd++;
+            } else {
+                result.add(new Pair<>(firstValue.getFirst(), firstValue.getSecond() + secondValue.getSecond()));
+                firstInd++;
+                secondInd++;
+            }
+        }
+        return result;
+    }
+
+    private static CountsList compactedCopy(CountsList list) {
+        CountsList result = list.clone();
         result.compact();
         return result;
     }
 
-}
+    @Override
+    public boolean isAssociative() {
+        return true;
+    }
 
+    @Override
+    public boolean isCommutative() {
+        return true;
+    }
+
+}
@@ -9,4 +9,9 @@ public class DoubleCombinator implements Combinator<Double> {
     public Double combine(Double first, Double second) {
         return first + second;
     }
+
+    @Override
+    public boolean isCommutative() {
+        return true;
+    }
 }
@@ -0,0 +1,19 @@
+package be.bagofwords.db.combinator;
+
+import be.bagofwords.db.data.DoubleCountsArray;
+import be.bagofwords.exec.RemoteClass;
+
+@RemoteClass
+public class DoubleCountsArrayCombinator implements Combinator<DoubleCountsArray> {
+
+    @Override
+    public DoubleCountsArray combine(DoubleCountsArray first, DoubleCountsArray second) {
+        return DoubleCountsArray.merge(first, second);
+    }
+
+    @Override
+    public boolean isCommutative() {
+        return true;
+    }
+
+}
@@ -2,6 +2,7 @@ package be.bagofwords.db.combinator;
 
 import be.bagofwords.db.data.DoubleCountsList;
 import be.bagofwords.exec.RemoteClass;
+import be.bagofwords.util.Pair;
 
 import java.io.Serializable;
 
@@ -10,10 +11,39 @@ public class DoubleCountsListCombinator implements Combinator<DoubleCountsList>,
 
     @Override
     public DoubleCountsList combine(DoubleCountsList first, DoubleCountsList second) {
-        DoubleCountsList result = new DoubleCountsList(first);
-        result.addAll(second);
+        //Merge compacted copies in linear time, the caller can still use the original lists
+        first = compactedCopy(first);
+        second = compactedCopy(second);
+        DoubleCountsList result = new DoubleCountsList(first.size() + second.size());
+        int firstInd = 0;
+        int secondInd = 0;
+        while (firstInd < first.size() || secondInd < second.size()) {
+            Pair<Long, Double> firstValue = firstInd < first.size() ? first.get(firstInd) : null;
+            Pair<Long, Double> secondValue = secondInd < second.size() ? second.get(secondInd) : null;
+            if (secondValue == null || (firstValue != null && firstValue.getFirst() < secondValue.getFirst())) {
+                result.add(firstValue);
+                firstInd++;
+            } else if (firstValue == null || firstValue.getFirst() > secondValue.getFirst()) {
+                result.add(secondValue);
+                secondInd++;
+            } else {
+                result.add(new Pair<>(firstValue.getFirst(), firstValue.getSecond() + secondValue.getSecond()));
+                firstInd++;
+                secondInd++;
+            }
+        }
+        return result;
+    }
+
+    private static DoubleCountsList compactedCopy(DoubleCountsList list) {
+        DoubleCountsList result = list.clone();
         result.compact();
         return result;
     }
 
+    @Override
+    public boolean isCommutative() {
+        return true;
+    }
+
 }
@@ -9,4 +9,9 @@ public class FloatCombinator implements Combinator<Float> {
     public Float combine(Float first, Float second) {
         return first + second;
     }
+
+    @Override
+    public boolean isCommutative() {
+        return true;
+    }
 }
@@ -9,4 +9,14 @@ public class IntegerCombinator implements Combinator<Integer> {
     public Integer combine(Integer first, Integer second) {
         return first + second;
     }
+
+    @Override
+    public boolean isAssociative() {
+        return true;
+    }
+
+    @Override
+    public boolean isCommutative() {
+        return true;
+    }
 }
@@ -9,4 +9,14 @@ public class LongCombinator implements Combinator<Long> {
     public Long combine(Long first, Long second) {
         return first + second;
     }
+
+    @Override
+    public boolean isAssociative() {
+        return true;
+    }
+
+    @Override
+    public boolean isCommutative() {
+        return true;
+    }
 }
@@ -9,4 +9,9 @@ public class OverWriteCombinator<T> implements Combinator<T> {
     public T combine(T first, T second) {
         return second;
     }
+
+    @Override
+    public boolean isAssociative() {
+        return true;
+    }
 }
@@ -0,0 +1,324 @@
+package be.bagofwords.db.data;
+
+import be.bagofwords.db.methods.DataStream;
+import be.bagofwords.util.HashUtils;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the keys of {@link CountsArray} and {@link DoubleCountsArray} sorted and implements the sorting, compacting and
+ * merging of both classes. Subclasses store the counts in a parallel array of their own primitive type and implement the
+ * operations on single counts.
+ * <p>
+ * Like {@link CountsList} these objects are not thread safe: keys that were added out of order are sorted on the next
+ * read, so the caller owns the object and should not share it between threads while it is changed. Merging never changes
+ * its arguments and always returns a new object.
+ */
+
+public abstract class BaseCountsArray<A extends BaseCountsArray<A>> {
+
+    long[] keys;
+    int size;
+    boolean sorted;
+
+    BaseCountsArray(int initialSize) {
+        this.keys = new long[initialSize];
+        this.size = 0;
+        this.sorted = true;
+    }
+
+    /**
+     * The keys should be sorted and unique
+     */
+
+    BaseCountsArray(long[] keys, int size) {
+        this.keys = keys;
+        this.size = size;
+        this.sorted = true;
+    }
+
+    abstract A createEmpty(int capacity);
+
+    /**
+     * Grows the array of counts, if needed, so it can hold the given number of counts
+     */
+
+    abstract void ensureCountsCapacity(int capacity);
+
+    abstract void swapCounts(int ind1, int ind2);
+
+    /**
+     * Adds the count at sourceInd to the count at targetInd, or overwrites it if add is false
+     */
+
+    abstract void moveCount(int sourceInd, int targetInd, boolean add);
+
+    abstract void copyCounts(A source, int sourceInd, int targetInd, int length);
+
+    abstract void setSumOfCounts(A first, int firstInd, A second, int secondInd, int targetInd);
+
+    abstract int compareCounts(int ind1, int ind2);
+
+    abstract boolean hasSameCount(A other, int ind);
+
+    abstract int countHashCode(int ind);
+
+    abstract void appendCount(StringBuilder result, int ind);
+
+    /**
+     * Appends a key, the caller stores its count at the returned index
+     */
+
+    int appendKey(long key) {
+        if (size == keys.length) {
+            int newLength = Math.max(4, size * 2);
+            keys = Arrays.copyOf(keys, newLength);
+            ensureCountsCapacity(newLength);
+        }
+        if (sorted && size > 0 && keys[size - 1] >= key) {
+            sorted = false;
+        }
+        keys[size] = key;
+        return size++;
+    }
+
+    /**
+     * @return the index of the key, or a negative value if the key is not present
+     */
+
+    int indexOf(long key) {
+        compact();
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    /**
+     * Replaces the keys with the sorted keys that were written by a serializer and returns the position of the counts
+     */
+
+    int decodeKeys(byte[] buffer, int position, int numOfKeys) {
+        if (keys.length < numOfKeys) {
+            keys = new long[numOfKeys];
+            ensureCountsCapacity(numOfKeys);
+        }
+        for (int i = 0; i < numOfKeys; i++) {
+            keys[i] = DataStream.decodeLong(buffer, position);
+            position += 8;
+        }
+        size = numOfKeys;
+        sorted = true;
+        return position;
+    }
+
+    public long getKeyAt(int ind) {
+        compact();
+        return keys[ind];
+    }
+
+    public int size() {
+        compact();
+        return size;
+    }
+
+    /**
+     * Sorts the keys and adds up the counts of identical keys
+     */
+
+    public void compact() {
+        if (sorted) {
+            return;
+        }
+        sort(0, size - 1);
+        int newSize = 0;
+        for (int i = 0; i < size; i++) {
+            if (newSize > 0 && keys[newSize - 1] == keys[i]) {
+                moveCount(i, newSize - 1, true);
+            } else {
+                keys[newSize] = keys[i];
+                moveCount(i, newSize, false);
+                newSize++;
+            }
+        }
+        size = newSize;
+        sorted = true;
+    }
+
+    private void sort(int start, int end) {
+        while (start < end) {
+            long pivot = keys[(start + end) >>> 1];
+            int left = start;
+            int right = end;
+            while (left <= right) {
+                while (keys[left] < pivot) {
+                    left++;
+                }
+                while (keys[right] > pivot) {
+                    right--;
+                }
+                if (left <= right) {
+                    long tmpKey = keys[left];
+                    keys[left] = keys[right];
+                    keys[right] = tmpKey;
+                    swapCounts(left, right);
+                    left++;
+                    right--;
+                }
+            }
+            //recurse on the smallest part, loop on the largest
+            if (right - start < end - left) {
+                sort(start, right);
+                start = left;
+            } else {
+                sort(left, end);
+                end = right;
+            }
+        }
+    }
+
+    /**
+     * Merges two arrays in linear time. The counts of keys that occur in both arrays are added up.
+     */
+
+    static <A extends BaseCountsArray<A>> A mergeSorted(A first, A second) {
+        first = first.compactedCopy();
+        second = second.compactedCopy();
+        A result = first.createEmpty(first.size + second.size);
+        long[] keys = result.keys;
+        int firstInd = 0;
+        int secondInd = 0;
+        int size = 0;
+        while (firstInd < first.size && secondInd < second.size) {
+            long firstKey = first.keys[firstInd];
+            long secondKey = second.keys[secondInd];
+            if (firstKey < secondKey) {
+                keys[size] = firstKey;
+                result.copyCounts(first, firstInd++, size++, 1);
+            } else if (firstKey > secondKey) {
+                keys[size] = secondKey;
+                result.copyCounts(second, secondInd++, size++, 1);
+            } else {
+                keys[size] = firstKey;
+                result.setSumOfCounts(first, firstInd++, second, secondInd++, size++);
+            }
+        }
+        int remaining = first.size - firstInd;
+        System.arraycopy(first.keys, firstInd, keys, size, remaining);
+        result.copyCounts(first, firstInd, size, remaining);
+        size += remaining;
+        remaining = second.size - secondInd;
+        System.arraycopy(second.keys, secondInd, keys, size, remaining);
+        result.copyCounts(second, secondInd, size, remaining);
+        size += remaining;
+        result.size = size;
+        return result;
+    }
+
+    /**
+     * @return this object if its keys are sorted, otherwise a compacted copy, so this object is not changed
+     */
+
+    @SuppressWarnings("unchecked")
+    A compactedCopy() {
+        if (sorted) {
+            return (A) this;
+        }
+        A copy = createEmpty(size);
+        System.arraycopy(keys, 0, copy.keys, 0, size);
+        copy.copyCounts((A) this, 0, 0, size);
+        copy.size = size;
+        copy.sorted = false;
+        copy.compact();
+        return copy;
+    }
+
+    /**
+     * @return the keys, sorted by decreasing count
+     */
+
+    @JsonIgnore
+    public List<Long> getSortedKeys() {
+        compact();
+        List<Integer> indexes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            indexes.add(i);
+        }
+        indexes.sort((ind1, ind2) -> {
+            int result = compareCounts(ind2, ind1); //largest first
+            return result != 0 ? result : Long.compare(keys[ind1], keys[ind2]);
+        });
+        List<Long> result = new ArrayList<>(size);
+        for (Integer ind : indexes) {
+            result.add(keys[ind]);
+        }
+        return result;
+    }
+
+    //Used for serialization
+
+    public long[] getKeys() {
+        compact();
+        return Arrays.copyOf(keys, size);
+    }
+
+    public void setKeys(long[] keys) {
+        this.keys = keys;
+        this.size = keys.length;
+        this.sorted = false;
+        ensureCountsCapacity(size);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || obj.getClass() != getClass()) {
+            return false;
+        }
+        A other = (A) obj;
+        compact();
+        other.compact();
+        if (size != other.size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (keys[i] != other.keys[i] || !hasSameCount(other, i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        compact();
+        int result = HashUtils.startHash;
+        for (int i = 0; i < size; i++) {
+            result = result * HashUtils.addHash + (int) keys[i];
+            result = result * HashUtils.addHash + countHashCode(i);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        compact();
+        StringBuilder result = new StringBuilder("{ ");
+        int i;
+        for (i = 0; i < size && i < 10; i++) {
+            result.append(keys[i]).append(":");
+            appendCount(result, i);
+            if (i < size - 1) {
+                result.append(", ");
+            }
+        }
+        if (i < size) {
+            result.append(" ...");
+        }
+        result.append("}");
+        return result.toString();
+    }
+}
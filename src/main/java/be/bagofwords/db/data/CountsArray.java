@@ -0,0 +1,166 @@
+package be.bagofwords.db.data;
+
+import be.bagofwords.db.methods.DataStream;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.Arrays;
+
+/**
+ * Counts of keys, stored in two parallel arrays instead of a list of pairs like {@link CountsList}. The keys are kept sorted
+ * so two arrays can be combined with a linear merge (see {@link #merge(CountsArray, CountsArray)}) and counts can be found
+ * with a binary search. Counts added with {@link #addCount(long, long)} are appended and sorted on the next read.
+ * Use {@link CountsArraySerializer} to store these objects in 16 bytes per key.
+ */
+
+public class CountsArray extends BaseCountsArray<CountsArray> {
+
+    private long[] counts;
+
+    public CountsArray() {
+        this(4);
+    }
+
+    public CountsArray(int initialSize) {
+        super(initialSize);
+        this.counts = new long[initialSize];
+    }
+
+    public CountsArray(long key, long count) {
+        this(1);
+        addCount(key, count);
+    }
+
+    public CountsArray(CountsList list) {
+        this(list.size());
+        for (int i = 0; i < list.size(); i++) {
+            addCount(list.get(i).getFirst(), list.get(i).getSecond());
+        }
+    }
+
+    /**
+     * The keys should be sorted and unique
+     */
+
+    CountsArray(long[] keys, long[] counts, int size) {
+        super(keys, size);
+        this.counts = counts;
+    }
+
+    /**
+     * Replaces the contents of this object with the sorted keys and counts that were written by {@link CountsArraySerializer}
+     */
+
+    void decode(byte[] buffer, int position, int numOfKeys) {
+        position = decodeKeys(buffer, position, numOfKeys);
+        for (int i = 0; i < numOfKeys; i++) {
+            counts[i] = DataStream.decodeLong(buffer, position);
+            position += 8;
+        }
+    }
+
+    public void addCount(long key, long count) {
+        int ind = appendKey(key); //can replace the array of counts
+        counts[ind] = count;
+    }
+
+    public long getCount(long key) {
+        int ind = indexOf(key);
+        return ind >= 0 ? counts[ind] : 0;
+    }
+
+    public long getCountAt(int ind) {
+        compact();
+        return counts[ind];
+    }
+
+    /**
+     * @return the number of added counts, without sorting the keys first. Can be larger than {@link #size()} if keys were added more than once.
+     */
+
+    @JsonIgnore
+    public int getUncompactedSize() {
+        return size;
+    }
+
+    @JsonIgnore
+    public long getTotal() {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += counts[i];
+        }
+        return total;
+    }
+
+    /**
+     * Merges two arrays in linear time. The counts of keys that occur in both arrays are added up.
+     */
+
+    public static CountsArray merge(CountsArray first, CountsArray second) {
+        return mergeSorted(first, second);
+    }
+
+    //Used for serialization
+
+    public long[] getCounts() {
+        compact();
+        return Arrays.copyOf(counts, size);
+    }
+
+    public void setCounts(long[] counts) {
+        this.counts = counts;
+    }
+
+    @Override
+    CountsArray createEmpty(int capacity) {
+        return new CountsArray(capacity);
+    }
+
+    @Override
+    void ensureCountsCapacity(int capacity) {
+        if (counts.length < capacity) {
+            counts = Arrays.copyOf(counts, capacity);
+        }
+    }
+
+    @Override
+    void swapCounts(int ind1, int ind2) {
+        long tmp = counts[ind1];
+        counts[ind1] = counts[ind2];
+        counts[ind2] = tmp;
+    }
+
+    @Override
+    void moveCount(int sourceInd, int targetInd, boolean add) {
+        counts[targetInd] = add ? counts[targetInd] + counts[sourceInd] : counts[sourceInd];
+    }
+
+    @Override
+    void copyCounts(CountsArray source, int sourceInd, int targetInd, int length) {
+        System.arraycopy(source.counts, sourceInd, counts, targetInd, length);
+    }
+
+    @Override
+    void setSumOfCounts(CountsArray first, int firstInd, CountsArray second, int secondInd, int targetInd) {
+        counts[targetInd] = first.counts[firstInd] + second.counts[secondInd];
+    }
+
+    @Override
+    int compareCounts(int ind1, int ind2) {
+        return Long.compare(counts[ind1], counts[ind2]);
+    }
+
+    @Override
+    boolean hasSameCount(CountsArray other, int ind) {
+        return counts[ind] == other.counts[ind];
+    }
+
+    @Override
+    int countHashCode(int ind) {
+        return Long.hashCode(counts[ind]);
+    }
+
+    @Override
+    void appendCount(StringBuilder result, int ind) {
+        result.append(counts[ind]);
+    }
+}
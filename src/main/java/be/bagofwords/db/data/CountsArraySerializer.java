@@ -0,0 +1,64 @@
+package be.bagofwords.db.data;
+
+import be.bagofwords.db.methods.DataStream;
+import be.bagofwords.db.methods.ObjectSerializer;
+import be.bagofwords.exec.RemoteClass;
+
+/**
+ * Writes all keys followed by all counts as 8 byte longs, the number of keys follows from the size of the value. A null
+ * value is written as a single byte.
+ */
+
+@RemoteClass
+public class CountsArraySerializer implements ObjectSerializer<CountsArray> {
+
+    private static final int BYTES_PER_KEY = 16;
+
+    @Override
+    public void writeValue(CountsArray obj, DataStream ds) {
+        if (obj == null) {
+            ds.writeByte((byte) 0);
+            return;
+        }
+        long[] keys = obj.getKeys();
+        long[] counts = obj.getCounts();
+        for (long key : keys) {
+            ds.writeLong(key);
+        }
+        for (long count : counts) {
+            ds.writeLong(count);
+        }
+    }
+
+    @Override
+    public CountsArray readValue(DataStream ds, int size) {
+        CountsArray result = readValue(ds.buffer, ds.position, size);
+        ds.position += size;
+        return result;
+    }
+
+    @Override
+    public CountsArray readValue(byte[] buffer, int offset, int size) {
+        return readValue(buffer, offset, size, null);
+    }
+
+    /**
+     * Decodes the keys and counts into the arrays of the reused object, new arrays are only created if they are too small
+     */
+
+    @Override
+    public CountsArray readValue(byte[] buffer, int offset, int size, CountsArray reuse) {
+        if (size % BYTES_PER_KEY != 0) {
+            return null;
+        }
+        int numOfKeys = size / BYTES_PER_KEY;
+        CountsArray result = reuse == null ? new CountsArray(numOfKeys) : reuse;
+        result.decode(buffer, offset, numOfKeys);
+        return result;
+    }
+
+    @Override
+    public int getObjectSize() {
+        return VARIABLE_SIZE;
+    }
+}
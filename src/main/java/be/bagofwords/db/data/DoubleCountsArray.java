@@ -0,0 +1,155 @@
+package be.bagofwords.db.data;
+
+import be.bagofwords.db.methods.DataStream;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.Arrays;
+
+/**
+ * Like {@link CountsArray}, but with counts of type double. Use {@link DoubleCountsArraySerializer} to store these objects in
+ * 16 bytes per key.
+ */
+
+public class DoubleCountsArray extends BaseCountsArray<DoubleCountsArray> {
+
+    private double[] counts;
+
+    public DoubleCountsArray() {
+        this(4);
+    }
+
+    public DoubleCountsArray(int initialSize) {
+        super(initialSize);
+        this.counts = new double[initialSize];
+    }
+
+    public DoubleCountsArray(long key, double count) {
+        this(1);
+        addCount(key, count);
+    }
+
+    public DoubleCountsArray(DoubleCountsList list) {
+        this(list.size());
+        for (int i = 0; i < list.size(); i++) {
+            addCount(list.get(i).getFirst(), list.get(i).getSecond());
+        }
+    }
+
+    /**
+     * The keys should be sorted and unique
+     */
+
+    DoubleCountsArray(long[] keys, double[] counts, int size) {
+        super(keys, size);
+        this.counts = counts;
+    }
+
+    /**
+     * Replaces the contents of this object with the sorted keys and counts that were written by {@link DoubleCountsArraySerializer}
+     */
+
+    void decode(byte[] buffer, int position, int numOfKeys) {
+        position = decodeKeys(buffer, position, numOfKeys);
+        for (int i = 0; i < numOfKeys; i++) {
+            counts[i] = Double.longBitsToDouble(DataStream.decodeLong(buffer, position));
+            position += 8;
+        }
+    }
+
+    public void addCount(long key, double count) {
+        int ind = appendKey(key); //can replace the array of counts
+        counts[ind] = count;
+    }
+
+    public double getCount(long key) {
+        int ind = indexOf(key);
+        return ind >= 0 ? counts[ind] : 0;
+    }
+
+    public double getCountAt(int ind) {
+        compact();
+        return counts[ind];
+    }
+
+    @JsonIgnore
+    public double getTotal() {
+        double total = 0;
+        for (int i = 0; i < size; i++) {
+            total += counts[i];
+        }
+        return total;
+    }
+
+    /**
+     * Merges two arrays in linear time. The counts of keys that occur in both arrays are added up.
+     */
+
+    public static DoubleCountsArray merge(DoubleCountsArray first, DoubleCountsArray second) {
+        return mergeSorted(first, second);
+    }
+
+    //Used for serialization
+
+    public double[] getCounts() {
+        compact();
+        return Arrays.copyOf(counts, size);
+    }
+
+    public void setCounts(double[] counts) {
+        this.counts = counts;
+    }
+
+    @Override
+    DoubleCountsArray createEmpty(int capacity) {
+        return new DoubleCountsArray(capacity);
+    }
+
+    @Override
+    void ensureCountsCapacity(int capacity) {
+        if (counts.length < capacity) {
+            counts = Arrays.copyOf(counts, capacity);
+        }
+    }
+
+    @Override
+    void swapCounts(int ind1, int ind2) {
+        double tmp = counts[ind1];
+        counts[ind1] = counts[ind2];
+        counts[ind2] = tmp;
+    }
+
+    @Override
+    void moveCount(int sourceInd, int targetInd, boolean add) {
+        counts[targetInd] = add ? counts[targetInd] + counts[sourceInd] : counts[sourceInd];
+    }
+
+    @Override
+    void copyCounts(DoubleCountsArray source, int sourceInd, int targetInd, int length) {
+        System.arraycopy(source.counts, sourceInd, counts, targetInd, length);
+    }
+
+    @Override
+    void setSumOfCounts(DoubleCountsArray first, int firstInd, DoubleCountsArray second, int secondInd, int targetInd) {
+        counts[targetInd] = first.counts[firstInd] + second.counts[secondInd];
+    }
+
+    @Override
+    int compareCounts(int ind1, int ind2) {
+        return Double.compare(counts[ind1], counts[ind2]);
+    }
+
+    @Override
+    boolean hasSameCount(DoubleCountsArray other, int ind) {
+        return counts[ind] == other.counts[ind];
+    }
+
+    @Override
+    int countHashCode(int ind) {
+        return Double.hashCode(counts[ind]);
+    }
+
+    @Override
+    void appendCount(StringBuilder result, int ind) {
+        result.append(counts[ind]);
+    }
+}
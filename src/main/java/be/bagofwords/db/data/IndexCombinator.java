@@ -12,4 +12,9 @@ public class IndexCombinator implements Combinator<Index> {
         result.addAll(second);
         return result;
     }
+
+    @Override
+    public boolean isAssociative() {
+        return true;
+    }
 }
@@ -52,4 +52,59 @@ public class ListCombinator<T> implements Combinator<List<KeyValue<T>>> {
         }
         return result;
     }
+
+    @Override
+    public boolean isAssociative() {
+        return valueCombinator.isAssociative();
+    }
+
+    /**
+     * Inserts the values of next in the accumulator. Typically next contains only a few values, which makes this a lot
+     * cheaper than creating a new list for every combine. Falls back to {@link #combine(List, List)} if next is large.
+     */
+
+    @Override
+    public List<KeyValue<T>> combineInto(List<KeyValue<T>> accumulator, List<KeyValue<T>> next) {
+        if (!(accumulator instanceof ArrayList) || next.size() * 8 > accumulator.size()) {
+            return combine(accumulator, next);
+        }
+        for (KeyValue<T> kv : next) {
+            int ind = findKey(accumulator, kv.getKey());
+            if (ind >= 0) {
+                T currentValue = accumulator.get(ind).getValue();
+                T combined;
+                if (currentValue == null || kv.getValue() == null) {
+                    combined = kv.getValue();
+                } else {
+                    combined = valueCombinator.combine(currentValue, kv.getValue());
+                }
+                //The key-value object can be shared with other lists, so we replace it instead of changing its value
+                accumulator.set(ind, new KeyValue<>(kv.getKey(), combined));
+            } else {
+                //Inserting at the end, the common case for increasing keys, is amortized O(1)
+                accumulator.add(-(ind + 1), kv);
+            }
+        }
+        return accumulator;
+    }
+
+    private int findKey(List<KeyValue<T>> values, long key) {
+        int start = 0;
+        int end = values.size() - 1;
+        if (end >= 0 && values.get(end).getKey() < key) {
+            return -(end + 2);
+        }
+        while (start <= end) {
+            int middle = (start + end) >>> 1;
+            long middleKey = values.get(middle).getKey();
+            if (middleKey < key) {
+                start = middle + 1;
+            } else if (middleKey > key) {
+                end = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(start + 1);
+    }
 }
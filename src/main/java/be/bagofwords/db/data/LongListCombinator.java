@@ -23,4 +23,14 @@ public class LongListCombinator implements Combinator<LongList> {
         return result;
     }
 
+    @Override
+    public boolean isAssociative() {
+        return true;
+    }
+
+    @Override
+    public boolean isCommutative() {
+        return true;
+    }
+
 }
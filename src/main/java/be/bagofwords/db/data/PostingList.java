@@ -0,0 +1,234 @@
+package be.bagofwords.db.data;
+
+import be.bagofwords.util.HashUtils;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sorted set of keys, used to store the keys of all values that have the same index key (see
+ * {@link be.bagofwords.db.experimental.index.PostingListDataInterfaceIndex}). Objects of this class are not modified after
+ * they are created, {@link #union(PostingList, PostingList)} and {@link #intersect(PostingList, PostingList)} return new
+ * objects. Use {@link PostingListSerializer} to store the differences between consecutive keys instead of the keys.
+ */
+
+public class PostingList {
+
+    private static final PostingList EMPTY = new PostingList(new long[0], 0);
+
+    private long[] keys;
+    private int size;
+
+    public PostingList() {
+        this(new long[0], 0);
+    }
+
+    public PostingList(long key) {
+        this(new long[]{key}, 1);
+    }
+
+    /**
+     * The keys should be sorted and unique
+     */
+
+    PostingList(long[] keys, int size) {
+        this.keys = keys;
+        this.size = size;
+    }
+
+    public static PostingList empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @param keys will be sorted, duplicate keys are removed
+     */
+
+    public static PostingList fromKeys(long[] keys) {
+        long[] sortedKeys = Arrays.copyOf(keys, keys.length);
+        Arrays.sort(sortedKeys);
+        int size = 0;
+        for (int i = 0; i < sortedKeys.length; i++) {
+            if (size == 0 || sortedKeys[size - 1] != sortedKeys[i]) {
+                sortedKeys[size++] = sortedKeys[i];
+            }
+        }
+        return new PostingList(sortedKeys, size);
+    }
+
+    public static PostingList fromKeys(List<Long> keys) {
+        long[] result = new long[keys.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = keys.get(i);
+        }
+        return fromKeys(result);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @JsonIgnore
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getKey(int ind) {
+        if (ind >= size) {
+            throw new IndexOutOfBoundsException("Index " + ind + " for posting list of size " + size);
+        }
+        return keys[ind];
+    }
+
+    public boolean contains(long key) {
+        return Arrays.binarySearch(keys, 0, size, key) >= 0;
+    }
+
+    /**
+     * @return the index of the first key that is larger than or equal to the given key, starting the search at the given
+     * index. Exponential search, so this is fast if the key is close to the start index.
+     */
+
+    public int findFirstAtLeast(long key, int start) {
+        if (start >= size || keys[start] >= key) {
+            return start;
+        }
+        int step = 1;
+        int low = start;
+        int high = start + step;
+        while (high < size && keys[high] < key) {
+            low = high;
+            step *= 2;
+            high = start + step;
+        }
+        high = Math.min(high, size);
+        //keys[low] < key and (high == size or keys[high] >= key)
+        int ind = Arrays.binarySearch(keys, low + 1, high, key);
+        return ind >= 0 ? ind : -ind - 1;
+    }
+
+    public static PostingList union(PostingList first, PostingList second) {
+        if (first.size == 0) {
+            return second;
+        } else if (second.size == 0) {
+            return first;
+        }
+        long[] keys = new long[first.size + second.size];
+        int firstInd = 0;
+        int secondInd = 0;
+        int size = 0;
+        while (firstInd < first.size && secondInd < second.size) {
+            long firstKey = first.keys[firstInd];
+            long secondKey = second.keys[secondInd];
+            if (firstKey < secondKey) {
+                keys[size++] = firstKey;
+                firstInd++;
+            } else if (firstKey > secondKey) {
+                keys[size++] = secondKey;
+                secondInd++;
+            } else {
+                keys[size++] = firstKey;
+                firstInd++;
+                secondInd++;
+            }
+        }
+        int remaining = first.size - firstInd;
+        System.arraycopy(first.keys, firstInd, keys, size, remaining);
+        size += remaining;
+        remaining = second.size - secondInd;
+        System.arraycopy(second.keys, secondInd, keys, size, remaining);
+        size += remaining;
+        return new PostingList(keys, size);
+    }
+
+    /**
+     * Looks up the keys of the smallest list in the largest list with {@link #findFirstAtLeast(long, int)}, so the cost
+     * depends mostly on the size of the smallest list.
+     */
+
+    public static PostingList intersect(PostingList first, PostingList second) {
+        PostingList smallest = first.size <= second.size ? first : second;
+        PostingList largest = smallest == first ? second : first;
+        long[] keys = new long[smallest.size];
+        int size = 0;
+        int largestInd = 0;
+        for (int i = 0; i < smallest.size && largestInd < largest.size; i++) {
+            long key = smallest.keys[i];
+            largestInd = largest.findFirstAtLeast(key, largestInd);
+            if (largestInd < largest.size && largest.keys[largestInd] == key) {
+                keys[size++] = key;
+                largestInd++;
+            }
+        }
+        return new PostingList(keys, size);
+    }
+
+    @JsonIgnore
+    public List<Long> getKeyList() {
+        List<Long> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(keys[i]);
+        }
+        return result;
+    }
+
+    //Used for serialization
+
+    public long[] getKeys() {
+        return Arrays.copyOf(keys, size);
+    }
+
+    public void setKeys(long[] keys) {
+        PostingList sorted = fromKeys(keys);
+        this.keys = sorted.keys;
+        this.size = sorted.size;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof PostingList)) {
+            return false;
+        }
+        PostingList other = (PostingList) obj;
+        if (size != other.size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (keys[i] != other.keys[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = HashUtils.startHash;
+        for (int i = 0; i < size; i++) {
+            result = result * HashUtils.addHash + Long.hashCode(keys[i]);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("[");
+        int i;
+        for (i = 0; i < size && i < 10; i++) {
+            result.append(keys[i]);
+            if (i < size - 1) {
+                result.append(", ");
+            }
+        }
+        if (i < size) {
+            result.append(" ...");
+        }
+        result.append("]");
+        return result.toString();
+    }
+}
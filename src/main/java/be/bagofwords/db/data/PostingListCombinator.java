@@ -0,0 +1,24 @@
+package be.bagofwords.db.data;
+
+import be.bagofwords.db.combinator.Combinator;
+import be.bagofwords.exec.RemoteClass;
+
+@RemoteClass
+public class PostingListCombinator implements Combinator<PostingList> {
+
+    @Override
+    public PostingList combine(PostingList first, PostingList second) {
+        return PostingList.union(first, second);
+    }
+
+    @Override
+    public boolean isAssociative() {
+        return true;
+    }
+
+    @Override
+    public boolean isCommutative() {
+        return true;
+    }
+
+}
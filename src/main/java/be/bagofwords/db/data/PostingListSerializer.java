@@ -0,0 +1,55 @@
+package be.bagofwords.db.data;
+
+import be.bagofwords.db.methods.DataStream;
+import be.bagofwords.db.methods.ObjectSerializer;
+import be.bagofwords.exec.RemoteClass;
+
+/**
+ * Writes the number of keys + 1 (0 for null) and the first key, followed by the differences between consecutive keys.
+ * The number of keys and the differences are written as variable length longs, so dense posting lists take 1 or 2 bytes
+ * per key. The differences of sorted signed keys always fit in an unsigned long.
+ */
+
+@RemoteClass
+public class PostingListSerializer implements ObjectSerializer<PostingList> {
+
+    @Override
+    public void writeValue(PostingList obj, DataStream ds) {
+        if (obj == null) {
+            ds.writeVarLong(0);
+            return;
+        }
+        int size = obj.size();
+        ds.writeVarLong(size + 1);
+        if (size > 0) {
+            long prevKey = obj.getKey(0);
+            ds.writeLong(prevKey);
+            for (int i = 1; i < size; i++) {
+                long key = obj.getKey(i);
+                ds.writeVarLong(key - prevKey);
+                prevKey = key;
+            }
+        }
+    }
+
+    @Override
+    public PostingList readValue(DataStream ds, int size) {
+        int numOfKeys = (int) ds.readVarLong() - 1;
+        if (numOfKeys == -1) {
+            return null;
+        }
+        long[] keys = new long[numOfKeys];
+        if (numOfKeys > 0) {
+            keys[0] = ds.readLong();
+            for (int i = 1; i < numOfKeys; i++) {
+                keys[i] = keys[i - 1] + ds.readVarLong();
+            }
+        }
+        return new PostingList(keys, numOfKeys);
+    }
+
+    @Override
+    public int getObjectSize() {
+        return VARIABLE_SIZE;
+    }
+}
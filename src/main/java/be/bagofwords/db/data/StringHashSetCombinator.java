@@ -14,4 +14,14 @@ public class StringHashSetCombinator implements Combinator<StringHashSet> {
         return result;
     }
 
+    @Override
+    public boolean isAssociative() {
+        return true;
+    }
+
+    @Override
+    public boolean isCommutative() {
+        return true;
+    }
+
 }
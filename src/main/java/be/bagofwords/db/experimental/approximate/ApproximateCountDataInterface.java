@@ -0,0 +1,251 @@
+package be.bagofwords.db.experimental.approximate;
+
+import be.bagofwords.text.BowString;
+import be.bagofwords.util.HashUtils;
+import be.bagofwords.util.KeyValue;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Approximate counts of keys in constant memory, for tables that are too large to store all keys. Counts are kept in a
+ * {@link CountMinSketch}, so {@link #readCount(long)} never returns less than the real count. The keys with the largest
+ * estimated counts are also kept in a heavy hitters map. From the moment a key enters this map, its count is updated
+ * exactly, so the counts of frequent keys don't get less accurate over time.
+ * <p>
+ * Unlike a {@link be.bagofwords.db.DataInterface} the keys can not be iterated. The counts can be saved to a file with
+ * {@link #save(File)} and counts collected in other processes can be added with {@link #merge(ApproximateCountDataInterface)}.
+ */
+
+public class ApproximateCountDataInterface {
+
+    private static final int FORMAT_VERSION = 1;
+    private static final Object TIE_LOCK = new Object();
+
+    private final String name;
+    private final CountMinSketch sketch;
+    private final int numOfHeavyHitters;
+    private final Map<Long, Long> heavyHitters;
+    private long minHeavyHitterCount;
+    private long totalCount;
+    private final ReentrantLock lock;
+
+    public ApproximateCountDataInterface(String name, CountMinSketch sketch, int numOfHeavyHitters) {
+        this.name = name;
+        this.sketch = sketch;
+        this.numOfHeavyHitters = numOfHeavyHitters;
+        this.heavyHitters = new HashMap<>();
+        this.minHeavyHitterCount = 0;
+        this.totalCount = 0;
+        this.lock = new ReentrantLock();
+    }
+
+    /**
+     * @param epsilon maximum error on the counts, relative to the total of all counts
+     * @param delta   probability that the error on a count is larger than epsilon
+     */
+
+    public ApproximateCountDataInterface(String name, double epsilon, double delta, int numOfHeavyHitters) {
+        this(name, CountMinSketch.create(epsilon, delta), numOfHeavyHitters);
+    }
+
+    public void write(long key, long count) {
+        lock.lock();
+        try {
+            totalCount += count;
+            Long exactCount = heavyHitters.get(key);
+            if (exactCount != null) {
+                sketch.addCount(key, count);
+                heavyHitters.put(key, exactCount + count);
+            } else {
+                long estimatedCount = sketch.addCount(key, count);
+                if (heavyHitters.size() < numOfHeavyHitters || estimatedCount > minHeavyHitterCount) {
+                    heavyHitters.put(key, estimatedCount);
+                    if (heavyHitters.size() > numOfHeavyHitters) {
+                        removeSmallestHeavyHitter();
+                    } else {
+                        minHeavyHitterCount = heavyHitters.size() == 1 ? estimatedCount : Math.min(minHeavyHitterCount, estimatedCount);
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void write(String key, long count) {
+        write(HashUtils.hashCode(key), count);
+    }
+
+    public void write(BowString key, long count) {
+        write(HashUtils.hashCode(key), count);
+    }
+
+    private void removeSmallestHeavyHitter() {
+        long smallestKey = 0;
+        long smallestCount = Long.MAX_VALUE;
+        long secondSmallestCount = Long.MAX_VALUE;
+        for (Map.Entry<Long, Long> entry : heavyHitters.entrySet()) {
+            long count = entry.getValue();
+            if (count < smallestCount) {
+                secondSmallestCount = smallestCount;
+                smallestCount = count;
+                smallestKey = entry.getKey();
+            } else if (count < secondSmallestCount) {
+                secondSmallestCount = count;
+            }
+        }
+        heavyHitters.remove(smallestKey);
+        minHeavyHitterCount = secondSmallestCount;
+    }
+
+    public long readCount(long key) {
+        lock.lock();
+        try {
+            Long exactCount = heavyHitters.get(key);
+            return exactCount != null ? exactCount : sketch.readCount(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long readCount(String key) {
+        return readCount(HashUtils.hashCode(key));
+    }
+
+    public long readCount(BowString key) {
+        return readCount(HashUtils.hashCode(key));
+    }
+
+    /**
+     * @return the heavy hitters, sorted by decreasing count
+     */
+
+    public List<KeyValue<Long>> getHeavyHitters() {
+        List<KeyValue<Long>> result = new ArrayList<>();
+        lock.lock();
+        try {
+            for (Map.Entry<Long, Long> entry : heavyHitters.entrySet()) {
+                result.add(new KeyValue<>(entry.getKey(), entry.getValue()));
+            }
+        } finally {
+            lock.unlock();
+        }
+        result.sort((kv1, kv2) -> -Long.compare(kv1.getValue(), kv2.getValue()));
+        return result;
+    }
+
+    public long getTotalCount() {
+        lock.lock();
+        try {
+            return totalCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Adds the counts of the other interface to this interface. Both should be created with the same dimensions.
+     */
+
+    public void merge(ApproximateCountDataInterface other) {
+        //Both interfaces are locked in an order that doesn't depend on which one is merged into the other, so
+        //a.merge(b) and b.merge(a) can not deadlock
+        int hash = System.identityHashCode(this);
+        int otherHash = System.identityHashCode(other);
+        if (hash == otherHash && this != other) {
+            synchronized (TIE_LOCK) {
+                lockBothAndMerge(this, other);
+            }
+        } else if (hash <= otherHash) {
+            lockBothAndMerge(this, other);
+        } else {
+            lockBothAndMerge(other, this);
+        }
+    }
+
+    private void lockBothAndMerge(ApproximateCountDataInterface firstToLock, ApproximateCountDataInterface secondToLock) {
+        ApproximateCountDataInterface other = firstToLock == this ? secondToLock : firstToLock;
+        firstToLock.lock.lock();
+        secondToLock.lock.lock();
+        try {
+            Set<Long> candidates = new HashSet<>(heavyHitters.keySet());
+            candidates.addAll(other.heavyHitters.keySet());
+            Map<Long, Long> mergedCounts = new HashMap<>();
+            for (Long key : candidates) {
+                //If a key is only a heavy hitter in one of the two interfaces, we use the estimated count of the other sketch,
+                //which is never too small
+                Long count = heavyHitters.get(key);
+                Long otherCount = other.heavyHitters.get(key);
+                long thisPart = count != null ? count : sketch.readCount(key);
+                long otherPart = otherCount != null ? otherCount : other.sketch.readCount(key);
+                mergedCounts.put(key, thisPart + otherPart);
+            }
+            sketch.merge(other.sketch);
+            totalCount += other.totalCount;
+            heavyHitters.clear();
+            mergedCounts.entrySet().stream()
+                    .sorted((entry1, entry2) -> -Long.compare(entry1.getValue(), entry2.getValue()))
+                    .limit(numOfHeavyHitters)
+                    .forEach(entry -> heavyHitters.put(entry.getKey(), entry.getValue()));
+            minHeavyHitterCount = heavyHitters.values().stream().mapToLong(Long::longValue).min().orElse(0);
+        } finally {
+            secondToLock.lock.unlock();
+            firstToLock.lock.unlock();
+        }
+    }
+
+    public void save(File file) {
+        lock.lock();
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            dos.writeInt(FORMAT_VERSION);
+            dos.writeUTF(name);
+            dos.writeLong(totalCount);
+            dos.writeInt(numOfHeavyHitters);
+            dos.writeInt(heavyHitters.size());
+            for (Map.Entry<Long, Long> entry : heavyHitters.entrySet()) {
+                dos.writeLong(entry.getKey());
+                dos.writeLong(entry.getValue());
+            }
+            sketch.writeTo(dos);
+        } catch (IOException exp) {
+            throw new RuntimeException("Failed to save approximate counts " + name + " to " + file.getAbsolutePath(), exp);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static ApproximateCountDataInterface load(File file) {
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int version = dis.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new RuntimeException("Unknown format version " + version + " in " + file.getAbsolutePath());
+            }
+            String name = dis.readUTF();
+            long totalCount = dis.readLong();
+            int numOfHeavyHitters = dis.readInt();
+            int numOfStoredHeavyHitters = dis.readInt();
+            Map<Long, Long> heavyHitters = new HashMap<>();
+            for (int i = 0; i < numOfStoredHeavyHitters; i++) {
+                heavyHitters.put(dis.readLong(), dis.readLong());
+            }
+            ApproximateCountDataInterface result = new ApproximateCountDataInterface(name, CountMinSketch.readFrom(dis), numOfHeavyHitters);
+            result.totalCount = totalCount;
+            result.heavyHitters.putAll(heavyHitters);
+            result.minHeavyHitterCount = heavyHitters.values().stream().mapToLong(Long::longValue).min().orElse(0);
+            return result;
+        } catch (IOException exp) {
+            throw new RuntimeException("Failed to load approximate counts from " + file.getAbsolutePath(), exp);
+        }
+    }
+}
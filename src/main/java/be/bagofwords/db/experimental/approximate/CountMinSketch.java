@@ -0,0 +1,159 @@
+package be.bagofwords.db.experimental.approximate;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Count-min sketch with 32 bit counters and conservative update: a write only increases the counters that are smaller
+ * than the new estimated count of the key. Estimated counts are never smaller than the real counts. Counters saturate
+ * at {@link Integer#MAX_VALUE}.
+ * <p>
+ * The hash functions only depend on the width and the depth, so sketches with the same dimensions can be merged, also
+ * when they were created in different processes.
+ */
+
+public class CountMinSketch {
+
+    private final int width;
+    private final int[][] counters;
+
+    public CountMinSketch(int width, int depth) {
+        if (width <= 0 || depth <= 0) {
+            throw new RuntimeException("Invalid dimensions " + width + "x" + depth + " for count-min sketch");
+        }
+        this.width = width;
+        this.counters = new int[depth][width];
+    }
+
+    /**
+     * Creates a sketch of which the estimated counts are, with probability 1 - delta, at most epsilon * (total of all
+     * counts) larger than the real counts.
+     */
+
+    public static CountMinSketch create(double epsilon, double delta) {
+        long width = (long) Math.ceil(Math.E / epsilon);
+        if (width > Integer.MAX_VALUE - 8) {
+            throw new RuntimeException("Sorry, epsilon " + epsilon + " is too small");
+        }
+        int depth = (int) Math.ceil(Math.log(1 / delta));
+        return new CountMinSketch((int) width, Math.max(1, depth));
+    }
+
+    public long readCount(long key) {
+        long hash = mix(key);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < counters.length; row++) {
+            min = Math.min(min, counters[row][index(hash1, hash2, row)]);
+        }
+        return min;
+    }
+
+    /**
+     * Adds the count to the key and returns the new estimated count. Not thread safe.
+     */
+
+    public long addCount(long key, long count) {
+        if (count < 0) {
+            throw new RuntimeException("Can not add negative count " + count + " to a count-min sketch");
+        }
+        long hash = mix(key);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        int[] indexes = new int[counters.length];
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < counters.length; row++) {
+            indexes[row] = index(hash1, hash2, row);
+            min = Math.min(min, counters[row][indexes[row]]);
+        }
+        int newCount = (int) Math.min(Integer.MAX_VALUE, min + count);
+        for (int row = 0; row < counters.length; row++) {
+            if (counters[row][indexes[row]] < newCount) {
+                counters[row][indexes[row]] = newCount;
+            }
+        }
+        return newCount;
+    }
+
+    private int index(int hash1, int hash2, int row) {
+        long combinedHash = hash1 + (long) (row + 1) * hash2;
+        return (int) Math.floorMod(combinedHash, (long) width);
+    }
+
+    /**
+     * Stafford's variant 13 of the murmur3 finalizer. We don't use a library hash function because the sketch is only
+     * valid as long as the hash function does not change.
+     */
+
+    private static long mix(long key) {
+        key = (key ^ (key >>> 30)) * 0xbf58476d1ce4e5b9L;
+        key = (key ^ (key >>> 27)) * 0x94d049bb133111ebL;
+        return key ^ (key >>> 31);
+    }
+
+    /**
+     * Adds the counters of the other sketch to the counters of this sketch
+     */
+
+    public void merge(CountMinSketch other) {
+        if (other.width != width || other.counters.length != counters.length) {
+            throw new RuntimeException("Can not merge sketch of dimensions " + other.width + "x" + other.counters.length + " with sketch of dimensions " + width + "x" + counters.length);
+        }
+        for (int row = 0; row < counters.length; row++) {
+            int[] rowCounters = counters[row];
+            int[] otherRowCounters = other.counters[row];
+            for (int i = 0; i < width; i++) {
+                rowCounters[i] = (int) Math.min(Integer.MAX_VALUE, (long) rowCounters[i] + otherRowCounters[i]);
+            }
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getDepth() {
+        return counters.length;
+    }
+
+    public void writeTo(DataOutputStream dos) throws IOException {
+        dos.writeInt(width);
+        dos.writeInt(counters.length);
+        byte[] buffer = new byte[4 * 8192];
+        for (int[] rowCounters : counters) {
+            for (int start = 0; start < width; start += 8192) {
+                int end = Math.min(width, start + 8192);
+                int position = 0;
+                for (int i = start; i < end; i++) {
+                    int value = rowCounters[i];
+                    buffer[position++] = (byte) (value >>> 24);
+                    buffer[position++] = (byte) (value >>> 16);
+                    buffer[position++] = (byte) (value >>> 8);
+                    buffer[position++] = (byte) value;
+                }
+                dos.write(buffer, 0, position);
+            }
+        }
+    }
+
+    public static CountMinSketch readFrom(DataInputStream dis) throws IOException {
+        int width = dis.readInt();
+        int depth = dis.readInt();
+        CountMinSketch result = new CountMinSketch(width, depth);
+        byte[] buffer = new byte[4 * 8192];
+        for (int[] rowCounters : result.counters) {
+            for (int start = 0; start < width; start += 8192) {
+                int end = Math.min(width, start + 8192);
+                dis.readFully(buffer, 0, (end - start) * 4);
+                int position = 0;
+                for (int i = start; i < end; i++) {
+                    rowCounters[i] = ((buffer[position] & 255) << 24) | ((buffer[position + 1] & 255) << 16) | ((buffer[position + 2] & 255) << 8) | (buffer[position + 3] & 255);
+                    position += 4;
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,143 @@
+package be.bagofwords.db.experimental.id;
+
+import be.bagofwords.db.DataInterface;
+import be.bagofwords.iterator.CloseableIterator;
+import be.bagofwords.iterator.DataIterable;
+import be.bagofwords.iterator.IterableUtils;
+import be.bagofwords.iterator.SimpleIterator;
+import be.bagofwords.util.HashUtils;
+import be.bagofwords.util.KeyValue;
+import be.bagofwords.util.StreamUtils;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Stores objects under the hash of their id. Subclasses decide how the objects are stored in the underlying data interface,
+ * the reading, writing and iterating of the objects is shared.
+ */
+
+public abstract class BaseIdDataInterface<T extends IdObject, S> implements DataIterable<T> {
+
+    protected final DataInterface<S> dataInterface;
+
+    protected BaseIdDataInterface(DataInterface<S> baseInterface) {
+        this.dataInterface = baseInterface;
+    }
+
+    /**
+     * @return the value that is written to the underlying data interface for this object
+     */
+
+    protected abstract S toStoredValue(T object);
+
+    /**
+     * @return the objects in a value of the underlying data interface
+     */
+
+    protected abstract Iterator<T> storedObjects(S value);
+
+    public T read(String id) {
+        S value = dataInterface.read(HashUtils.hashCode(id));
+        if (value == null) {
+            return null;
+        }
+        Iterator<T> objects = storedObjects(value);
+        while (objects.hasNext()) {
+            T object = objects.next();
+            if (Objects.equals(id, object.getId())) {
+                return object;
+            }
+        }
+        return null;
+    }
+
+    public void write(T object) {
+        dataInterface.write(HashUtils.hashCode(object.getId()), toStoredValue(object));
+    }
+
+    public void write(Iterator<T> objects) {
+        write(IterableUtils.iterator(objects));
+    }
+
+    public void write(CloseableIterator<T> objects) {
+        dataInterface.write(IterableUtils.mapIterator(objects, object -> new KeyValue<>(HashUtils.hashCode(object.getId()), toStoredValue(object))));
+    }
+
+    public Stream<T> stream() {
+        return StreamUtils.stream(this, true);
+    }
+
+    public Stream<T> stream(Predicate<T> valueFilter) {
+        return StreamUtils.stream(iterator(valueFilter), apprSize(), true);
+    }
+
+    @Override
+    public CloseableIterator<T> iterator() {
+        CloseableIterator<KeyValue<S>> baseIterator = dataInterface.iterator();
+
+        return new CloseableIterator<T>() {
+
+            private Iterator<T> objectsIt = Collections.emptyIterator();
+
+            @Override
+            protected void closeInt() {
+                baseIterator.close();
+            }
+
+            @Override
+            public boolean hasNext() {
+                return objectsIt.hasNext() || baseIterator.hasNext();
+            }
+
+            @Override
+            public T next() {
+                if (!objectsIt.hasNext()) {
+                    objectsIt = storedObjects(baseIterator.next().getValue());
+                }
+                return objectsIt.next();
+            }
+        };
+    }
+
+    public CloseableIterator<T> iterator(Predicate<T> valueFilter) {
+        final CloseableIterator<T> keyValueIterator = iterator();
+        return IterableUtils.iterator(new SimpleIterator<T>() {
+            @Override
+            public T next() {
+                while (keyValueIterator.hasNext()) {
+                    T next = keyValueIterator.next();
+                    if (valueFilter.test(next)) {
+                        return next;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public void close() {
+                keyValueIterator.close();
+            }
+        });
+    }
+
+    @Override
+    public long apprSize() {
+        return dataInterface.apprSize();
+    }
+
+    public void flush() {
+        dataInterface.flush();
+    }
+
+    public void dropAllData() {
+        dataInterface.dropAllData();
+    }
+
+    public void close() {
+        dataInterface.close();
+    }
+}
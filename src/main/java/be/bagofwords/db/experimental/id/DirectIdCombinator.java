@@ -0,0 +1,68 @@
+package be.bagofwords.db.experimental.id;
+
+import be.bagofwords.db.combinator.Combinator;
+import be.bagofwords.exec.RemoteClass;
+import be.bagofwords.exec.RemoteObjectConfig;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Combines objects with the same id with the given combinator. Objects with different ids (i.e. with colliding hashes) are
+ * kept in an {@link IdCollisionList}.
+ */
+
+@RemoteClass
+public class DirectIdCombinator<S extends IdObject> implements Combinator<IdObject> {
+
+    private final Combinator<S> combinator;
+
+    public DirectIdCombinator(Combinator<S> combinator) {
+        this.combinator = combinator;
+    }
+
+    @Override
+    public IdObject combine(IdObject first, IdObject second) {
+        if (!(first instanceof IdCollisionList) && !(second instanceof IdCollisionList) && Objects.equals(first.getId(), second.getId())) {
+            //Common case, no collision
+            return combinator.combine((S) first, (S) second);
+        }
+        Map<String, S> values = new LinkedHashMap<>();
+        for (S value : objects(first)) {
+            add(values, value);
+        }
+        for (S value : objects(second)) {
+            add(values, value);
+        }
+        if (values.size() == 1) {
+            return values.values().iterator().next();
+        }
+        return new IdCollisionList<>(values.values());
+    }
+
+    private void add(Map<String, S> values, S value) {
+        S currentValue = values.get(value.getId());
+        values.put(value.getId(), currentValue == null ? value : combinator.combine(currentValue, value));
+    }
+
+    private List<S> objects(IdObject value) {
+        if (value instanceof IdCollisionList) {
+            return (IdCollisionList<S>) value;
+        } else {
+            return Collections.singletonList((S) value);
+        }
+    }
+
+    @Override
+    public boolean isAssociative() {
+        return combinator.isAssociative();
+    }
+
+    @Override
+    public void addRemoteClasses(RemoteObjectConfig objectConfig) {
+        combinator.addRemoteClasses(objectConfig);
+    }
+}
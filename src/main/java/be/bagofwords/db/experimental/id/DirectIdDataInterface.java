@@ -0,0 +1,33 @@
+package be.bagofwords.db.experimental.id;
+
+import be.bagofwords.db.DataInterface;
+
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * Like {@link IdDataInterface}, but every object is stored by itself under the 64-bit hash of its id, instead of in a list.
+ * Reading an object only decodes that object and compares its id. Only objects of which the ids have the same hash are
+ * stored together, in an {@link IdCollisionList}.
+ */
+
+public class DirectIdDataInterface<T extends IdObject> extends BaseIdDataInterface<T, IdObject> {
+
+    public DirectIdDataInterface(DataInterface<IdObject> baseInterface) {
+        super(baseInterface);
+    }
+
+    @Override
+    protected IdObject toStoredValue(T object) {
+        return object;
+    }
+
+    @Override
+    protected Iterator<T> storedObjects(IdObject value) {
+        if (value instanceof IdCollisionList) {
+            return ((IdCollisionList<T>) value).iterator();
+        } else {
+            return Collections.singletonList((T) value).iterator();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package be.bagofwords.db.experimental.id;
+
+import be.bagofwords.db.methods.DataStream;
+import be.bagofwords.db.methods.DataStreamUtils;
+import be.bagofwords.db.methods.ObjectSerializer;
+import be.bagofwords.exec.RemoteClass;
+import be.bagofwords.exec.RemoteObjectConfig;
+
+/**
+ * Stores a single object (the common case) with one tag byte in front of it, so it can be decoded without reading a list.
+ * Only an {@link IdCollisionList} is stored as a list, with the size of every object.
+ */
+
+@RemoteClass
+public class DirectIdObjectSerializer<T extends IdObject> implements ObjectSerializer<IdObject> {
+
+    private static final byte SINGLE_OBJECT = 0;
+    private static final byte COLLISION_LIST = 1;
+    private static final byte NULL_OBJECT = 2;
+
+    private final Class<T> objectClass;
+    private final ObjectSerializer<T> objectSerializer;
+
+    public DirectIdObjectSerializer(Class<T> objectClass, ObjectSerializer<T> objectSerializer) {
+        this.objectClass = objectClass;
+        this.objectSerializer = objectSerializer;
+    }
+
+    @Override
+    public void writeValue(IdObject obj, DataStream ds) {
+        if (obj == null) {
+            ds.writeByte(NULL_OBJECT);
+        } else if (obj instanceof IdCollisionList) {
+            IdCollisionList<T> objects = (IdCollisionList<T>) obj;
+            ds.writeByte(COLLISION_LIST);
+            ds.writeInt(objects.size());
+            for (T object : objects) {
+                DataStreamUtils.writeValue(object, ds, objectSerializer);
+            }
+        } else {
+            ds.writeByte(SINGLE_OBJECT);
+            objectSerializer.writeValue((T) obj, ds);
+        }
+    }
+
+    @Override
+    public IdObject readValue(DataStream ds, int size) {
+        byte type = ds.readByte();
+        if (type == SINGLE_OBJECT) {
+            return objectSerializer.readValue(ds, size - 1);
+        } else if (type == COLLISION_LIST) {
+            int numOfObjects = ds.readInt();
+            IdCollisionList<T> result = new IdCollisionList<>();
+            for (int i = 0; i < numOfObjects; i++) {
+                int objectSize = DataStreamUtils.getObjectSize(ds, objectSerializer);
+                result.add(objectSerializer.readValue(ds, objectSize));
+            }
+            return result;
+        } else if (type == NULL_OBJECT) {
+            return null;
+        } else {
+            throw new RuntimeException("Unknown type " + type + " of id object");
+        }
+    }
+
+    @Override
+    public int getObjectSize() {
+        return VARIABLE_SIZE;
+    }
+
+    @Override
+    public void addRemoteClasses(RemoteObjectConfig objectConfig) {
+        objectConfig.add(objectSerializer.getClass()).add(objectClass);
+        objectSerializer.addRemoteClasses(objectConfig);
+    }
+}
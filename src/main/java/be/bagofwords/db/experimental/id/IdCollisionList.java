@@ -0,0 +1,41 @@
+package be.bagofwords.db.experimental.id;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Objects with different ids that have the same hash. Only used by {@link DirectIdDataInterface} when the ids of two objects
+ * collide, all other objects are stored without a list.
+ */
+
+public class IdCollisionList<T extends IdObject> extends ArrayList<T> implements IdObject {
+
+    public IdCollisionList() {
+    }
+
+    public IdCollisionList(Collection<T> objects) {
+        super(objects);
+    }
+
+    /**
+     * @return the object with the given id or null if this list contains no such object
+     */
+
+    public T getObject(String id) {
+        for (T object : this) {
+            if (id.equals(object.getId())) {
+                return object;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A list has no id of its own
+     */
+
+    @Override
+    public String getId() {
+        return null;
+    }
+}
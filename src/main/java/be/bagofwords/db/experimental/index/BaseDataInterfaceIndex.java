@@ -2,19 +2,78 @@ package be.bagofwords.db.experimental.index;
 
 import be.bagofwords.db.DataInterface;
 import be.bagofwords.db.impl.UpdateListener;
+import be.bagofwords.util.KeyValue;
+
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Created by koen on 16/07/17.
+ * <p>
+ * By default the index is updated in the thread that writes to the indexed data interface. Indexes that are created with
+ * asyncUpdates are updated by an {@link IndexUpdateQueue}, so updates are only guaranteed to be visible in the index after
+ * the indexed data interface was flushed.
  */
 public abstract class BaseDataInterfaceIndex<T> implements UpdateListener<T> {
 
     protected final DataInterface<T> dataInterface;
+    private final IndexUpdateQueue<T> updateQueue;
 
-    protected BaseDataInterfaceIndex(DataInterface<T> dataInterface) {
+    protected BaseDataInterfaceIndex(DataInterface<T> dataInterface, boolean asyncUpdates) {
         this.dataInterface = dataInterface;
+        this.updateQueue = asyncUpdates ? new IndexUpdateQueue<>(dataInterface.getName(), this::applyUpdates) : null;
         this.dataInterface.registerUpdateListener(this);
     }
 
     protected abstract String getIndexName();
 
+    protected abstract void applyUpdates(List<KeyValue<T>> keyValues);
+
+    protected abstract void flushIndex();
+
+    protected abstract void dropIndex();
+
+    protected abstract void closeIndex();
+
+    @Override
+    public void dateUpdated(long key, T value) {
+        if (updateQueue != null) {
+            updateQueue.add(key, value);
+        } else {
+            applyUpdates(Collections.singletonList(new KeyValue<>(key, value)));
+        }
+    }
+
+    @Override
+    public void dateUpdated(List<KeyValue<T>> keyValues) {
+        if (updateQueue != null) {
+            updateQueue.add(keyValues);
+        } else {
+            applyUpdates(keyValues);
+        }
+    }
+
+    @Override
+    public void dataFlushed() {
+        if (updateQueue != null) {
+            updateQueue.flush();
+        }
+        flushIndex();
+    }
+
+    @Override
+    public void dataDropped() {
+        if (updateQueue != null) {
+            updateQueue.clear();
+        }
+        dropIndex();
+    }
+
+    public void close() {
+        if (updateQueue != null) {
+            updateQueue.flush();
+        }
+        closeIndex();
+    }
+
 }
@@ -0,0 +1,124 @@
+package be.bagofwords.db.experimental.index;
+
+import be.bagofwords.db.methods.KeyFilter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Boolean combination of index lookups and key filters, executed by {@link IndexQueryPlanner}. All indexes in a query
+ * should index the same data interface.
+ */
+
+public class IndexQuery<T> {
+
+    public enum Type {
+        LOOKUP, KEY_FILTER, AND, OR
+    }
+
+    private final Type type;
+    private final PostingListDataInterfaceIndex<T> index;
+    private final long indexKey;
+    private final KeyFilter keyFilter;
+    private final List<IndexQuery<T>> children;
+
+    private IndexQuery(Type type, PostingListDataInterfaceIndex<T> index, long indexKey, KeyFilter keyFilter, List<IndexQuery<T>> children) {
+        this.type = type;
+        this.index = index;
+        this.indexKey = indexKey;
+        this.keyFilter = keyFilter;
+        this.children = children;
+    }
+
+    /**
+     * Matches the values that have the given index key
+     */
+
+    public static <T> IndexQuery<T> lookup(PostingListDataInterfaceIndex<T> index, long indexKey) {
+        return new IndexQuery<>(Type.LOOKUP, index, indexKey, null, Collections.emptyList());
+    }
+
+    /**
+     * Matches the values of which the key is accepted by the filter
+     */
+
+    public static <T> IndexQuery<T> keys(KeyFilter keyFilter) {
+        return new IndexQuery<>(Type.KEY_FILTER, null, 0, keyFilter, Collections.emptyList());
+    }
+
+    @SafeVarargs
+    public static <T> IndexQuery<T> and(IndexQuery<T>... queries) {
+        return and(Arrays.asList(queries));
+    }
+
+    public static <T> IndexQuery<T> and(List<IndexQuery<T>> queries) {
+        if (queries.isEmpty()) {
+            throw new RuntimeException("Can not create AND query without conditions");
+        }
+        return new IndexQuery<>(Type.AND, null, 0, null, queries);
+    }
+
+    @SafeVarargs
+    public static <T> IndexQuery<T> or(IndexQuery<T>... queries) {
+        return or(Arrays.asList(queries));
+    }
+
+    public static <T> IndexQuery<T> or(List<IndexQuery<T>> queries) {
+        if (queries.isEmpty()) {
+            throw new RuntimeException("Can not create OR query without conditions");
+        }
+        return new IndexQuery<>(Type.OR, null, 0, null, queries);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public PostingListDataInterfaceIndex<T> getIndex() {
+        return index;
+    }
+
+    public long getIndexKey() {
+        return indexKey;
+    }
+
+    public KeyFilter getKeyFilter() {
+        return keyFilter;
+    }
+
+    public List<IndexQuery<T>> getChildren() {
+        return children;
+    }
+
+    /**
+     * @return true if the value matches this query, also for lookups of which the key is not (or no longer) in the posting list
+     */
+
+    public boolean matches(long key, T value) {
+        switch (type) {
+            case LOOKUP:
+                return index.hasIndexKey(value, indexKey);
+            case KEY_FILTER:
+                return keyFilter.acceptKey(key);
+            case AND:
+                return children.stream().allMatch(child -> child.matches(key, value));
+            case OR:
+                return children.stream().anyMatch(child -> child.matches(key, value));
+            default:
+                throw new RuntimeException("Unknown query type " + type);
+        }
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case LOOKUP:
+                return index.getIndexName() + ":" + indexKey;
+            case KEY_FILTER:
+                return "keys(" + keyFilter + ")";
+            default:
+                return type + " " + children;
+        }
+    }
+}
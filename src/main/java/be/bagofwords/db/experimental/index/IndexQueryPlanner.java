@@ -0,0 +1,171 @@
+package be.bagofwords.db.experimental.index;
+
+import be.bagofwords.db.DataInterface;
+import be.bagofwords.db.data.PostingList;
+import be.bagofwords.db.methods.KeyFilter;
+import be.bagofwords.iterator.CloseableIterator;
+import be.bagofwords.util.KeyValue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Executes {@link IndexQuery}'s on the indexes of a data interface:
+ * <ul>
+ * <li>The conditions of an AND query are evaluated from the most to the least selective condition, based on the
+ * (estimated) number of keys of every index key ({@link PostingListDataInterfaceIndex#estimateNumOfKeys(long)}). Key
+ * filters are applied to the remaining keys, without reading anything.</li>
+ * <li>Posting lists are intersected with exponential search, so the cost mostly depends on the size of the smallest list.</li>
+ * <li>When values are read ({@link #find(IndexQuery)}), posting lists that are much larger than the remaining keys are not
+ * read at all. Instead, the values of the remaining keys are checked against the query after they are read.</li>
+ * </ul>
+ * Only the values of the remaining keys are read from the data interface, in a single batch.
+ */
+
+public class IndexQueryPlanner<T> {
+
+    //Posting lists that are this many times larger than the keys that remain are not read
+    private static final int MAX_RATIO_FOR_READING_POSTING_LIST = 32;
+
+    private final DataInterface<T> dataInterface;
+
+    public IndexQueryPlanner(DataInterface<T> dataInterface) {
+        this.dataInterface = dataInterface;
+    }
+
+    /**
+     * @return the keys of the values that matched the query when they were indexed. Posting lists are not pruned when values
+     * are changed or removed, so this can contain keys of values that no longer match the query. Use {@link #find(IndexQuery)}
+     * to check the current values.
+     */
+
+    public PostingList findKeys(IndexQuery<T> query) {
+        return evaluate(query, false, new HashMap<>());
+    }
+
+    /**
+     * @return the values that match the query, sorted by key
+     */
+
+    public List<KeyValue<T>> find(IndexQuery<T> query) {
+        PostingList candidates = evaluate(query, true, new HashMap<>());
+        List<KeyValue<T>> result = new ArrayList<>();
+        if (candidates.isEmpty()) {
+            return result;
+        }
+        for (KeyValue<T> value : dataInterface.readManyAsync(candidates.getKeyList()).join()) {
+            //Also removes values that were changed after they were added to a posting list
+            if (query.matches(value.getKey(), value.getValue())) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param allowSuperset whether conditions can be skipped, because the values will be checked against the query
+     */
+
+    private PostingList evaluate(IndexQuery<T> query, boolean allowSuperset, Map<IndexQuery<T>, Long> estimates) {
+        switch (query.getType()) {
+            case LOOKUP:
+                return query.getIndex().readKeys(query.getIndexKey());
+            case KEY_FILTER:
+                return scanKeys(query.getKeyFilter());
+            case AND:
+                return evaluateAnd(query, allowSuperset, estimates);
+            case OR:
+                PostingList result = PostingList.empty();
+                for (IndexQuery<T> child : query.getChildren()) {
+                    result = PostingList.union(result, evaluate(child, allowSuperset, estimates));
+                }
+                return result;
+            default:
+                throw new RuntimeException("Unknown query type " + query.getType());
+        }
+    }
+
+    private PostingList evaluateAnd(IndexQuery<T> query, boolean allowSuperset, Map<IndexQuery<T>, Long> estimates) {
+        List<IndexQuery<T>> children = new ArrayList<>(query.getChildren());
+        //Key filters last, they are cheap to apply to the keys of the other conditions
+        children.sort(Comparator.comparing((IndexQuery<T> child) -> child.getType() == IndexQuery.Type.KEY_FILTER).thenComparing(child -> estimateNumOfKeys(child, estimates)));
+        PostingList result = null;
+        for (IndexQuery<T> child : children) {
+            if (result == null) {
+                result = evaluate(child, allowSuperset, estimates);
+            } else if (child.getType() == IndexQuery.Type.KEY_FILTER) {
+                result = filter(result, child.getKeyFilter());
+            } else if (allowSuperset && estimateNumOfKeys(child, estimates) > (long) result.size() * MAX_RATIO_FOR_READING_POSTING_LIST) {
+                //Cheaper to check the values of the remaining keys than to read this condition
+                continue;
+            } else {
+                result = PostingList.intersect(result, evaluate(child, allowSuperset, estimates));
+            }
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private long estimateNumOfKeys(IndexQuery<T> query, Map<IndexQuery<T>, Long> estimates) {
+        Long result = estimates.get(query);
+        if (result == null) {
+            switch (query.getType()) {
+                case LOOKUP:
+                    result = query.getIndex().estimateNumOfKeys(query.getIndexKey());
+                    break;
+                case KEY_FILTER:
+                    result = dataInterface.apprSize();
+                    break;
+                case AND:
+                    result = Long.MAX_VALUE;
+                    for (IndexQuery<T> child : query.getChildren()) {
+                        result = Math.min(result, estimateNumOfKeys(child, estimates));
+                    }
+                    break;
+                case OR:
+                    result = 0l;
+                    for (IndexQuery<T> child : query.getChildren()) {
+                        long estimate = estimateNumOfKeys(child, estimates);
+                        result = result + estimate < result ? Long.MAX_VALUE : result + estimate;
+                    }
+                    break;
+                default:
+                    throw new RuntimeException("Unknown query type " + query.getType());
+            }
+            estimates.put(query, result);
+        }
+        return result;
+    }
+
+    private PostingList filter(PostingList keys, KeyFilter keyFilter) {
+        long[] result = new long[keys.size()];
+        int size = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            long key = keys.getKey(i);
+            if (keyFilter.acceptKey(key)) {
+                result[size++] = key;
+            }
+        }
+        return PostingList.fromKeys(size == result.length ? result : Arrays.copyOf(result, size));
+    }
+
+    private PostingList scanKeys(KeyFilter keyFilter) {
+        //Only iterates over the keys that pass the filter, data interfaces can skip the files that hold no such keys
+        List<Long> keys = new ArrayList<>();
+        CloseableIterator<Long> iterator = dataInterface.keyIterator(keyFilter);
+        try {
+            while (iterator.hasNext()) {
+                keys.add(iterator.next());
+            }
+        } finally {
+            iterator.close();
+        }
+        return PostingList.fromKeys(keys);
+    }
+}
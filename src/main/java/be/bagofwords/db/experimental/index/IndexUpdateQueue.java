@@ -0,0 +1,168 @@
+package be.bagofwords.db.experimental.index;
+
+import be.bagofwords.db.impl.AsyncDataInterfaceExecutor;
+import be.bagofwords.logging.Log;
+import be.bagofwords.util.KeyValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Applies the updates of an index asynchronously, so writes to the indexed data interface don't wait for the index. Updates
+ * are queued in a bounded queue (writers block when it is full) and applied in batches of at most {@link #MAX_BATCH_SIZE}
+ * updates, in the order in which they were added. {@link #flush()} waits until all updates that were added before the call
+ * are applied.
+ */
+
+class IndexUpdateQueue<T> {
+
+    private static final int MAX_QUEUE_SIZE = 100000;
+    private static final int MAX_BATCH_SIZE = 10000;
+
+    private final String name;
+    private final Consumer<List<KeyValue<T>>> applyUpdates;
+    private final BlockingQueue<KeyValue<T>> queue;
+    private final AtomicBoolean draining;
+    private final ReentrantLock lock;
+    private final Condition updatesApplied;
+    private long numOfAddedUpdates;
+    private long numOfAppliedUpdates;
+    private Exception failure;
+
+    public IndexUpdateQueue(String name, Consumer<List<KeyValue<T>>> applyUpdates) {
+        this.name = name;
+        this.applyUpdates = applyUpdates;
+        this.queue = new ArrayBlockingQueue<>(MAX_QUEUE_SIZE);
+        this.draining = new AtomicBoolean(false);
+        this.lock = new ReentrantLock();
+        this.updatesApplied = lock.newCondition();
+    }
+
+    public void add(long key, T value) {
+        //Counted before it is queued, so a flush() after this call also waits for updates that were queued by other threads
+        //before this update
+        lock.lock();
+        try {
+            numOfAddedUpdates++;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            queue.put(new KeyValue<>(key, value));
+        } catch (InterruptedException exp) {
+            lock.lock();
+            try {
+                numOfAddedUpdates--;
+            } finally {
+                lock.unlock();
+            }
+            throw new RuntimeException("Interrupted while adding update to index " + name, exp);
+        }
+        scheduleDrain();
+    }
+
+    public void add(List<KeyValue<T>> values) {
+        for (KeyValue<T> value : values) {
+            //Copy the KeyValue objects, the caller might reuse them
+            add(value.getKey(), value.getValue());
+        }
+    }
+
+    /**
+     * Waits until all updates that were added before this call are applied. Rethrows the exception of the first update that
+     * failed since the previous flush.
+     */
+
+    public void flush() {
+        lock.lock();
+        try {
+            waitForAppliedUpdates();
+            if (failure != null) {
+                Exception result = failure;
+                failure = null;
+                throw new RuntimeException("Failed to update index " + name, result);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Discards all updates that were not yet applied
+     */
+
+    public void clear() {
+        List<KeyValue<T>> discarded = new ArrayList<>();
+        queue.drainTo(discarded);
+        lock.lock();
+        try {
+            numOfAppliedUpdates += discarded.size();
+            waitForAppliedUpdates();
+            failure = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Should be called while holding the lock
+     */
+
+    private void waitForAppliedUpdates() {
+        long target = numOfAddedUpdates;
+        while (numOfAppliedUpdates < target) {
+            try {
+                updatesApplied.await();
+            } catch (InterruptedException exp) {
+                throw new RuntimeException("Interrupted while waiting for updates of index " + name, exp);
+            }
+        }
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            AsyncDataInterfaceExecutor.getExecutorService().execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            List<KeyValue<T>> batch = new ArrayList<>();
+            queue.drainTo(batch, MAX_BATCH_SIZE);
+            if (batch.isEmpty()) {
+                draining.set(false);
+                //Updates that were added after drainTo() but before we reset the flag would otherwise not be applied
+                if (queue.isEmpty() || !draining.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+            try {
+                applyUpdates.accept(batch);
+            } catch (Exception exp) {
+                Log.e("Failed to update index " + name, exp);
+                lock.lock();
+                try {
+                    if (failure == null) {
+                        failure = exp;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            lock.lock();
+            try {
+                numOfAppliedUpdates += batch.size();
+                updatesApplied.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -12,7 +12,6 @@ import be.bagofwords.util.KeyValue;
 import be.bagofwords.util.MappedLists;
 
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -23,7 +22,11 @@ public class MultiDataInterfaceIndex<T> extends BaseDataInterfaceIndex<T> {
     private final DataInterface<List<KeyValue<T>>> indexedDataInterface;
 
     public MultiDataInterfaceIndex(String name, DataInterfaceFactory dataInterfaceFactory, DataInterface<T> dataInterface, MultiDataIndexer<T> indexer) {
-        super(dataInterface);
+        this(name, dataInterfaceFactory, dataInterface, indexer, false);
+    }
+
+    public MultiDataInterfaceIndex(String name, DataInterfaceFactory dataInterfaceFactory, DataInterface<T> dataInterface, MultiDataIndexer<T> indexer, boolean asyncUpdates) {
+        super(dataInterface, asyncUpdates);
         this.indexer = indexer;
         this.indexedDataInterface = dataInterfaceFactory.createDataInterface(name, List.class, new ListCombinator(dataInterface.getCombinator()), new ListSerializer(dataInterface.getObjectSerializer()));
     }
@@ -59,21 +62,8 @@ public class MultiDataInterfaceIndex<T> extends BaseDataInterfaceIndex<T> {
                 .distinct();
     }
 
-    public void close() {
-        this.indexedDataInterface.close();
-    }
-
     @Override
-    public void dateUpdated(long key, T value) {
-        List<Long> indexes = indexer.convertToIndexes(value);
-        List<KeyValue<T>> singleton = Collections.singletonList(new KeyValue<>(key, value));
-        for (Long index : indexes) {
-            indexedDataInterface.write(index, singleton);
-        }
-    }
-
-    @Override
-    public void dateUpdated(List<KeyValue<T>> keyValues) {
+    protected void applyUpdates(List<KeyValue<T>> keyValues) {
         MappedLists<Long, KeyValue<T>> combinedValues = new MappedLists<>();
         for (KeyValue<T> keyValue : keyValues) {
             List<Long> indexes = indexer.convertToIndexes(keyValue.getValue());
@@ -86,12 +76,17 @@ public class MultiDataInterfaceIndex<T> extends BaseDataInterfaceIndex<T> {
     }
 
     @Override
-    public void dataFlushed() {
+    protected void flushIndex() {
         indexedDataInterface.flush();
     }
 
     @Override
-    public void dataDropped() {
+    protected void dropIndex() {
         indexedDataInterface.dropAllData();
     }
+
+    @Override
+    protected void closeIndex() {
+        indexedDataInterface.close();
+    }
 }
@@ -0,0 +1,238 @@
+package be.bagofwords.db.experimental.index;
+
+import be.bagofwords.db.DataInterface;
+import be.bagofwords.db.DataInterfaceFactory;
+import be.bagofwords.db.combinator.OverWriteCombinator;
+import be.bagofwords.db.data.PostingList;
+import be.bagofwords.db.data.PostingListCombinator;
+import be.bagofwords.db.data.PostingListSerializer;
+import be.bagofwords.iterator.CloseableIterator;
+import be.bagofwords.iterator.IterableUtils;
+import be.bagofwords.util.KeyValue;
+import be.bagofwords.util.MappedLists;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Like {@link MultiDataInterfaceIndex}, but only the keys of the values are stored, as a {@link PostingList} per index key.
+ * Queries first combine the posting lists of the index keys and then read the values of the remaining keys from the
+ * indexed data interface in a single batch.
+ * <p>
+ * The index keys of every value are stored as well, so keys can be removed from the posting lists of index keys that a
+ * changed or deleted value no longer has. Updates are applied after the values are written, so the posting lists can
+ * be behind the values (at most until the next flush). Values are therefore checked against the index keys of the query
+ * before they are returned.
+ */
+public class PostingListDataInterfaceIndex<T> extends BaseDataInterfaceIndex<T> {
+
+    private final MultiDataIndexer<T> indexer;
+    private final DataInterface<PostingList> indexedDataInterface;
+    //Number of keys in every posting list
+    private final DataInterface<Long> cardinalities;
+    //The index keys of every value, as a sorted list
+    private final DataInterface<PostingList> indexKeysOfValues;
+
+    public PostingListDataInterfaceIndex(String name, DataInterfaceFactory dataInterfaceFactory, DataInterface<T> dataInterface, MultiDataIndexer<T> indexer) {
+        this(name, dataInterfaceFactory, dataInterface, indexer, false);
+    }
+
+    public PostingListDataInterfaceIndex(String name, DataInterfaceFactory dataInterfaceFactory, DataInterface<T> dataInterface, MultiDataIndexer<T> indexer, boolean asyncUpdates) {
+        super(dataInterface, asyncUpdates);
+        this.indexer = indexer;
+        this.indexedDataInterface = dataInterfaceFactory.createDataInterface(name, PostingList.class, new PostingListCombinator(), new PostingListSerializer());
+        this.cardinalities = dataInterfaceFactory.createCountDataInterface(name + "_cardinalities");
+        this.indexKeysOfValues = dataInterfaceFactory.createDataInterface(name + "_index_keys", PostingList.class, new OverWriteCombinator<>(), new PostingListSerializer());
+    }
+
+    @Override
+    protected String getIndexName() {
+        return indexedDataInterface.getName();
+    }
+
+    public PostingList readKeys(long indexKey) {
+        PostingList result = indexedDataInterface.read(indexKey);
+        return result == null ? PostingList.empty() : result;
+    }
+
+    /**
+     * @return the number of keys with this index key, without reading the posting list. Can be behind the posting list
+     * while updates are applied.
+     */
+
+    public long estimateNumOfKeys(long indexKey) {
+        return cardinalities.readCount(indexKey);
+    }
+
+    public boolean hasIndexKey(T value, long indexKey) {
+        return indexer.convertToIndexes(value).contains(indexKey);
+    }
+
+    /**
+     * @return the keys of values with at least one of the index keys
+     */
+
+    public PostingList readKeysWithAnyIndex(List<Long> indexKeys) {
+        PostingList result = PostingList.empty();
+        for (PostingList keys : readPostingLists(indexKeys.stream().distinct().collect(Collectors.toList()))) {
+            result = PostingList.union(result, keys);
+        }
+        return result;
+    }
+
+    /**
+     * @return the keys of values with all index keys. The posting lists are intersected from small to large.
+     */
+
+    public PostingList readKeysWithAllIndexes(List<Long> indexKeys) {
+        List<Long> distinctIndexKeys = indexKeys.stream().distinct().collect(Collectors.toList());
+        List<PostingList> postingLists = readPostingLists(distinctIndexKeys);
+        if (postingLists.isEmpty() || postingLists.size() < distinctIndexKeys.size()) {
+            return PostingList.empty(); //at least one of the index keys has no values
+        }
+        postingLists.sort(Comparator.comparingInt(PostingList::size));
+        PostingList result = postingLists.get(0);
+        for (int i = 1; i < postingLists.size() && !result.isEmpty(); i++) {
+            result = PostingList.intersect(result, postingLists.get(i));
+        }
+        return result;
+    }
+
+    private List<PostingList> readPostingLists(List<Long> indexKeys) {
+        List<PostingList> result = new ArrayList<>();
+        for (KeyValue<PostingList> keys : indexedDataInterface.readManyAsync(indexKeys).join()) {
+            result.add(keys.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * @return the values of which at least one index key is also an index key of the query object
+     */
+
+    public List<KeyValue<T>> read(T queryByObject) {
+        List<Long> indexKeys = indexer.convertToIndexes(queryByObject);
+        return readValues(readKeysWithAnyIndex(indexKeys), indexKeys, false);
+    }
+
+    /**
+     * @return the values that have all index keys of the query object
+     */
+
+    public List<KeyValue<T>> readWithAllIndexes(T queryByObject) {
+        List<Long> indexKeys = indexer.convertToIndexes(queryByObject);
+        return readValues(readKeysWithAllIndexes(indexKeys), indexKeys, true);
+    }
+
+    /**
+     * Reads the values of the keys with a single (batched) request to the indexed data interface
+     */
+
+    public List<KeyValue<T>> readValues(PostingList keys) {
+        if (keys.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return dataInterface.readManyAsync(keys.getKeyList()).join();
+    }
+
+    private List<KeyValue<T>> readValues(PostingList keys, List<Long> indexKeys, boolean matchAllIndexKeys) {
+        List<KeyValue<T>> result = new ArrayList<>();
+        for (KeyValue<T> value : readValues(keys)) {
+            List<Long> indexKeysOfValue = indexer.convertToIndexes(value.getValue());
+            boolean matches = matchAllIndexKeys ? indexKeysOfValue.containsAll(indexKeys) : indexKeys.stream().anyMatch(indexKeysOfValue::contains);
+            if (matches) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    protected void applyUpdates(List<KeyValue<T>> keyValues) {
+        //Only the last value of every key counts
+        Map<Long, T> newValues = new LinkedHashMap<>();
+        for (KeyValue<T> keyValue : keyValues) {
+            newValues.put(keyValue.getKey(), keyValue.getValue());
+        }
+        Map<Long, PostingList> oldIndexKeys = new HashMap<>();
+        for (KeyValue<PostingList> indexKeys : indexKeysOfValues.readManyAsync(new ArrayList<>(newValues.keySet())).join()) {
+            oldIndexKeys.put(indexKeys.getKey(), indexKeys.getValue());
+        }
+        MappedLists<Long, Long> addedKeys = new MappedLists<>();
+        MappedLists<Long, Long> removedKeys = new MappedLists<>();
+        List<KeyValue<PostingList>> newIndexKeys = new ArrayList<>();
+        for (Map.Entry<Long, T> entry : newValues.entrySet()) {
+            long key = entry.getKey();
+            PostingList oldIndexes = oldIndexKeys.getOrDefault(key, PostingList.empty());
+            PostingList newIndexes = entry.getValue() == null ? PostingList.empty() : PostingList.fromKeys(indexer.convertToIndexes(entry.getValue()));
+            for (int i = 0; i < newIndexes.size(); i++) {
+                if (!oldIndexes.contains(newIndexes.getKey(i))) {
+                    addedKeys.get(newIndexes.getKey(i)).add(key);
+                }
+            }
+            for (int i = 0; i < oldIndexes.size(); i++) {
+                if (!newIndexes.contains(oldIndexes.getKey(i))) {
+                    removedKeys.get(oldIndexes.getKey(i)).add(key);
+                }
+            }
+            newIndexKeys.add(new KeyValue<>(key, newIndexes.isEmpty() ? null : newIndexes));
+        }
+        if (!removedKeys.isEmpty()) {
+            removeKeys(removedKeys);
+        }
+        CloseableIterator<Map.Entry<Long, List<Long>>> entries = IterableUtils.iterator(addedKeys.entrySet());
+        indexedDataInterface.write(IterableUtils.mapIterator(entries, entry -> new KeyValue<>(entry.getKey(), PostingList.fromKeys(entry.getValue()))));
+        List<KeyValue<Long>> counts = new ArrayList<>();
+        for (Map.Entry<Long, List<Long>> entry : addedKeys.entrySet()) {
+            counts.add(new KeyValue<>(entry.getKey(), (long) entry.getValue().size()));
+        }
+        for (Map.Entry<Long, List<Long>> entry : removedKeys.entrySet()) {
+            counts.add(new KeyValue<>(entry.getKey(), (long) -entry.getValue().size()));
+        }
+        cardinalities.write(IterableUtils.iterator(counts));
+        indexKeysOfValues.write(IterableUtils.iterator(newIndexKeys));
+        //Make sure the next updates read these index keys
+        indexKeysOfValues.flush();
+    }
+
+    /**
+     * Replaces the posting lists with lists without the removed keys. The posting lists are flushed first, so the lists
+     * that are read contain all keys that were added before.
+     */
+
+    private void removeKeys(MappedLists<Long, Long> removedKeys) {
+        indexedDataInterface.flush();
+        List<KeyValue<PostingList>> writes = new ArrayList<>();
+        for (KeyValue<PostingList> postingList : indexedDataInterface.readManyAsync(new ArrayList<>(removedKeys.keySet())).join()) {
+            Set<Long> keysToRemove = new HashSet<>(removedKeys.get(postingList.getKey()));
+            List<Long> remainingKeys = postingList.getValue().getKeyList().stream().filter(key -> !keysToRemove.contains(key)).collect(Collectors.toList());
+            //Deleting the posting list first makes sure the remaining keys are not combined with the old list
+            writes.add(new KeyValue<>(postingList.getKey(), null));
+            if (!remainingKeys.isEmpty()) {
+                writes.add(new KeyValue<>(postingList.getKey(), PostingList.fromKeys(remainingKeys)));
+            }
+        }
+        indexedDataInterface.write(IterableUtils.iterator(writes));
+    }
+
+    @Override
+    protected void flushIndex() {
+        indexedDataInterface.flush();
+        cardinalities.flush();
+        indexKeysOfValues.flush();
+    }
+
+    @Override
+    protected void dropIndex() {
+        indexedDataInterface.dropAllData();
+        cardinalities.dropAllData();
+        indexKeysOfValues.dropAllData();
+    }
+
+    @Override
+    protected void closeIndex() {
+        indexedDataInterface.close();
+        cardinalities.close();
+        indexKeysOfValues.close();
+    }
+}
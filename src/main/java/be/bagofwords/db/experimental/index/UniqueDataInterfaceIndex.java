@@ -17,7 +17,11 @@ public class UniqueDataInterfaceIndex<T> extends BaseDataInterfaceIndex<T> {
     private final DataInterface<KeyValue<T>> indexedDataInterface;
 
     public UniqueDataInterfaceIndex(String name, DataInterfaceFactory dataInterfaceFactory, DataInterface<T> dataInterface, UniqueDataIndexer<T> indexer) {
-        super(dataInterface);
+        this(name, dataInterfaceFactory, dataInterface, indexer, false);
+    }
+
+    public UniqueDataInterfaceIndex(String name, DataInterfaceFactory dataInterfaceFactory, DataInterface<T> dataInterface, UniqueDataIndexer<T> indexer, boolean asyncUpdates) {
+        super(dataInterface, asyncUpdates);
         this.indexer = indexer;
         this.indexedDataInterface = dataInterfaceFactory.createDataInterface(name, (Class<KeyValue<T>>) (Object) KeyValue.class, new UniqueKeyCombinator(), new KeyValueSerializer<T>(dataInterface.getObjectSerializer()));
     }
@@ -44,29 +48,24 @@ public class UniqueDataInterfaceIndex<T> extends BaseDataInterfaceIndex<T> {
         return indexedDataInterface.streamValues();
     }
 
-    public void close() {
-        this.indexedDataInterface.close();
-    }
-
-    @Override
-    public void dateUpdated(long key, T value) {
-        long index = indexer.convertToIndex(value);
-        indexedDataInterface.write(index, new KeyValue<>(key, value));
-    }
-
     @Override
-    public void dateUpdated(List<KeyValue<T>> keyValues) {
+    protected void applyUpdates(List<KeyValue<T>> keyValues) {
         Stream<KeyValue<KeyValue<T>>> stream = keyValues.stream().map(kv -> new KeyValue<>(indexer.convertToIndex(kv.getValue()), kv));
         indexedDataInterface.write(StreamUtils.iterator(stream));
     }
 
     @Override
-    public void dataFlushed() {
+    protected void flushIndex() {
         indexedDataInterface.flush();
     }
 
     @Override
-    public void dataDropped() {
+    protected void dropIndex() {
         indexedDataInterface.dropAllData();
     }
+
+    @Override
+    protected void closeIndex() {
+        indexedDataInterface.close();
+    }
 }
@@ -6,6 +6,7 @@ import be.bagofwords.db.impl.DBUtils;
 import be.bagofwords.db.methods.DataStream;
 import be.bagofwords.db.methods.DataStreamUtils;
 import be.bagofwords.db.methods.KeyFilter;
+import be.bagofwords.db.methods.KeyValueAggregator;
 import be.bagofwords.db.methods.ObjectSerializer;
 import be.bagofwords.iterator.CloseableIterator;
 import be.bagofwords.iterator.IterableUtils;
@@ -19,15 +20,26 @@ import be.bagofwords.util.KeyValue;
 import be.bagofwords.util.MappedLists;
 import be.bagofwords.util.Pair;
 import be.bagofwords.util.SerializationUtils;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.mutable.MutableLong;
 
 import java.io.*;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import static be.bagofwords.util.Utils.noException;
 
@@ -51,14 +63,20 @@ public class FileDataInterface<T extends Object> extends CoreDataInterface<T> im
 
     private static final String META_FILE = "META_FILE";
     private static final String LOCK_FILE = "LOCK";
+    private static final String SNAPSHOTS_DIR = "snapshots";
     private static final Pattern DATA_FILENAME_REGEX = Pattern.compile("(?<bucketInd>[0-9]+)_(?<firstKey>-?[0-9]+)");
 
     private final MemoryManager memoryManager;
     private final File directory;
     private List<FileBucket> fileBuckets;
     private final long randomId;
+    private final AtomicInteger snapshotCounter = new AtomicInteger();
+    private final ReferenceQueue<FileSnapshot> unreachableSnapshots = new ReferenceQueue<>();
+    private final Set<SnapshotReference> snapshotReferences = ConcurrentHashMap.newKeySet();
 
     private final Object sizeOfCachedFileContentsLock = new Object();
+    //Guards rewriting all files and writing the meta file
+    private final ReentrantLock rewriteLock = new ReentrantLock();
     private final long maxSizeOfCachedFileContents;
     private long currentSizeOfCachedFileContents;
 
@@ -77,12 +95,14 @@ public class FileDataInterface<T extends Object> extends CoreDataInterface<T> im
         this.maxSizeOfCachedFileContents = memoryManager.getAvailableMemoryInBytes() / 3;
         timeOfLastRead = 0;
         checkDataDir();
+        deleteSnapshots();
         initializeFromMetaFile();
         writeLockFile(randomId);
         currentSizeOfCachedFileContents = 0;
         asyncJobService.schedulePeriodicJob(() -> ifNotClosed(() -> {
             rewriteAllFiles(false);
             checkLock();
+            deleteUnreachableSnapshots();
         }), 1000); //rewrite files that are too large
     }
 
@@ -164,6 +184,36 @@ public class FileDataInterface<T extends Object> extends CoreDataInterface<T> im
         }
     }
 
+    /**
+     * Reads that can be answered from the cached file contents are executed immediately, other reads are executed on the
+     * executor of the default implementation.
+     */
+
+    @Override
+    public CompletableFuture<T> readAsync(long key) {
+        if (canReadFromCachedContents(key)) {
+            try {
+                return CompletableFuture.completedFuture(read(key));
+            } catch (Exception exp) {
+                CompletableFuture<T> result = new CompletableFuture<>();
+                result.completeExceptionally(exp);
+                return result;
+            }
+        } else {
+            return super.readAsync(key);
+        }
+    }
+
+    private boolean canReadFromCachedContents(long key) {
+        FileBucket bucket = getBucket(key);
+        bucket.lockRead();
+        try {
+            return !bucket.shouldBeCleanedBeforeRead() && bucket.getFile(key).getCachedFileContents() != null;
+        } finally {
+            bucket.unlockRead();
+        }
+    }
+
     @Override
     public void write(long key, T value) {
         FileBucket bucket = getBucket(key);
@@ -197,7 +247,6 @@ public class FileDataInterface<T extends Object> extends CoreDataInterface<T> im
                 numRead++;
                 updatedValues.add(curr);
             }
-            updateListenerCollection.dateUpdated(updatedValues);
             long totalSizeWrittenInBatch = 0;
             for (Map.Entry<FileBucket, List<KeyValue<T>>> entry : entriesToFileBuckets.entrySet()) {
                 FileBucket bucket = entry.getKey();
@@ -228,6 +277,8 @@ public class FileDataInterface<T extends Object> extends CoreDataInterface<T> im
                     bucket.unlockWrite();
                 }
             }
+            //Listeners are notified after the values were written, so they can read the updated values
+            updateListenerCollection.dateUpdated(updatedValues);
             if (totalSizeWrittenInBatch > 0) {
                 batchSize = BATCH_SIZE_PRIMITIVE_VALUES * 16 * batchSize / totalSizeWrittenInBatch;
             }
@@ -295,102 +346,246 @@ public class FileDataInterface<T extends Object> extends CoreDataInterface<T> im
 
     @Override
     public CloseableIterator<KeyValue<T>> iterator() {
-        final FileIterator fileIterator = new FileIterator();
-        return IterableUtils.iterator(new SimpleIterator<KeyValue<T>>() {
+        return snapshotIterator(file -> true, buffer -> readCleanValues(buffer, null));
+    }
 
-            private Iterator<KeyValue<T>> valuesInFileIt;
+    @Override
+    public CloseableIterator<KeyValue<T>> iterator(KeyFilter keyFilter) {
+        return snapshotIterator(file -> keyFilter.acceptKeysAboveOrEqual(file.lastKey) && keyFilter.acceptKeysBelow(file.firstKey), buffer -> readCleanValues(buffer, keyFilter));
+    }
 
-            @Override
-            public KeyValue<T> next() throws Exception {
-                while ((valuesInFileIt == null || !valuesInFileIt.hasNext())) {
-                    Pair<FileBucket, FileInfo> next = fileIterator.lockCurrentBucketAndGetNextFile();
-                    if (next != null) {
-                        FileBucket bucket = next.getFirst();
-                        FileInfo file = next.getSecond();
-                        List<KeyValue<T>> sortedEntries = readCleanValues(file);
-                        bucket.unlockRead();
-                        valuesInFileIt = sortedEntries.iterator();
-                    } else {
-                        valuesInFileIt = null;
-                        break;
+    @Override
+    public <R> R aggregate(KeyValueAggregator<T, R> aggregator) {
+        //Compute partial results for all buckets in parallel
+        List<R> partialResults = fileBuckets.parallelStream().map(bucket -> {
+            R result = aggregator.createEmptyResult();
+            lockForRead(bucket);
+            try {
+                //Files with the largest counts first, so aggregators that only need the largest counts can skip more files
+                List<FileInfo> files = new ArrayList<>(bucket.getFiles());
+                files.sort((file1, file2) -> -Long.compare(file1.getUpperBoundOnCounts(), file2.getUpperBoundOnCounts()));
+                for (FileInfo file : files) {
+                    if (file.getReadSize() == 0 || aggregator.canSkipValues(result, file.getUpperBoundOnCounts())) {
+                        continue;
+                    }
+                    for (KeyValue<T> value : readCleanValues(file)) {
+                        result = aggregator.add(result, value.getKey(), value.getValue());
                     }
                 }
-                if (valuesInFileIt != null && valuesInFileIt.hasNext()) {
-                    return valuesInFileIt.next();
-                } else {
-                    return null;
-                }
+            } finally {
+                bucket.unlockRead();
             }
+            return result;
+        }).collect(Collectors.toList());
+        R result = aggregator.createEmptyResult();
+        for (R partialResult : partialResults) {
+            result = aggregator.merge(result, partialResult);
+        }
+        return result;
+    }
 
-        });
+    @Override
+    public CloseableIterator<Long> keyIterator() {
+        return snapshotIterator(file -> true, this::readKeys);
     }
 
     @Override
-    public CloseableIterator<KeyValue<T>> iterator(KeyFilter keyFilter) {
-        final FileIterator fileIterator = new FileIterator();
-        return IterableUtils.iterator(new SimpleIterator<KeyValue<T>>() {
+    public CloseableIterator<Long> keyIterator(KeyFilter keyFilter) {
+        return snapshotIterator(file -> keyFilter.acceptKeysAboveOrEqual(file.lastKey) && keyFilter.acceptKeysBelow(file.firstKey), buffer -> readKeys(buffer, keyFilter));
+    }
 
-            private Iterator<KeyValue<T>> valuesInFileIt;
+    /**
+     * Decodes the values of the snapshot one at a time, straight from the file buffers, into a single KeyValue object
+     */
+
+    @Override
+    public CloseableIterator<KeyValue<T>> cursor() {
+        FileSnapshot snapshot = createSnapshot(file -> true);
+        return new CloseableIterator<KeyValue<T>>() {
+
+            private final KeyValue<T> current = new KeyValue<>();
+            private final DataStream ds = new DataStream(new byte[0]);
+            private int fileInd = 0;
 
             @Override
-            public KeyValue<T> next() throws Exception {
-                while ((valuesInFileIt == null || !valuesInFileIt.hasNext())) {
-                    Pair<FileBucket, FileInfo> next = fileIterator.lockCurrentBucketAndGetNextFile();
-                    if (next != null) {
-                        FileBucket bucket = next.getFirst();
-                        FileInfo file = next.getSecond();
-                        if (keyFilter.acceptKeysAboveOrEqual(file.getLastKey()) && keyFilter.acceptKeysBelow(file.getFirstKey())) {
-                            List<KeyValue<T>> sortedEntries = readCleanValuesWithKeyFilter(file, keyFilter);
-                            valuesInFileIt = sortedEntries.iterator();
-                        }
-                        bucket.unlockRead();
-                    } else {
-                        valuesInFileIt = null;
-                        break;
+            public boolean hasNext() {
+                while (ds.position == ds.buffer.length) {
+                    if (fileInd == snapshot.files.size()) {
+                        snapshot.close();
+                        return false;
                     }
+                    try {
+                        ds.buffer = snapshot.readFile(fileInd++);
+                    } catch (IOException exp) {
+                        throw new RuntimeException("Failed to read snapshot of " + getName(), exp);
+                    }
+                    ds.position = 0;
+                    dataWasRead();
                 }
-                if (valuesInFileIt != null && valuesInFileIt.hasNext()) {
-                    return valuesInFileIt.next();
-                } else {
-                    return null;
+                return true;
+            }
+
+            @Override
+            public KeyValue<T> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
                 }
+                long key = ds.readLong();
+                int objectSize = getObjectSize(ds);
+                current.setKey(key);
+                current.setValue(objectSerializer.readValue(ds.buffer, ds.position, objectSize, current.getValue()));
+                ds.position += objectSize;
+                return current;
             }
 
-        });
+            @Override
+            protected void closeInt() {
+                snapshot.close();
+            }
+        };
     }
 
-    @Override
-    public CloseableIterator<Long> keyIterator() {
-        final FileIterator fileIterator = new FileIterator();
-        return IterableUtils.iterator(new SimpleIterator<Long>() {
+    /**
+     * Iterates over a snapshot of all files, so values that are written or files that are rewritten during the iteration
+     * don't change the returned values and no locks are held between calls to next(). Creating the snapshot cleans every
+     * bucket with selected files and hard links (or copies) the selected files of which the contents are not cached, so
+     * many short scans should use a key filter that only selects a small key range.
+     */
+
+    private <E> CloseableIterator<E> snapshotIterator(Predicate<SnapshotFile> fileFilter, Function<byte[], List<E>> fileReader) {
+        FileSnapshot snapshot = createSnapshot(fileFilter);
+        return IterableUtils.iterator(new SimpleIterator<E>() {
 
-            private Iterator<Long> keysInFileIt;
+            private int fileInd = 0;
+            private Iterator<E> valuesInFileIt;
 
             @Override
-            public Long next() throws Exception {
-                while ((keysInFileIt == null || !keysInFileIt.hasNext())) {
-                    Pair<FileBucket, FileInfo> next = fileIterator.lockCurrentBucketAndGetNextFile();
-                    if (next != null) {
-                        FileBucket bucket = next.getFirst();
-                        FileInfo file = next.getSecond();
-                        List<Long> sortedKeys = readKeys(file);
-                        bucket.unlockRead();
-                        keysInFileIt = sortedKeys.iterator();
+            public E next() throws Exception {
+                while (valuesInFileIt == null || !valuesInFileIt.hasNext()) {
+                    if (fileInd < snapshot.files.size()) {
+                        valuesInFileIt = fileReader.apply(snapshot.readFile(fileInd++)).iterator();
                     } else {
-                        keysInFileIt = null;
-                        break;
+                        snapshot.close();
+                        return null;
                     }
                 }
-                if (keysInFileIt != null && keysInFileIt.hasNext()) {
-                    return keysInFileIt.next();
-                } else {
-                    return null;
-                }
+                return valuesInFileIt.next();
             }
 
+            @Override
+            public void close() throws Exception {
+                snapshot.close();
+            }
         });
     }
 
+    /**
+     * While all selected buckets are locked, the contents of the clean files are either taken from the cached file contents
+     * or the files are hard linked in the snapshot directory. Rewriting a file replaces it with a new file, values appended to
+     * a file end up after the read size, so neither changes the linked contents.
+     */
+
+    private FileSnapshot createSnapshot(Predicate<SnapshotFile> fileFilter) {
+        deleteUnreachableSnapshots();
+        File snapshotDirectory = new File(new File(directory, SNAPSHOTS_DIR), Integer.toString(snapshotCounter.incrementAndGet()));
+        List<SnapshotFile> files = new ArrayList<>();
+        List<FileBucket> lockedBuckets = new ArrayList<>();
+        try {
+            for (FileBucket bucket : fileBuckets) {
+                if (mightContainSelectedFiles(bucket, fileFilter)) {
+                    lockForRead(bucket);
+                    lockedBuckets.add(bucket);
+                }
+            }
+            for (FileBucket bucket : lockedBuckets) {
+                for (FileInfo file : bucket.getFiles()) {
+                    SnapshotFile snapshotFile = new SnapshotFile(file.getFirstKey(), file.getLastKey(), file.getReadSize());
+                    if (snapshotFile.readSize == 0 || !fileFilter.test(snapshotFile)) {
+                        continue;
+                    }
+                    byte[] cachedContents = file.getCachedFileContents();
+                    if (cachedContents != null && cachedContents.length == snapshotFile.readSize) {
+                        snapshotFile.contents = cachedContents;
+                    } else {
+                        if (!snapshotDirectory.exists() && !snapshotDirectory.mkdirs()) {
+                            throw new RuntimeException("Failed to create directory " + snapshotDirectory.getAbsolutePath());
+                        }
+                        snapshotFile.link = new File(snapshotDirectory, toFile(file).getName());
+                        try {
+                            Files.createLink(snapshotFile.link.toPath(), toFile(file).toPath());
+                        } catch (UnsupportedOperationException | IOException exp) {
+                            //File system does not support hard links
+                            Files.copy(toFile(file).toPath(), snapshotFile.link.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                        }
+                    }
+                    files.add(snapshotFile);
+                }
+            }
+        } catch (IOException exp) {
+            deleteSnapshotDirectory(snapshotDirectory);
+            throw new RuntimeException("Failed to create snapshot of " + getName(), exp);
+        } finally {
+            for (FileBucket bucket : lockedBuckets) {
+                bucket.unlockRead();
+            }
+        }
+        FileSnapshot snapshot = new FileSnapshot(snapshotDirectory, files);
+        if (snapshotDirectory.exists()) {
+            snapshot.reference = new SnapshotReference(snapshot, snapshotDirectory, unreachableSnapshots);
+            snapshotReferences.add(snapshot.reference);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Checks the key ranges of the files without cleaning the bucket. The range of a file ends before the first key of the next file.
+     */
+
+    private boolean mightContainSelectedFiles(FileBucket bucket, Predicate<SnapshotFile> fileFilter) {
+        bucket.lockRead();
+        try {
+            List<FileInfo> files = bucket.getFiles();
+            for (int i = 0; i < files.size(); i++) {
+                long lastKey = i + 1 < files.size() ? files.get(i + 1).getFirstKey() - 1 : Long.MAX_VALUE;
+                if (fileFilter.test(new SnapshotFile(files.get(i).getFirstKey(), lastKey, 0))) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            bucket.unlockRead();
+        }
+    }
+
+    /**
+     * Deletes the snapshot directories of iterators that were neither exhausted nor closed, but are no longer referenced
+     */
+
+    private void deleteUnreachableSnapshots() {
+        Reference<? extends FileSnapshot> reference;
+        while ((reference = unreachableSnapshots.poll()) != null) {
+            SnapshotReference snapshotReference = (SnapshotReference) reference;
+            if (snapshotReferences.remove(snapshotReference)) {
+                deleteSnapshotDirectory(snapshotReference.snapshotDirectory);
+            }
+        }
+    }
+
+    private void deleteSnapshots() {
+        File snapshotsDirectory = new File(directory, SNAPSHOTS_DIR);
+        if (snapshotsDirectory.exists()) {
+            deleteSnapshotDirectory(snapshotsDirectory);
+        }
+    }
+
+    private void deleteSnapshotDirectory(File snapshotDirectory) {
+        try {
+            FileUtils.deleteDirectory(snapshotDirectory);
+        } catch (IOException exp) {
+            Log.w("Failed to delete snapshot " + snapshotDirectory.getAbsolutePath(), exp);
+        }
+    }
+
     @Override
     public long freeMemory() {
         MutableLong totalBytesReleased = new MutableLong(0);
@@ -413,8 +608,50 @@ public class FileDataInterface<T extends Object> extends CoreDataInterface<T> im
         return currentSizeOfCachedFileContents;
     }
 
+    /**
+     * Computed from the number of keys that every file contained when it was last rewritten. Values that were appended to a
+     * file afterwards are counted as new keys.
+     */
+
     @Override
     public long apprSize() {
+        long numOfKeys = 0;
+        long sizeOfCountedValues = 0;
+        long sizeOfUncountedValues = 0;
+        for (FileBucket bucket : fileBuckets) {
+            bucket.lockRead();
+            try {
+                for (FileInfo file : bucket.getFiles()) {
+                    if (file.getNumOfKeys() >= 0) {
+                        numOfKeys += file.getNumOfKeys();
+                        sizeOfCountedValues += file.getReadSize();
+                        sizeOfUncountedValues += file.getWriteSize() - file.getReadSize();
+                    } else {
+                        sizeOfUncountedValues += file.getWriteSize();
+                    }
+                }
+            } finally {
+                bucket.unlockRead();
+            }
+        }
+        if (sizeOfUncountedValues > 0) {
+            if (sizeOfCountedValues > 0) {
+                numOfKeys += sizeOfUncountedValues * numOfKeys / sizeOfCountedValues;
+            } else if (DataStreamUtils.hasFixedSize(objectSerializer)) {
+                numOfKeys += sizeOfUncountedValues / (8 + objectSerializer.getObjectSize());
+            } else {
+                return sampleApprSize();
+            }
+        }
+        return numOfKeys;
+    }
+
+    /**
+     * Extrapolates the number of keys from the keys in the first 100 files. Only used when no file was rewritten yet and the
+     * size of the values varies.
+     */
+
+    private long sampleApprSize() {
         int numOfFilesToSample = 100;
         long numOfObjects = 0;
         long sizeOfSampledFiles = 0;
@@ -450,6 +687,33 @@ public class FileDataInterface<T extends Object> extends CoreDataInterface<T> im
         }
     }
 
+    /**
+     * Only reads the keys of files of which the number of keys is not known. Like the iterators, this only counts the keys
+     * in the read part of the files, after cleaning the buckets that should be cleaned before reading.
+     */
+
+    @Override
+    public long exactSize() {
+        return fileBuckets.parallelStream().mapToLong(bucket -> {
+            long numOfKeys = 0;
+            lockForRead(bucket);
+            try {
+                for (FileInfo file : bucket.getFiles()) {
+                    if (file.getNumOfKeys() >= 0) {
+                        numOfKeys += file.getNumOfKeys();
+                    } else {
+                        numOfKeys += readKeys(file).size();
+                    }
+                }
+            } catch (IOException exp) {
+                throw new RuntimeException("Failed to read keys of " + getName(), exp);
+            } finally {
+                bucket.unlockRead();
+            }
+            return numOfKeys;
+        }).sum();
+    }
+
     @Override
     public void flushImpl() {
         updateShouldBeCleanedInfo();
@@ -496,14 +760,19 @@ public class FileDataInterface<T extends Object> extends CoreDataInterface<T> im
         }
     }
 
-    private synchronized void rewriteAllFiles(boolean forceClean) {
-        //Don't remove the next line
-        int numOfFilesRewritten = fileBuckets.parallelStream().mapToInt(bucket -> rewriteBucket(bucket, forceClean)).sum();
-        if (metaFileOutOfSync) {
-            writeMetaFile();
-        }
-        if (DBUtils.DEBUG && numOfFilesRewritten > 0) {
-            Log.i("Rewritten " + numOfFilesRewritten + " files for " + getName());
+    private void rewriteAllFiles(boolean forceClean) {
+        rewriteLock.lock();
+        try {
+            //Don't remove the next line
+            int numOfFilesRewritten = fileBuckets.parallelStream().mapToInt(bucket -> rewriteBucket(bucket, forceClean)).sum();
+            if (metaFileOutOfSync) {
+                writeMetaFile();
+            }
+            if (DBUtils.DEBUG && numOfFilesRewritten > 0) {
+                Log.i("Rewritten " + numOfFilesRewritten + " files for " + getName());
+            }
+        } finally {
+            rewriteLock.unlock();
         }
     }
 
@@ -543,6 +812,7 @@ public class FileDataInterface<T extends Object> extends CoreDataInterface<T> im
                     List<Pair<Long, Integer>> fileLocations = new ArrayList<>();
                     int itemsWrittenToFile = 0;
                     int endOfPreviousItem = 0;
+                    long maxCount = Long.MIN_VALUE;
                     for (KeyValue<T> entry : values) {
                         long key = entry.getKey();
                         T value = entry.getValue();
@@ -554,10 +824,11 @@ public class FileDataInterface<T extends Object> extends CoreDataInterface<T> im
                             }
                             writeBufferToTempFile(ds, endOfPreviousItem, file);
                             swapTempForReal(file);
-                            file.fileWasRewritten(fileLocations, endOfPreviousItem, endOfPreviousItem);
+                            file.fileWasRewritten(fileLocations, endOfPreviousItem, endOfPreviousItem, maxCount);
                             long currLastKey = file.getLastKey();
                             file.setLastKey(key);
                             fileLocations = new ArrayList<>();
+                            maxCount = Long.MIN_VALUE;
                             file = new FileInfo(bucket.getIndex(), key, currLastKey, 0, 0);
                             ds.moveDataToFront(endOfPreviousItem, ds.position);
                             bucket.getFiles().add(fileInd + 1, file);
@@ -568,12 +839,13 @@ public class FileDataInterface<T extends Object> extends CoreDataInterface<T> im
                             throw new RuntimeException("Invalid position " + position + " in file " + toFile(file).getAbsolutePath());
                         }
                         fileLocations.add(new Pair<>(key, position));
+                        maxCount = updateMaxCount(maxCount, value);
                         itemsWrittenToFile++;
                         endOfPreviousItem = ds.position;
                     }
                     writeBufferToTempFile(ds, ds.position, file);
                     swapTempForReal(file);
-                    file.fileWasRewritten(fileLocations, ds.position, ds.position);
+                    file.fileWasRewritten(fileLocations, ds.position, ds.position, maxCount);
                     numOfRewrittenFiles++;
                 }
             }
@@ -690,9 +962,12 @@ public class FileDataInterface<T extends Object> extends CoreDataInterface<T> im
     }
 
     private void swapTempForReal(FileInfo file) throws IOException {
-        synchronized (file) { //Synchronized to make sure the size of the caches remains correct
+        file.getCachedFileContentsLock().lock(); //Locked to make sure the size of the caches remains correct
+        try {
             long releasedBytes = file.discardFileContents();
             updateSizeOfCachedFileContents(-releasedBytes);
+        } finally {
+            file.getCachedFileContentsLock().unlock();
         }
         Files.move(toTempFile(file).toPath(), toFile(file).toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
     }
@@ -716,7 +991,7 @@ public class FileDataInterface<T extends Object> extends CoreDataInterface<T> im
         return DataStreamUtils.writeValue(value, ds, objectSerializer) + 8;
     }
 
-    private T readValue(DataStream ds, int size) throws IOException {
+    private T readValue(DataStream ds, int size) {
         return objectSerializer.readValue(ds, size);
     }
 
@@ -834,6 +1109,7 @@ public class FileDataInterface<T extends Object> extends CoreDataInterface<T> im
         noException(() -> {
             List<Pair<Long, Integer>> fileLocations = new ArrayList<>();
             DataStream ds = new DataStream();
+            long maxCount = Long.MIN_VALUE;
             for (KeyValue<T> entry : values) {
                 long key = entry.getKey();
                 T value = entry.getValue();
@@ -843,13 +1119,24 @@ public class FileDataInterface<T extends Object> extends CoreDataInterface<T> im
                     throw new RuntimeException("Invalid position " + position + " in file " + toFile(file).getAbsolutePath());
                 }
                 fileLocations.add(new Pair<>(key, position));
+                maxCount = updateMaxCount(maxCount, value);
             }
             writeBufferToTempFile(ds, ds.position, file);
             swapTempForReal(file);
-            file.fileWasRewritten(fileLocations, ds.position, ds.position);
+            file.fileWasRewritten(fileLocations, ds.position, ds.position, maxCount);
         });
     }
 
+    private long updateMaxCount(long maxCount, T value) {
+        if (value instanceof Long) {
+            return Math.max(maxCount, (Long) value);
+        } else if (value == null) {
+            return maxCount;
+        } else {
+            return Long.MAX_VALUE; //not a count, so we can not say anything about the counts in this file
+        }
+    }
+
     private void makeSureAllFileBucketsHaveAtLeastOneFile() {
         for (FileBucket bucket : fileBuckets) {
             if (bucket.getFiles().isEmpty()) {
@@ -884,20 +1171,25 @@ public class FileDataInterface<T extends Object> extends CoreDataInterface<T> im
         return null;
     }
 
-    private synchronized void writeMetaFile() {
-        readLockAllBuckets();
-        metaFileOutOfSync = false;
-        File outputFile = new File(directory, META_FILE);
+    private void writeMetaFile() {
+        rewriteLock.lock();
         try {
-            MetaFile metaFile = new MetaFile(fileBuckets, timeOfLastWrite, timeOfLastRead);
-            FileOutputStream fos = new FileOutputStream(outputFile);
-            SerializationUtils.writeObject(metaFile, fos);
-            IOUtils.closeQuietly(fos);
-        } catch (Exception exp) {
-            metaFileOutOfSync = true;
-            throw new RuntimeException("Received exception while writing list of clean files to " + outputFile.getAbsolutePath(), exp);
+            readLockAllBuckets();
+            metaFileOutOfSync = false;
+            File outputFile = new File(directory, META_FILE);
+            try {
+                MetaFile metaFile = new MetaFile(fileBuckets, timeOfLastWrite, timeOfLastRead);
+                FileOutputStream fos = new FileOutputStream(outputFile);
+                SerializationUtils.writeObject(metaFile, fos);
+                IOUtils.closeQuietly(fos);
+            } catch (Exception exp) {
+                metaFileOutOfSync = true;
+                throw new RuntimeException("Received exception while writing list of clean files to " + outputFile.getAbsolutePath(), exp);
+            } finally {
+                readUnlockAllBuckets();
+            }
         } finally {
-            readUnlockAllBuckets();
+            rewriteLock.unlock();
         }
     }
 
@@ -915,8 +1207,9 @@ public class FileDataInterface<T extends Object> extends CoreDataInterface<T> im
         byte[] fileContents = file.getCachedFileContents();
         if (fileContents == null) {
             if (memoryManager.getMemoryStatus() == MemoryStatus.FREE && currentSizeOfCachedFileContents < maxSizeOfCachedFileContents) {
-                //cache file contents. Lock on file object to make sure we don't read the content in parallel (this messes up the currentSizeOfCachedFileContents variable and is not very efficient)
-                synchronized (file) {
+                //cache file contents. Lock the file to make sure we don't read the content in parallel (this messes up the currentSizeOfCachedFileContents variable and is not very efficient)
+                file.getCachedFileContentsLock().lock();
+                try {
                     fileContents = file.getCachedFileContents();
                     if (fileContents == null) {
                         fileContents = new byte[file.getReadSize()];
@@ -929,6 +1222,8 @@ public class FileDataInterface<T extends Object> extends CoreDataInterface<T> im
                         IOUtils.closeQuietly(fis);
                     }
                     file.setCachedFileContents(fileContents);
+                } finally {
+                    file.getCachedFileContentsLock().unlock();
                 }
                 return new ReadBuffer(fileContents, 0);
             } else {
@@ -990,44 +1285,26 @@ public class FileDataInterface<T extends Object> extends CoreDataInterface<T> im
 
     private List<KeyValue<T>> readCleanValues(FileInfo file) {
         try {
-            byte[] buffer = getReadBuffer(file, 0, file.getReadSize()).getBuffer();
-            int expectedNumberOfValues = getLowerBoundOnNumberOfValues(file.getReadSize());
-            List<KeyValue<T>> result = new ArrayList<>(expectedNumberOfValues);
-            DataStream ds = new DataStream(buffer);
-            while (ds.position < buffer.length) {
-                long key = ds.readLong();
-                int objectSize = getObjectSize(ds);
-                T value = readValue(ds, objectSize);
-                result.add(new KeyValue<>(key, value));
-            }
-            dataWasRead();
-            return result;
+            return readCleanValues(getReadBuffer(file, 0, file.getReadSize()).getBuffer(), null);
         } catch (Exception ex) {
             throw new RuntimeException("Unexpected exception while reading values from file " + toFile(file).getAbsolutePath(), ex);
         }
     }
 
-    private List<KeyValue<T>> readCleanValuesWithKeyFilter(FileInfo file, KeyFilter keyFilter) {
-        try {
-            byte[] buffer = getReadBuffer(file, 0, file.getReadSize()).getBuffer();
-            int expectedNumberOfValues = getLowerBoundOnNumberOfValues(file.getReadSize());
-            List<KeyValue<T>> result = new ArrayList<>(expectedNumberOfValues);
-            DataStream ds = new DataStream(buffer);
-            while (ds.position < buffer.length) {
-                long key = ds.readLong();
-                int objectSize = getObjectSize(ds);
-                if (keyFilter.acceptKey(key)) {
-                    T value = readValue(ds, objectSize);
-                    result.add(new KeyValue<>(key, value));
-                } else {
-                    ds.skip(objectSize);
-                }
+    private List<KeyValue<T>> readCleanValues(byte[] buffer, KeyFilter keyFilter) {
+        int expectedNumberOfValues = getLowerBoundOnNumberOfValues(buffer.length);
+        List<KeyValue<T>> result = new ArrayList<>(expectedNumberOfValues);
+        DataStream ds = new DataStream(buffer);
+        while (ds.position < buffer.length) {
+            long key = ds.readLong();
+            int objectSize = getObjectSize(ds);
+            if (keyFilter == null || keyFilter.acceptKey(key)) {
+                result.add(new KeyValue<>(key, objectSerializer.readValue(buffer, ds.position, objectSize)));
             }
-            dataWasRead();
-            return result;
-        } catch (Exception ex) {
-            throw new RuntimeException("Unexpected exception while reading values from file " + toFile(file).getAbsolutePath(), ex);
+            ds.position += objectSize;
         }
+        dataWasRead();
+        return result;
     }
 
     private int getObjectSize(DataStream ds) {
@@ -1100,19 +1377,31 @@ public class FileDataInterface<T extends Object> extends CoreDataInterface<T> im
 
     private int getLowerBoundOnNumberOfValues(int sizeOfFile) {
         int objectSize = objectSerializer.getObjectSize();
-        if (objectSize == -1) {
+        if (objectSize == ObjectSerializer.VARIABLE_SIZE) {
             return sizeOfFile / 1000;
+        } else if (objectSize == ObjectSerializer.SELF_DELIMITED_SIZE) {
+            return sizeOfFile / 20;
         } else {
             return sizeOfFile / objectSize;
         }
     }
 
     private List<Long> readKeys(FileInfo file) throws IOException {
+        return readKeys(getReadBuffer(file, 0, file.getReadSize()).getBuffer());
+    }
+
+    private List<Long> readKeys(byte[] buffer) {
+        return readKeys(buffer, null);
+    }
+
+    private List<Long> readKeys(byte[] buffer, KeyFilter keyFilter) {
         List<Long> result = new ArrayList<>();
-        byte[] buffer = getReadBuffer(file, 0, file.getReadSize()).getBuffer();
         DataStream ds = new DataStream(buffer);
         while (ds.position < buffer.length) {
-            result.add(ds.readLong());
+            long key = ds.readLong();
+            if (keyFilter == null || keyFilter.acceptKey(key)) {
+                result.add(key);
+            }
             int objectSize = DataStreamUtils.getObjectSize(ds, objectSerializer);
             ds.skip(objectSize);
         }
@@ -1148,7 +1437,7 @@ public class FileDataInterface<T extends Object> extends CoreDataInterface<T> im
     }
 
     private long getBatchSize() {
-        return objectSerializer.getObjectSize() == -1 ? BATCH_SIZE_NON_PRIMITIVE_VALUES : BATCH_SIZE_PRIMITIVE_VALUES;
+        return objectSerializer.getObjectSize() == ObjectSerializer.VARIABLE_SIZE ? BATCH_SIZE_NON_PRIMITIVE_VALUES : BATCH_SIZE_PRIMITIVE_VALUES;
     }
 
     private static class ReadBuffer {
@@ -1196,6 +1485,68 @@ public class FileDataInterface<T extends Object> extends CoreDataInterface<T> im
 
     }
 
+    private static class SnapshotFile {
+        private final long firstKey;
+        private final long lastKey;
+        private final int readSize;
+        private byte[] contents;
+        private File link;
+
+        private SnapshotFile(long firstKey, long lastKey, int readSize) {
+            this.firstKey = firstKey;
+            this.lastKey = lastKey;
+            this.readSize = readSize;
+        }
+    }
+
+    private class SnapshotReference extends PhantomReference<FileSnapshot> {
+        private final File snapshotDirectory;
+
+        private SnapshotReference(FileSnapshot snapshot, File snapshotDirectory, ReferenceQueue<FileSnapshot> queue) {
+            super(snapshot, queue);
+            this.snapshotDirectory = snapshotDirectory;
+        }
+    }
+
+    private class FileSnapshot {
+        private final File snapshotDirectory;
+        private final List<SnapshotFile> files;
+        private SnapshotReference reference;
+        private boolean closed;
+
+        private FileSnapshot(File snapshotDirectory, List<SnapshotFile> files) {
+            this.snapshotDirectory = snapshotDirectory;
+            this.files = files;
+        }
+
+        private byte[] readFile(int fileInd) throws IOException {
+            SnapshotFile file = files.get(fileInd);
+            if (file.contents != null) {
+                return file.contents;
+            }
+            byte[] buffer = new byte[file.readSize];
+            try (InputStream is = new FileInputStream(file.link)) {
+                IOUtils.readFully(is, buffer);
+            }
+            if (!file.link.delete()) {
+                Log.w("Failed to delete " + file.link.getAbsolutePath());
+            }
+            return buffer;
+        }
+
+        private synchronized void close() {
+            if (!closed) {
+                closed = true;
+                if (reference != null) {
+                    snapshotReferences.remove(reference);
+                }
+                if (snapshotDirectory.exists()) {
+                    deleteSnapshotDirectory(snapshotDirectory);
+                }
+            }
+        }
+    }
+
     public static class MetaFile {
         private List<FileBucket> fileBuckets;
         private long lastWrite;
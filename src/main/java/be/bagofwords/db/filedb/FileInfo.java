@@ -7,6 +7,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 class FileInfo implements Comparable {
 
@@ -15,7 +16,13 @@ class FileInfo implements Comparable {
     private long lastKey;
     private int readSize;
     private int writeSize;
+    //Largest count in the file when it was last rewritten, Long.MAX_VALUE if unknown (e.g. the values are not counts)
+    private long maxCount;
+    //Number of keys in the file when it was last rewritten, -1 if unknown (e.g. meta file written by an older version)
+    private int numOfKeys;
     private byte[] cachedFileContents;
+    //Guards reading and discarding the cached file contents
+    private final ReentrantLock cachedFileContentsLock = new ReentrantLock();
     //This field is only filled in when the file is clean (i.e. not isDirty)
     private long[] fileLocationsKeys;
     private int[] fileLocationsValues;
@@ -30,6 +37,8 @@ class FileInfo implements Comparable {
         this.lastKey = lastKey;
         this.readSize = readSize;
         this.writeSize = writeSize;
+        this.maxCount = Long.MAX_VALUE;
+        this.numOfKeys = readSize == 0 ? 0 : -1;
         if (readSize == 0) {
             fileLocationsKeys = new long[0];
             fileLocationsValues = new int[0];
@@ -52,10 +61,12 @@ class FileInfo implements Comparable {
         return readSize;
     }
 
-    public void fileWasRewritten(List<Pair<Long, Integer>> fileLocations, int newReadSize, int newWriteSize) {
+    public void fileWasRewritten(List<Pair<Long, Integer>> fileLocations, int newReadSize, int newWriteSize, long newMaxCount) {
+        this.numOfKeys = fileLocations.size();
         fileLocations = sample(fileLocations, 50);
         this.readSize = newReadSize;
         this.writeSize = newWriteSize;
+        this.maxCount = newMaxCount;
         this.fileLocationsKeys = new long[fileLocations.size()];
         this.fileLocationsValues = new int[fileLocations.size()];
         for (int i = 0; i < fileLocations.size(); i++) {
@@ -113,10 +124,40 @@ class FileInfo implements Comparable {
         this.cachedFileContents = cachedFileContents;
     }
 
+    @JsonIgnore
+    public ReentrantLock getCachedFileContentsLock() {
+        return cachedFileContentsLock;
+    }
+
     public int getWriteSize() {
         return writeSize;
     }
 
+    public long getMaxCount() {
+        return maxCount;
+    }
+
+    public void setMaxCount(long maxCount) {
+        this.maxCount = maxCount;
+    }
+
+    public int getNumOfKeys() {
+        return numOfKeys;
+    }
+
+    public void setNumOfKeys(int numOfKeys) {
+        this.numOfKeys = numOfKeys;
+    }
+
+    /**
+     * Values appended after the last rewrite are not included in the maximum count, so it is only an upper bound for clean files
+     */
+
+    @JsonIgnore
+    public long getUpperBoundOnCounts() {
+        return isClean() ? maxCount : Long.MAX_VALUE;
+    }
+
     @JsonIgnore
     public boolean isClean() {
         return readSize == writeSize;
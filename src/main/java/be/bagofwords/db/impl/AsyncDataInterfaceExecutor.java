@@ -0,0 +1,29 @@
+package be.bagofwords.db.impl;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes the blocking calls of the default asynchronous methods of {@link be.bagofwords.db.DataInterface}. The threads are
+ * daemon threads, so they don't keep the application alive.
+ */
+
+public class AsyncDataInterfaceExecutor {
+
+    private static final ExecutorService executorService = createExecutorService();
+
+    private static ExecutorService createExecutorService() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "async_data_interface_" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+}
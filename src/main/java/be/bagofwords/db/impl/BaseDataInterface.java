@@ -8,6 +8,8 @@ import be.bagofwords.logging.Log;
 import be.bagofwords.util.KeyValue;
 import be.bagofwords.util.StringUtils;
 
+import java.util.concurrent.locks.ReentrantLock;
+
 public abstract class BaseDataInterface<T extends Object> implements DataInterface<T> {
 
     protected final Combinator<T> combinator;
@@ -15,7 +17,7 @@ public abstract class BaseDataInterface<T extends Object> implements DataInterfa
     protected final String name;
     protected final boolean isTemporaryDataInterface;
     protected final ObjectSerializer<T> objectSerializer;
-    private final Object closeLock = new Object();
+    private final ReentrantLock closeLock = new ReentrantLock();
     private boolean wasClosed;
 
     public BaseDataInterface(String name, Class<T> objectClass, Combinator<T> combinator, ObjectSerializer<T> objectSerializer, boolean isTemporaryDataInterface) {
@@ -80,10 +82,13 @@ public abstract class BaseDataInterface<T extends Object> implements DataInterfa
     }
 
     public void ifNotClosed(Runnable action) {
-        synchronized (closeLock) {
+        closeLock.lock();
+        try {
             if (!wasClosed()) {
                 action.run();
             }
+        } finally {
+            closeLock.unlock();
         }
     }
 
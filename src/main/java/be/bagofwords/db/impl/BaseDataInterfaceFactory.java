@@ -12,6 +12,7 @@ import be.bagofwords.db.combinator.LongCombinator;
 import be.bagofwords.db.combinator.OverWriteCombinator;
 import be.bagofwords.db.experimental.index.MultiDataIndexer;
 import be.bagofwords.db.experimental.index.MultiDataInterfaceIndex;
+import be.bagofwords.db.experimental.index.PostingListDataInterfaceIndex;
 import be.bagofwords.db.experimental.index.UniqueDataIndexer;
 import be.bagofwords.db.experimental.index.UniqueDataInterfaceIndex;
 import be.bagofwords.db.memory.InMemoryDataInterface;
@@ -57,6 +58,11 @@ public abstract class BaseDataInterfaceFactory implements LifeCycleBean, DataInt
         return new MultiDataInterfaceIndex<>(nameOfIndex, this, dataInterface, indexer);
     }
 
+    @Override
+    public <T> PostingListDataInterfaceIndex<T> postingListIndex(DataInterface<T> dataInterface, String nameOfIndex, MultiDataIndexer<T> indexer) {
+        return new PostingListDataInterfaceIndex<>(nameOfIndex, this, dataInterface, indexer);
+    }
+
     @Override
     public <T> UniqueDataInterfaceIndex<T> uniqueIndex(DataInterface<T> dataInterface, String nameOfIndex, UniqueDataIndexer<T> indexer) {
         return new UniqueDataInterfaceIndex<>(nameOfIndex, this, dataInterface, indexer);
@@ -13,6 +13,11 @@ public class DBUtils {
 
     public static final boolean DEBUG = false;
 
+    /**
+     * Sorts the unmerged values and adds them to the merged values, combining the values of identical keys. The values in
+     * the unmerged list should not be used anywhere else, since they can be modified when they are combined.
+     */
+
     public static <T> void mergeValues(List<KeyValue<T>> mergedValuesList, List<KeyValue<T>> unmergedValues, Combinator<T> combinator) {
         Collections.sort(unmergedValues);
         //combine values
@@ -29,7 +34,7 @@ public class DBUtils {
                         combinedVal = nextVal;
                     } else {
                         //Combine values
-                        combinedVal = combinator.combine(currVal, nextVal);
+                        combinedVal = combinator.combineInto(currVal, nextVal);
                     }
                     currPair.setValue(combinedVal);
                     currVal = combinedVal;
@@ -2,105 +2,75 @@ package be.bagofwords.db.memory;
 
 import be.bagofwords.db.CoreDataInterface;
 import be.bagofwords.db.combinator.Combinator;
-import be.bagofwords.db.methods.ObjectSerializer;
 import be.bagofwords.iterator.CloseableIterator;
-import be.bagofwords.iterator.IterableUtils;
-import be.bagofwords.util.DataLock;
 import be.bagofwords.util.KeyValue;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Keeps all values in memory, in primitive arrays. The keys are spread over {@link #NUM_OF_SHARDS} shards on a hash of the key,
+ * so sequential keys don't all end up behind the same lock. Every shard keeps its keys sorted, iterators merge the keys of the
+ * shards and return all values sorted without copying or sorting them. Iterators read a snapshot of all shards, values that are
+ * written during the iteration are not returned.
+ */
 
 public class InMemoryDataInterface<T extends Object> extends CoreDataInterface<T> {
 
-    private Map<Long, T> values;
-    private final DataLock lock;
+    private static final int SHARD_BITS = 6;
+    private static final int NUM_OF_SHARDS = 1 << SHARD_BITS;
+
+    private final SortedArrayShard<T>[] shards;
 
+    @SuppressWarnings("unchecked")
     public InMemoryDataInterface(String name, Class<T> objectClass, Combinator<T> combinator) {
         super(name, objectClass, combinator, null, true);
-        this.values = new ConcurrentHashMap<>();
-        this.lock = new DataLock();
+        this.shards = new SortedArrayShard[NUM_OF_SHARDS];
+        for (int i = 0; i < NUM_OF_SHARDS; i++) {
+            shards[i] = new SortedArrayShard<>(objectClass);
+        }
+    }
+
+    private SortedArrayShard<T> getShard(long key) {
+        //the hash tables of the shards use the lowest bits of the mixed key, so the highest bits select the shard
+        return shards[(int) (SortedArrayShard.mixKey(key) >>> (64 - SHARD_BITS))];
     }
 
     @Override
     public T read(long key) {
-        return values.get(key);
+        return getShard(key).read(key);
     }
 
     @Override
     public void write(long key, T value) {
-        lock.lockWrite(key);
-        try {
-            nonSynchronizedWrite(key, value);
-        } finally {
-            lock.unlockWrite(key);
-        }
-    }
-
-    private void nonSynchronizedWrite(long key, T value) {
-        if (value == null) {
-            values.remove(key);
-        } else {
-            T currentValue = values.get(key);
-            if (currentValue == null) {
-                values.put(key, value);
-            } else {
-                values.put(key, getCombinator().combine(currentValue, value));
-            }
-        }
+        getShard(key).write(key, value, getCombinator());
         updateListenerCollection.dateUpdated(key, value);
     }
 
     @Override
     public void write(CloseableIterator<KeyValue<T>> entries) {
-        lock.lockWriteAll();
-        try {
-            while (entries.hasNext()) {
-                KeyValue<T> entry = entries.next();
-                nonSynchronizedWrite(entry.getKey(), entry.getValue());
-            }
-            entries.close();
-        } finally {
-            lock.unlockWriteAll();
+        while (entries.hasNext()) {
+            KeyValue<T> entry = entries.next();
+            write(entry.getKey(), entry.getValue());
         }
+        entries.close();
     }
 
     @Override
     public CloseableIterator<KeyValue<T>> iterator() {
-        //We should probably add locking for this iterator, but do we want to
-        //keep all the data locked until it is closed?
-        List<Map.Entry<Long, T>> sortedValues = new ArrayList<>(values.entrySet());
-        Collections.sort(sortedValues, (o1, o2) -> Long.compare(o1.getKey(), o2.getKey()));
-        final Iterator<Map.Entry<Long, T>> valuesIt = sortedValues.iterator();
-        return new CloseableIterator<KeyValue<T>>() {
-            @Override
-            public boolean hasNext() {
-                return valuesIt.hasNext();
-            }
-
-            @Override
-            public KeyValue<T> next() {
-                Map.Entry<Long, T> next = valuesIt.next();
-                return new KeyValue<>(next.getKey(), next.getValue());
-            }
-
-            @Override
-            public void remove() {
-                valuesIt.remove();
-            }
+        return new SnapshotIterator<>(takeSnapshots(), snapshot -> new KeyValue<>(snapshot.getKey(), snapshot.getValue()));
+    }
 
-            @Override
-            public void closeInt() {
-                //ok
-            }
-        };
+    @Override
+    public CloseableIterator<Long> keyIterator() {
+        return new SnapshotIterator<>(takeSnapshots(), SortedArrayShard.Snapshot::getKey);
     }
 
     @Override
     public void dropAllData() {
-        lock.lockWriteAll();
-        values.clear();
-        lock.unlockWriteAll();
+        for (SortedArrayShard<T> shard : shards) {
+            shard.clear();
+        }
         updateListenerCollection.dataDropped();
     }
 
@@ -108,30 +78,26 @@ public class InMemoryDataInterface<T extends Object> extends CoreDataInterface<T
     public void flushImpl() {
         ifNotClosed(() -> {
             //make sure that all writes have completely finished:
-            lock.lockWriteAll();
-            lock.unlockWriteAll();
+            for (SortedArrayShard<T> shard : shards) {
+                shard.waitForWrites();
+            }
         });
     }
 
     @Override
     protected void doClose() {
-        lock.lockWriteAll();
-        values = null;
-        lock.unlockWriteAll();
+        for (SortedArrayShard<T> shard : shards) {
+            shard.clear();
+        }
     }
 
     @Override
     public long apprSize() {
-        return values.size();  //no locking needed since it is only the approximate size
-    }
-
-    @Override
-    public CloseableIterator<Long> keyIterator() {
-        lock.lockReadAll();
-        List<Long> sortedKeys = new ArrayList<>(values.keySet());
-        lock.unlockReadAll();
-        Collections.sort(sortedKeys);
-        return IterableUtils.iterator(sortedKeys.iterator());
+        long result = 0;
+        for (SortedArrayShard<T> shard : shards) {
+            result += shard.apprSize();  //no locking needed since it is only the approximate size
+        }
+        return result;
     }
 
     @Override
@@ -141,17 +107,79 @@ public class InMemoryDataInterface<T extends Object> extends CoreDataInterface<T
 
     @Override
     public long exactSize() {
-        lock.lockReadAll();
-        long result = values.size();
-        lock.unlockReadAll();
+        long result = 0;
+        for (SortedArrayShard<T> shard : shards) {
+            result += shard.size();
+        }
         return result;
     }
 
     @Override
     public boolean mightContain(long key) {
-        lock.lockRead(key);
-        boolean result = values.containsKey(key);
-        lock.unlockRead(key);
+        return getShard(key).contains(key);
+    }
+
+    /**
+     * All shards are locked at the same time, so the snapshots contain the values of a single point in time
+     */
+
+    private List<SortedArrayShard.Snapshot<T>> takeSnapshots() {
+        List<SortedArrayShard.Snapshot<T>> result = new ArrayList<>(shards.length);
+        for (SortedArrayShard<T> shard : shards) {
+            shard.lockWrite();
+        }
+        try {
+            for (SortedArrayShard<T> shard : shards) {
+                result.add(shard.takeSnapshot());
+            }
+        } finally {
+            for (SortedArrayShard<T> shard : shards) {
+                shard.unlockWrite();
+            }
+        }
         return result;
     }
+
+    /**
+     * Merges the sorted keys of the snapshots of all shards
+     */
+
+    private class SnapshotIterator<E> extends CloseableIterator<E> {
+
+        private final PriorityQueue<SortedArrayShard.Snapshot<T>> snapshots;
+        private final Function<SortedArrayShard.Snapshot<T>, E> converter;
+
+        private SnapshotIterator(List<SortedArrayShard.Snapshot<T>> snapshots, Function<SortedArrayShard.Snapshot<T>, E> converter) {
+            this.snapshots = new PriorityQueue<>(snapshots.size(), Comparator.comparingLong(SortedArrayShard.Snapshot::getKey));
+            this.converter = converter;
+            for (SortedArrayShard.Snapshot<T> snapshot : snapshots) {
+                if (snapshot.next()) {
+                    this.snapshots.add(snapshot);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !snapshots.isEmpty();
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            SortedArrayShard.Snapshot<T> snapshot = snapshots.poll();
+            E result = converter.apply(snapshot);
+            if (snapshot.next()) {
+                snapshots.add(snapshot);
+            }
+            return result;
+        }
+
+        @Override
+        public void closeInt() {
+            //ok
+        }
+    }
 }
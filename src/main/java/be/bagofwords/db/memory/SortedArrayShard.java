@@ -0,0 +1,421 @@
+package be.bagofwords.db.memory;
+
+import be.bagofwords.db.combinator.Combinator;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Keeps the values of a part of the keys. The values are stored in an open-addressing hash table with primitive keys, so
+ * reading or changing the value of a key is a single lookup. The keys are also kept sorted in a list of small blocks (like
+ * the leaves of a B-tree), so adding or removing a key only moves the keys of one block and the keys can be iterated in
+ * order without sorting them.
+ * <p>
+ * Reads don't take a lock: they are optimistic and are only repeated with the read lock if a write happened while reading.
+ * Snapshots share the table and the blocks with the shard. The table is copied on the first write after a snapshot was
+ * taken, and a block is copied on the first write after a snapshot that changes it, so a snapshot never changes and can
+ * be read without holding the lock.
+ */
+
+class SortedArrayShard<T> {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAX_LOAD_PERCENTAGE = 70;
+    static final int BLOCK_SIZE = 512;
+
+    private final Class<T> objectClass;
+    private final StampedLock lock;
+    private Table<T> table;
+    private int size;
+    private boolean tableShared;
+    private Block[] blocks;
+    private int numOfBlocks;
+    private boolean blocksShared;
+    /**
+     * Incremented for every snapshot. Blocks that were created in an earlier epoch might be shared with a snapshot.
+     */
+    private int epoch;
+
+    public SortedArrayShard(Class<T> objectClass) {
+        this.objectClass = objectClass;
+        this.lock = new StampedLock();
+        clearImpl();
+    }
+
+    /**
+     * Mixes the bits of a key, so sequential keys are spread over all shards and over all slots of the table
+     */
+
+    static long mixKey(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    public T read(long key) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            T value = table.get(key);
+            if (lock.validate(stamp)) {
+                return value;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return table.get(key);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public void write(long key, T value, Combinator<T> combinator) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = table.find(key);
+            if (slot >= 0) {
+                T combinedValue = value == null ? null : combinator.combine(table.values.get(slot), value);
+                if (tableShared) {
+                    table = table.copy(table.keys.length);
+                    tableShared = false;
+                }
+                if (combinedValue == null) {
+                    table.remove(slot);
+                    size--;
+                    removeFromBlocks(key);
+                } else {
+                    table.values.set(slot, combinedValue);
+                }
+            } else if (value != null) {
+                if ((size + 1) * 100L > table.keys.length * (long) MAX_LOAD_PERCENTAGE) {
+                    table = table.copy(table.keys.length * 2);
+                    tableShared = false;
+                    slot = table.find(key);
+                } else if (tableShared) {
+                    table = table.copy(table.keys.length);
+                    tableShared = false;
+                }
+                slot = -(slot + 1);
+                table.keys[slot] = key;
+                table.values.set(slot, value);
+                size++;
+                addToBlocks(key);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return the index of the last block whose first key is not larger than the key, or 0 if there is no such block
+     */
+
+    private int findBlock(long key) {
+        int low = 0;
+        int high = numOfBlocks - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (blocks[mid].keys[0] <= key) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private void addToBlocks(long key) {
+        if (numOfBlocks == 0) {
+            insertBlock(0, new Block(epoch));
+        }
+        int blockInd = findBlock(key);
+        Block block = writableBlock(blockInd);
+        int ind = -(Arrays.binarySearch(block.keys, 0, block.size, key) + 1);
+        if (block.size == BLOCK_SIZE) {
+            int half = BLOCK_SIZE / 2;
+            Block next = new Block(epoch);
+            System.arraycopy(block.keys, half, next.keys, 0, BLOCK_SIZE - half);
+            next.size = BLOCK_SIZE - half;
+            block.size = half;
+            insertBlock(blockInd + 1, next);
+            if (ind > half) {
+                block = next;
+                ind -= half;
+            }
+        }
+        System.arraycopy(block.keys, ind, block.keys, ind + 1, block.size - ind);
+        block.keys[ind] = key;
+        block.size++;
+    }
+
+    private void removeFromBlocks(long key) {
+        int blockInd = findBlock(key);
+        Block block = writableBlock(blockInd);
+        int ind = Arrays.binarySearch(block.keys, 0, block.size, key);
+        System.arraycopy(block.keys, ind + 1, block.keys, ind, block.size - ind - 1);
+        block.size--;
+        if (block.size == 0) {
+            removeBlock(blockInd);
+        } else if (blockInd + 1 < numOfBlocks && block.size + blocks[blockInd + 1].size <= BLOCK_SIZE / 2) {
+            //merge small neighbouring blocks, so deletes don't leave many almost empty blocks behind
+            Block next = blocks[blockInd + 1];
+            System.arraycopy(next.keys, 0, block.keys, block.size, next.size);
+            block.size += next.size;
+            removeBlock(blockInd + 1);
+        }
+    }
+
+    /**
+     * @return the block at the given index, copied first if it might be shared with a snapshot
+     */
+
+    private Block writableBlock(int ind) {
+        Block block = blocks[ind];
+        if (block.epoch != epoch) {
+            ensureBlocksNotShared();
+            block = new Block(block, epoch);
+            blocks[ind] = block;
+        }
+        return block;
+    }
+
+    private void insertBlock(int ind, Block block) {
+        ensureBlocksNotShared();
+        if (numOfBlocks == blocks.length) {
+            blocks = Arrays.copyOf(blocks, blocks.length * 2);
+        }
+        System.arraycopy(blocks, ind, blocks, ind + 1, numOfBlocks - ind);
+        blocks[ind] = block;
+        numOfBlocks++;
+    }
+
+    private void removeBlock(int ind) {
+        ensureBlocksNotShared();
+        System.arraycopy(blocks, ind + 1, blocks, ind, numOfBlocks - ind - 1);
+        numOfBlocks--;
+        blocks[numOfBlocks] = null;
+    }
+
+    private void ensureBlocksNotShared() {
+        if (blocksShared) {
+            blocks = Arrays.copyOf(blocks, blocks.length);
+            blocksShared = false;
+        }
+    }
+
+    /**
+     * Returns the current values of this shard. Should only be called while holding the write lock.
+     */
+
+    public Snapshot<T> takeSnapshot() {
+        tableShared = true;
+        blocksShared = true;
+        epoch++;
+        return new Snapshot<>(table, blocks, numOfBlocks);
+    }
+
+    public void lockWrite() {
+        lock.asWriteLock().lock();
+    }
+
+    public void unlockWrite() {
+        lock.asWriteLock().unlock();
+    }
+
+    public boolean contains(long key) {
+        return read(key) != null;
+    }
+
+    public long size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public long apprSize() {
+        return size;
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            clearImpl();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void clearImpl() {
+        table = new Table<>(new long[INITIAL_CAPACITY], ValueArray.create(objectClass, INITIAL_CAPACITY));
+        size = 0;
+        tableShared = false;
+        blocks = new Block[INITIAL_CAPACITY];
+        numOfBlocks = 0;
+        blocksShared = false;
+    }
+
+    /**
+     * Waits until writes that are currently executing have finished
+     */
+
+    public void waitForWrites() {
+        lock.unlockWrite(lock.writeLock());
+    }
+
+    /**
+     * Open-addressing hash table with linear probing. A slot is empty when its value is null. The capacity is always a power of two.
+     */
+
+    private static class Table<T> {
+        private final long[] keys;
+        private final ValueArray<T> values;
+        private final int mask;
+
+        private Table(long[] keys, ValueArray<T> values) {
+            this.keys = keys;
+            this.values = values;
+            this.mask = keys.length - 1;
+        }
+
+        private int homeSlot(long key) {
+            return (int) mixKey(key) & mask;
+        }
+
+        /**
+         * @return the slot of the key, or -(slot + 1) with the empty slot where the key can be added
+         */
+
+        private int find(long key) {
+            int slot = homeSlot(key);
+            //the number of probes is limited since an optimistic read can see a table that is being changed
+            for (int probes = 0; probes <= mask; probes++) {
+                if (values.isNull(slot)) {
+                    return -(slot + 1);
+                } else if (keys[slot] == key) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private T get(long key) {
+            int slot = find(key);
+            return slot >= 0 ? values.get(slot) : null;
+        }
+
+        /**
+         * Empties the slot and moves the keys that follow it back, so every key can still be found from its home slot
+         */
+
+        private void remove(int slot) {
+            int hole = slot;
+            int ind = (slot + 1) & mask;
+            while (!values.isNull(ind)) {
+                int home = homeSlot(keys[ind]);
+                if (((ind - home) & mask) >= ((ind - hole) & mask)) {
+                    keys[hole] = keys[ind];
+                    values.copy(ind, values, hole, 1);
+                    hole = ind;
+                }
+                ind = (ind + 1) & mask;
+            }
+            values.set(hole, null);
+        }
+
+        private Table<T> copy(int capacity) {
+            if (capacity == keys.length) {
+                ValueArray<T> newValues = values.newArray(capacity);
+                values.copy(0, newValues, 0, capacity);
+                return new Table<>(Arrays.copyOf(keys, capacity), newValues);
+            }
+            Table<T> result = new Table<>(new long[capacity], values.newArray(capacity));
+            for (int i = 0; i < keys.length; i++) {
+                if (!values.isNull(i)) {
+                    int slot = -(result.find(keys[i]) + 1);
+                    result.keys[slot] = keys[i];
+                    values.copy(i, result.values, slot, 1);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Sorted keys of a shard. Blocks are never empty, except while a key is being added to a new shard.
+     */
+
+    private static class Block {
+        private final long[] keys;
+        private final int epoch;
+        private int size;
+
+        private Block(int epoch) {
+            this.keys = new long[BLOCK_SIZE];
+            this.epoch = epoch;
+        }
+
+        private Block(Block source, int epoch) {
+            this.keys = Arrays.copyOf(source.keys, BLOCK_SIZE);
+            this.epoch = epoch;
+            this.size = source.size;
+        }
+    }
+
+    /**
+     * Iterates over the keys and values of a shard in sorted order, as they were when the snapshot was taken.
+     */
+
+    public static class Snapshot<T> {
+        private final Table<T> table;
+        private final Block[] blocks;
+        private final int numOfBlocks;
+        private int blockInd;
+        private int ind;
+
+        private Snapshot(Table<T> table, Block[] blocks, int numOfBlocks) {
+            this.table = table;
+            this.blocks = blocks;
+            this.numOfBlocks = numOfBlocks;
+            this.blockInd = 0;
+            this.ind = -1;
+        }
+
+        /**
+         * Moves to the next key
+         *
+         * @return false if there are no more keys
+         */
+
+        public boolean next() {
+            ind++;
+            while (blockInd < numOfBlocks && ind >= blocks[blockInd].size) {
+                blockInd++;
+                ind = 0;
+            }
+            return blockInd < numOfBlocks;
+        }
+
+        public long getKey() {
+            return blocks[blockInd].keys[ind];
+        }
+
+        public T getValue() {
+            return table.get(getKey());
+        }
+
+        public int size() {
+            int result = 0;
+            for (int i = 0; i < numOfBlocks; i++) {
+                result += blocks[i].size;
+            }
+            return result;
+        }
+    }
+
+}
@@ -0,0 +1,124 @@
+package be.bagofwords.db.memory;
+
+/**
+ * Array of values that stores longs as primitives and all other objects as references. A new array only contains null
+ * values. Null values in a primitive array are marked in a separate array, so every long value can be stored.
+ */
+
+abstract class ValueArray<T> {
+
+    @SuppressWarnings("unchecked")
+    static <T> ValueArray<T> create(Class<T> objectClass, int size) {
+        if (objectClass == Long.class) {
+            return (ValueArray<T>) new LongValueArray(size);
+        } else {
+            return new ObjectValueArray<>(size);
+        }
+    }
+
+    abstract T get(int ind);
+
+    abstract void set(int ind, T value);
+
+    abstract boolean isNull(int ind);
+
+    abstract int length();
+
+    abstract ValueArray<T> newArray(int size);
+
+    /**
+     * Copies values to an array that was created with {@link #newArray(int)}. Overlapping ranges are allowed.
+     */
+
+    abstract void copy(int srcPos, ValueArray<T> dest, int destPos, int length);
+
+    private static class ObjectValueArray<T> extends ValueArray<T> {
+
+        private final Object[] values;
+
+        private ObjectValueArray(int size) {
+            this.values = new Object[size];
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        T get(int ind) {
+            return (T) values[ind];
+        }
+
+        @Override
+        void set(int ind, T value) {
+            values[ind] = value;
+        }
+
+        @Override
+        boolean isNull(int ind) {
+            return values[ind] == null;
+        }
+
+        @Override
+        int length() {
+            return values.length;
+        }
+
+        @Override
+        ValueArray<T> newArray(int size) {
+            return new ObjectValueArray<>(size);
+        }
+
+        @Override
+        void copy(int srcPos, ValueArray<T> dest, int destPos, int length) {
+            System.arraycopy(values, srcPos, ((ObjectValueArray<T>) dest).values, destPos, length);
+        }
+    }
+
+    private static class LongValueArray extends ValueArray<Long> {
+
+        private final long[] values;
+        private final boolean[] present;
+
+        private LongValueArray(int size) {
+            this.values = new long[size];
+            this.present = new boolean[size];
+        }
+
+        @Override
+        Long get(int ind) {
+            return present[ind] ? values[ind] : null;
+        }
+
+        @Override
+        void set(int ind, Long value) {
+            if (value == null) {
+                present[ind] = false;
+                values[ind] = 0;
+            } else {
+                values[ind] = value;
+                present[ind] = true;
+            }
+        }
+
+        @Override
+        boolean isNull(int ind) {
+            return !present[ind];
+        }
+
+        @Override
+        int length() {
+            return values.length;
+        }
+
+        @Override
+        ValueArray<Long> newArray(int size) {
+            return new LongValueArray(size);
+        }
+
+        @Override
+        void copy(int srcPos, ValueArray<Long> dest, int destPos, int length) {
+            LongValueArray longDest = (LongValueArray) dest;
+            System.arraycopy(values, srcPos, longDest.values, destPos, length);
+            System.arraycopy(present, srcPos, longDest.present, destPos, length);
+        }
+    }
+
+}
@@ -0,0 +1,433 @@
+package be.bagofwords.db.methods;
+
+import be.bagofwords.exec.RemoteClass;
+import be.bagofwords.util.SerializationUtils;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serializes the fields of an object in a compact binary format, as an alternative for {@link JsonObjectSerializer}.
+ * Every non-null field is written as a tag followed by its value. The tag contains a field id, computed from the name of the
+ * field, and the wire type of the value. Readers skip fields they don't know and leave fields that were not written to
+ * their default value, so fields can be added, removed or reordered without invalidating stored values. Renaming a field
+ * or changing its type is seen as removing the old field and adding a new one.
+ * <p>
+ * Primitives, their wrappers, strings, enums (stored by name) and byte arrays use a binary encoding, objects of other classes
+ * with a no-argument constructor are serialized recursively and collections, maps and arrays fall back to JSON. Enum constants
+ * that no longer exist are read as null.
+ * Transient, static and {@link JsonIgnore} fields are not serialized.
+ */
+
+@RemoteClass
+public class BinaryObjectSerializer<T> implements ObjectSerializer<T> {
+
+    private static final byte NULL_OBJECT = 0;
+    private static final byte FORMAT_VERSION = 1;
+
+    private static final int WIRE_VARINT = 0;
+    private static final int WIRE_FIXED64 = 1;
+    private static final int WIRE_LENGTH_DELIMITED = 2;
+    private static final int WIRE_FIXED32 = 5;
+
+    private final Class<T> _class;
+    private transient Constructor<T> constructor;
+    private transient Map<Integer, FieldCodec> fieldsById;
+    //Assigned last, so other threads never see a partially initialized serializer
+    private transient volatile List<FieldCodec> fields;
+
+    public BinaryObjectSerializer(Class<T> _class) {
+        this._class = _class;
+        initialize();
+    }
+
+    private void initialize() {
+        try {
+            constructor = _class.getDeclaredConstructor();
+            constructor.setAccessible(true);
+        } catch (NoSuchMethodException exp) {
+            throw new RuntimeException("Class " + _class.getName() + " needs a constructor without arguments to be serialized by " + getClass().getSimpleName());
+        }
+        List<FieldCodec> fields = new ArrayList<>();
+        Map<Integer, FieldCodec> fieldsById = new HashMap<>();
+        for (Class curr = _class; curr != null && curr != Object.class; curr = curr.getSuperclass()) {
+            for (Field field : curr.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isAnnotationPresent(JsonIgnore.class) || field.isSynthetic()) {
+                    continue;
+                }
+                field.setAccessible(true);
+                FieldCodec codec = new FieldCodec(field);
+                FieldCodec existing = fieldsById.put(codec.id, codec);
+                if (existing != null) {
+                    throw new RuntimeException("Fields " + existing.field.getName() + " and " + field.getName() + " of " + _class.getName() + " have the same id, please rename one of them");
+                }
+                fields.add(codec);
+            }
+        }
+        this.fieldsById = fieldsById;
+        this.fields = fields;
+    }
+
+    private void ensureInitialized() {
+        if (fields == null) {
+            //After java deserialization
+            initialize();
+        }
+    }
+
+    @Override
+    public void writeValue(T obj, DataStream ds) {
+        ensureInitialized();
+        if (obj == null) {
+            ds.writeByte(NULL_OBJECT);
+            return;
+        }
+        ds.writeByte(FORMAT_VERSION);
+        try {
+            for (FieldCodec field : fields) {
+                field.write(obj, ds);
+            }
+        } catch (IllegalAccessException exp) {
+            throw new RuntimeException("Failed to serialize object of " + _class.getName(), exp);
+        }
+    }
+
+    @Override
+    public T readValue(DataStream ds, int size) {
+        ensureInitialized();
+        int end = ds.position + size;
+        byte version = ds.readByte();
+        if (version == NULL_OBJECT) {
+            ds.position = end;
+            return null;
+        } else if (version != FORMAT_VERSION) {
+            throw new RuntimeException("Unknown format version " + version + " for object of " + _class.getName());
+        }
+        try {
+            T result = constructor.newInstance();
+            while (ds.position < end) {
+                long tag = ds.readVarLong();
+                int wireType = (int) (tag & 7);
+                FieldCodec field = fieldsById.get((int) (tag >>> 3));
+                if (field != null && field.wireType == wireType) {
+                    field.read(result, ds);
+                } else {
+                    skip(ds, wireType);
+                }
+            }
+            return result;
+        } catch (ReflectiveOperationException exp) {
+            throw new RuntimeException("Failed to deserialize object of " + _class.getName(), exp);
+        }
+    }
+
+    @Override
+    public int getObjectSize() {
+        return -1;
+    }
+
+    private static void skip(DataStream ds, int wireType) {
+        if (wireType == WIRE_VARINT) {
+            ds.readVarLong();
+        } else if (wireType == WIRE_FIXED64) {
+            ds.position += 8;
+        } else if (wireType == WIRE_FIXED32) {
+            ds.position += 4;
+        } else if (wireType == WIRE_LENGTH_DELIMITED) {
+            ds.position += (int) ds.readVarLong();
+        } else {
+            throw new RuntimeException("Unknown wire type " + wireType);
+        }
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeLengthDelimited(DataStream ds, byte[] bytes) {
+        ds.writeVarLong(bytes.length);
+        ds.writeBytes(bytes);
+    }
+
+    private enum FieldType {
+        BOOLEAN, BYTE, SHORT, CHAR, INT, LONG, FLOAT, DOUBLE, STRING, ENUM, BYTES, OBJECT, JSON
+    }
+
+    private static class FieldCodec {
+
+        private final Field field;
+        private final int id;
+        private final FieldType type;
+        private final int wireType;
+        private final boolean primitive;
+        private final Class[] genericParams;
+        private BinaryObjectSerializer nestedSerializer;
+
+        private FieldCodec(Field field) {
+            this.field = field;
+            //String.hashCode() is specified, so the ids are the same in every JVM
+            this.id = (field.getName().hashCode() & 0xFFFF) + 1;
+            this.primitive = field.getType().isPrimitive();
+            this.type = determineType(field.getType());
+            this.wireType = determineWireType(type);
+            this.genericParams = determineGenericParams(field.getGenericType());
+        }
+
+        /**
+         * The type arguments of a field like List&lt;Location&gt;, so the JSON fallback doesn't read the elements as maps
+         */
+
+        private static Class[] determineGenericParams(Type type) {
+            if (!(type instanceof ParameterizedType)) {
+                return new Class[0];
+            }
+            Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+            Class[] result = new Class[arguments.length];
+            for (int i = 0; i < arguments.length; i++) {
+                if (arguments[i] instanceof Class) {
+                    result[i] = (Class) arguments[i];
+                } else if (arguments[i] instanceof ParameterizedType) {
+                    result[i] = (Class) ((ParameterizedType) arguments[i]).getRawType();
+                } else {
+                    result[i] = Object.class; //wildcards and type variables
+                }
+            }
+            return result;
+        }
+
+        private static FieldType determineType(Class type) {
+            if (type == boolean.class || type == Boolean.class) {
+                return FieldType.BOOLEAN;
+            } else if (type == byte.class || type == Byte.class) {
+                return FieldType.BYTE;
+            } else if (type == short.class || type == Short.class) {
+                return FieldType.SHORT;
+            } else if (type == char.class || type == Character.class) {
+                return FieldType.CHAR;
+            } else if (type == int.class || type == Integer.class) {
+                return FieldType.INT;
+            } else if (type == long.class || type == Long.class) {
+                return FieldType.LONG;
+            } else if (type == float.class || type == Float.class) {
+                return FieldType.FLOAT;
+            } else if (type == double.class || type == Double.class) {
+                return FieldType.DOUBLE;
+            } else if (type == String.class) {
+                return FieldType.STRING;
+            } else if (type.isEnum()) {
+                return FieldType.ENUM;
+            } else if (type == byte[].class) {
+                return FieldType.BYTES;
+            } else if (type.isArray() || type.isInterface() || Modifier.isAbstract(type.getModifiers()) || Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type) || type.getName().startsWith("java.")) {
+                return FieldType.JSON;
+            } else {
+                return FieldType.OBJECT;
+            }
+        }
+
+        private static int determineWireType(FieldType type) {
+            switch (type) {
+                case FLOAT:
+                    return WIRE_FIXED32;
+                case DOUBLE:
+                    return WIRE_FIXED64;
+                case STRING:
+                case ENUM:
+                case BYTES:
+                case OBJECT:
+                case JSON:
+                    return WIRE_LENGTH_DELIMITED;
+                default:
+                    return WIRE_VARINT;
+            }
+        }
+
+        private void write(Object obj, DataStream ds) throws IllegalAccessException {
+            if (primitive) {
+                writePrimitive(obj, ds);
+                return;
+            }
+            Object value = field.get(obj);
+            if (value == null) {
+                return; //absent fields are read as null
+            }
+            ds.writeVarLong(((long) id << 3) | wireType);
+            switch (type) {
+                case BOOLEAN:
+                    ds.writeVarLong((Boolean) value ? 1 : 0);
+                    break;
+                case BYTE:
+                case SHORT:
+                case INT:
+                case LONG:
+                    ds.writeVarLong(zigZag(((Number) value).longValue()));
+                    break;
+                case CHAR:
+                    ds.writeVarLong((Character) value);
+                    break;
+                case FLOAT:
+                    ds.writeInt(Float.floatToIntBits((Float) value));
+                    break;
+                case DOUBLE:
+                    ds.writeLong(Double.doubleToLongBits((Double) value));
+                    break;
+                case STRING:
+                    writeLengthDelimited(ds, ((String) value).getBytes(StandardCharsets.UTF_8));
+                    break;
+                case ENUM:
+                    writeLengthDelimited(ds, ((Enum) value).name().getBytes(StandardCharsets.UTF_8));
+                    break;
+                case BYTES:
+                    writeLengthDelimited(ds, (byte[]) value);
+                    break;
+                case OBJECT:
+                    DataStream nested = new DataStream();
+                    getNestedSerializer().writeValue(value, nested);
+                    ds.writeVarLong(nested.position);
+                    ds.writeBytes(nested.position == nested.buffer.length ? nested.buffer : Arrays.copyOf(nested.buffer, nested.position));
+                    break;
+                default:
+                    writeLengthDelimited(ds, SerializationUtils.objectToBytes(value, field.getType()));
+            }
+        }
+
+        private void writePrimitive(Object obj, DataStream ds) throws IllegalAccessException {
+            ds.writeVarLong(((long) id << 3) | wireType);
+            switch (type) {
+                case BOOLEAN:
+                    ds.writeVarLong(field.getBoolean(obj) ? 1 : 0);
+                    break;
+                case CHAR:
+                    ds.writeVarLong(field.getChar(obj));
+                    break;
+                case FLOAT:
+                    ds.writeInt(Float.floatToIntBits(field.getFloat(obj)));
+                    break;
+                case DOUBLE:
+                    ds.writeLong(Double.doubleToLongBits(field.getDouble(obj)));
+                    break;
+                default:
+                    ds.writeVarLong(zigZag(field.getLong(obj)));
+            }
+        }
+
+        private void read(Object obj, DataStream ds) throws IllegalAccessException {
+            switch (type) {
+                case BOOLEAN:
+                    boolean booleanValue = ds.readVarLong() != 0;
+                    if (primitive) {
+                        field.setBoolean(obj, booleanValue);
+                    } else {
+                        field.set(obj, booleanValue);
+                    }
+                    break;
+                case BYTE:
+                    byte byteValue = (byte) unZigZag(ds.readVarLong());
+                    if (primitive) {
+                        field.setByte(obj, byteValue);
+                    } else {
+                        field.set(obj, byteValue);
+                    }
+                    break;
+                case SHORT:
+                    short shortValue = (short) unZigZag(ds.readVarLong());
+                    if (primitive) {
+                        field.setShort(obj, shortValue);
+                    } else {
+                        field.set(obj, shortValue);
+                    }
+                    break;
+                case CHAR:
+                    char charValue = (char) ds.readVarLong();
+                    if (primitive) {
+                        field.setChar(obj, charValue);
+                    } else {
+                        field.set(obj, charValue);
+                    }
+                    break;
+                case INT:
+                    int intValue = (int) unZigZag(ds.readVarLong());
+                    if (primitive) {
+                        field.setInt(obj, intValue);
+                    } else {
+                        field.set(obj, intValue);
+                    }
+                    break;
+                case LONG:
+                    long longValue = unZigZag(ds.readVarLong());
+                    if (primitive) {
+                        field.setLong(obj, longValue);
+                    } else {
+                        field.set(obj, longValue);
+                    }
+                    break;
+                case FLOAT:
+                    float floatValue = Float.intBitsToFloat(ds.readInt());
+                    if (primitive) {
+                        field.setFloat(obj, floatValue);
+                    } else {
+                        field.set(obj, floatValue);
+                    }
+                    break;
+                case DOUBLE:
+                    double doubleValue = Double.longBitsToDouble(ds.readLong());
+                    if (primitive) {
+                        field.setDouble(obj, doubleValue);
+                    } else {
+                        field.set(obj, doubleValue);
+                    }
+                    break;
+                default:
+                    int length = (int) ds.readVarLong();
+                    field.set(obj, readLengthDelimited(ds, length));
+                    ds.position += length;
+            }
+        }
+
+        private Object readLengthDelimited(DataStream ds, int length) {
+            switch (type) {
+                case STRING:
+                    return new String(ds.buffer, ds.position, length, StandardCharsets.UTF_8);
+                case ENUM:
+                    String name = new String(ds.buffer, ds.position, length, StandardCharsets.UTF_8);
+                    for (Object constant : field.getType().getEnumConstants()) {
+                        if (((Enum) constant).name().equals(name)) {
+                            return constant;
+                        }
+                    }
+                    return null; //the constant was removed
+                case BYTES:
+                    return Arrays.copyOfRange(ds.buffer, ds.position, ds.position + length);
+                case OBJECT:
+                    return getNestedSerializer().readValue(ds.buffer, ds.position, length);
+                default:
+                    return SerializationUtils.bytesToObject(Arrays.copyOfRange(ds.buffer, ds.position, ds.position + length), field.getType(), genericParams);
+            }
+        }
+
+        private BinaryObjectSerializer getNestedSerializer() {
+            //Created lazily, so classes that contain a field of their own class don't recurse forever
+            if (nestedSerializer == null) {
+                nestedSerializer = new BinaryObjectSerializer<>(field.getType());
+            }
+            return nestedSerializer;
+        }
+    }
+
+}
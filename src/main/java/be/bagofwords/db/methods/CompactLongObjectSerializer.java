@@ -0,0 +1,69 @@
+package be.bagofwords.db.methods;
+
+import be.bagofwords.exec.RemoteClass;
+
+/**
+ * Stores longs in 1 to 9 bytes, which is a lot smaller than {@link LongObjectSerializer} for data interfaces with mostly
+ * small counts. Values from 0 to 246 are stored in a single byte. For other values the first byte is 247 + the number of
+ * bytes that follow, so the size of a value can be found from its first byte without decoding it. Negative values always
+ * take 9 bytes. Null is stored as the single byte 247, so unlike {@link LongObjectSerializer} there are no reserved values.
+ */
+
+@RemoteClass
+public class CompactLongObjectSerializer implements ObjectSerializer<Long> {
+
+    private static final int MAX_SINGLE_BYTE_VALUE = 246;
+    private static final int NULL_VALUE = 247;
+
+    @Override
+    public void writeValue(Long obj, DataStream ds) {
+        if (obj == null) {
+            ds.writeByte((byte) NULL_VALUE);
+            return;
+        }
+        long value = obj;
+        if (value >= 0 && value <= MAX_SINGLE_BYTE_VALUE) {
+            ds.writeByte((byte) value);
+        } else {
+            int numOfBytes = 8 - Long.numberOfLeadingZeros(value) / 8;
+            ds.writeByte((byte) (NULL_VALUE + numOfBytes));
+            for (int i = numOfBytes - 1; i >= 0; i--) {
+                ds.writeByte((byte) (value >>> (i * 8)));
+            }
+        }
+    }
+
+    @Override
+    public Long readValue(DataStream ds, int size) {
+        Long result = readValue(ds.buffer, ds.position, size);
+        ds.position += readObjectSize(ds.buffer, ds.position);
+        return result;
+    }
+
+    @Override
+    public Long readValue(byte[] buffer, int offset, int size) {
+        int firstByte = buffer[offset] & 255;
+        if (firstByte <= MAX_SINGLE_BYTE_VALUE) {
+            return (long) firstByte;
+        } else if (firstByte == NULL_VALUE) {
+            return null;
+        }
+        int end = offset + 1 + firstByte - NULL_VALUE;
+        long value = 0;
+        for (int position = offset + 1; position < end; position++) {
+            value = (value << 8) | (buffer[position] & 255);
+        }
+        return value;
+    }
+
+    @Override
+    public int readObjectSize(byte[] buffer, int offset) {
+        int firstByte = buffer[offset] & 255;
+        return firstByte <= NULL_VALUE ? 1 : 1 + firstByte - NULL_VALUE;
+    }
+
+    @Override
+    public int getObjectSize() {
+        return SELF_DELIMITED_SIZE;
+    }
+}
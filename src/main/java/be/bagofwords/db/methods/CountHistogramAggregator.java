@@ -0,0 +1,37 @@
+package be.bagofwords.db.methods;
+
+import be.bagofwords.exec.RemoteClass;
+
+/**
+ * Computes a histogram of the counts in a data interface. Position i of the result contains the number of keys with a
+ * count in [2^(i-1), 2^i), position 0 contains the number of keys with a count smaller than 1.
+ */
+@RemoteClass
+public class CountHistogramAggregator implements KeyValueAggregator<Long, long[]> {
+
+    @Override
+    public long[] createEmptyResult() {
+        return new long[64];
+    }
+
+    @Override
+    public long[] add(long[] result, long key, Long value) {
+        if (value != null) {
+            result[value < 1 ? 0 : 64 - Long.numberOfLeadingZeros(value)]++;
+        }
+        return result;
+    }
+
+    @Override
+    public long[] merge(long[] first, long[] second) {
+        for (int i = 0; i < first.length; i++) {
+            first[i] += second[i];
+        }
+        return first;
+    }
+
+    @Override
+    public Class<long[]> getResultClass() {
+        return long[].class;
+    }
+}
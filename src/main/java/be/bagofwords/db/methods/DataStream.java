@@ -36,7 +36,13 @@ public class DataStream {
     }
 
     public long readLong() {
-        long result = ((long) buffer[position] << 56) +
+        long result = decodeLong(buffer, position);
+        position += 8;
+        return result;
+    }
+
+    public static long decodeLong(byte[] buffer, int position) {
+        return ((long) buffer[position] << 56) +
                 ((long) (buffer[position + 1] & 255) << 48) +
                 ((long) (buffer[position + 2] & 255) << 40) +
                 ((long) (buffer[position + 3] & 255) << 32) +
@@ -44,8 +50,6 @@ public class DataStream {
                 (long) ((buffer[position + 5] & 255) << 16) +
                 (long) ((buffer[position + 6] & 255) << 8) +
                 (long) (buffer[position + 7] & 255);
-        position += 8;
-        return result;
     }
 
     public void writeLong(long value) {
@@ -87,10 +91,38 @@ public class DataStream {
     }
 
     public int readInt(int position) {
-        int result = (buffer[position] << 24) +
+        return decodeInt(buffer, position);
+    }
+
+    public static int decodeInt(byte[] buffer, int position) {
+        return (buffer[position] << 24) +
                 ((buffer[position + 1] & 255) << 16) +
                 ((buffer[position + 2] & 255) << 8) +
                 (buffer[position + 3] & 255);
+    }
+
+    /**
+     * Writes an unsigned variable length long, 7 bits per byte
+     */
+
+    public void writeVarLong(long value) {
+        ensureSize(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    public long readVarLong() {
+        long result = 0;
+        int shift = 0;
+        byte curr;
+        do {
+            curr = buffer[position++];
+            result |= (long) (curr & 0x7F) << shift;
+            shift += 7;
+        } while (curr < 0);
         return result;
     }
 
@@ -147,8 +179,13 @@ public class DataStream {
     }
 
     public String readString(int length) {
-        byte[] bytes = readBytes(length);
-        String value = new String(bytes, StandardCharsets.UTF_8);
+        String value = decodeString(buffer, position, length);
+        position += length;
+        return value;
+    }
+
+    public static String decodeString(byte[] buffer, int offset, int length) {
+        String value = new String(buffer, offset, length, StandardCharsets.UTF_8);
         if (value.equals(NULL_VALUE)) {
             value = null;
         }
@@ -1,28 +1,49 @@
 package be.bagofwords.db.methods;
 
+import static be.bagofwords.db.methods.ObjectSerializer.SELF_DELIMITED_SIZE;
+import static be.bagofwords.db.methods.ObjectSerializer.VARIABLE_SIZE;
+
 public class DataStreamUtils {
 
     public static <T> int writeValue(T value, DataStream ds, ObjectSerializer<T> objectSerializer) {
         int objectSize = objectSerializer.getObjectSize();
         int startOfObj = ds.position;
-        if (objectSize == -1) {
+        if (objectSize == VARIABLE_SIZE) {
             //Keep a space to write the length of the object
             ds.skip(4);
         }
         objectSerializer.writeValue(value, ds);
-        if (objectSize == -1) {
+        if (objectSize == VARIABLE_SIZE) {
             int actualSizeOfObject = ds.position - startOfObj - 4;
             ds.writeInt(actualSizeOfObject, startOfObj);
             objectSize = actualSizeOfObject + 4; //Need space for size also
+        } else if (objectSize == SELF_DELIMITED_SIZE) {
+            objectSize = ds.position - startOfObj;
         }
         return objectSize;
     }
 
+    /**
+     * Returns the size of the next object. For objects of variable size this reads the size that was written before the
+     * object, for self-delimited objects the position of the stream is not changed.
+     */
+
     public static <T> int getObjectSize(DataStream ds, ObjectSerializer<T> objectSerializer) {
         int objectSize = objectSerializer.getObjectSize();
-        if (objectSize == -1) {
+        if (objectSize == VARIABLE_SIZE) {
             objectSize = ds.readInt();
+        } else if (objectSize == SELF_DELIMITED_SIZE) {
+            objectSize = objectSerializer.readObjectSize(ds.buffer, ds.position);
         }
         return objectSize;
     }
+
+    /**
+     * Whether the size of the objects needs to be sent along with the objects when they are not written in a {@link DataStream}
+     * that can be inspected by {@link #getObjectSize(DataStream, ObjectSerializer)}.
+     */
+
+    public static boolean hasFixedSize(ObjectSerializer objectSerializer) {
+        return objectSerializer.getObjectSize() > 0;
+    }
 }
@@ -0,0 +1,48 @@
+package be.bagofwords.db.methods;
+
+import be.bagofwords.exec.RemoteClass;
+
+/**
+ * Stores doubles as their 8 byte IEEE 754 representation. Null is stored as a NaN with a payload that is never produced
+ * by arithmetic, so all other values, including the normal NaN and the infinities, can still be stored. Data interfaces
+ * store doubles as json unless they are created with .serializer(new DoubleObjectSerializer()).
+ */
+
+@RemoteClass
+public class DoubleObjectSerializer implements ObjectSerializer<Double> {
+
+    private final long NULL_VALUE = 0x7FF80000DEADBEEFl;
+
+    @Override
+    public void writeValue(Double obj, DataStream ds) {
+        long bits;
+        if (obj == null) {
+            bits = NULL_VALUE;
+        } else {
+            bits = Double.doubleToRawLongBits(obj);
+            if (bits == NULL_VALUE) {
+                throw new RuntimeException("Sorry, value " + obj + " with bits " + Long.toHexString(bits) + " is a reserved value");
+            }
+        }
+        ds.writeLong(bits);
+    }
+
+    @Override
+    public Double readValue(DataStream ds, int size) {
+        return toDouble(ds.readLong());
+    }
+
+    @Override
+    public Double readValue(byte[] buffer, int offset, int size) {
+        return toDouble(DataStream.decodeLong(buffer, offset));
+    }
+
+    private Double toDouble(long bits) {
+        return bits == NULL_VALUE ? null : Double.longBitsToDouble(bits);
+    }
+
+    @Override
+    public int getObjectSize() {
+        return 8;
+    }
+}
@@ -0,0 +1,219 @@
+package be.bagofwords.db.methods;
+
+import be.bagofwords.exec.RemoteClass;
+import be.bagofwords.exec.RemoteObjectConfig;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Serializes small records of which all fields are primitives (e.g. a pair of longs) in a fixed number of bytes. Since
+ * all values have the same size, no length needs to be stored for every value and files of these values are handled like
+ * files of longs. Values are written as a byte that marks null values, followed by the fields sorted by name. Adding,
+ * removing, renaming or changing the type of a field changes the format, so existing data can not be read anymore.
+ * Transient and static fields are not serialized. This serializer is never chosen automatically, use
+ * {@link #isFixedWidth(Class)} to check whether a class can be stored with it.
+ */
+
+@RemoteClass
+public class FixedWidthRecordSerializer<T> implements ObjectSerializer<T> {
+
+    private static final byte NULL_OBJECT = 0;
+    private static final byte NON_NULL_OBJECT = 1;
+
+    private final Class<T> _class;
+    private transient Constructor<T> constructor;
+    private transient Field[] fields;
+    private transient int objectSize;
+
+    public FixedWidthRecordSerializer(Class<T> _class) {
+        this._class = _class;
+        initialize();
+    }
+
+    /**
+     * @return true if all serialized fields of this class are primitives and the class has a constructor without arguments
+     */
+
+    public static boolean isFixedWidth(Class _class) {
+        if (_class.isPrimitive() || _class.isArray() || _class.isInterface() || Modifier.isAbstract(_class.getModifiers())) {
+            return false;
+        }
+        try {
+            _class.getDeclaredConstructor();
+        } catch (NoSuchMethodException exp) {
+            return false;
+        }
+        List<Field> fields = getSerializedFields(_class);
+        if (fields.isEmpty()) {
+            return false;
+        }
+        for (Field field : fields) {
+            if (!field.getType().isPrimitive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<Field> getSerializedFields(Class _class) {
+        List<Field> result = new ArrayList<>();
+        for (Class curr = _class; curr != null && curr != Object.class; curr = curr.getSuperclass()) {
+            for (Field field : curr.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic()) {
+                    result.add(field);
+                }
+            }
+        }
+        //The order of getDeclaredFields() is not specified, so we sort the fields to have the same format in every jvm
+        result.sort(Comparator.comparing((Field field) -> field.getName()).thenComparing(field -> field.getDeclaringClass().getName()));
+        return result;
+    }
+
+    private void initialize() {
+        try {
+            constructor = _class.getDeclaredConstructor();
+            constructor.setAccessible(true);
+        } catch (NoSuchMethodException exp) {
+            throw new RuntimeException("Class " + _class.getName() + " needs a constructor without arguments to be serialized by " + getClass().getSimpleName());
+        }
+        List<Field> serializedFields = getSerializedFields(_class);
+        objectSize = 1;
+        for (Field field : serializedFields) {
+            if (!field.getType().isPrimitive()) {
+                throw new RuntimeException("Field " + field.getName() + " of " + _class.getName() + " has type " + field.getType().getName() + ", only primitive fields can be serialized by " + getClass().getSimpleName());
+            }
+            field.setAccessible(true);
+            objectSize += getSize(field.getType());
+        }
+        fields = serializedFields.toArray(new Field[serializedFields.size()]);
+    }
+
+    private static int getSize(Class type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        } else if (type == int.class || type == float.class) {
+            return 4;
+        } else if (type == short.class || type == char.class) {
+            return 2;
+        } else {
+            return 1;
+        }
+    }
+
+    private void ensureInitialized() {
+        if (fields == null) {
+            //After java deserialization
+            initialize();
+        }
+    }
+
+    @Override
+    public void writeValue(T obj, DataStream ds) {
+        ensureInitialized();
+        if (obj == null) {
+            for (int i = 0; i < objectSize; i++) {
+                ds.writeByte(NULL_OBJECT);
+            }
+            return;
+        }
+        ds.writeByte(NON_NULL_OBJECT);
+        try {
+            for (Field field : fields) {
+                Class type = field.getType();
+                if (type == long.class) {
+                    ds.writeLong(field.getLong(obj));
+                } else if (type == double.class) {
+                    ds.writeLong(Double.doubleToRawLongBits(field.getDouble(obj)));
+                } else if (type == int.class) {
+                    ds.writeInt(field.getInt(obj));
+                } else if (type == float.class) {
+                    ds.writeInt(Float.floatToRawIntBits(field.getFloat(obj)));
+                } else if (type == short.class) {
+                    writeShort(field.getShort(obj), ds);
+                } else if (type == char.class) {
+                    writeShort((short) field.getChar(obj), ds);
+                } else if (type == byte.class) {
+                    ds.writeByte(field.getByte(obj));
+                } else {
+                    ds.writeBoolean(field.getBoolean(obj));
+                }
+            }
+        } catch (IllegalAccessException exp) {
+            throw new RuntimeException("Failed to serialize object of " + _class.getName(), exp);
+        }
+    }
+
+    private static void writeShort(short value, DataStream ds) {
+        ds.writeByte((byte) (value >>> 8));
+        ds.writeByte((byte) value);
+    }
+
+    @Override
+    public T readValue(DataStream ds, int size) {
+        T result = readValue(ds.buffer, ds.position, size, null);
+        ds.position += objectSize;
+        return result;
+    }
+
+    @Override
+    public T readValue(byte[] buffer, int offset, int size) {
+        return readValue(buffer, offset, size, null);
+    }
+
+    @Override
+    public T readValue(byte[] buffer, int offset, int size, T reuse) {
+        ensureInitialized();
+        if (buffer[offset] == NULL_OBJECT) {
+            return null;
+        }
+        int position = offset + 1;
+        try {
+            T result = reuse != null ? reuse : constructor.newInstance();
+            for (Field field : fields) {
+                Class type = field.getType();
+                if (type == long.class) {
+                    field.setLong(result, DataStream.decodeLong(buffer, position));
+                } else if (type == double.class) {
+                    field.setDouble(result, Double.longBitsToDouble(DataStream.decodeLong(buffer, position)));
+                } else if (type == int.class) {
+                    field.setInt(result, DataStream.decodeInt(buffer, position));
+                } else if (type == float.class) {
+                    field.setFloat(result, Float.intBitsToFloat(DataStream.decodeInt(buffer, position)));
+                } else if (type == short.class) {
+                    field.setShort(result, decodeShort(buffer, position));
+                } else if (type == char.class) {
+                    field.setChar(result, (char) decodeShort(buffer, position));
+                } else if (type == byte.class) {
+                    field.setByte(result, buffer[position]);
+                } else {
+                    field.setBoolean(result, buffer[position] == 1);
+                }
+                position += getSize(type);
+            }
+            return result;
+        } catch (ReflectiveOperationException exp) {
+            throw new RuntimeException("Failed to deserialize object of " + _class.getName(), exp);
+        }
+    }
+
+    private static short decodeShort(byte[] buffer, int position) {
+        return (short) ((buffer[position] << 8) + (buffer[position + 1] & 255));
+    }
+
+    @Override
+    public int getObjectSize() {
+        ensureInitialized();
+        return objectSize;
+    }
+
+    @Override
+    public void addRemoteClasses(RemoteObjectConfig objectConfig) {
+        objectConfig.add(_class);
+    }
+}
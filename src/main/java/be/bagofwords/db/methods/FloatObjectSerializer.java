@@ -0,0 +1,48 @@
+package be.bagofwords.db.methods;
+
+import be.bagofwords.exec.RemoteClass;
+
+/**
+ * Stores floats as their 4 byte IEEE 754 representation. Null is stored as a NaN with a payload that is never produced
+ * by arithmetic, so all other values, including the normal NaN and the infinities, can still be stored. Like
+ * {@link DoubleObjectSerializer} it is only used when it is passed explicitly.
+ */
+
+@RemoteClass
+public class FloatObjectSerializer implements ObjectSerializer<Float> {
+
+    private final int NULL_VALUE = 0x7FC0BEEF;
+
+    @Override
+    public void writeValue(Float obj, DataStream ds) {
+        int bits;
+        if (obj == null) {
+            bits = NULL_VALUE;
+        } else {
+            bits = Float.floatToRawIntBits(obj);
+            if (bits == NULL_VALUE) {
+                throw new RuntimeException("Sorry, value " + obj + " with bits " + Integer.toHexString(bits) + " is a reserved value");
+            }
+        }
+        ds.writeInt(bits);
+    }
+
+    @Override
+    public Float readValue(DataStream ds, int size) {
+        return toFloat(ds.readInt());
+    }
+
+    @Override
+    public Float readValue(byte[] buffer, int offset, int size) {
+        return toFloat(DataStream.decodeInt(buffer, offset));
+    }
+
+    private Float toFloat(int bits) {
+        return bits == NULL_VALUE ? null : Float.intBitsToFloat(bits);
+    }
+
+    @Override
+    public int getObjectSize() {
+        return 4;
+    }
+}
@@ -1,8 +1,11 @@
 package be.bagofwords.db.methods;
 
+import be.bagofwords.exec.RemoteClass;
+
 /**
  * Created by koen on 23/05/17.
  */
+@RemoteClass
 public class IntegerObjectSerializer implements ObjectSerializer<Integer> {
 
     @Override
@@ -15,6 +18,11 @@ public class IntegerObjectSerializer implements ObjectSerializer<Integer> {
         return ds.readInt();
     }
 
+    @Override
+    public Integer readValue(byte[] buffer, int offset, int size) {
+        return DataStream.decodeInt(buffer, offset);
+    }
+
     @Override
     public int getObjectSize() {
         return 4;
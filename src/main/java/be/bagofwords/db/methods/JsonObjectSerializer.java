@@ -4,6 +4,8 @@ import be.bagofwords.exec.RemoteClass;
 import be.bagofwords.exec.RemoteObjectConfig;
 import be.bagofwords.util.SerializationUtils;
 
+import java.util.Arrays;
+
 /**
  * Created by koen on 23/05/17.
  */
@@ -26,7 +28,15 @@ public class JsonObjectSerializer<T> implements ObjectSerializer<T> {
 
     @Override
     public T readValue(DataStream ds, int size) {
-        byte[] bytes = ds.readBytes(size);
+        T value = readValue(ds.buffer, ds.position, size);
+        ds.position += size;
+        return value;
+    }
+
+    @Override
+    public T readValue(byte[] buffer, int offset, int size) {
+        //SerializationUtils only decodes complete arrays, the bytes are only copied if the value doesn't fill the buffer
+        byte[] bytes = offset == 0 && size == buffer.length ? buffer : Arrays.copyOfRange(buffer, offset, offset + size);
         return SerializationUtils.bytesToObjectCheckForNull(bytes, _class, genericParams);
     }
 
@@ -36,11 +46,9 @@ public class JsonObjectSerializer<T> implements ObjectSerializer<T> {
     }
 
     @Override
-    public RemoteObjectConfig createExecConfig() {
-        RemoteObjectConfig config = RemoteObjectConfig.create(this).add(getClass());
+    public void addRemoteClasses(RemoteObjectConfig objectConfig) {
         for (Class genericParam : genericParams) {
-            config.add(genericParam);
+            objectConfig.add(genericParam);
         }
-        return config;
     }
 }
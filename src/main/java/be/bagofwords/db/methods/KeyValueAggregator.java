@@ -0,0 +1,38 @@
+package be.bagofwords.db.methods;
+
+import be.bagofwords.exec.RemoteObjectConfig;
+
+import java.io.Serializable;
+
+/**
+ * Aggregates all key-value pairs of a data interface into a single result, see {@link be.bagofwords.db.DataInterface#aggregate(KeyValueAggregator)}.
+ * Partial results can be computed in parallel (e.g. one for every bucket of a file data interface) and are then merged,
+ * so {@link #merge(Object, Object)} should not depend on the order of the values. For remote data interfaces the aggregator
+ * is executed on the server, only the final result is sent back to the client.
+ */
+public interface KeyValueAggregator<T, R> extends Serializable {
+
+    R createEmptyResult();
+
+    R add(R result, long key, T value);
+
+    R merge(R first, R second);
+
+    Class<R> getResultClass();
+
+    /**
+     * Data interfaces that know the largest count of a group of values (e.g. the values of a file) call this method before
+     * adding these values. If it returns true, the values are not added to the partial result.
+     *
+     * @param maxCount upper bound on the counts of the values, {@link Long#MAX_VALUE} if unknown
+     */
+
+    default boolean canSkipValues(R partialResult, long maxCount) {
+        return false;
+    }
+
+    default RemoteObjectConfig createExecConfig() {
+        return RemoteObjectConfig.create(this).add(getClass());
+    }
+
+}
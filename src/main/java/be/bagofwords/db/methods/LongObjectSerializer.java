@@ -29,6 +29,12 @@ public class LongObjectSerializer implements ObjectSerializer<Long> {
         return value;
     }
 
+    @Override
+    public Long readValue(byte[] buffer, int offset, int size) {
+        long value = DataStream.decodeLong(buffer, offset);
+        return value == NULL_VALUE ? null : value;
+    }
+
     @Override
     public int getObjectSize() {
         return 8;
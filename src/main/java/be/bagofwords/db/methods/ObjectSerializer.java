@@ -9,13 +9,64 @@ import java.io.Serializable;
  */
 public interface ObjectSerializer<T> extends Serializable {
 
+    /**
+     * Returned by {@link #getObjectSize()} if the size of the objects varies. The size of every object is stored in the 4 bytes
+     * before the object.
+     */
+
+    int VARIABLE_SIZE = -1;
+
+    /**
+     * Returned by {@link #getObjectSize()} if the size of the objects varies, but can be derived from the first bytes of
+     * the object with {@link #readObjectSize(byte[], int)}. No size is stored for these objects.
+     */
+
+    int SELF_DELIMITED_SIZE = -2;
+
     void writeValue(T obj, DataStream ds);
 
     T readValue(DataStream ds, int size);
 
+    /**
+     * Reads a value directly from a buffer. Serializers that can decode a value without creating a DataStream or copying
+     * its bytes override this method.
+     */
+
+    default T readValue(byte[] buffer, int offset, int size) {
+        return readValue(new DataStream(buffer, offset), size);
+    }
+
+    /**
+     * Reads a value and, if possible, stores it in the given object instead of creating a new object. Used by
+     * {@link be.bagofwords.db.DataInterface#cursor()}. The default implementation always creates a new object, only
+     * serializers of mutable values (e.g. {@link be.bagofwords.db.data.CountsArraySerializer}) override it.
+     *
+     * @param reuse the previous value read by the caller, can be null
+     */
+
+    default T readValue(byte[] buffer, int offset, int size, T reuse) {
+        return readValue(buffer, offset, size);
+    }
+
     int getObjectSize();
 
+    /**
+     * Reads the size of the object that starts at the given offset. Only needs to be implemented by serializers that return
+     * {@link #SELF_DELIMITED_SIZE} in {@link #getObjectSize()}.
+     */
+
+    default int readObjectSize(byte[] buffer, int offset) {
+        throw new RuntimeException("Serializer " + getClass().getSimpleName() + " can not read the size of an object");
+    }
+
+    default void addRemoteClasses(RemoteObjectConfig objectConfig) {
+        //Don't add any classes by default
+    }
+
     default RemoteObjectConfig createExecConfig() {
-        return RemoteObjectConfig.create(this).add(getClass());
+        RemoteObjectConfig result = RemoteObjectConfig.create(this);
+        result.add(getClass());
+        addRemoteClasses(result);
+        return result;
     }
 }
@@ -18,6 +18,11 @@ public class StringSerializer implements ObjectSerializer<String> {
         return ds.readString(size);
     }
 
+    @Override
+    public String readValue(byte[] buffer, int offset, int size) {
+        return DataStream.decodeString(buffer, offset, size);
+    }
+
     @Override
     public int getObjectSize() {
         return -1;
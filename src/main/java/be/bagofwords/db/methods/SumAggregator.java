@@ -0,0 +1,30 @@
+package be.bagofwords.db.methods;
+
+import be.bagofwords.exec.RemoteClass;
+
+/**
+ * Computes the sum of all counts in a data interface
+ */
+@RemoteClass
+public class SumAggregator implements KeyValueAggregator<Long, Long> {
+
+    @Override
+    public Long createEmptyResult() {
+        return 0l;
+    }
+
+    @Override
+    public Long add(Long result, long key, Long value) {
+        return value == null ? result : result + value;
+    }
+
+    @Override
+    public Long merge(Long first, Long second) {
+        return first + second;
+    }
+
+    @Override
+    public Class<Long> getResultClass() {
+        return Long.class;
+    }
+}
@@ -0,0 +1,117 @@
+package be.bagofwords.db.methods;
+
+import be.bagofwords.db.data.CountsArray;
+import be.bagofwords.exec.RemoteClass;
+import be.bagofwords.util.KeyValue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Collects the (at most) numOfKeys keys with the largest counts above a threshold, see
+ * {@link be.bagofwords.db.DataInterface#topK(int)} and {@link be.bagofwords.db.DataInterface#keysWithCountAbove(long)}.
+ * Partial results keep at most 2 * numOfKeys keys. Once a partial result contains numOfKeys keys, groups of values of
+ * which the largest count is smaller than the smallest of these counts are skipped.
+ */
+@RemoteClass
+public class TopCountsAggregator implements KeyValueAggregator<Long, CountsArray> {
+
+    private int numOfKeys;
+    private long threshold;
+
+    /**
+     * @param threshold only keys with a count strictly larger than the threshold are collected
+     */
+
+    public TopCountsAggregator(int numOfKeys, long threshold) {
+        if (numOfKeys < 0) {
+            throw new RuntimeException("Invalid number of keys " + numOfKeys);
+        }
+        this.numOfKeys = numOfKeys;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public CountsArray createEmptyResult() {
+        return new CountsArray();
+    }
+
+    @Override
+    public CountsArray add(CountsArray result, long key, Long value) {
+        if (value != null && value > threshold && numOfKeys > 0) {
+            result.addCount(key, value);
+            if (result.getUncompactedSize() >= 2L * numOfKeys) {
+                result = prune(result);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public CountsArray merge(CountsArray first, CountsArray second) {
+        return prune(CountsArray.merge(first, second));
+    }
+
+    @Override
+    public Class<CountsArray> getResultClass() {
+        return CountsArray.class;
+    }
+
+    @Override
+    public boolean canSkipValues(CountsArray partialResult, long maxCount) {
+        return maxCount <= threshold || (partialResult.size() >= numOfKeys && maxCount < smallestTopCount(partialResult));
+    }
+
+    /**
+     * Keeps the numOfKeys keys with the largest counts. Of keys with equal counts, the smallest keys are kept.
+     */
+
+    private CountsArray prune(CountsArray counts) {
+        if (counts.size() <= numOfKeys) {
+            return counts;
+        }
+        long smallestTopCount = smallestTopCount(counts);
+        int numOfLargerCounts = 0;
+        for (int i = 0; i < counts.size(); i++) {
+            if (counts.getCountAt(i) > smallestTopCount) {
+                numOfLargerCounts++;
+            }
+        }
+        int numOfEqualCountsToKeep = numOfKeys - numOfLargerCounts;
+        CountsArray result = new CountsArray(numOfKeys);
+        for (int i = 0; i < counts.size(); i++) {
+            long count = counts.getCountAt(i);
+            if (count > smallestTopCount) {
+                result.addCount(counts.getKeyAt(i), count);
+            } else if (count == smallestTopCount && numOfEqualCountsToKeep > 0) {
+                result.addCount(counts.getKeyAt(i), count);
+                numOfEqualCountsToKeep--;
+            }
+        }
+        return result;
+    }
+
+    private long smallestTopCount(CountsArray counts) {
+        if (counts.size() < numOfKeys || numOfKeys == 0) {
+            return Long.MIN_VALUE;
+        }
+        long[] sortedCounts = counts.getCounts();
+        Arrays.sort(sortedCounts);
+        return sortedCounts[sortedCounts.length - numOfKeys];
+    }
+
+    /**
+     * @return the (at most) numOfKeys keys and counts of the result, sorted by decreasing count
+     */
+
+    public static List<KeyValue<Long>> toSortedList(CountsArray counts, int numOfKeys) {
+        List<Long> sortedKeys = counts.getSortedKeys();
+        List<KeyValue<Long>> result = new ArrayList<>(Math.min(numOfKeys, sortedKeys.size()));
+        for (int i = 0; i < sortedKeys.size() && i < numOfKeys; i++) {
+            long key = sortedKeys.get(i);
+            result.add(new KeyValue<>(key, counts.getCount(key)));
+        }
+        return result;
+    }
+}
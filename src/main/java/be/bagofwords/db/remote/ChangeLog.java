@@ -0,0 +1,165 @@
+package be.bagofwords.db.remote;
+
+import be.bagofwords.db.impl.UpdateListener;
+import be.bagofwords.util.KeyValue;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps track of the keys that were changed in a data interface since they were last sent to a follower (see
+ * {@link ReplicationFollower}). Only the keys are recorded, the current values are read from the data interface when the
+ * changes are sent, so multiple updates of the same key are sent only once.
+ */
+
+class ChangeLog implements UpdateListener<Object> {
+
+    //A follower that falls this far behind receives a new snapshot instead of the changed keys
+    static final int MAX_CHANGED_KEYS = 1000000;
+
+    //Copied on write, so updates never wait for followers that subscribe or unsubscribe
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    public Subscription subscribe() {
+        Subscription subscription = new Subscription();
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    public void unsubscribe(Subscription subscription) {
+        subscriptions.remove(subscription);
+    }
+
+    @Override
+    public void dateUpdated(long key, Object value) {
+        for (Subscription subscription : subscriptions) {
+            subscription.keyChanged(key);
+        }
+    }
+
+    @Override
+    public void dateUpdated(List<KeyValue<Object>> values) {
+        for (Subscription subscription : subscriptions) {
+            subscription.keysChanged(values);
+        }
+    }
+
+    @Override
+    public void dataFlushed() {
+        //OK
+    }
+
+    @Override
+    public void dataDropped() {
+        for (Subscription subscription : subscriptions) {
+            subscription.dataDropped();
+        }
+    }
+
+    public static class Subscription {
+
+        private final Lock lock = new ReentrantLock();
+        private final Condition changesAvailable = lock.newCondition();
+        private Set<Long> changedKeys = new HashSet<>();
+        private boolean dataWasDropped;
+        private boolean tooManyChanges;
+
+        private void keyChanged(long key) {
+            lock.lock();
+            try {
+                addChangedKey(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void keysChanged(List<KeyValue<Object>> values) {
+            lock.lock();
+            try {
+                for (KeyValue<Object> value : values) {
+                    addChangedKey(value.getKey());
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void addChangedKey(long key) {
+            if (tooManyChanges) {
+                return;
+            }
+            if (changedKeys.size() >= MAX_CHANGED_KEYS) {
+                tooManyChanges = true;
+                changedKeys = new HashSet<>();
+                changesAvailable.signalAll();
+            } else if (changedKeys.add(key) && changedKeys.size() == 1) {
+                changesAvailable.signalAll();
+            }
+        }
+
+        private void dataDropped() {
+            lock.lock();
+            try {
+                changedKeys = new HashSet<>();
+                dataWasDropped = true;
+                changesAvailable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Waits (at most maxWait ms) until changes are available and removes them from this subscription.
+         */
+
+        public Changes takeChanges(long maxWait) throws InterruptedException {
+            lock.lock();
+            try {
+                long nanosLeft = TimeUnit.MILLISECONDS.toNanos(maxWait);
+                while (!dataWasDropped && !tooManyChanges && changedKeys.isEmpty() && nanosLeft > 0) {
+                    nanosLeft = changesAvailable.awaitNanos(nanosLeft);
+                }
+                if (tooManyChanges) {
+                    tooManyChanges = false;
+                    dataWasDropped = false;
+                    return new Changes(false, true, new long[0]);
+                }
+                long[] keys = new long[changedKeys.size()];
+                int ind = 0;
+                for (Long key : changedKeys) {
+                    keys[ind++] = key;
+                }
+                Arrays.sort(keys);
+                Changes changes = new Changes(dataWasDropped, false, keys);
+                changedKeys = new HashSet<>();
+                dataWasDropped = false;
+                return changes;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    public static class Changes {
+
+        public final boolean dataWasDropped;
+        //More than MAX_CHANGED_KEYS keys were changed, the changed keys were not kept
+        public final boolean tooManyChanges;
+        public final long[] changedKeys;
+
+        private Changes(boolean dataWasDropped, boolean tooManyChanges, long[] changedKeys) {
+            this.dataWasDropped = dataWasDropped;
+            this.tooManyChanges = tooManyChanges;
+            this.changedKeys = changedKeys;
+        }
+
+        public boolean isEmpty() {
+            return !dataWasDropped && !tooManyChanges && changedKeys.length == 0;
+        }
+    }
+
+}
@@ -2,13 +2,14 @@ package be.bagofwords.db.remote;
 
 import be.bagofwords.db.combinator.Combinator;
 import be.bagofwords.db.methods.ObjectSerializer;
-import be.bagofwords.exec.RemoteObjectConfig;
-import be.bagofwords.exec.RemoteObjectUtil;
+import be.bagofwords.exec.PackedRemoteObject;
 import be.bagofwords.util.SocketConnection;
 
 import java.io.IOException;
 
 import static be.bagofwords.db.remote.Protocol.LONG_ERROR;
+import static be.bagofwords.db.remote.Protocol.LONG_OK;
+import static be.bagofwords.db.remote.Protocol.LONG_OK_WITH_KEY_ENCODING;
 
 /**
  * Created by koen on 21/05/17.
@@ -18,6 +19,7 @@ public class Connection extends SocketConnection {
     private RemoteDataInterface remoteDataInterface;
     private boolean isTaken;
     private long lastUsage;
+    private KeyEncoding keyEncoding;
 
     public Connection(RemoteDataInterface remoteDataInterface, String host, int port, boolean useLargeOutputBuffer, boolean useLargeInputBuffer, RemoteDataInterfaceServer.ConnectionType connectionType) throws IOException {
         super(host, port, false, false);
@@ -33,23 +35,48 @@ public class Connection extends SocketConnection {
     }
 
     private void initializeSubset(RemoteDataInterfaceServer.ConnectionType connectionType) throws IOException {
-        writeString(RemoteDataInterfaceServer.NAME);
-        writeByte((byte) connectionType.ordinal());
-        writeString(remoteDataInterface.getName());
-        writeBoolean(remoteDataInterface.isTemporaryDataInterface());
-        writeString(remoteDataInterface.getObjectClass().getCanonicalName());
         Combinator combinator = remoteDataInterface.getCombinator();
-        RemoteObjectConfig execConfig = combinator.createExecConfig();
-        writeValue(execConfig.pack());
         ObjectSerializer objectSerializer = remoteDataInterface.getObjectSerializer();
-        execConfig = objectSerializer.createExecConfig();
-        writeValue(execConfig.pack());
-        flush();
-        long response = readLong();
+        keyEncoding = writeHandshake(this, connectionType, remoteDataInterface.getName(), remoteDataInterface.isTemporaryDataInterface(),
+                remoteDataInterface.getObjectClass().getCanonicalName(), combinator.createExecConfig().pack(), objectSerializer.createExecConfig().pack());
+    }
+
+    /**
+     * Opens a data interface on the server
+     *
+     * @return the key encoding that was chosen by the server
+     */
+
+    static KeyEncoding writeHandshake(SocketConnection connection, RemoteDataInterfaceServer.ConnectionType connectionType, String interfaceName, boolean isTemporary, String className, PackedRemoteObject packedCombinator, PackedRemoteObject packedSerializer) throws IOException {
+        connection.writeString(RemoteDataInterfaceServer.NAME);
+        //Old servers ignore the key encoding in the upper bits and answer with LONG_OK
+        connection.writeByte((byte) (connectionType.ordinal() | KeyEncoding.DELTA_VARINT.ordinal() << 4));
+        connection.writeString(interfaceName);
+        connection.writeBoolean(isTemporary);
+        connection.writeString(className);
+        connection.writeValue(packedCombinator);
+        connection.writeValue(packedSerializer);
+        connection.flush();
+        long response = connection.readLong();
         if (response == LONG_ERROR) {
-            String errorMessage = readString();
+            String errorMessage = connection.readString();
             throw new RuntimeException("Received unexpected message while initializing interface " + errorMessage);
         }
+        if (response == LONG_OK) {
+            return KeyEncoding.RAW_LONGS;
+        } else if (response == LONG_OK_WITH_KEY_ENCODING) {
+            int keyEncoding = connection.readByte();
+            if (keyEncoding < 0 || keyEncoding >= KeyEncoding.values().length) {
+                throw new RuntimeException("Server chose unknown key encoding " + keyEncoding);
+            }
+            return KeyEncoding.values()[keyEncoding];
+        } else {
+            throw new RuntimeException("Received unexpected response " + response + " while initializing interface " + interfaceName);
+        }
+    }
+
+    public KeyEncoding getKeyEncoding() {
+        return keyEncoding;
     }
 
     public boolean isTaken() {
@@ -0,0 +1,65 @@
+package be.bagofwords.db.remote;
+
+import be.bagofwords.util.HashUtils;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Maps keys to shards with consistent hashing. Every shard is placed on the ring at a number of virtual positions, derived
+ * from the name of the shard, so adding or removing a server only moves the keys of the neighbouring ring segments.
+ */
+
+class ConsistentHashRing {
+
+    private static final int VIRTUAL_NODES_PER_SHARD = 128;
+
+    private final long[] positions;
+    private final int[] shards;
+
+    public ConsistentHashRing(List<String> shardNames) {
+        if (shardNames.isEmpty()) {
+            throw new IllegalArgumentException("Need at least one shard");
+        }
+        int numOfPositions = shardNames.size() * VIRTUAL_NODES_PER_SHARD;
+        long[][] ring = new long[numOfPositions][];
+        for (int shard = 0; shard < shardNames.size(); shard++) {
+            for (int i = 0; i < VIRTUAL_NODES_PER_SHARD; i++) {
+                long position = mix(HashUtils.hashCode(shardNames.get(shard) + "#" + i));
+                ring[shard * VIRTUAL_NODES_PER_SHARD + i] = new long[]{position, shard};
+            }
+        }
+        Arrays.sort(ring, (p1, p2) -> Long.compare(p1[0], p2[0]));
+        this.positions = new long[numOfPositions];
+        this.shards = new int[numOfPositions];
+        for (int i = 0; i < numOfPositions; i++) {
+            positions[i] = ring[i][0];
+            shards[i] = (int) ring[i][1];
+        }
+    }
+
+    public int getShard(long key) {
+        int ind = Arrays.binarySearch(positions, mix(key));
+        if (ind < 0) {
+            ind = -(ind + 1);
+        }
+        if (ind == positions.length) {
+            ind = 0;
+        }
+        return shards[ind];
+    }
+
+    /**
+     * Keys are usually hashes already, but small or sequential keys (ids, counters) should still be spread over the ring
+     */
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+}
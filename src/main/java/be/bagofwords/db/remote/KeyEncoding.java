@@ -0,0 +1,19 @@
+package be.bagofwords.db.remote;
+
+/**
+ * Format of the blocks of keys that are sent by the server while iterating over a remote data interface. The encoding is
+ * negotiated when a connection is created: the client sends the most recent encoding it understands in the upper bits of the
+ * connection type, the server replies with {@link Protocol#LONG_OK_WITH_KEY_ENCODING} and the encoding that it will use.
+ * Connections of clients or servers that don't know about key encodings use {@link #RAW_LONGS}.
+ */
+
+public enum KeyEncoding {
+    /**
+     * Every key is written as 8 bytes
+     */
+    RAW_LONGS,
+    /**
+     * Every key is written as a zig-zag encoded varint of the difference with the previous key
+     */
+    DELTA_VARINT
+}
@@ -7,27 +7,36 @@ import be.bagofwords.iterator.CloseableIterator;
 import be.bagofwords.util.KeyValue;
 import org.xerial.snappy.Snappy;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-
 import static be.bagofwords.db.remote.Protocol.LONG_END;
 import static be.bagofwords.db.remote.Protocol.LONG_ERROR;
 
 /**
  * Created by koen on 21/05/17.
+ * <p>
+ * Values are decoded one at a time from the uncompressed batch. If reuseKeyValue is true, the same KeyValue object is
+ * returned on every call to next() (see {@link be.bagofwords.db.DataInterface#cursor()}).
  */
 public class KeyValueSocketIterator<T> extends CloseableIterator<KeyValue<T>> {
 
     private RemoteDataInterface<T> remoteDataInterface;
     private final Connection connection;
-    private Iterator<KeyValue<T>> nextValues;
+    private final boolean reuseKeyValue;
+    private final KeyValue<T> current;
+    private long[] keys;
+    private DataStream values;
+    private int ind;
     private boolean readAllValuesFromConnection;
     private final ObjectSerializer<T> objectSerializer;
 
     public KeyValueSocketIterator(RemoteDataInterface<T> remoteDataInterface, Connection connection) {
+        this(remoteDataInterface, connection, false);
+    }
+
+    public KeyValueSocketIterator(RemoteDataInterface<T> remoteDataInterface, Connection connection, boolean reuseKeyValue) {
         this.remoteDataInterface = remoteDataInterface;
         this.connection = connection;
+        this.reuseKeyValue = reuseKeyValue;
+        this.current = reuseKeyValue ? new KeyValue<>() : null;
         this.readAllValuesFromConnection = false;
         this.objectSerializer = remoteDataInterface.getObjectSerializer();
         //Constructor
@@ -39,25 +48,16 @@ public class KeyValueSocketIterator<T> extends CloseableIterator<KeyValue<T>> {
             try {
                 long numOfValues = connection.readLong();
                 if (numOfValues == LONG_END) {
-                    nextValues = null;
+                    keys = null;
                     readAllValuesFromConnection = true;
                 } else if (numOfValues != LONG_ERROR) {
-                    byte[] keys = connection.readByteArray();
+                    keys = RemoteBatchUtils.readKeys(numOfValues, connection.getKeyEncoding(), connection);
                     byte[] compressedValues = connection.readByteArray();
-                    byte[] uncompressedValues = Snappy.uncompress(compressedValues);
-                    DataStream keyIS = new DataStream(keys);
-                    DataStream valueIS = new DataStream(uncompressedValues);
-                    List<KeyValue<T>> nextValuesList = new ArrayList<>();
-                    while (nextValuesList.size() < numOfValues) {
-                        long key = keyIS.readLong();
-                        int objectSize = DataStreamUtils.getObjectSize(valueIS, objectSerializer);
-                        T value = objectSerializer.readValue(valueIS, objectSize);
-                        nextValuesList.add(new KeyValue<>(key, value));
-                    }
-                    if (nextValuesList.isEmpty()) {
+                    values = new DataStream(Snappy.uncompress(compressedValues));
+                    ind = 0;
+                    if (keys.length == 0) {
                         throw new RuntimeException("Received zero values! numOfValues=" + numOfValues);
                     }
-                    nextValues = nextValuesList.iterator();
                 } else {
                     throw new RuntimeException("Unexpected response " + connection.readString());
 
@@ -67,7 +67,7 @@ public class KeyValueSocketIterator<T> extends CloseableIterator<KeyValue<T>> {
                 throw new RuntimeException(e);
             }
         } else {
-            nextValues = null;
+            keys = null;
         }
     }
 
@@ -83,13 +83,23 @@ public class KeyValueSocketIterator<T> extends CloseableIterator<KeyValue<T>> {
 
     @Override
     public boolean hasNext() {
-        return nextValues != null;
+        return keys != null;
     }
 
     @Override
     public KeyValue<T> next() {
-        KeyValue<T> result = nextValues.next();
-        if (!nextValues.hasNext()) {
+        long key = keys[ind++];
+        int objectSize = DataStreamUtils.getObjectSize(values, objectSerializer);
+        KeyValue<T> result;
+        if (reuseKeyValue) {
+            current.setKey(key);
+            current.setValue(objectSerializer.readValue(values.buffer, values.position, objectSize, current.getValue()));
+            result = current;
+        } else {
+            result = new KeyValue<>(key, objectSerializer.readValue(values.buffer, values.position, objectSize));
+        }
+        values.position += objectSize;
+        if (ind == keys.length) {
             findNextValues();
         }
         return result;
@@ -0,0 +1,109 @@
+package be.bagofwords.db.remote;
+
+import be.bagofwords.util.SafeThread;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sends requests over a single connection without waiting for the responses of earlier requests. The server answers the
+ * requests of a connection in order, so a single reader thread can match every response with the oldest pending request.
+ * Futures are completed on the reader thread, callbacks attached to them should not block.
+ */
+
+class PipelinedConnection extends SafeThread {
+
+    private final Connection connection;
+    private final BlockingQueue<PendingRequest> pendingRequests;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile boolean failed;
+
+    public PipelinedConnection(String name, Connection connection) {
+        super("pipelined_connection_" + name, true);
+        this.connection = connection;
+        this.pendingRequests = new LinkedBlockingQueue<>();
+    }
+
+    public <R> CompletableFuture<R> submit(RequestWriter requestWriter, ResponseReader<R> responseReader) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        writeLock.lock();
+        try {
+            if (failed) {
+                future.completeExceptionally(new IOException("Pipelined connection was closed"));
+                return future;
+            }
+            pendingRequests.add(new PendingRequest<>(responseReader, future));
+            try {
+                requestWriter.write(connection);
+                connection.flush();
+            } catch (Exception exp) {
+                fail(exp);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return future;
+    }
+
+    @Override
+    protected void runImpl() throws Exception {
+        while (!isTerminateRequested() && !failed) {
+            PendingRequest pendingRequest = pendingRequests.poll(100, TimeUnit.MILLISECONDS);
+            if (pendingRequest != null) {
+                try {
+                    pendingRequest.future.complete(pendingRequest.responseReader.read(connection));
+                } catch (Exception exp) {
+                    pendingRequest.future.completeExceptionally(exp);
+                    fail(exp);
+                }
+            }
+        }
+    }
+
+    private void fail(Exception exp) {
+        failed = true;
+        IOUtils.closeQuietly(connection);
+        PendingRequest pendingRequest;
+        while ((pendingRequest = pendingRequests.poll()) != null) {
+            pendingRequest.future.completeExceptionally(exp);
+        }
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    public void close() {
+        terminate();
+        writeLock.lock();
+        try {
+            fail(new IOException("Pipelined connection was closed"));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    interface RequestWriter {
+        void write(Connection connection) throws IOException;
+    }
+
+    interface ResponseReader<R> {
+        R read(Connection connection) throws IOException;
+    }
+
+    private static class PendingRequest<R> {
+        private final ResponseReader<R> responseReader;
+        private final CompletableFuture<R> future;
+
+        private PendingRequest(ResponseReader<R> responseReader, CompletableFuture<R> future) {
+            this.responseReader = responseReader;
+            this.future = future;
+        }
+    }
+
+}
@@ -7,4 +7,8 @@ public class Protocol {
     public static final long LONG_OK = Long.MAX_VALUE - 1;
     public static final long LONG_ERROR = Long.MAX_VALUE - 2;
     public static final long LONG_END = Long.MAX_VALUE - 3;
+    public static final long LONG_KEYS_DELETED = Long.MAX_VALUE - 4;
+    public static final long LONG_DATA_DROPPED = Long.MAX_VALUE - 5;
+    public static final long LONG_HEARTBEAT = Long.MAX_VALUE - 6;
+    public static final long LONG_OK_WITH_KEY_ENCODING = Long.MAX_VALUE - 7;
 }
@@ -0,0 +1,110 @@
+package be.bagofwords.db.remote;
+
+import be.bagofwords.db.methods.DataStream;
+import be.bagofwords.db.methods.DataStreamUtils;
+import be.bagofwords.db.methods.ObjectSerializer;
+import be.bagofwords.util.KeyValue;
+import be.bagofwords.util.SocketConnection;
+import org.xerial.snappy.Snappy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Methods to send and receive batches of key-value pairs. The keys of a batch are written in a separate block (see
+ * {@link KeyEncoding}), the values are written in a block that is compressed with snappy.
+ */
+
+public class RemoteBatchUtils {
+
+    public static final long BATCH_SIZE_PRIMITIVE = 100000;
+    public static final long BATCH_SIZE_NON_PRIMITIVE = 100;
+
+    public static long getBatchSize(ObjectSerializer objectSerializer) {
+        int widthOfObject = objectSerializer.getObjectSize();
+        return widthOfObject != ObjectSerializer.VARIABLE_SIZE && widthOfObject < 16 ? BATCH_SIZE_PRIMITIVE : BATCH_SIZE_NON_PRIMITIVE;
+    }
+
+    public static <T> void writeBatch(List<KeyValue<T>> batch, SocketConnection connection, ObjectSerializer<T> objectSerializer) throws IOException {
+        List<Long> keys = new ArrayList<>(batch.size());
+        List<T> values = new ArrayList<>(batch.size());
+        for (KeyValue<T> keyValue : batch) {
+            keys.add(keyValue.getKey());
+            values.add(keyValue.getValue());
+        }
+        connection.writeLong(batch.size());
+        writeKeys(keys, KeyEncoding.DELTA_VARINT, connection);
+        writeValues(values, connection, objectSerializer);
+    }
+
+    public static void writeKeys(List<Long> keys, KeyEncoding keyEncoding, SocketConnection connection) throws IOException {
+        DataStream ds;
+        if (keyEncoding == KeyEncoding.DELTA_VARINT) {
+            ds = new DataStream(new byte[keys.size() * 2 + 16]);
+            long prevKey = 0;
+            for (Long key : keys) {
+                ds.writeVarLong(zigZagEncode(key - prevKey));
+                prevKey = key;
+            }
+        } else {
+            ds = new DataStream(new byte[keys.size() * 8]);
+            for (Long key : keys) {
+                ds.writeLong(key);
+            }
+        }
+        connection.writeByteArray(ds.buffer, ds.position);
+    }
+
+    public static long[] readKeys(long numOfKeys, KeyEncoding keyEncoding, SocketConnection connection) throws IOException {
+        DataStream ds = new DataStream(connection.readByteArray());
+        long[] keys = new long[(int) numOfKeys];
+        long key = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keyEncoding == KeyEncoding.DELTA_VARINT) {
+                key += zigZagDecode(ds.readVarLong());
+            } else {
+                key = ds.readLong();
+            }
+            keys[i] = key;
+        }
+        return keys;
+    }
+
+    public static <T> void writeValues(List<T> values, SocketConnection connection, ObjectSerializer<T> objectSerializer) throws IOException {
+        DataStream ds = new DataStream();
+        for (T value : values) {
+            DataStreamUtils.writeValue(value, ds, objectSerializer);
+        }
+        connection.writeByteArray(Snappy.compress(ds.getNonEmptyBytes()));
+    }
+
+    /**
+     * Reads the remainder of a batch, after the number of values in the batch was read
+     */
+
+    public static <T> List<KeyValue<T>> readBatch(long numOfValues, SocketConnection connection, ObjectSerializer<T> objectSerializer) throws IOException {
+        return readBatch(numOfValues, KeyEncoding.DELTA_VARINT, connection, objectSerializer);
+    }
+
+    public static <T> List<KeyValue<T>> readBatch(long numOfValues, KeyEncoding keyEncoding, SocketConnection connection, ObjectSerializer<T> objectSerializer) throws IOException {
+        long[] keys = readKeys(numOfValues, keyEncoding, connection);
+        DataStream values = new DataStream(Snappy.uncompress(connection.readByteArray()));
+        List<KeyValue<T>> result = new ArrayList<>(keys.length);
+        for (long key : keys) {
+            int objectSize = DataStreamUtils.getObjectSize(values, objectSerializer);
+            T value = objectSerializer.readValue(values, objectSize);
+            result.add(new KeyValue<>(key, value));
+        }
+        return result;
+    }
+
+    public static long zigZagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long zigZagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+}
@@ -6,11 +6,14 @@ import be.bagofwords.db.impl.BaseDataInterface;
 import be.bagofwords.db.impl.UpdateListener;
 import be.bagofwords.db.impl.UpdateListenerCollection;
 import be.bagofwords.db.methods.DataStream;
+import be.bagofwords.db.methods.DataStreamUtils;
 import be.bagofwords.db.methods.KeyFilter;
+import be.bagofwords.db.methods.KeyValueAggregator;
 import be.bagofwords.db.methods.ObjectSerializer;
 import be.bagofwords.db.remote.RemoteDataInterfaceServer.Action;
 import be.bagofwords.exec.RemoteObjectConfig;
 import be.bagofwords.iterator.CloseableIterator;
+import be.bagofwords.iterator.IterableUtils;
 import be.bagofwords.jobs.AsyncJobService;
 import be.bagofwords.logging.Log;
 import be.bagofwords.util.ExecutorServiceFactory;
@@ -20,7 +23,9 @@ import org.apache.commons.io.IOUtils;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -38,8 +43,22 @@ public class RemoteDataInterface<T> extends BaseDataInterface<T> {
     private final List<Connection> largeReadBufferConnections;
     private final ExecutorService executorService;
     private final UpdateListenerCollection<T> updateListenerCollection;
+    private final RemoteWriteBuffer<T> writeBuffer;
+    private final ReentrantLock sendWriteBufferLock = new ReentrantLock();
+    private final ReentrantLock pipelinedConnectionLock = new ReentrantLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private PipelinedConnection pipelinedConnection;
 
     public RemoteDataInterface(String name, Class<T> objectClass, Combinator<T> combinator, ObjectSerializer<T> objectSerializer, String host, int port, boolean isTemporaryDataInterface, AsyncJobService asyncJobService) {
+        this(name, objectClass, combinator, objectSerializer, host, port, isTemporaryDataInterface, asyncJobService, 0, 0);
+    }
+
+    /**
+     * @param writeBufferSize     if larger then 0, writes are combined in a buffer on the client and sent to the server once the buffer contains this many keys
+     * @param writeBufferMaxDelay maximum time (in ms) that writes are kept in the write buffer before they are sent to the server
+     */
+
+    public RemoteDataInterface(String name, Class<T> objectClass, Combinator<T> combinator, ObjectSerializer<T> objectSerializer, String host, int port, boolean isTemporaryDataInterface, AsyncJobService asyncJobService, int writeBufferSize, long writeBufferMaxDelay) {
         super(name, objectClass, combinator, objectSerializer, isTemporaryDataInterface);
         this.host = host;
         this.port = port;
@@ -49,6 +68,12 @@ public class RemoteDataInterface<T> extends BaseDataInterface<T> {
         executorService = ExecutorServiceFactory.createExecutorService("remote_data_interface");
         asyncJobService.schedulePeriodicJob(() -> ifNotClosed(this::removeUnusedConnections), 1000);
         updateListenerCollection = new UpdateListenerCollection<>();
+        if (writeBufferSize > 0) {
+            writeBuffer = new RemoteWriteBuffer<>(combinator, writeBufferSize);
+            asyncJobService.schedulePeriodicJob(() -> ifNotClosed(this::sendWriteBuffer), writeBufferMaxDelay);
+        } else {
+            writeBuffer = null;
+        }
     }
 
     private Connection selectSmallBufferConnection() throws IOException {
@@ -103,6 +128,7 @@ public class RemoteDataInterface<T> extends BaseDataInterface<T> {
 
     @Override
     public T read(long key) {
+        sendWriteBuffer(key);
         Connection connection = null;
         try {
             connection = selectSmallBufferConnection();
@@ -120,7 +146,7 @@ public class RemoteDataInterface<T> extends BaseDataInterface<T> {
 
     private T readValue(Connection connection) throws IOException {
         int size = objectSerializer.getObjectSize();
-        if (size == -1) {
+        if (!DataStreamUtils.hasFixedSize(objectSerializer)) {
             size = connection.readInt();
         }
         byte[] bytes = connection.readByteArray(size);
@@ -128,8 +154,81 @@ public class RemoteDataInterface<T> extends BaseDataInterface<T> {
         return objectSerializer.readValue(ds, size);
     }
 
+    @Override
+    public CompletableFuture<T> readAsync(long key) {
+        sendWriteBuffer(key);
+        return submitPipelined(connection -> {
+            doAction(Action.READ_VALUE, connection);
+            connection.writeLong(key);
+        }, this::readValue);
+    }
+
+    /**
+     * All reads are sent before the first response is read, so only a single round trip is needed for all keys
+     */
+
+    @Override
+    public CompletableFuture<List<KeyValue<T>>> readManyAsync(List<Long> keys) {
+        List<CompletableFuture<T>> values = new ArrayList<>(keys.size());
+        for (Long key : keys) {
+            values.add(readAsync(key));
+        }
+        return CompletableFuture.allOf(values.toArray(new CompletableFuture[values.size()])).thenApply(ignored -> {
+            List<KeyValue<T>> result = new ArrayList<>();
+            for (int i = 0; i < keys.size(); i++) {
+                T value = values.get(i).join();
+                if (value != null) {
+                    result.add(new KeyValue<>(keys.get(i), value));
+                }
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> writeAsync(long key, T value) {
+        if (writeBuffer != null) {
+            write(key, value);
+            return CompletableFuture.completedFuture(null);
+        }
+        return submitPipelined(connection -> {
+            doAction(Action.WRITE_VALUE, connection);
+            connection.writeLong(key);
+            writeValue(value, connection);
+        }, connection -> {
+            long response = connection.readLong();
+            if (response != LONG_OK) {
+                throw new IOException("Unexpected error while writing value " + connection.readString());
+            }
+            updateListenerCollection.dateUpdated(key, value);
+            return null;
+        });
+    }
+
+    private <R> CompletableFuture<R> submitPipelined(PipelinedConnection.RequestWriter requestWriter, PipelinedConnection.ResponseReader<R> responseReader) {
+        PipelinedConnection currentConnection;
+        pipelinedConnectionLock.lock();
+        try {
+            if (pipelinedConnection == null || pipelinedConnection.isFailed()) {
+                try {
+                    pipelinedConnection = new PipelinedConnection(getName(), new Connection(this, host, port, false, false, RemoteDataInterfaceServer.ConnectionType.CONNECT_TO_INTERFACE));
+                    pipelinedConnection.start();
+                } catch (IOException exp) {
+                    CompletableFuture<R> result = new CompletableFuture<>();
+                    result.completeExceptionally(exp);
+                    return result;
+                }
+            }
+            currentConnection = pipelinedConnection;
+        } finally {
+            pipelinedConnectionLock.unlock();
+        }
+        return currentConnection.submit(requestWriter, responseReader);
+    }
+
     @Override
     public boolean mightContain(long key) {
+        sendWriteBuffer(key);
         Connection connection = null;
         try {
             connection = selectSmallBufferConnection();
@@ -147,16 +246,24 @@ public class RemoteDataInterface<T> extends BaseDataInterface<T> {
 
     @Override
     public long apprSize() {
+        sendWriteBuffer();
         return readLong(Action.APPROXIMATE_SIZE);
     }
 
     @Override
     public long exactSize() {
+        sendWriteBuffer();
         return readLong(Action.EXACT_SIZE);
     }
 
     @Override
     public void write(long key, T value) {
+        if (writeBuffer != null) {
+            if (writeBuffer.add(key, value)) {
+                sendWriteBuffer();
+            }
+            return;
+        }
         Connection connection = null;
         try {
             connection = selectSmallBufferConnection();
@@ -180,15 +287,57 @@ public class RemoteDataInterface<T> extends BaseDataInterface<T> {
 
     @Override
     public void write(CloseableIterator<KeyValue<T>> entries) {
+        //Values in the write buffer were written earlier and should reach the server first
+        sendWriteBuffer();
+        writeValues(entries, true);
+    }
+
+    private void sendWriteBuffer(long key) {
+        //If another thread is sending the buffer, the value of this key might be on its way to the server
+        if (writeBuffer != null && (writeBuffer.contains(key) || sendWriteBufferLock.isLocked())) {
+            sendWriteBuffer();
+        }
+    }
+
+    private void sendWriteBuffer() {
+        if (writeBuffer != null) {
+            //Only one thread sends the buffer at the same time, otherwise the values of two batches could be written in the wrong
+            //order. Also makes callers wait until values that were drained by another thread have reached the server.
+            sendWriteBufferLock.lock();
+            try {
+                List<KeyValue<T>> values = writeBuffer.drain();
+                if (!values.isEmpty()) {
+                    try {
+                        writeValues(IterableUtils.iterator(values), false);
+                    } catch (RuntimeException exp) {
+                        //Sent again with the next batch. Values of batches that did reach the server before the failure are written twice.
+                        writeBuffer.restore(values);
+                        throw exp;
+                    }
+                    updateListenerCollection.dateUpdated(values);
+                }
+            } finally {
+                sendWriteBufferLock.unlock();
+            }
+        }
+    }
+
+    private void writeValues(CloseableIterator<KeyValue<T>> entries, boolean notifyListeners) {
         Connection connection = null;
         try {
             connection = selectLargeWriteBufferConnection();
-            doAction(Action.WRITE_VALUES, connection);
+            doAction(Action.WRITE_VALUE_BATCHES, connection);
+            long batchSize = RemoteBatchUtils.getBatchSize(objectSerializer);
+            List<KeyValue<T>> batch = new ArrayList<>();
             while (entries.hasNext()) {
-                KeyValue<T> entry = entries.next();
-                connection.writeLong(entry.getKey());
-                writeValue(entry.getValue(), connection);
-                updateListenerCollection.dateUpdated(entry.getKey(), entry.getValue());
+                batch.add(entries.next());
+                if (batch.size() >= batchSize || !entries.hasNext()) {
+                    RemoteBatchUtils.writeBatch(batch, connection, objectSerializer);
+                    if (notifyListeners) {
+                        updateListenerCollection.dateUpdated(batch);
+                    }
+                    batch = new ArrayList<>();
+                }
             }
             connection.writeLong(LONG_END);
             connection.flush();
@@ -208,8 +357,7 @@ public class RemoteDataInterface<T> extends BaseDataInterface<T> {
     private void writeValue(T value, Connection connection) throws IOException {
         DataStream ds = new DataStream();
         objectSerializer.writeValue(value, ds);
-        int objectSize = objectSerializer.getObjectSize();
-        if (objectSize == -1) {
+        if (!DataStreamUtils.hasFixedSize(objectSerializer)) {
             connection.writeInt(ds.position);
         }
         connection.writeByteArray(ds.buffer, ds.position);
@@ -217,6 +365,7 @@ public class RemoteDataInterface<T> extends BaseDataInterface<T> {
 
     @Override
     public CloseableIterator<KeyValue<T>> iterator(final CloseableIterator<Long> keyIterator) {
+        sendWriteBuffer();
         Connection connection = null;
         try {
             connection = selectLargeReadBufferConnection();
@@ -245,6 +394,7 @@ public class RemoteDataInterface<T> extends BaseDataInterface<T> {
 
     @Override
     public CloseableIterator<KeyValue<T>> iterator() {
+        sendWriteBuffer();
         Connection connection = null;
         try {
             connection = selectLargeReadBufferConnection();
@@ -257,8 +407,24 @@ public class RemoteDataInterface<T> extends BaseDataInterface<T> {
         }
     }
 
+    @Override
+    public CloseableIterator<KeyValue<T>> cursor() {
+        sendWriteBuffer();
+        Connection connection = null;
+        try {
+            connection = selectLargeReadBufferConnection();
+            doAction(Action.ITERATOR, connection);
+            connection.flush();
+            return new KeyValueSocketIterator<>(this, connection, true);
+        } catch (Exception e) {
+            dropConnection(connection);
+            throw new RuntimeException("Failed to iterate over values from " + host + ":" + port, e);
+        }
+    }
+
     @Override
     public CloseableIterator<KeyValue<T>> iterator(KeyFilter keyFilter) {
+        sendWriteBuffer();
         Connection connection = null;
         try {
             RemoteObjectConfig remoteObjectConfig = RemoteObjectConfig.create(keyFilter).add(keyFilter.getClass());
@@ -275,6 +441,7 @@ public class RemoteDataInterface<T> extends BaseDataInterface<T> {
 
     @Override
     public CloseableIterator<T> valueIterator(KeyFilter keyFilter) {
+        sendWriteBuffer();
         Connection connection = null;
         try {
             RemoteObjectConfig remoteObjectConfig = RemoteObjectConfig.create(keyFilter).add(keyFilter.getClass());
@@ -291,6 +458,7 @@ public class RemoteDataInterface<T> extends BaseDataInterface<T> {
 
     @Override
     public CloseableIterator<KeyValue<T>> iterator(Predicate<T> valueFilter) {
+        sendWriteBuffer();
         Connection connection = null;
         try {
             RemoteObjectConfig execConfig = RemoteObjectConfig.create(valueFilter).add(valueFilter.getClass());
@@ -307,6 +475,7 @@ public class RemoteDataInterface<T> extends BaseDataInterface<T> {
 
     @Override
     public CloseableIterator<T> valueIterator(Predicate<T> valueFilter) {
+        sendWriteBuffer();
         Connection connection = null;
         try {
             RemoteObjectConfig execConfig = RemoteObjectConfig.create(valueFilter).add(valueFilter.getClass());
@@ -321,6 +490,32 @@ public class RemoteDataInterface<T> extends BaseDataInterface<T> {
         }
     }
 
+    @Override
+    public <R> R aggregate(KeyValueAggregator<T, R> aggregator) {
+        sendWriteBuffer();
+        Connection connection = null;
+        try {
+            RemoteObjectConfig execConfig = aggregator.createExecConfig();
+            connection = selectSmallBufferConnection();
+            doAction(Action.AGGREGATE, connection);
+            connection.writeValue(execConfig.pack());
+            connection.flush();
+            long response = connection.readLong();
+            if (response == LONG_OK) {
+                R result = connection.readValue(aggregator.getResultClass());
+                releaseConnection(connection);
+                return result;
+            } else {
+                String errorMessage = connection.readString();
+                dropConnection(connection);
+                throw new RuntimeException("Failed to aggregate values of " + getName() + ": " + errorMessage);
+            }
+        } catch (IOException e) {
+            dropConnection(connection);
+            throw new RuntimeException("Failed to aggregate values from " + host + ":" + port, e);
+        }
+    }
+
     private CloseableIterator<KeyValue<T>> createKeyValueIterator(final Connection connection) {
         return new KeyValueSocketIterator<>(this, connection);
     }
@@ -331,6 +526,7 @@ public class RemoteDataInterface<T> extends BaseDataInterface<T> {
 
     @Override
     public CloseableIterator<Long> keyIterator() {
+        sendWriteBuffer();
         Connection connection = null;
         try {
             connection = selectLargeReadBufferConnection();
@@ -395,6 +591,7 @@ public class RemoteDataInterface<T> extends BaseDataInterface<T> {
 
     @Override
     public CloseableIterator<KeyValue<T>> cachedValueIterator() {
+        sendWriteBuffer();
         Connection connection = null;
         try {
             connection = selectLargeReadBufferConnection();
@@ -409,6 +606,9 @@ public class RemoteDataInterface<T> extends BaseDataInterface<T> {
 
     @Override
     public void dropAllData() {
+        if (writeBuffer != null) {
+            writeBuffer.clear();
+        }
         doSimpleAction(Action.DROP_ALL_DATA);
         updateListenerCollection.dataDropped();
     }
@@ -435,9 +635,17 @@ public class RemoteDataInterface<T> extends BaseDataInterface<T> {
     }
 
     @Override
-    public synchronized void flush() {
-        ifNotClosed(() -> doSimpleAction(Action.FLUSH));
-        updateListenerCollection.dataFlushed();
+    public void flush() {
+        flushLock.lock();
+        try {
+            ifNotClosed(() -> {
+                sendWriteBuffer();
+                doSimpleAction(Action.FLUSH);
+            });
+            updateListenerCollection.dataFlushed();
+        } finally {
+            flushLock.unlock();
+        }
     }
 
     private void removeUnusedConnections() {
@@ -462,6 +670,14 @@ public class RemoteDataInterface<T> extends BaseDataInterface<T> {
 
     @Override
     protected void doClose() {
+        pipelinedConnectionLock.lock();
+        try {
+            if (pipelinedConnection != null) {
+                pipelinedConnection.close();
+            }
+        } finally {
+            pipelinedConnectionLock.unlock();
+        }
         dropConnections(smallBufferConnections);
         dropConnections(largeWriteBufferConnections);
         dropConnections(largeReadBufferConnections);
@@ -0,0 +1,351 @@
+package be.bagofwords.db.remote;
+
+import be.bagofwords.logging.Log;
+import be.bagofwords.minidepi.ApplicationContext;
+import be.bagofwords.minidepi.LifeCycleBean;
+import be.bagofwords.util.SafeThread;
+import be.bagofwords.util.SocketConnection;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static be.bagofwords.db.remote.Protocol.LONG_ERROR;
+
+/**
+ * Serves the same protocol as {@link RemoteDataInterfaceServer}, but without dedicating a thread to every connection. Idle
+ * connections are parked in a small number of selector based event loops. When a request arrives on a connection, the
+ * connection is handed to a bounded pool of worker threads that executes the request (possibly touching the disk) with the
+ * existing blocking request handlers, after which the connection is parked again. Other long running requests (aggregations,
+ * batch writes, ...) are executed on a separate (also bounded) pool to avoid starving the short requests.
+ * <p>
+ * Iterators can stay open for as long as the client wants, so they do not hold a thread of the streaming pool. Every task
+ * writes a single batch, after which the connection is parked in the event loop until it is writable again and a new task
+ * is queued. Any number of open iterators therefore share the streaming threads in turn. Subscriptions to changes (see
+ * {@link ReplicationFollower}) never end, these get a thread of their own.
+ */
+
+public class RemoteDataInterfaceNioServer implements LifeCycleBean {
+
+    private final RemoteDataInterfaceServer remoteDataInterfaceServer;
+    private final int port;
+    private final int numOfEventLoops;
+    private final ExecutorService requestExecutor;
+    private final ExecutorService streamingRequestExecutor;
+    private final ExecutorService subscriptionExecutor;
+    private final List<EventLoop> eventLoops;
+    private final Queue<NioConnection> openConnections;
+    private ServerSocketChannel serverChannel;
+    private int nextEventLoop;
+    private volatile boolean terminateRequested;
+
+    public RemoteDataInterfaceNioServer(ApplicationContext context) {
+        this.remoteDataInterfaceServer = context.getBean(RemoteDataInterfaceServer.class);
+        this.port = Integer.parseInt(context.getProperty("nio_socket.port", "count-db.properties"));
+        this.numOfEventLoops = Integer.parseInt(context.getProperty("nio_server.event_loops", "count-db.properties"));
+        int numOfWorkerThreads = Integer.parseInt(context.getProperty("nio_server.worker_threads", "count-db.properties"));
+        this.requestExecutor = Executors.newFixedThreadPool(numOfWorkerThreads);
+        int numOfStreamingThreads = Integer.parseInt(context.getProperty("nio_server.streaming_threads", "count-db.properties"));
+        this.streamingRequestExecutor = Executors.newFixedThreadPool(numOfStreamingThreads);
+        this.subscriptionExecutor = Executors.newCachedThreadPool();
+        this.eventLoops = new ArrayList<>();
+        this.openConnections = new ConcurrentLinkedQueue<>();
+    }
+
+    @Override
+    public void startBean() {
+        try {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+            for (int i = 0; i < numOfEventLoops; i++) {
+                eventLoops.add(new EventLoop(i));
+            }
+            eventLoops.get(0).registerServerChannel(serverChannel);
+            for (EventLoop eventLoop : eventLoops) {
+                eventLoop.start();
+            }
+            Log.i("Started nio data interface server on port " + port + " with " + numOfEventLoops + " event loops");
+        } catch (IOException exp) {
+            throw new RuntimeException("Failed to start nio data interface server on port " + port, exp);
+        }
+    }
+
+    @Override
+    public void stopBean() {
+        terminateRequested = true;
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.wakeup();
+        }
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.waitForFinish();
+        }
+        closeQuietly(serverChannel);
+        NioConnection connection;
+        while ((connection = openConnections.poll()) != null) {
+            closeQuietly(connection.channel);
+        }
+        requestExecutor.shutdown();
+        streamingRequestExecutor.shutdown();
+        subscriptionExecutor.shutdown();
+        try {
+            requestExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            streamingRequestExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            subscriptionExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getNumberOfOpenConnections() {
+        return openConnections.size();
+    }
+
+    private synchronized EventLoop selectEventLoop() {
+        EventLoop eventLoop = eventLoops.get(nextEventLoop);
+        nextEventLoop = (nextEventLoop + 1) % eventLoops.size();
+        return eventLoop;
+    }
+
+    private void handleReadyConnection(NioConnection nioConnection) {
+        try {
+            nioConnection.channel.configureBlocking(true);
+            if (nioConnection.requestProcessor == null) {
+                openConnection(nioConnection);
+                continueOrPark(nioConnection);
+            } else {
+                RemoteDataInterfaceServer.Action action = nioConnection.requestProcessor.readNextAction();
+                if (RemoteDataInterfaceServer.isBatchStreamAction(action)) {
+                    nioConnection.batchStream = nioConnection.requestProcessor.openBatchStream(action);
+                    streamingRequestExecutor.submit(() -> writeNextBatch(nioConnection));
+                } else if (action == RemoteDataInterfaceServer.Action.SUBSCRIBE_CHANGES) {
+                    subscriptionExecutor.submit(() -> handleAction(nioConnection, action));
+                } else if (RemoteDataInterfaceServer.isLongRunningAction(action)) {
+                    streamingRequestExecutor.submit(() -> handleAction(nioConnection, action));
+                } else {
+                    handleAction(nioConnection, action);
+                }
+            }
+        } catch (Exception exp) {
+            handleError(nioConnection, exp);
+        }
+    }
+
+    private void openConnection(NioConnection nioConnection) throws Exception {
+        SocketConnection connection = new SocketConnection(nioConnection.channel.socket());
+        nioConnection.connection = connection;
+        String name = connection.readString();
+        if (!RemoteDataInterfaceServer.NAME.equals(name)) {
+            connection.writeLong(LONG_ERROR);
+            connection.writeString("This server only handles requests for " + RemoteDataInterfaceServer.NAME + ", not for " + name);
+            connection.flush();
+            throw new IOException("Received connection for unknown handler " + name);
+        }
+        KeyEncoding requestedKeyEncoding = remoteDataInterfaceServer.readConnectionType(connection);
+        connection.ensureBuffered();
+        RemoteDataInterfaceServer.DataInterfaceRequestProcessor requestProcessor = remoteDataInterfaceServer.createRequestProcessor(connection, requestedKeyEncoding);
+        requestProcessor.prepareHandler();
+        nioConnection.requestProcessor = requestProcessor;
+        connection.flush();
+    }
+
+    private void handleAction(NioConnection nioConnection, RemoteDataInterfaceServer.Action action) {
+        try {
+            boolean keepConnectionOpen = nioConnection.requestProcessor.handleAction(action);
+            if (keepConnectionOpen && nioConnection.connection.isOpen()) {
+                nioConnection.connection.flush();
+                continueOrPark(nioConnection);
+            } else {
+                close(nioConnection);
+            }
+        } catch (Exception exp) {
+            handleError(nioConnection, exp);
+        }
+    }
+
+    /**
+     * Writes one batch of the open stream of the connection. If the stream has more batches, the connection waits in the
+     * event loop until it can be written to, so other streams get a turn in the meantime.
+     */
+
+    private void writeNextBatch(NioConnection nioConnection) {
+        try {
+            nioConnection.channel.configureBlocking(true);
+            boolean hasMoreBatches = nioConnection.batchStream.writeNextBatch();
+            nioConnection.connection.flush();
+            if (hasMoreBatches) {
+                nioConnection.channel.configureBlocking(false);
+                nioConnection.eventLoop.park(nioConnection);
+            } else {
+                nioConnection.batchStream.close();
+                nioConnection.batchStream = null;
+                continueOrPark(nioConnection);
+            }
+        } catch (Exception exp) {
+            handleError(nioConnection, exp);
+        }
+    }
+
+    private void continueOrPark(NioConnection nioConnection) throws IOException {
+        if (nioConnection.connection.getIs().available() > 0) {
+            //The next request was already read into the input buffer of the connection, the selector will not signal it
+            requestExecutor.submit(() -> handleReadyConnection(nioConnection));
+        } else {
+            nioConnection.channel.configureBlocking(false);
+            nioConnection.eventLoop.park(nioConnection);
+        }
+    }
+
+    private void handleError(NioConnection nioConnection, Exception exp) {
+        if (!(exp instanceof IOException) && !terminateRequested) {
+            if (nioConnection.requestProcessor != null) {
+                nioConnection.requestProcessor.reportUnexpectedError(exp);
+                try {
+                    nioConnection.requestProcessor.writeError("Unexpected error " + exp.getMessage());
+                } catch (IOException e) {
+                    //Connection is closed below
+                }
+            } else {
+                Log.e("Unexpected exception while opening connection to nio data interface server", exp);
+            }
+        }
+        close(nioConnection);
+    }
+
+    private void close(NioConnection nioConnection) {
+        openConnections.remove(nioConnection);
+        if (nioConnection.batchStream != null) {
+            nioConnection.batchStream.close();
+            nioConnection.batchStream = null;
+        }
+        closeQuietly(nioConnection.channel);
+    }
+
+    private void closeQuietly(Channel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                //OK
+            }
+        }
+    }
+
+    private class EventLoop extends SafeThread {
+
+        private final Selector selector;
+        private final Queue<NioConnection> connectionsToPark;
+
+        public EventLoop(int index) throws IOException {
+            super("nio_data_interface_server_" + index, true);
+            this.selector = Selector.open();
+            this.connectionsToPark = new ConcurrentLinkedQueue<>();
+        }
+
+        public void registerServerChannel(ServerSocketChannel serverChannel) throws ClosedChannelException {
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        }
+
+        public void park(NioConnection nioConnection) {
+            connectionsToPark.add(nioConnection);
+            selector.wakeup();
+        }
+
+        public void wakeup() {
+            selector.wakeup();
+        }
+
+        @Override
+        protected void runImpl() throws Exception {
+            try {
+                while (!terminateRequested) {
+                    selector.select(1000);
+                    registerParkedConnections();
+                    List<NioConnection> readyConnections = new ArrayList<>();
+                    while (collectSelectedKeys(readyConnections) > 0) {
+                        //Deregisters the cancelled keys, a channel can only be switched to blocking mode once it is deregistered
+                        selector.selectNow();
+                    }
+                    for (NioConnection readyConnection : readyConnections) {
+                        if (readyConnection.batchStream != null) {
+                            streamingRequestExecutor.submit(() -> writeNextBatch(readyConnection));
+                        } else {
+                            requestExecutor.submit(() -> handleReadyConnection(readyConnection));
+                        }
+                    }
+                }
+            } finally {
+                selector.close();
+            }
+        }
+
+        private void registerParkedConnections() {
+            NioConnection nioConnection;
+            while ((nioConnection = connectionsToPark.poll()) != null) {
+                try {
+                    //Connections with an open stream wait until the next batch can be written, other connections wait for a request
+                    int interestOps = nioConnection.batchStream != null ? SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+                    nioConnection.channel.register(selector, interestOps, nioConnection);
+                } catch (IOException exp) {
+                    close(nioConnection);
+                }
+            }
+        }
+
+        private int collectSelectedKeys(List<NioConnection> readyConnections) throws IOException {
+            int numOfCancelledKeys = 0;
+            Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+            while (it.hasNext()) {
+                SelectionKey key = it.next();
+                it.remove();
+                if (!key.isValid()) {
+                    continue;
+                }
+                if (key.isAcceptable()) {
+                    acceptConnections();
+                } else if (key.isReadable() || key.isWritable()) {
+                    key.cancel();
+                    numOfCancelledKeys++;
+                    readyConnections.add((NioConnection) key.attachment());
+                }
+            }
+            return numOfCancelledKeys;
+        }
+
+        private void acceptConnections() throws IOException {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                NioConnection nioConnection = new NioConnection(channel, selectEventLoop());
+                openConnections.add(nioConnection);
+                nioConnection.eventLoop.park(nioConnection);
+            }
+        }
+
+    }
+
+    private static class NioConnection {
+
+        private final SocketChannel channel;
+        private final EventLoop eventLoop;
+        private SocketConnection connection;
+        private RemoteDataInterfaceServer.DataInterfaceRequestProcessor requestProcessor;
+        //The iterator that is being written to this connection, if any
+        private volatile RemoteDataInterfaceServer.DataInterfaceRequestProcessor.BatchStream batchStream;
+
+        private NioConnection(SocketChannel channel, EventLoop eventLoop) {
+            this.channel = channel;
+            this.eventLoop = eventLoop;
+        }
+    }
+
+}
@@ -6,6 +6,7 @@ import be.bagofwords.db.combinator.Combinator;
 import be.bagofwords.db.methods.DataStream;
 import be.bagofwords.db.methods.DataStreamUtils;
 import be.bagofwords.db.methods.KeyFilter;
+import be.bagofwords.db.methods.KeyValueAggregator;
 import be.bagofwords.db.methods.ObjectSerializer;
 import be.bagofwords.exec.PackedRemoteObject;
 import be.bagofwords.exec.RemoteObjectClassLoader;
@@ -17,26 +18,29 @@ import be.bagofwords.logging.Log;
 import be.bagofwords.memory.MemoryManager;
 import be.bagofwords.memory.MemoryStatus;
 import be.bagofwords.minidepi.ApplicationContext;
+import be.bagofwords.minidepi.LifeCycleBean;
 import be.bagofwords.util.KeyValue;
 import be.bagofwords.util.SocketConnection;
 import be.bagofwords.web.SocketRequestHandler;
 import be.bagofwords.web.SocketRequestHandlerFactory;
-import org.xerial.snappy.Snappy;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.*;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import static be.bagofwords.db.remote.Protocol.*;
 
-public class RemoteDataInterfaceServer implements SocketRequestHandlerFactory {
+/**
+ * Serves the data interfaces of a data interface factory to remote clients. If the property replication.primary (host:port) is
+ * set, this server is a read-only follower of that primary server: every data interface that is opened on this server is kept
+ * in sync with the primary by a {@link ReplicationFollower}.
+ */
 
-    public static final String NAME = "RemoteDataInterfaceServer";
+public class RemoteDataInterfaceServer implements SocketRequestHandlerFactory, LifeCycleBean {
 
-    private static final long CLONE_BATCH_SIZE_PRIMITIVE = 100000;
-    private static final long CLONE_BATCH_SIZE_NON_PRIMITIVE = 100;
+    public static final String NAME = "RemoteDataInterfaceServer";
+    private static final long SUBSCRIPTION_HEARTBEAT_INTERVAL = 1000;
 
     private final DataInterfaceFactory dataInterfaceFactory;
     /*
@@ -49,11 +53,63 @@ public class RemoteDataInterfaceServer implements SocketRequestHandlerFactory {
     private final Map<String, RemoteObjectClassLoader> classLoaders = new HashMap<>();
     private final Object createNewInterfaceLock = new Object();
     private final MemoryManager memoryManager;
+    private final Map<DataInterface, ChangeLog> changeLogs = new HashMap<>();
+    private final Map<String, ReplicationFollower> followers = new HashMap<>();
+    private final String primaryHost; //only set if this server is a follower
+    private final int primaryPort;
+    private final long initialSyncTimeout;
 
     public RemoteDataInterfaceServer(ApplicationContext context) {
         this.dataInterfaceFactory = context.getBean(DataInterfaceFactory.class);
         this.memoryManager = context.getBean(MemoryManager.class);
         this.createdInterfaces = new ArrayList<>();
+        String primary = context.getProperty("replication.primary", "count-db.properties");
+        if (primary == null || primary.trim().isEmpty()) {
+            this.primaryHost = null;
+            this.primaryPort = -1;
+        } else {
+            int separator = primary.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new RuntimeException("Invalid primary server " + primary + ", expected host:port");
+            }
+            this.primaryHost = primary.substring(0, separator).trim();
+            this.primaryPort = Integer.parseInt(primary.substring(separator + 1).trim());
+            Log.i("Data interface server is a read-only follower of " + primary);
+        }
+        this.initialSyncTimeout = Long.parseLong(context.getProperty("replication.initial_sync_timeout", "count-db.properties"));
+    }
+
+    @Override
+    public void startBean() {
+        //Followers are started when a data interface is opened
+    }
+
+    @Override
+    public void stopBean() {
+        List<ReplicationFollower> followersToStop;
+        synchronized (createNewInterfaceLock) {
+            followersToStop = new ArrayList<>(followers.values());
+            followers.clear();
+        }
+        for (ReplicationFollower follower : followersToStop) {
+            follower.stopFollowing();
+        }
+    }
+
+    public boolean isFollower() {
+        return primaryHost != null;
+    }
+
+    private ChangeLog getChangeLog(DataInterface dataInterface) {
+        synchronized (changeLogs) {
+            ChangeLog changeLog = changeLogs.get(dataInterface);
+            if (changeLog == null) {
+                changeLog = new ChangeLog();
+                dataInterface.registerUpdateListener(changeLog);
+                changeLogs.put(dataInterface, changeLog);
+            }
+            return changeLog;
+        }
     }
 
     @Override
@@ -63,9 +119,22 @@ public class RemoteDataInterfaceServer implements SocketRequestHandlerFactory {
 
     @Override
     public SocketRequestHandler createSocketRequestHandler(SocketConnection socketConnection) throws IOException {
-        byte connectionTypeAsByte = socketConnection.readByte();
-        if (connectionTypeAsByte < ConnectionType.values().length) {
-            ConnectionType connectionType = ConnectionType.values()[connectionTypeAsByte];
+        KeyEncoding requestedKeyEncoding = readConnectionType(socketConnection);
+        return new DataInterfaceSocketRequestHandler(socketConnection, requestedKeyEncoding);
+    }
+
+    /**
+     * The lower 4 bits of the connection type byte contain the connection type, the upper 4 bits the most recent key encoding
+     * that the client understands. Clients that don't know about key encodings send 0 in the upper bits.
+     *
+     * @return the key encoding requested by the client, or null if the client did not request a key encoding
+     */
+
+    KeyEncoding readConnectionType(SocketConnection socketConnection) throws IOException {
+        int connectionTypeAsByte = socketConnection.readByte() & 0xFF;
+        int connectionTypeOrdinal = connectionTypeAsByte & 0x0F;
+        if (connectionTypeOrdinal < ConnectionType.values().length) {
+            ConnectionType connectionType = ConnectionType.values()[connectionTypeOrdinal];
             if (connectionType == ConnectionType.BATCH_READ_FROM_INTERFACE) {
                 socketConnection.useLargeOutputBuffer();
             } else if (connectionType == ConnectionType.BATCH_WRITE_TO_INTERFACE) {
@@ -74,27 +143,124 @@ public class RemoteDataInterfaceServer implements SocketRequestHandlerFactory {
                 throw new RuntimeException("Unknown connection type " + connectionTypeAsByte);
             }
         }
-        return new DataInterfaceSocketRequestHandler(socketConnection);
+        int keyEncodingOrdinal = connectionTypeAsByte >> 4;
+        if (keyEncodingOrdinal == 0) {
+            return null;
+        } else if (keyEncodingOrdinal < KeyEncoding.values().length) {
+            return KeyEncoding.values()[keyEncodingOrdinal];
+        } else {
+            return KeyEncoding.RAW_LONGS;
+        }
+    }
+
+    DataInterfaceRequestProcessor createRequestProcessor(SocketConnection socketConnection, KeyEncoding requestedKeyEncoding) {
+        return new DataInterfaceRequestProcessor(socketConnection, requestedKeyEncoding);
+    }
+
+    /**
+     * Actions that can take a long time, because they stream data or because they scan the complete data interface
+     */
+
+    static boolean isLongRunningAction(Action action) {
+        return action == Action.AGGREGATE || action == Action.ITERATOR || action == Action.ITERATOR_WITH_KEY_ITERATOR || action == Action.READ_KEYS
+                || action == Action.WRITE_VALUES || action == Action.WRITE_VALUE_BATCHES || action == Action.READ_CACHED_VALUES
+                || action == Action.ITERATOR_WITH_KEY_FILTER || action == Action.VALUES_ITERATOR_WITH_KEY_FILTER
+                || action == Action.ITERATOR_WITH_VALUE_FILTER || action == Action.VALUES_ITERATOR_WITH_VALUE_FILTER
+                || action == Action.SUBSCRIBE_CHANGES;
+    }
+
+    /**
+     * Actions that write the values of an iterator in batches, see {@link DataInterfaceRequestProcessor#openBatchStream(Action)}
+     */
+
+    static boolean isBatchStreamAction(Action action) {
+        return action == Action.ITERATOR || action == Action.READ_CACHED_VALUES
+                || action == Action.ITERATOR_WITH_KEY_FILTER || action == Action.VALUES_ITERATOR_WITH_KEY_FILTER
+                || action == Action.ITERATOR_WITH_VALUE_FILTER || action == Action.VALUES_ITERATOR_WITH_VALUE_FILTER;
+    }
+
+    static boolean isWriteAction(Action action) {
+        return action == Action.WRITE_VALUE || action == Action.WRITE_VALUES || action == Action.WRITE_VALUE_BATCHES || action == Action.DROP_ALL_DATA;
     }
 
     public class DataInterfaceSocketRequestHandler extends SocketRequestHandler {
 
+        private final DataInterfaceRequestProcessor requestProcessor;
+        private long totalNumberOfRequests;
+
+        private DataInterfaceSocketRequestHandler(SocketConnection socketConnection, KeyEncoding requestedKeyEncoding) throws IOException {
+            super(socketConnection);
+            this.requestProcessor = new DataInterfaceRequestProcessor(socketConnection, requestedKeyEncoding);
+        }
+
+        @Override
+        public void handleRequests() throws Exception {
+            try {
+                requestProcessor.prepareHandler();
+                setName(getName() + "_" + requestProcessor.getDataInterface().getName());
+                connection.getOs().flush();
+                boolean keepReadingCommands = true;
+                while (keepReadingCommands && connection.isOpen()) {
+                    keepReadingCommands = requestProcessor.handleRequest();
+                    totalNumberOfRequests++;
+                    connection.getOs().flush();
+                }
+            } catch (Exception exp) {
+                if (isUnexpectedError(exp)) {
+                    Log.i("Unexpected exception while handling remote data interface requests", exp);
+                    requestProcessor.writeError("Unexpected error " + exp.getMessage());
+                }
+            }
+        }
+
+        @Override
+        public long getTotalNumberOfRequests() {
+            return totalNumberOfRequests;
+        }
+
+        @Override
+        public void reportUnexpectedError(Exception ex) {
+            requestProcessor.reportUnexpectedError(ex);
+        }
+
+        public DataInterface getDataInterface() {
+            return requestProcessor.getDataInterface();
+        }
+
+        public long getStartTime() {
+            return requestProcessor.getStartTime();
+        }
+
+    }
+
+    /**
+     * Handles the requests for a single connection to a data interface. Requests are read and answered one at a time, so this
+     * class can be used both by a thread that is dedicated to the connection and by the event loops of {@link RemoteDataInterfaceNioServer}
+     */
+    class DataInterfaceRequestProcessor {
+
+        private final SocketConnection connection;
         private DataInterface dataInterface;
         private long startTime;
-        private long totalNumberOfRequests;
         private RemoteObjectClassLoader remoteObjectClassLoader;
+        private final KeyEncoding requestedKeyEncoding;
+        private final KeyEncoding keyEncoding;
 
-        private DataInterfaceSocketRequestHandler(SocketConnection socketConnection) throws IOException {
-            super(socketConnection);
+        private DataInterfaceRequestProcessor(SocketConnection connection, KeyEncoding requestedKeyEncoding) {
+            this.connection = connection;
+            this.requestedKeyEncoding = requestedKeyEncoding;
+            this.keyEncoding = requestedKeyEncoding == null ? KeyEncoding.RAW_LONGS : requestedKeyEncoding;
         }
 
-        private void prepareHandler() throws Exception {
+        void prepareHandler() throws Exception {
             startTime = System.currentTimeMillis();
             String interfaceName = connection.readString();
             boolean isTemporary = connection.readBoolean();
-            Class objectClass = readClass();
+            String className = connection.readString();
+            Class objectClass = Class.forName(className);
             PackedRemoteObject packedCombinator = connection.readValue(PackedRemoteObject.class);
             PackedRemoteObject packedSerializer = connection.readValue(PackedRemoteObject.class);
+            ReplicationFollower follower;
             synchronized (createNewInterfaceLock) {
                 remoteObjectClassLoader = classLoaders.get(interfaceName);
                 if (remoteObjectClassLoader == null) {
@@ -109,14 +275,29 @@ public class RemoteDataInterfaceServer implements SocketRequestHandlerFactory {
                 } else {
                     remoteObjectClassLoader.addRemoteClasses(packedCombinator.classSources);
                     Combinator combinator = (Combinator) RemoteObjectUtil.loadObject(packedCombinator, remoteObjectClassLoader);
-                    remoteObjectClassLoader.addRemoteClasses(packedCombinator.classSources);
+                    remoteObjectClassLoader.addRemoteClasses(packedSerializer.classSources);
                     ObjectSerializer objectSerializer = (ObjectSerializer) RemoteObjectUtil.loadObject(packedSerializer, remoteObjectClassLoader);
                     dataInterface = dataInterfaceFactory.dataInterface(interfaceName, objectClass).combinator(combinator).serializer(objectSerializer).temporary(isTemporary).create();
                     createdInterfaces.add(dataInterface);
                 }
+                follower = followers.get(interfaceName);
+                if (follower == null && isFollower()) {
+                    follower = new ReplicationFollower(dataInterface, primaryHost, primaryPort, className, packedCombinator, packedSerializer);
+                    followers.put(interfaceName, follower);
+                    follower.start();
+                }
+            }
+            if (follower != null && !follower.waitForInitialSync(initialSyncTimeout)) {
+                writeError("Data interface " + interfaceName + " was not yet synchronized with primary " + primaryHost + ":" + primaryPort);
+                connection.flush();
+                throw new IOException("Timeout while waiting for initial sync of " + interfaceName + " with primary " + primaryHost + ":" + primaryPort);
+            }
+            if (requestedKeyEncoding == null) {
+                connection.writeLong(LONG_OK);
+            } else {
+                connection.writeLong(LONG_OK_WITH_KEY_ENCODING);
+                connection.writeByte((byte) keyEncoding.ordinal());
             }
-            setName(getName() + "_" + dataInterface.getName());
-            connection.writeLong(LONG_OK);
             connection.flush();
         }
 
@@ -134,29 +315,16 @@ public class RemoteDataInterfaceServer implements SocketRequestHandlerFactory {
             return null;
         }
 
-        @Override
-        public void handleRequests() throws Exception {
-            try {
-                prepareHandler();
-                connection.getOs().flush();
-                boolean keepReadingCommands = true;
-                while (keepReadingCommands && connection.isOpen()) {
-                    keepReadingCommands = handleRequest();
-                    totalNumberOfRequests++;
-                    connection.getOs().flush();
-                }
-            } catch (Exception exp) {
-                if (isUnexpectedError(exp)) {
-                    Log.i("Unexpected exception while handling remote data interface requests", exp);
-                    writeError("Unexpected error " + exp.getMessage());
-                }
-            }
+        boolean handleRequest() throws Exception {
+            return handleAction(readNextAction());
         }
 
-        private boolean handleRequest() throws Exception {
-            Action action = readNextAction();
+        boolean handleAction(Action action) throws Exception {
             if (action == Action.CLOSE_CONNECTION) {
                 connection.close();
+            } else if (isFollower() && isWriteAction(action)) {
+                writeError("Can not execute " + action + " on " + dataInterface.getName() + ", this server is a read-only follower of " + primaryHost + ":" + primaryPort);
+                return false;
             } else {
                 if (action == Action.EXACT_SIZE) {
                     handleExactSize();
@@ -166,12 +334,18 @@ public class RemoteDataInterfaceServer implements SocketRequestHandlerFactory {
                     handleReadValue();
                 } else if (action == Action.WRITE_VALUE) {
                     handleWriteValue();
-                } else if (action == Action.ITERATOR) {
-                    handleIterator();
+                } else if (isBatchStreamAction(action)) {
+                    writeAllBatches(openBatchStream(action));
                 } else if (action == Action.ITERATOR_WITH_KEY_ITERATOR) {
                     handleIteratorWithKeyIterator();
                 } else if (action == Action.WRITE_VALUES) {
                     handleWriteValues();
+                } else if (action == Action.WRITE_VALUE_BATCHES) {
+                    handleWriteValueBatches();
+                } else if (action == Action.AGGREGATE) {
+                    handleAggregate();
+                } else if (action == Action.SUBSCRIBE_CHANGES) {
+                    handleSubscribeChanges();
                 } else if (action == Action.READ_KEYS) {
                     handleReadKeys();
                 } else if (action == Action.DROP_ALL_DATA) {
@@ -182,16 +356,6 @@ public class RemoteDataInterfaceServer implements SocketRequestHandlerFactory {
                     handleMightContain();
                 } else if (action == Action.OPTMIZE_FOR_READING) {
                     handleOptimizeForReading();
-                } else if (action == Action.READ_CACHED_VALUES) {
-                    handleReadCachedValues();
-                } else if (action == Action.ITERATOR_WITH_KEY_FILTER) {
-                    handleIteratorWithKeyFilter();
-                } else if (action == Action.VALUES_ITERATOR_WITH_KEY_FILTER) {
-                    handleValuesIteratorWithKeyFilter();
-                } else if (action == Action.ITERATOR_WITH_VALUE_FILTER) {
-                    handleIteratorWithValueFilter();
-                } else if (action == Action.VALUES_ITERATOR_WITH_VALUE_FILTER) {
-                    handleValuesIteratorWithValueFilter();
                 } else {
                     writeError("Unkown action " + action);
                     return false;
@@ -200,60 +364,118 @@ public class RemoteDataInterfaceServer implements SocketRequestHandlerFactory {
             return true;
         }
 
-        private void handleIteratorWithKeyFilter() throws IOException {
-            PackedRemoteObject packedRemoteObject = connection.readValue(PackedRemoteObject.class);
-            remoteObjectClassLoader.addRemoteClasses(packedRemoteObject.classSources);
-            KeyFilter filter = (KeyFilter) RemoteObjectUtil.loadObject(packedRemoteObject, remoteObjectClassLoader);
-            CloseableIterator<KeyValue> iterator = dataInterface.iterator(filter);
-            writeKeyValuesInBatches(iterator);
-            iterator.close();
+        /**
+         * Reads the arguments of a streaming action and returns the stream of batches that answers it
+         */
+
+        BatchStream openBatchStream(Action action) throws IOException {
+            if (action == Action.ITERATOR) {
+                return new BatchStream(dataInterface.iterator(), true);
+            } else if (action == Action.READ_CACHED_VALUES) {
+                return new BatchStream(dataInterface.cachedValueIterator(), true);
+            } else if (action == Action.ITERATOR_WITH_KEY_FILTER) {
+                return new BatchStream(dataInterface.iterator((KeyFilter) readRemoteObject()), true);
+            } else if (action == Action.VALUES_ITERATOR_WITH_KEY_FILTER) {
+                return new BatchStream(dataInterface.valueIterator((KeyFilter) readRemoteObject()), false);
+            } else if (action == Action.ITERATOR_WITH_VALUE_FILTER) {
+                return new BatchStream(dataInterface.iterator((Predicate) readRemoteObject()), true);
+            } else if (action == Action.VALUES_ITERATOR_WITH_VALUE_FILTER) {
+                return new BatchStream(dataInterface.valueIterator((Predicate) readRemoteObject()), false);
+            } else {
+                throw new RuntimeException("Action " + action + " does not stream batches");
+            }
         }
 
-        private void handleValuesIteratorWithKeyFilter() throws IOException {
+        private Object readRemoteObject() throws IOException {
             PackedRemoteObject packedRemoteObject = connection.readValue(PackedRemoteObject.class);
             remoteObjectClassLoader.addRemoteClasses(packedRemoteObject.classSources);
-            KeyFilter filter = (KeyFilter) RemoteObjectUtil.loadObject(packedRemoteObject, remoteObjectClassLoader);
-            CloseableIterator iterator = dataInterface.valueIterator(filter);
-            writeValuesInBatches(iterator);
-            iterator.close();
+            return RemoteObjectUtil.loadObject(packedRemoteObject, remoteObjectClassLoader);
         }
 
-        private void handleIteratorWithValueFilter() throws IOException {
+        private void handleAggregate() throws IOException {
             PackedRemoteObject packedRemoteObject = connection.readValue(PackedRemoteObject.class);
             remoteObjectClassLoader.addRemoteClasses(packedRemoteObject.classSources);
-            Predicate filter = (Predicate) RemoteObjectUtil.loadObject(packedRemoteObject, remoteObjectClassLoader);
-            CloseableIterator<KeyValue> iterator = dataInterface.iterator(filter);
-            writeKeyValuesInBatches(iterator);
-            iterator.close();
+            KeyValueAggregator aggregator = (KeyValueAggregator) RemoteObjectUtil.loadObject(packedRemoteObject, remoteObjectClassLoader);
+            Object result;
+            try {
+                result = dataInterface.aggregate(aggregator);
+            } catch (Exception exp) {
+                Log.e("Failed to execute aggregator " + aggregator.getClass() + " on " + dataInterface.getName(), exp);
+                writeError("Failed to execute aggregator " + aggregator.getClass() + ": " + exp.getMessage());
+                return;
+            }
+            connection.writeLong(LONG_OK);
+            connection.writeValue(result);
         }
 
-        private void handleValuesIteratorWithValueFilter() throws IOException {
-            PackedRemoteObject packedRemoteObject = connection.readValue(PackedRemoteObject.class);
-            remoteObjectClassLoader.addRemoteClasses(packedRemoteObject.classSources);
-            Predicate filter = (Predicate) RemoteObjectUtil.loadObject(packedRemoteObject, remoteObjectClassLoader);
-            CloseableIterator iterator = dataInterface.valueIterator(filter);
-            writeValuesInBatches(iterator);
-            iterator.close();
+        /**
+         * Sends a snapshot of all values, followed by the current values of all keys that are changed afterwards. Keeps running
+         * until the connection is closed.
+         */
+
+        private void handleSubscribeChanges() throws IOException, InterruptedException {
+            ChangeLog changeLog = getChangeLog(dataInterface);
+            ChangeLog.Subscription subscription = changeLog.subscribe();
+            try {
+                connection.writeLong(LONG_OK);
+                writeAllBatches(new BatchStream(dataInterface.iterator(), true));
+                while (connection.isOpen()) {
+                    ChangeLog.Changes changes = subscription.takeChanges(SUBSCRIPTION_HEARTBEAT_INTERVAL);
+                    if (changes.tooManyChanges) {
+                        //The follower reconnects and receives a new snapshot
+                        writeError("Too many changes in " + dataInterface.getName() + " since they were last sent, follower should resync");
+                        connection.flush();
+                        return;
+                    } else if (changes.isEmpty()) {
+                        connection.writeLong(LONG_HEARTBEAT);
+                    } else {
+                        if (changes.dataWasDropped) {
+                            connection.writeLong(LONG_DATA_DROPPED);
+                        }
+                        writeChangedValues(changes.changedKeys);
+                    }
+                    connection.flush();
+                }
+            } finally {
+                changeLog.unsubscribe(subscription);
+            }
         }
 
-        private void handleReadCachedValues() throws IOException {
-            CloseableIterator<KeyValue> iterator = dataInterface.cachedValueIterator();
-            writeKeyValuesInBatches(iterator);
-            iterator.close();
+        private void writeChangedValues(long[] changedKeys) throws IOException {
+            int batchSize = (int) getBatchSize();
+            for (int start = 0; start < changedKeys.length; start += batchSize) {
+                List<Long> keys = new ArrayList<>();
+                for (int i = start; i < Math.min(changedKeys.length, start + batchSize); i++) {
+                    keys.add(changedKeys[i]);
+                }
+                List<Long> foundKeys = new ArrayList<>();
+                List<Object> foundValues = new ArrayList<>();
+                CloseableIterator<KeyValue> iterator = dataInterface.iterator(IterableUtils.iterator(keys));
+                while (iterator.hasNext()) {
+                    KeyValue next = iterator.next();
+                    foundKeys.add(next.getKey());
+                    foundValues.add(next.getValue());
+                }
+                iterator.close();
+                if (!foundKeys.isEmpty()) {
+                    writeCurrentBatch(foundKeys, foundValues);
+                }
+                if (foundKeys.size() < keys.size()) {
+                    Set<Long> foundKeySet = new HashSet<>(foundKeys);
+                    List<Long> deletedKeys = keys.stream().filter(key -> !foundKeySet.contains(key)).collect(Collectors.toList());
+                    connection.writeLong(LONG_KEYS_DELETED);
+                    connection.writeLong(deletedKeys.size());
+                    RemoteBatchUtils.writeKeys(deletedKeys, keyEncoding, connection);
+                }
+            }
         }
 
-        private Action readNextAction() throws IOException {
+        Action readNextAction() throws IOException {
             byte actionAsByte = connection.readByte();
             return Action.values()[actionAsByte];
         }
 
-        @Override
-        public long getTotalNumberOfRequests() {
-            return totalNumberOfRequests;
-        }
-
-        @Override
-        public void reportUnexpectedError(Exception ex) {
+        void reportUnexpectedError(Exception ex) {
             if (dataInterface != null) {
                 Log.e("Unexpected exception in request handler for data interface " + dataInterface.getName(), ex);
             } else {
@@ -276,11 +498,10 @@ public class RemoteDataInterfaceServer implements SocketRequestHandlerFactory {
                     return connection.readLong();
                 }
             }, LONG_END));
-            writeKeyValuesInBatches(valueIt);
-            valueIt.close();
+            writeAllBatches(new BatchStream(valueIt, true));
         }
 
-        private void writeError(String errorMessage) throws IOException {
+        void writeError(String errorMessage) throws IOException {
             connection.writeLong(LONG_ERROR);
             connection.writeString(errorMessage);
         }
@@ -358,6 +579,17 @@ public class RemoteDataInterfaceServer implements SocketRequestHandlerFactory {
             connection.writeLong(LONG_OK);
         }
 
+        private void handleWriteValueBatches() throws IOException {
+            ObjectSerializer objectSerializer = dataInterface.getObjectSerializer();
+            long numOfValues = connection.readLong();
+            while (numOfValues != LONG_END) {
+                List<KeyValue> batch = RemoteBatchUtils.readBatch(numOfValues, connection, objectSerializer);
+                dataInterface.write(IterableUtils.iterator(batch));
+                numOfValues = connection.readLong();
+            }
+            connection.writeLong(LONG_OK);
+        }
+
         private void handleReadKeys() throws IOException {
             CloseableIterator<Long> it = dataInterface.keyIterator();
             while (it.hasNext()) {
@@ -368,89 +600,87 @@ public class RemoteDataInterfaceServer implements SocketRequestHandlerFactory {
             connection.writeLong(LONG_END);
         }
 
-        private void handleIterator() throws IOException {
-            CloseableIterator<KeyValue> iterator = dataInterface.iterator();
-            writeKeyValuesInBatches(iterator);
-            iterator.close();
-        }
-
-        private void writeValuesInBatches(CloseableIterator iterator) throws IOException {
-            List<Object> currentBatchValues = new ArrayList<>();
-            long batchSize = getBatchSize();
-            while (iterator.hasNext()) {
-                currentBatchValues.add(iterator.next());
-                if (currentBatchValues.size() >= batchSize || memoryManager.getMemoryStatus() != MemoryStatus.FREE) {
-                    writeValuesInBatch(currentBatchValues);
-                    currentBatchValues.clear();
-                }
-            }
-            if (!currentBatchValues.isEmpty()) {
-                writeValuesInBatch(currentBatchValues);
-            }
-            connection.writeLong(LONG_END);
-            connection.flush();
-        }
-
-        private void writeValuesInBatch(List<Object> currentBatchValues) throws IOException {
-            connection.writeLong(currentBatchValues.size());
-            writeListOfValues(currentBatchValues);
-        }
-
-        private void writeKeyValuesInBatches(CloseableIterator<KeyValue> iterator) throws IOException {
-            //will write data in batches so we can compress key's and values separately
-            List<Long> currentBatchKeys = new ArrayList<>();
-            List<Object> currentBatchValues = new ArrayList<>();
-            long batchSize = getBatchSize();
-            while (iterator.hasNext()) {
-                KeyValue curr = iterator.next();
-                currentBatchKeys.add(curr.getKey());
-                currentBatchValues.add(curr.getValue());
-                if (currentBatchKeys.size() >= batchSize || memoryManager.getMemoryStatus() != MemoryStatus.FREE) {
-                    writeCurrentBatch(currentBatchKeys, currentBatchValues);
-                    currentBatchKeys.clear();
-                    currentBatchValues.clear();
+        private void writeAllBatches(BatchStream batchStream) throws IOException {
+            try {
+                while (batchStream.writeNextBatch()) {
+                    //continue
                 }
+                connection.flush();
+            } finally {
+                batchStream.close();
             }
-            if (!currentBatchKeys.isEmpty()) {
-                writeCurrentBatch(currentBatchKeys, currentBatchValues);
-            }
-            connection.writeLong(LONG_END);
-            connection.flush();
         }
 
         private long getBatchSize() {
-            int widthOfObject = dataInterface.getObjectSerializer().getObjectSize();
-            return widthOfObject != -1 && widthOfObject < 16 ? CLONE_BATCH_SIZE_PRIMITIVE : CLONE_BATCH_SIZE_NON_PRIMITIVE;
+            return RemoteBatchUtils.getBatchSize(dataInterface.getObjectSerializer());
         }
 
         private void writeCurrentBatch(List<Long> currentBatchKeys, List<Object> currentBatchValues) throws IOException {
             connection.writeLong(currentBatchKeys.size());
-            writeListOfKeys(currentBatchKeys);
+            RemoteBatchUtils.writeKeys(currentBatchKeys, keyEncoding, connection);
             writeListOfValues(currentBatchValues);
         }
 
         private void writeListOfValues(List<Object> currentBatchValues) throws IOException {
-            //write values
-            DataStream ds = new DataStream();
-            ObjectSerializer objectSerializer = dataInterface.getObjectSerializer();
-            for (Object value : currentBatchValues) {
-                DataStreamUtils.writeValue(value, ds, objectSerializer);
-            }
-            byte[] origValues = ds.getNonEmptyBytes();
-            byte[] compressedValues = Snappy.compress(origValues);
-            //            Log.i("Compressed values from " + origValues.length + " to " + compressedValues.length);
-            connection.writeByteArray(compressedValues);
+            RemoteBatchUtils.writeValues(currentBatchValues, connection, dataInterface.getObjectSerializer());
         }
 
-        private void writeListOfKeys(List<Long> currentBatchKeys) throws IOException {
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            DataOutputStream dos = new DataOutputStream(bos);
-            for (Long key : currentBatchKeys) {
-                dos.writeLong(key);
+        /**
+         * Writes the values (and optionally the keys) of an iterator in batches, so keys and values can be compressed
+         * separately. Every call writes a single batch, so a server can alternate between many open streams.
+         */
+
+        class BatchStream {
+
+            private final CloseableIterator iterator;
+            private final boolean writeKeys;
+            private final long batchSize;
+
+            private BatchStream(CloseableIterator iterator, boolean writeKeys) {
+                this.iterator = iterator;
+                this.writeKeys = writeKeys;
+                this.batchSize = getBatchSize();
+            }
+
+            /**
+             * @return false once the last batch and the end of the stream were written
+             */
+
+            boolean writeNextBatch() throws IOException {
+                List<Long> currentBatchKeys = new ArrayList<>();
+                List<Object> currentBatchValues = new ArrayList<>();
+                while (currentBatchValues.size() < batchSize && iterator.hasNext()) {
+                    Object next = iterator.next();
+                    if (writeKeys) {
+                        KeyValue keyValue = (KeyValue) next;
+                        currentBatchKeys.add(keyValue.getKey());
+                        currentBatchValues.add(keyValue.getValue());
+                    } else {
+                        currentBatchValues.add(next);
+                    }
+                    if (memoryManager.getMemoryStatus() != MemoryStatus.FREE) {
+                        break;
+                    }
+                }
+                if (!currentBatchValues.isEmpty()) {
+                    if (writeKeys) {
+                        writeCurrentBatch(currentBatchKeys, currentBatchValues);
+                    } else {
+                        connection.writeLong(currentBatchValues.size());
+                        writeListOfValues(currentBatchValues);
+                    }
+                }
+                if (iterator.hasNext()) {
+                    return true;
+                } else {
+                    connection.writeLong(LONG_END);
+                    return false;
+                }
+            }
+
+            void close() {
+                iterator.close();
             }
-            dos.close();
-            byte[] origKeys = bos.toByteArray();
-            connection.writeByteArray(origKeys);
         }
 
         private void handleReadValue() throws IOException {
@@ -459,8 +689,7 @@ public class RemoteDataInterfaceServer implements SocketRequestHandlerFactory {
             DataStream ds = new DataStream();
             ObjectSerializer objectSerializer = dataInterface.getObjectSerializer();
             objectSerializer.writeValue(value, ds);
-            int objectSize = objectSerializer.getObjectSize();
-            if (objectSize == -1) {
+            if (!DataStreamUtils.hasFixedSize(objectSerializer)) {
                 connection.writeInt(ds.position);
             }
             connection.writeByteArray(ds.buffer, ds.position);
@@ -482,7 +711,7 @@ public class RemoteDataInterfaceServer implements SocketRequestHandlerFactory {
         private Object readValue() throws IOException {
             ObjectSerializer objectSerializer = dataInterface.getObjectSerializer();
             int objectSize = objectSerializer.getObjectSize();
-            if (objectSize == -1) {
+            if (!DataStreamUtils.hasFixedSize(objectSerializer)) {
                 objectSize = connection.readInt();
             }
             byte[] bytes = connection.readByteArray(objectSize);
@@ -490,17 +719,13 @@ public class RemoteDataInterfaceServer implements SocketRequestHandlerFactory {
             return objectSerializer.readValue(ds, objectSize);
         }
 
-        private Class readClass() throws IOException, ClassNotFoundException {
-            String className = connection.readString();
-            return Class.forName(className);
-        }
-
     }
 
     public enum Action {
         READ_VALUE, WRITE_VALUE, ITERATOR_WITH_KEY_ITERATOR, READ_KEYS, WRITE_VALUES, DROP_ALL_DATA, CLOSE_CONNECTION, FLUSH,
         ITERATOR, READ_CACHED_VALUES, APPROXIMATE_SIZE, MIGHT_CONTAIN, EXACT_SIZE, OPTMIZE_FOR_READING,
-        VALUES_ITERATOR_WITH_KEY_FILTER, ITERATOR_WITH_KEY_FILTER, VALUES_ITERATOR_WITH_VALUE_FILTER, ITERATOR_WITH_VALUE_FILTER
+        VALUES_ITERATOR_WITH_KEY_FILTER, ITERATOR_WITH_KEY_FILTER, VALUES_ITERATOR_WITH_VALUE_FILTER, ITERATOR_WITH_VALUE_FILTER,
+        WRITE_VALUE_BATCHES, AGGREGATE, SUBSCRIBE_CHANGES
     }
 
     public enum ConnectionType {
@@ -11,16 +11,20 @@ public class RemoteDatabaseInterfaceFactory extends BaseDataInterfaceFactory {
 
     private final String host;
     private final int port;
+    private final int writeBufferSize;
+    private final long writeBufferMaxDelay;
 
     public RemoteDatabaseInterfaceFactory(ApplicationContext context) {
         super(context);
         this.host = context.getProperty("socket.host", "count-db.properties");
         this.port = Integer.parseInt(context.getProperty("socket.port", "count-db.properties"));
+        this.writeBufferSize = Integer.parseInt(context.getProperty("remote_write_buffer_size", "count-db.properties"));
+        this.writeBufferMaxDelay = Long.parseLong(context.getProperty("remote_write_buffer_max_delay", "count-db.properties"));
     }
 
     @Override
     protected synchronized <T extends Object> BaseDataInterface<T> createBaseDataInterface(String name, Class<T> objectClass, Combinator<T> combinator, ObjectSerializer<T> objectSerializer, boolean isTemporaryDataInterface) {
-        return new RemoteDataInterface<>(name, objectClass, combinator, objectSerializer, host, port, isTemporaryDataInterface, asyncJobService);
+        return new RemoteDataInterface<>(name, objectClass, combinator, objectSerializer, host, port, isTemporaryDataInterface, asyncJobService, writeBufferSize, writeBufferMaxDelay);
     }
 
     @Override
@@ -0,0 +1,120 @@
+package be.bagofwords.db.remote;
+
+import be.bagofwords.db.combinator.Combinator;
+import be.bagofwords.util.KeyValue;
+
+import java.util.*;
+
+/**
+ * Collects the writes to a remote data interface on the client, combining values with the same key, so they can be sent
+ * to the server in a single WRITE_VALUES batch.
+ */
+
+class RemoteWriteBuffer<T> {
+
+    private final Combinator<T> combinator;
+    private final int maxSize;
+    private Map<Long, T> values;
+    //Keys that were deleted before a new value was written, the delete needs to be sent before that value
+    private Set<Long> deletedKeys;
+    //Keys of which the value was created by the combinator, and not by the caller of add(..)
+    private Set<Long> combinedKeys;
+
+    public RemoteWriteBuffer(Combinator<T> combinator, int maxSize) {
+        this.combinator = combinator;
+        this.maxSize = maxSize;
+        this.values = new HashMap<>();
+        this.deletedKeys = new HashSet<>();
+        this.combinedKeys = new HashSet<>();
+    }
+
+    /**
+     * @return true if the buffer is full and should be sent to the server
+     */
+
+    public synchronized boolean add(long key, T value) {
+        T currentValue = values.get(key);
+        if (value == null) {
+            deletedKeys.remove(key);
+            combinedKeys.remove(key);
+            values.put(key, null);
+        } else if (currentValue == null) {
+            if (values.containsKey(key)) {
+                deletedKeys.add(key);
+            }
+            values.put(key, value);
+        } else if (combinedKeys.contains(key)) {
+            values.put(key, combinator.combineInto(currentValue, value));
+        } else {
+            values.put(key, combinator.combine(currentValue, value));
+            combinedKeys.add(key);
+        }
+        return values.size() >= maxSize;
+    }
+
+    public synchronized boolean contains(long key) {
+        return values.containsKey(key);
+    }
+
+    public synchronized boolean isEmpty() {
+        return values.isEmpty();
+    }
+
+    public synchronized void clear() {
+        values = new HashMap<>();
+        deletedKeys = new HashSet<>();
+        combinedKeys = new HashSet<>();
+    }
+
+    /**
+     * Removes all values from the buffer and returns them sorted by key
+     */
+
+    public List<KeyValue<T>> drain() {
+        Map<Long, T> drainedValues;
+        Set<Long> drainedDeletedKeys;
+        synchronized (this) {
+            if (values.isEmpty()) {
+                return new ArrayList<>();
+            }
+            drainedValues = values;
+            drainedDeletedKeys = deletedKeys;
+            values = new HashMap<>();
+            deletedKeys = new HashSet<>();
+            combinedKeys = new HashSet<>();
+        }
+        List<KeyValue<T>> result = new ArrayList<>(drainedValues.size() + drainedDeletedKeys.size());
+        for (Long deletedKey : drainedDeletedKeys) {
+            result.add(new KeyValue<>(deletedKey, null));
+        }
+        for (Map.Entry<Long, T> entry : drainedValues.entrySet()) {
+            result.add(new KeyValue<>(entry.getKey(), entry.getValue()));
+        }
+        //Stable sort, a delete stays in front of the value that was written after it
+        result.sort((kv1, kv2) -> Long.compare(kv1.getKey(), kv2.getKey()));
+        return result;
+    }
+
+    /**
+     * Puts values that were returned by {@link #drain()} back in the buffer, e.g. because they could not be sent to the
+     * server. The values are combined with (and come before) the values that were added after the drain.
+     */
+
+    public synchronized void restore(List<KeyValue<T>> drainedValues) {
+        Map<Long, T> newValues = values;
+        Set<Long> newDeletedKeys = deletedKeys;
+        values = new HashMap<>();
+        deletedKeys = new HashSet<>();
+        combinedKeys = new HashSet<>();
+        for (KeyValue<T> value : drainedValues) {
+            add(value.getKey(), value.getValue());
+        }
+        for (Long deletedKey : newDeletedKeys) {
+            add(deletedKey, null);
+        }
+        for (Map.Entry<Long, T> entry : newValues.entrySet()) {
+            add(entry.getKey(), entry.getValue());
+        }
+    }
+
+}
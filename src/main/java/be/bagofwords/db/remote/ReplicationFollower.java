@@ -0,0 +1,210 @@
+package be.bagofwords.db.remote;
+
+import be.bagofwords.db.DataInterface;
+import be.bagofwords.exec.PackedRemoteObject;
+import be.bagofwords.iterator.CloseableIterator;
+import be.bagofwords.iterator.IterableUtils;
+import be.bagofwords.logging.Log;
+import be.bagofwords.util.KeyValue;
+import be.bagofwords.util.SafeThread;
+import be.bagofwords.util.SocketConnection;
+import be.bagofwords.util.Utils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static be.bagofwords.db.remote.Protocol.*;
+
+/**
+ * Keeps a local data interface in sync with the same data interface on a primary server. The primary first sends a snapshot
+ * of all its values and afterwards streams the current values of all keys that were changed. Values are always sent as
+ * absolute values, so they overwrite (instead of combine with) the local values. When the connection to the primary is lost,
+ * the follower reconnects and receives a new snapshot. The local data is never dropped for a new snapshot: because the snapshot
+ * and the local keys are both sorted, the snapshot is merged with the local keys and local keys that are no longer on the
+ * primary are removed along the way.
+ */
+
+class ReplicationFollower extends SafeThread {
+
+    private static final long RECONNECT_DELAY = 1000;
+    private static final int DELETE_BATCH_SIZE = 10000;
+
+    private final DataInterface dataInterface;
+    private final String primaryHost;
+    private final int primaryPort;
+    private final String className;
+    private final PackedRemoteObject packedCombinator;
+    private final PackedRemoteObject packedSerializer;
+    private final CountDownLatch initialSync;
+    private volatile SocketConnection connection;
+
+    public ReplicationFollower(DataInterface dataInterface, String primaryHost, int primaryPort, String className, PackedRemoteObject packedCombinator, PackedRemoteObject packedSerializer) {
+        super("replication_follower_" + dataInterface.getName(), true);
+        this.dataInterface = dataInterface;
+        this.primaryHost = primaryHost;
+        this.primaryPort = primaryPort;
+        this.className = className;
+        this.packedCombinator = packedCombinator;
+        this.packedSerializer = packedSerializer;
+        this.initialSync = new CountDownLatch(1);
+    }
+
+    @Override
+    protected void runImpl() throws Exception {
+        while (!isTerminateRequested()) {
+            try {
+                followPrimary();
+            } catch (Exception exp) {
+                if (!isTerminateRequested()) {
+                    Log.w("Lost connection to primary " + primaryHost + ":" + primaryPort + " for " + dataInterface.getName() + ", will reconnect", exp);
+                    Utils.threadSleep(RECONNECT_DELAY);
+                }
+            } finally {
+                IOUtils.closeQuietly(connection);
+            }
+        }
+    }
+
+    private void followPrimary() throws IOException {
+        connection = new SocketConnection(primaryHost, primaryPort, false, false);
+        connection.useLargeInputBuffer();
+        connection.ensureBuffered();
+        KeyEncoding keyEncoding = Connection.writeHandshake(connection, RemoteDataInterfaceServer.ConnectionType.BATCH_READ_FROM_INTERFACE, dataInterface.getName(), dataInterface.isTemporaryDataInterface(), className, packedCombinator, packedSerializer);
+        connection.writeByte((byte) RemoteDataInterfaceServer.Action.SUBSCRIBE_CHANGES.ordinal());
+        connection.flush();
+        long response = connection.readLong();
+        if (response != LONG_OK) {
+            throw new RuntimeException("Failed to subscribe to changes of " + dataInterface.getName() + ": " + connection.readString());
+        }
+        SnapshotMerge snapshotMerge = new SnapshotMerge();
+        try {
+            while (!isTerminateRequested()) {
+                long message = connection.readLong();
+                if (message == LONG_HEARTBEAT) {
+                    continue;
+                } else if (message == LONG_END) {
+                    if (snapshotMerge != null) {
+                        snapshotMerge.removeRemainingLocalKeys();
+                        snapshotMerge.close();
+                        snapshotMerge = null;
+                    }
+                    dataInterface.flush();
+                    initialSync.countDown();
+                    Log.i("Received snapshot of " + dataInterface.getName() + " from primary " + primaryHost + ":" + primaryPort);
+                } else if (message == LONG_DATA_DROPPED) {
+                    dataInterface.dropAllData();
+                } else if (message == LONG_KEYS_DELETED) {
+                    long numOfKeys = connection.readLong();
+                    long[] keys = RemoteBatchUtils.readKeys(numOfKeys, keyEncoding, connection);
+                    List<KeyValue> deletes = new ArrayList<>(keys.length);
+                    for (long key : keys) {
+                        deletes.add(new KeyValue<>(key, null));
+                    }
+                    dataInterface.write(IterableUtils.iterator(deletes));
+                } else if (message == LONG_ERROR) {
+                    throw new RuntimeException("Primary reported error for " + dataInterface.getName() + ": " + connection.readString());
+                } else {
+                    List<KeyValue> values = RemoteBatchUtils.readBatch(message, keyEncoding, connection, dataInterface.getObjectSerializer());
+                    if (snapshotMerge != null) {
+                        for (KeyValue value : values) {
+                            snapshotMerge.removeLocalKeysUntil(value.getKey());
+                        }
+                        snapshotMerge.writeDeletes();
+                    }
+                    writeAbsoluteValues(values);
+                }
+            }
+        } finally {
+            if (snapshotMerge != null) {
+                snapshotMerge.close();
+            }
+        }
+    }
+
+    /**
+     * Deleting a key before writing its new value makes sure the value is not combined with the local value
+     */
+
+    private void writeAbsoluteValues(List<KeyValue> values) {
+        List<KeyValue> writes = new ArrayList<>(values.size() * 2);
+        for (KeyValue value : values) {
+            writes.add(new KeyValue<>(value.getKey(), null));
+            writes.add(value);
+        }
+        dataInterface.write(IterableUtils.iterator(writes));
+    }
+
+    /**
+     * Walks through the sorted local keys while the sorted keys of a snapshot are received, and removes the local keys that
+     * are not in the snapshot. Only the current local key is kept in memory.
+     */
+
+    private class SnapshotMerge {
+
+        private final CloseableIterator<Long> localKeys = dataInterface.keyIterator();
+        private Long nextLocalKey = nextLocalKey();
+        private List<KeyValue> deletes = new ArrayList<>();
+
+        private Long nextLocalKey() {
+            return localKeys.hasNext() ? localKeys.next() : null;
+        }
+
+        /**
+         * Removes the local keys that are smaller than the key of the snapshot and skips the local key that is equal to it
+         */
+
+        void removeLocalKeysUntil(long snapshotKey) {
+            while (nextLocalKey != null && nextLocalKey < snapshotKey) {
+                deletes.add(new KeyValue<>(nextLocalKey, null));
+                nextLocalKey = nextLocalKey();
+            }
+            if (nextLocalKey != null && nextLocalKey == snapshotKey) {
+                nextLocalKey = nextLocalKey();
+            }
+            if (deletes.size() >= DELETE_BATCH_SIZE) {
+                writeDeletes();
+            }
+        }
+
+        void removeRemainingLocalKeys() {
+            while (nextLocalKey != null) {
+                deletes.add(new KeyValue<>(nextLocalKey, null));
+                nextLocalKey = nextLocalKey();
+                if (deletes.size() >= DELETE_BATCH_SIZE) {
+                    writeDeletes();
+                }
+            }
+            writeDeletes();
+        }
+
+        void writeDeletes() {
+            if (!deletes.isEmpty()) {
+                dataInterface.write(IterableUtils.iterator(deletes));
+                deletes = new ArrayList<>();
+            }
+        }
+
+        void close() {
+            localKeys.close();
+        }
+    }
+
+    /**
+     * @return false if the initial snapshot was not received within the timeout (in ms)
+     */
+
+    public boolean waitForInitialSync(long timeout) throws InterruptedException {
+        return initialSync.await(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    public void stopFollowing() {
+        terminate();
+        IOUtils.closeQuietly(connection);
+        waitForFinish();
+    }
+
+}
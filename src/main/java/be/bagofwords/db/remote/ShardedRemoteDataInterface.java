@@ -0,0 +1,354 @@
+package be.bagofwords.db.remote;
+
+import be.bagofwords.db.DataInterface;
+import be.bagofwords.db.combinator.Combinator;
+import be.bagofwords.db.impl.BaseDataInterface;
+import be.bagofwords.db.impl.UpdateListener;
+import be.bagofwords.db.impl.UpdateListenerCollection;
+import be.bagofwords.db.methods.KeyFilter;
+import be.bagofwords.db.methods.KeyValueAggregator;
+import be.bagofwords.db.methods.ObjectSerializer;
+import be.bagofwords.iterator.CloseableIterator;
+import be.bagofwords.iterator.IterableUtils;
+import be.bagofwords.util.ExecutorServiceFactory;
+import be.bagofwords.util.KeyValue;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Data interface that spreads its keys over several remote servers. Every key is assigned to a single server with a
+ * {@link ConsistentHashRing}. Operations on all data (iterators, sizes, flush, ...) are sent to all servers in parallel and
+ * the results are merged, iterators are merged back into key order.
+ */
+
+public class ShardedRemoteDataInterface<T> extends BaseDataInterface<T> {
+
+    private static final int KEY_BATCH_SIZE = 10000;
+
+    private final List<RemoteDataInterface<T>> shards;
+    private final ConsistentHashRing hashRing;
+    private final ExecutorService executorService;
+    private final UpdateListenerCollection<T> updateListenerCollection;
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    /**
+     * @param shardNames the names of the shards (host:port), used to position the shards on the hash ring
+     */
+
+    public ShardedRemoteDataInterface(String name, Class<T> objectClass, Combinator<T> combinator, ObjectSerializer<T> objectSerializer, boolean isTemporaryDataInterface, List<String> shardNames, List<RemoteDataInterface<T>> shards) {
+        super(name, objectClass, combinator, objectSerializer, isTemporaryDataInterface);
+        if (shardNames.size() != shards.size()) {
+            throw new IllegalArgumentException("Received " + shardNames.size() + " shard names for " + shards.size() + " shards");
+        }
+        this.shards = shards;
+        this.hashRing = new ConsistentHashRing(shardNames);
+        this.executorService = ExecutorServiceFactory.createExecutorService("sharded_data_interface");
+        this.updateListenerCollection = new UpdateListenerCollection<>();
+    }
+
+    private RemoteDataInterface<T> getShard(long key) {
+        return shards.get(hashRing.getShard(key));
+    }
+
+    @Override
+    public T read(long key) {
+        return getShard(key).read(key);
+    }
+
+    @Override
+    public CompletableFuture<T> readAsync(long key) {
+        return getShard(key).readAsync(key);
+    }
+
+    @Override
+    public CompletableFuture<Void> writeAsync(long key, T value) {
+        return getShard(key).writeAsync(key, value).thenRun(() -> updateListenerCollection.dateUpdated(key, value));
+    }
+
+    @Override
+    public boolean mightContain(long key) {
+        return getShard(key).mightContain(key);
+    }
+
+    @Override
+    public void write(long key, T value) {
+        getShard(key).write(key, value);
+        updateListenerCollection.dateUpdated(key, value);
+    }
+
+    @Override
+    public void write(CloseableIterator<KeyValue<T>> entries) {
+        List<KeyValue<T>> batch = new ArrayList<>();
+        while (entries.hasNext()) {
+            batch.add(entries.next());
+            if (batch.size() >= KEY_BATCH_SIZE) {
+                writeBatch(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        entries.close();
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+        }
+    }
+
+    private void writeBatch(List<KeyValue<T>> batch) {
+        List<List<KeyValue<T>>> valuesPerShard = partition(batch, KeyValue::getKey);
+        List<Callable<Object>> tasks = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            List<KeyValue<T>> values = valuesPerShard.get(i);
+            if (!values.isEmpty()) {
+                RemoteDataInterface<T> shard = shards.get(i);
+                tasks.add(() -> {
+                    shard.write(IterableUtils.iterator(values));
+                    return null;
+                });
+            }
+        }
+        execute(tasks);
+        updateListenerCollection.dateUpdated(batch);
+    }
+
+    @Override
+    public CloseableIterator<KeyValue<T>> iterator() {
+        return mergeIterators(RemoteDataInterface::iterator, KeyValue::getKey);
+    }
+
+    @Override
+    public CloseableIterator<KeyValue<T>> iterator(KeyFilter keyFilter) {
+        return mergeIterators(shard -> shard.iterator(keyFilter), KeyValue::getKey);
+    }
+
+    @Override
+    public CloseableIterator<KeyValue<T>> iterator(Predicate<T> valueFilter) {
+        return mergeIterators(shard -> shard.iterator(valueFilter), KeyValue::getKey);
+    }
+
+    @Override
+    public CloseableIterator<Long> keyIterator() {
+        return mergeIterators(RemoteDataInterface::keyIterator, key -> key);
+    }
+
+    @Override
+    public CloseableIterator<KeyValue<T>> cachedValueIterator() {
+        return mergeIterators(RemoteDataInterface::cachedValueIterator, KeyValue::getKey);
+    }
+
+    private <E> CloseableIterator<E> mergeIterators(Function<RemoteDataInterface<T>, CloseableIterator<E>> createIterator, ToLongFunction<E> keyFunction) {
+        //Every iterator holds a connection to its shard, close the ones that were opened if another shard fails
+        List<CloseableIterator<E>> openedIterators = new ArrayList<>();
+        AtomicBoolean failed = new AtomicBoolean(false);
+        try {
+            List<CloseableIterator<E>> iterators = forAllShards(shard -> {
+                CloseableIterator<E> iterator = createIterator.apply(shard);
+                synchronized (openedIterators) {
+                    if (failed.get()) {
+                        iterator.close();
+                    } else {
+                        openedIterators.add(iterator);
+                    }
+                }
+                return iterator;
+            });
+            return new SortedMergeIterator<>(iterators, keyFunction);
+        } catch (RuntimeException exp) {
+            synchronized (openedIterators) {
+                failed.set(true);
+                for (CloseableIterator<E> iterator : openedIterators) {
+                    iterator.close();
+                }
+            }
+            throw exp;
+        }
+    }
+
+    /**
+     * Values are returned in the order of the keys in the key iterator
+     */
+
+    @Override
+    public CloseableIterator<KeyValue<T>> iterator(CloseableIterator<Long> keyIterator) {
+        return new CloseableIterator<KeyValue<T>>() {
+
+            private Iterator<KeyValue<T>> currentBatch = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!currentBatch.hasNext() && keyIterator.hasNext()) {
+                    currentBatch = readBatch(keyIterator).iterator();
+                }
+                return currentBatch.hasNext();
+            }
+
+            @Override
+            public KeyValue<T> next() {
+                return currentBatch.next();
+            }
+
+            @Override
+            protected void closeInt() {
+                keyIterator.close();
+            }
+        };
+    }
+
+    private List<KeyValue<T>> readBatch(CloseableIterator<Long> keyIterator) {
+        List<Long> keys = new ArrayList<>();
+        while (keyIterator.hasNext() && keys.size() < KEY_BATCH_SIZE) {
+            keys.add(keyIterator.next());
+        }
+        List<List<Long>> keysPerShard = partition(keys, key -> key);
+        List<Callable<List<KeyValue<T>>>> tasks = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            List<Long> shardKeys = keysPerShard.get(i);
+            if (!shardKeys.isEmpty()) {
+                RemoteDataInterface<T> shard = shards.get(i);
+                tasks.add(() -> {
+                    CloseableIterator<KeyValue<T>> iterator = shard.iterator(IterableUtils.iterator(shardKeys));
+                    List<KeyValue<T>> values = new ArrayList<>();
+                    while (iterator.hasNext()) {
+                        values.add(iterator.next());
+                    }
+                    iterator.close();
+                    return values;
+                });
+            }
+        }
+        Map<Long, T> values = new HashMap<>();
+        for (List<KeyValue<T>> shardValues : execute(tasks)) {
+            for (KeyValue<T> value : shardValues) {
+                values.put(value.getKey(), value.getValue());
+            }
+        }
+        List<KeyValue<T>> result = new ArrayList<>(values.size());
+        for (Long key : keys) {
+            T value = values.get(key);
+            if (value != null) {
+                result.add(new KeyValue<>(key, value));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public <R> R aggregate(KeyValueAggregator<T, R> aggregator) {
+        List<R> partialResults = forAllShards(shard -> shard.aggregate(aggregator));
+        R result = aggregator.createEmptyResult();
+        for (R partialResult : partialResults) {
+            result = aggregator.merge(result, partialResult);
+        }
+        return result;
+    }
+
+    @Override
+    public long apprSize() {
+        return forAllShards(RemoteDataInterface::apprSize).stream().mapToLong(size -> size).sum();
+    }
+
+    @Override
+    public long exactSize() {
+        return forAllShards(RemoteDataInterface::exactSize).stream().mapToLong(size -> size).sum();
+    }
+
+    @Override
+    public void flush() {
+        flushLock.lock();
+        try {
+            ifNotClosed(() -> forAllShards(shard -> {
+                shard.flush();
+                return null;
+            }));
+            updateListenerCollection.dataFlushed();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public void dropAllData() {
+        forAllShards(shard -> {
+            shard.dropAllData();
+            return null;
+        });
+        updateListenerCollection.dataDropped();
+    }
+
+    @Override
+    public void optimizeForReading() {
+        forAllShards(shard -> {
+            shard.optimizeForReading();
+            return null;
+        });
+    }
+
+    @Override
+    protected void doClose() {
+        for (RemoteDataInterface<T> shard : shards) {
+            shard.close();
+        }
+        executorService.shutdownNow();
+    }
+
+    @Override
+    public DataInterface<T> getCoreDataInterface() {
+        return this;
+    }
+
+    @Override
+    public void registerUpdateListener(UpdateListener<T> updateListener) {
+        updateListenerCollection.registerUpdateListener(updateListener);
+    }
+
+    private <E> List<List<E>> partition(List<E> values, ToLongFunction<E> keyFunction) {
+        List<List<E>> result = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            result.add(new ArrayList<>());
+        }
+        for (E value : values) {
+            result.get(hashRing.getShard(keyFunction.applyAsLong(value))).add(value);
+        }
+        return result;
+    }
+
+    private <R> List<R> forAllShards(Function<RemoteDataInterface<T>, R> function) {
+        return execute(shards.stream().map(shard -> (Callable<R>) () -> function.apply(shard)).collect(Collectors.toList()));
+    }
+
+    private <R> List<R> execute(List<Callable<R>> tasks) {
+        if (tasks.size() == 1) {
+            try {
+                return Collections.singletonList(tasks.get(0).call());
+            } catch (Exception exp) {
+                throw new RuntimeException("Failed to execute request on shard of " + getName(), exp);
+            }
+        }
+        List<Future<R>> futures = new ArrayList<>();
+        for (Callable<R> task : tasks) {
+            futures.add(executorService.submit(task));
+        }
+        List<R> result = new ArrayList<>(futures.size());
+        try {
+            for (Future<R> future : futures) {
+                result.add(future.get());
+            }
+        } catch (InterruptedException exp) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for shards of " + getName(), exp);
+        } catch (ExecutionException exp) {
+            throw new RuntimeException("Failed to execute request on shard of " + getName(), exp.getCause());
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,59 @@
+package be.bagofwords.db.remote;
+
+import be.bagofwords.db.DataInterface;
+import be.bagofwords.db.combinator.Combinator;
+import be.bagofwords.db.impl.BaseDataInterface;
+import be.bagofwords.db.impl.BaseDataInterfaceFactory;
+import be.bagofwords.db.methods.ObjectSerializer;
+import be.bagofwords.minidepi.ApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates data interfaces that spread their keys over all servers listed in the property socket.hosts (a comma separated
+ * list of host:port).
+ */
+
+public class ShardedRemoteDatabaseInterfaceFactory extends BaseDataInterfaceFactory {
+
+    private final List<String> hosts;
+    private final List<Integer> ports;
+    private final int writeBufferSize;
+    private final long writeBufferMaxDelay;
+
+    public ShardedRemoteDatabaseInterfaceFactory(ApplicationContext context) {
+        super(context);
+        this.hosts = new ArrayList<>();
+        this.ports = new ArrayList<>();
+        String servers = context.getProperty("socket.hosts", "count-db.properties");
+        for (String server : servers.split(",")) {
+            server = server.trim();
+            int separator = server.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new RuntimeException("Invalid server " + server + " in socket.hosts, expected host:port");
+            }
+            hosts.add(server.substring(0, separator));
+            ports.add(Integer.parseInt(server.substring(separator + 1)));
+        }
+        this.writeBufferSize = Integer.parseInt(context.getProperty("remote_write_buffer_size", "count-db.properties"));
+        this.writeBufferMaxDelay = Long.parseLong(context.getProperty("remote_write_buffer_max_delay", "count-db.properties"));
+    }
+
+    @Override
+    protected synchronized <T extends Object> BaseDataInterface<T> createBaseDataInterface(String name, Class<T> objectClass, Combinator<T> combinator, ObjectSerializer<T> objectSerializer, boolean isTemporaryDataInterface) {
+        List<String> shardNames = new ArrayList<>();
+        List<RemoteDataInterface<T>> shards = new ArrayList<>();
+        for (int i = 0; i < hosts.size(); i++) {
+            shardNames.add(hosts.get(i) + ":" + ports.get(i));
+            shards.add(new RemoteDataInterface<>(name, objectClass, combinator, objectSerializer, hosts.get(i), ports.get(i), isTemporaryDataInterface, asyncJobService, writeBufferSize, writeBufferMaxDelay));
+        }
+        return new ShardedRemoteDataInterface<>(name, objectClass, combinator, objectSerializer, isTemporaryDataInterface, shardNames, shards);
+    }
+
+    @Override
+    protected Class<? extends DataInterface> getBaseDataInterfaceClass() {
+        return ShardedRemoteDataInterface.class;
+    }
+
+}
@@ -0,0 +1,66 @@
+package be.bagofwords.db.remote;
+
+import be.bagofwords.iterator.CloseableIterator;
+
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.ToLongFunction;
+
+/**
+ * Merges iterators that are each sorted by key into a single iterator that is sorted by key. The key sets of the iterators
+ * are expected to be disjoint (e.g. one iterator per shard).
+ */
+
+class SortedMergeIterator<E> extends CloseableIterator<E> {
+
+    private final List<CloseableIterator<E>> iterators;
+    private final ToLongFunction<E> keyFunction;
+    private final PriorityQueue<Head<E>> heads;
+
+    public SortedMergeIterator(List<CloseableIterator<E>> iterators, ToLongFunction<E> keyFunction) {
+        this.iterators = iterators;
+        this.keyFunction = keyFunction;
+        this.heads = new PriorityQueue<>(Math.max(1, iterators.size()), (h1, h2) -> Long.compare(h1.key, h2.key));
+        for (CloseableIterator<E> iterator : iterators) {
+            advance(iterator);
+        }
+    }
+
+    private void advance(CloseableIterator<E> iterator) {
+        if (iterator.hasNext()) {
+            E next = iterator.next();
+            heads.add(new Head<>(keyFunction.applyAsLong(next), next, iterator));
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heads.isEmpty();
+    }
+
+    @Override
+    public E next() {
+        Head<E> head = heads.poll();
+        advance(head.iterator);
+        return head.value;
+    }
+
+    @Override
+    protected void closeInt() {
+        for (CloseableIterator<E> iterator : iterators) {
+            iterator.close();
+        }
+    }
+
+    private static class Head<E> {
+        private final long key;
+        private final E value;
+        private final CloseableIterator<E> iterator;
+
+        private Head(long key, E value, CloseableIterator<E> iterator) {
+            this.key = key;
+            this.value = value;
+            this.iterator = iterator;
+        }
+    }
+}
@@ -4,7 +4,9 @@ import be.bagofwords.db.helper.EvenKeysFilter;
 import be.bagofwords.db.helper.EvenNumbersValueFilter;
 import be.bagofwords.db.helper.TestObject;
 import be.bagofwords.db.impl.BaseDataInterface;
+import be.bagofwords.db.methods.CountHistogramAggregator;
 import be.bagofwords.db.methods.RangeKeyFilter;
+import be.bagofwords.db.methods.SumAggregator;
 import be.bagofwords.iterator.CloseableIterator;
 import be.bagofwords.iterator.IterableUtils;
 import be.bagofwords.util.HashUtils;
@@ -17,6 +19,7 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -373,6 +376,25 @@ public class TestDataInterface extends BaseTestDataInterface {
         Assert.assertEquals(numOfItems / 2, numOfValuesRead.intValue());
     }
 
+    @Test
+    public void testKeyIteratorWithRangeFilter() {
+        DataInterface<Long> dataInterface = createCountDataInterface("testKeyIteratorWithRangeFilter");
+        for (int i = 0; i < 100; i++) {
+            dataInterface.write(i, (long) i);
+        }
+        dataInterface.flush();
+        List<Long> keys = new ArrayList<>();
+        CloseableIterator<Long> closeableIterator = dataInterface.keyIterator(new RangeKeyFilter(20, 30));
+        while (closeableIterator.hasNext()) {
+            keys.add(closeableIterator.next());
+        }
+        closeableIterator.close();
+        Collections.sort(keys);
+        Assert.assertEquals(10, keys.size());
+        Assert.assertEquals(20, keys.get(0).longValue());
+        Assert.assertEquals(29, keys.get(9).longValue());
+    }
+
     @Test
     public void testValuesIteratorWithRangeFilter() {
         DataInterface<Long> dataInterface = createCountDataInterface("testValuesIteratorWithRangeFilter");
@@ -434,6 +456,147 @@ public class TestDataInterface extends BaseTestDataInterface {
         }
     }
 
+    @Test
+    public void testAggregate() {
+        DataInterface<Long> dataInterface = createCountDataInterface("testAggregate");
+        int numOfItems = 100;
+        for (int i = 0; i < numOfItems; i++) {
+            dataInterface.write(i * 1000003l, (long) i);
+        }
+        dataInterface.flush();
+        Assert.assertEquals(numOfItems * (numOfItems - 1) / 2, dataInterface.aggregate(new SumAggregator()).longValue());
+        long[] histogram = dataInterface.aggregate(new CountHistogramAggregator());
+        Assert.assertEquals(1, histogram[1]);
+        Assert.assertEquals(2, histogram[2]);
+        Assert.assertEquals(36, histogram[7]);
+    }
+
+    @Test
+    public void testExactSize() throws Exception {
+        int numOfExamples = 5000;
+        DataInterface<Long> db = createCountDataInterface("testExactSize");
+        db.dropAllData();
+        for (int i = 0; i < numOfExamples; i++) {
+            db.write(i * 1000003l, 1l);
+        }
+        db.flush();
+        db.optimizeForReading();
+        Assert.assertEquals(numOfExamples, db.exactSize());
+        if (backendType == DatabaseBackendType.FILE) {
+            //Computed from the number of keys in every file
+            Assert.assertEquals(numOfExamples, db.apprSize());
+        }
+        for (int i = 0; i < numOfExamples; i += 2) {
+            db.write(i * 1000003l, 1l);
+        }
+        for (int i = 0; i < numOfExamples; i += 5) {
+            db.remove(i * 1000003l);
+        }
+        db.flush();
+        Assert.assertEquals(numOfExamples - numOfExamples / 5, db.exactSize());
+        db.optimizeForReading();
+        if (backendType == DatabaseBackendType.FILE) {
+            Assert.assertEquals(numOfExamples - numOfExamples / 5, db.apprSize());
+        }
+    }
+
+    @Test
+    public void testTopCounts() {
+        DataInterface<Long> dataInterface = createCountDataInterface("testTopCounts");
+        int numOfItems = 10000;
+        for (int i = 0; i < numOfItems; i++) {
+            dataInterface.write(i * 1000003l, (long) (i % 1000));
+        }
+        dataInterface.flush();
+        dataInterface.optimizeForReading();
+        List<KeyValue<Long>> topCounts = dataInterface.topK(25);
+        Assert.assertEquals(25, topCounts.size());
+        for (int i = 0; i < topCounts.size(); i++) {
+            Assert.assertEquals(999 - i / 10, topCounts.get(i).getValue().longValue());
+        }
+        List<KeyValue<Long>> largeCounts = dataInterface.keysWithCountAbove(995);
+        Assert.assertEquals(40, largeCounts.size());
+        for (KeyValue<Long> largeCount : largeCounts) {
+            Assert.assertEquals(largeCount.getValue().longValue(), (largeCount.getKey() / 1000003l) % 1000);
+        }
+        Assert.assertTrue(dataInterface.keysWithCountAbove(1000).isEmpty());
+    }
+
+    @Test
+    public void testTopCountsOfNonCountValues() {
+        DataInterface<String> dataInterface = dataInterfaceFactory.dataInterface("testTopCountsOfNonCountValues", String.class).caching(type).create();
+        dataInterface.write(1, "value");
+        dataInterface.flush();
+        try {
+            dataInterface.topK(10);
+            Assert.fail("topK should only be supported for Long values");
+        } catch (RuntimeException exp) {
+            Assert.assertTrue(exp.getMessage().contains("Long values"));
+        }
+        dataInterface.dropAllData();
+        dataInterface.close();
+    }
+
+    @Test
+    public void testAsync() throws Exception {
+        DataInterface<Long> dataInterface = createCountDataInterface("testAsync");
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        for (long key = 0; key < 100; key++) {
+            writes.add(dataInterface.writeAsync(key, key + 1));
+        }
+        CompletableFuture.allOf(writes.toArray(new CompletableFuture[writes.size()])).get();
+        dataInterface.flushAsync().get();
+        Assert.assertEquals(43l, dataInterface.readAsync(42).get().longValue());
+        Assert.assertNull(dataInterface.readAsync(1000).get());
+        List<KeyValue<Long>> values = dataInterface.readManyAsync(Arrays.asList(5l, 1000l, 3l)).get();
+        Assert.assertEquals(2, values.size());
+        Assert.assertEquals(5, values.get(0).getKey());
+        Assert.assertEquals(4l, values.get(1).getValue().longValue());
+    }
+
+    @Test
+    public void testCursor() throws Exception {
+        BaseDataInterface<String> dataInterface = createDataInterface("testCursor", String.class).caching(type).create();
+        dataInterface.dropAllData();
+        for (long key = 0; key < 1000; key++) {
+            dataInterface.write(key, "value_" + key);
+        }
+        dataInterface.flush();
+        Map<Long, String> expected = new HashMap<>();
+        CloseableIterator<KeyValue<String>> iterator = dataInterface.iterator();
+        while (iterator.hasNext()) {
+            KeyValue<String> next = iterator.next();
+            expected.put(next.getKey(), next.getValue());
+        }
+        iterator.close();
+        CloseableIterator<KeyValue<String>> cursor = dataInterface.cursor();
+        int numOfValues = 0;
+        while (cursor.hasNext()) {
+            KeyValue<String> next = cursor.next();
+            Assert.assertEquals(expected.get(next.getKey()), next.getValue());
+            numOfValues++;
+        }
+        cursor.close();
+        Assert.assertEquals(1000, numOfValues);
+        Assert.assertEquals(1000, expected.size());
+    }
+
+    @Test
+    public void testDeleteAfterWritesFromMultipleThreads() throws Exception {
+        DataInterface<Long> dataInterface = createCountDataInterface("testDeleteAfterWritesFromMultipleThreads");
+        dataInterface.dropAllData();
+        IntStream.range(0, 8).parallel().forEach(thread -> {
+            for (long key = 0; key < 100; key++) {
+                dataInterface.write(key, 1l);
+            }
+        });
+        dataInterface.write(42, null);
+        dataInterface.write(42, 3l);
+        dataInterface.flush();
+        Assert.assertEquals(8l, dataInterface.read(41).longValue());
+        Assert.assertEquals(3l, dataInterface.read(42).longValue());
+    }
+
     private boolean findValue(DataInterface<Long> dataInterface, long key, Long targetValue) {
         long started = System.currentTimeMillis();
         boolean foundValue = false;
@@ -0,0 +1,126 @@
+package be.bagofwords.db.data;
+
+import be.bagofwords.db.combinator.CountsArrayCombinator;
+import be.bagofwords.db.combinator.CountsListCombinator;
+import be.bagofwords.db.methods.DataStream;
+import be.bagofwords.db.methods.DataStreamUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class TestCountsArray {
+
+    @Test
+    public void testAddAndMerge() {
+        Random random = new Random(42);
+        TreeMap<Long, Long> expected = new TreeMap<>();
+        CountsArray first = new CountsArray();
+        CountsArray second = new CountsArray();
+        for (int i = 0; i < 10000; i++) {
+            long key = random.nextInt(5000) - 2500;
+            long count = random.nextInt(10);
+            (random.nextBoolean() ? first : second).addCount(key, count);
+            expected.merge(key, count, Long::sum);
+        }
+        CountsArray result = new CountsArrayCombinator().combine(first, second);
+        Assert.assertEquals(expected.size(), result.size());
+        int ind = 0;
+        for (Long key : expected.keySet()) {
+            Assert.assertEquals(key.longValue(), result.getKeyAt(ind));
+            Assert.assertEquals(expected.get(key).longValue(), result.getCountAt(ind));
+            Assert.assertEquals(expected.get(key).longValue(), result.getCount(key));
+            ind++;
+        }
+        Assert.assertEquals(0, result.getCount(10000));
+        Assert.assertEquals(expected.values().stream().mapToLong(Long::longValue).sum(), result.getTotal());
+    }
+
+    @Test
+    public void testMergeKeepsArguments() {
+        CountsArray first = new CountsArray();
+        first.addCount(3, 1);
+        first.addCount(1, 2);
+        first.addCount(3, 4);
+        CountsArray second = new CountsArray(2, 7);
+        CountsArray result = CountsArray.merge(first, second);
+        Assert.assertNotSame(first, result);
+        Assert.assertNotSame(second, result);
+        Assert.assertEquals(3, first.getUncompactedSize());
+        Assert.assertEquals(3, result.size());
+        Assert.assertEquals(5, result.getCount(3));
+        Assert.assertEquals(7, result.getCount(2));
+        result.addCount(2, 1);
+        Assert.assertEquals(7, second.getCount(2));
+    }
+
+    @Test
+    public void testSerializer() {
+        CountsArray counts = new CountsArray();
+        counts.addCount(5, 2);
+        counts.addCount(-3, 7);
+        counts.addCount(5, 1);
+        CountsArraySerializer serializer = new CountsArraySerializer();
+        DataStream ds = new DataStream();
+        Assert.assertEquals(4 + 2 * 16, DataStreamUtils.writeValue(counts, ds, serializer));
+        DataStreamUtils.writeValue(null, ds, serializer);
+        DataStream input = new DataStream(ds.buffer);
+        CountsArray result = serializer.readValue(input, DataStreamUtils.getObjectSize(input, serializer));
+        Assert.assertEquals(counts, result);
+        Assert.assertEquals(Arrays.asList(-3l, 5l), result.getSortedKeys());
+        Assert.assertNull(serializer.readValue(input, DataStreamUtils.getObjectSize(input, serializer)));
+    }
+
+    @Test
+    public void testReadIntoReusedValue() {
+        CountsArraySerializer serializer = new CountsArraySerializer();
+        DataStream ds = new DataStream();
+        DataStreamUtils.writeValue(new CountsArray(new long[]{1, 2, 3}, new long[]{4, 5, 6}, 3), ds, serializer);
+        DataStreamUtils.writeValue(new CountsArray(7, 8), ds, serializer);
+        DataStream input = new DataStream(ds.buffer);
+        int size = DataStreamUtils.getObjectSize(input, serializer);
+        CountsArray reused = serializer.readValue(input.buffer, input.position, size, null);
+        input.position += size;
+        Assert.assertEquals(new CountsArray(new long[]{1, 2, 3}, new long[]{4, 5, 6}, 3), reused);
+        size = DataStreamUtils.getObjectSize(input, serializer);
+        CountsArray result = serializer.readValue(input.buffer, input.position, size, reused);
+        Assert.assertSame(reused, result);
+        Assert.assertEquals(new CountsArray(7, 8), result);
+    }
+
+    @Test
+    public void testDoubleCounts() {
+        DoubleCountsArray first = new DoubleCountsArray(3, 0.5);
+        first.addCount(1, 1.0);
+        DoubleCountsArray result = DoubleCountsArray.merge(first, new DoubleCountsArray(3, 0.25));
+        Assert.assertEquals(2, result.size());
+        Assert.assertEquals(0.75, result.getCount(3), 0.0);
+        DoubleCountsArraySerializer serializer = new DoubleCountsArraySerializer();
+        DataStream ds = new DataStream();
+        DataStreamUtils.writeValue(result, ds, serializer);
+        DataStream input = new DataStream(ds.buffer);
+        Assert.assertEquals(result, serializer.readValue(input, DataStreamUtils.getObjectSize(input, serializer)));
+        DataStreamUtils.writeValue(null, ds, serializer);
+        DataStreamUtils.writeValue(new DoubleCountsArray(), ds, serializer);
+        Assert.assertNull(serializer.readValue(input, DataStreamUtils.getObjectSize(input, serializer)));
+        Assert.assertEquals(0, serializer.readValue(input, DataStreamUtils.getObjectSize(input, serializer)).size());
+    }
+
+    @Test
+    public void testCountsListCombinator() {
+        CountsList first = new CountsList();
+        first.addCount(4, 1);
+        first.addCount(2, 1);
+        CountsList second = new CountsList(4, 3);
+        second.addCount(9, 1);
+        CountsList result = new CountsListCombinator().combine(first, second);
+        Assert.assertEquals(3, result.size());
+        Assert.assertEquals(new CountsArray(result), new CountsArray(new long[]{2, 4, 9}, new long[]{1, 4, 1}, 3));
+        //The values that were combined are not changed
+        Assert.assertEquals(4, first.get(0).getFirst().longValue());
+        Assert.assertEquals(2, first.get(1).getFirst().longValue());
+    }
+
+}
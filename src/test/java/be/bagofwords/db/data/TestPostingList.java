@@ -0,0 +1,60 @@
+package be.bagofwords.db.data;
+
+import be.bagofwords.db.methods.DataStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class TestPostingList {
+
+    @Test
+    public void testUnionAndIntersect() {
+        PostingList first = PostingList.fromKeys(new long[]{5, -3, 8, 5, 100});
+        PostingList second = PostingList.fromKeys(new long[]{8, 1, 100, Long.MAX_VALUE});
+        Assert.assertEquals(4, first.size());
+        Assert.assertEquals(PostingList.fromKeys(new long[]{-3, 1, 5, 8, 100, Long.MAX_VALUE}), PostingList.union(first, second));
+        Assert.assertEquals(PostingList.fromKeys(new long[]{8, 100}), PostingList.intersect(first, second));
+        Assert.assertTrue(PostingList.intersect(first, PostingList.empty()).isEmpty());
+    }
+
+    @Test
+    public void testIntersectLargeAndSmallList() {
+        Random random = new Random(1);
+        long[] largeKeys = new long[100000];
+        for (int i = 0; i < largeKeys.length; i++) {
+            largeKeys[i] = random.nextLong();
+        }
+        PostingList large = PostingList.fromKeys(largeKeys);
+        long[] smallKeys = new long[100];
+        for (int i = 0; i < smallKeys.length; i++) {
+            smallKeys[i] = i % 2 == 0 ? largeKeys[i * 997] : random.nextLong();
+        }
+        PostingList small = PostingList.fromKeys(smallKeys);
+        PostingList intersection = PostingList.intersect(large, small);
+        Assert.assertEquals(50, intersection.size());
+        for (int i = 0; i < smallKeys.length; i += 2) {
+            Assert.assertTrue(intersection.contains(smallKeys[i]));
+        }
+    }
+
+    @Test
+    public void testSerialization() {
+        PostingListSerializer serializer = new PostingListSerializer();
+        PostingList dense = PostingList.fromKeys(new long[]{1000, 1001, 1003, 1010, 1200});
+        PostingList wide = PostingList.fromKeys(new long[]{Long.MIN_VALUE, -1, 0, Long.MAX_VALUE});
+        DataStream ds = new DataStream();
+        serializer.writeValue(dense, ds);
+        int sizeOfDense = ds.position;
+        serializer.writeValue(wide, ds);
+        serializer.writeValue(PostingList.empty(), ds);
+        serializer.writeValue(null, ds);
+        Assert.assertEquals(1 + 8 + 5, sizeOfDense);
+        DataStream input = new DataStream(ds.buffer);
+        Assert.assertEquals(dense, serializer.readValue(input, sizeOfDense));
+        Assert.assertEquals(wide, serializer.readValue(input, -1));
+        Assert.assertEquals(PostingList.empty(), serializer.readValue(input, -1));
+        Assert.assertNull(serializer.readValue(input, -1));
+        Assert.assertEquals(ds.position, input.position);
+    }
+}
@@ -0,0 +1,83 @@
+package be.bagofwords.db.experimental.approximate;
+
+import be.bagofwords.util.KeyValue;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class TestApproximateCountDataInterface {
+
+    @Test
+    public void testCountsAndHeavyHitters() {
+        ApproximateCountDataInterface counts = new ApproximateCountDataInterface("test", 0.001, 0.01, 10);
+        Map<Long, Long> expected = writeSkewedCounts(counts, new Random(42));
+        long total = expected.values().stream().mapToLong(Long::longValue).sum();
+        Assert.assertEquals(total, counts.getTotalCount());
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            long count = counts.readCount(entry.getKey());
+            Assert.assertTrue(count >= entry.getValue());
+        }
+        List<KeyValue<Long>> heavyHitters = counts.getHeavyHitters();
+        Assert.assertEquals(10, heavyHitters.size());
+        //key 0 is by far the most frequent key
+        Assert.assertEquals(0, heavyHitters.get(0).getKey());
+        Assert.assertEquals(expected.get(0l).doubleValue(), heavyHitters.get(0).getValue(), total * 0.001);
+    }
+
+    @Test
+    public void testSaveLoadAndMerge() throws IOException {
+        ApproximateCountDataInterface first = new ApproximateCountDataInterface("test", 0.001, 0.01, 10);
+        ApproximateCountDataInterface second = new ApproximateCountDataInterface("test", 0.001, 0.01, 10);
+        Map<Long, Long> expected = writeSkewedCounts(first, new Random(1));
+        writeSkewedCounts(second, new Random(2)).forEach((key, count) -> expected.merge(key, count, Long::sum));
+        File file = File.createTempFile("approximateCounts", ".bin");
+        try {
+            second.save(file);
+            first.merge(ApproximateCountDataInterface.load(file));
+        } finally {
+            file.delete();
+        }
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            Assert.assertTrue(first.readCount(entry.getKey()) >= entry.getValue());
+        }
+        Assert.assertEquals(0, first.getHeavyHitters().get(0).getKey());
+        Assert.assertEquals(expected.values().stream().mapToLong(Long::longValue).sum(), first.getTotalCount());
+    }
+
+    @Test(timeout = 60000)
+    public void testMergeInBothDirections() throws InterruptedException {
+        ApproximateCountDataInterface first = new ApproximateCountDataInterface("first", 0.01, 0.01, 10);
+        ApproximateCountDataInterface second = new ApproximateCountDataInterface("second", 0.01, 0.01, 10);
+        first.write(1, 1);
+        second.write(2, 1);
+        Thread thread = new Thread(() -> {
+            for (int i = 0; i < 10; i++) {
+                second.merge(first);
+            }
+        });
+        thread.start();
+        for (int i = 0; i < 10; i++) {
+            first.merge(second);
+        }
+        thread.join();
+        Assert.assertTrue(first.getTotalCount() > 2);
+        Assert.assertTrue(second.getTotalCount() > 2);
+    }
+
+    private Map<Long, Long> writeSkewedCounts(ApproximateCountDataInterface counts, Random random) {
+        Map<Long, Long> expected = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            long key = (long) Math.floor(Math.pow(random.nextDouble(), 4) * 5000);
+            counts.write(key, 1);
+            expected.merge(key, 1l, Long::sum);
+        }
+        return expected;
+    }
+
+}
@@ -0,0 +1,81 @@
+package be.bagofwords.db.experimental.id;
+
+import be.bagofwords.db.BaseTestDataInterface;
+import be.bagofwords.db.DatabaseBackendType;
+import be.bagofwords.db.DatabaseCachingType;
+import be.bagofwords.db.methods.DataStream;
+import be.bagofwords.db.methods.JsonObjectSerializer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(Parameterized.class)
+public class TestDirectIdDataInterface extends BaseTestDataInterface {
+
+    public TestDirectIdDataInterface(DatabaseCachingType type, DatabaseBackendType backendType) throws Exception {
+        super(type, backendType);
+    }
+
+    @Test
+    public void testWriteRead() {
+        DirectIdDataInterface<User> userDI = dataInterfaceFactory.directIdDataInterface("user", User.class).caching(type).create();
+        for (int i = 0; i < 100; i++) {
+            userDI.write(new User("id-" + i, "first" + i, "last" + i));
+        }
+        userDI.flush();
+        for (int i = 0; i < 100; i++) {
+            User readUser = userDI.read("id-" + i);
+            assertEquals("id-" + i, readUser.id);
+            assertEquals("first" + i, readUser.firstName);
+            assertEquals("last" + i, readUser.lastName);
+        }
+        assertNull(userDI.read("other-id"));
+        Set<String> ids = new HashSet<>();
+        userDI.iterator().forEachRemaining(user -> ids.add(user.id));
+        assertEquals(100, ids.size());
+        userDI.dropAllData();
+        userDI.close();
+    }
+
+    @Test
+    public void testCustomCombinator() {
+        DirectIdDataInterface<User> userDI = dataInterfaceFactory.directIdDataInterface("user", User.class).combinator(new UserFieldCombinator()).caching(type).create();
+        String id = "my-id";
+        userDI.write(new User(id, "Koen", null));
+        userDI.flush();
+        userDI.write(new User(id, null, "Deschacht"));
+        userDI.flush();
+        User readUser = userDI.read(id);
+        assertEquals(id, readUser.id);
+        assertEquals("Koen", readUser.firstName);
+        assertEquals("Deschacht", readUser.lastName);
+        userDI.dropAllData();
+        userDI.close();
+    }
+
+    @Test
+    public void testCollisions() {
+        //Ids with the same hash can not be found easily, so the combinator and serializer are tested directly
+        DirectIdCombinator<User> combinator = new DirectIdCombinator<>(new UserFieldCombinator());
+        IdObject combined = combinator.combine(new User("a", "Koen", null), new User("b", "Joske", null));
+        combined = combinator.combine(combined, new User("a", null, "Deschacht"));
+        assertTrue(combined instanceof IdCollisionList);
+        DirectIdObjectSerializer<User> serializer = new DirectIdObjectSerializer<>(User.class, new JsonObjectSerializer<>(User.class));
+        DataStream ds = new DataStream();
+        serializer.writeValue(combined, ds);
+        IdCollisionList<User> users = (IdCollisionList<User>) serializer.readValue(new DataStream(ds.buffer), ds.position);
+        assertEquals(2, users.size());
+        assertEquals("Koen", users.getObject("a").firstName);
+        assertEquals("Deschacht", users.getObject("a").lastName);
+        assertEquals("Joske", users.getObject("b").firstName);
+        assertNull(users.getObject("c"));
+    }
+
+}
@@ -0,0 +1,98 @@
+package be.bagofwords.db.experimental.index;
+
+import be.bagofwords.db.BaseTestDataInterface;
+import be.bagofwords.db.DatabaseBackendType;
+import be.bagofwords.db.DatabaseCachingType;
+import be.bagofwords.db.impl.BaseDataInterface;
+import be.bagofwords.db.methods.RangeKeyFilter;
+import be.bagofwords.util.HashUtils;
+import be.bagofwords.util.KeyValue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(Parameterized.class)
+public class TestIndexQueryPlanner extends BaseTestDataInterface {
+
+    private final Function<String, Long> tokenHasher = word -> HashUtils.hashCode(word.toLowerCase());
+    private final MultiDataIndexer<String> tokenizer = text -> Arrays.stream(text.split(" ")).map(tokenHasher).collect(toList());
+    private final MultiDataIndexer<String> lengthIndexer = text -> Collections.singletonList((long) text.split(" ").length);
+    private BaseDataInterface<String> baseInterface;
+    private PostingListDataInterfaceIndex<String> tokenIndex;
+    private PostingListDataInterfaceIndex<String> lengthIndex;
+    private IndexQueryPlanner<String> planner;
+
+    public TestIndexQueryPlanner(DatabaseCachingType type, DatabaseBackendType backendType) throws Exception {
+        super(type, backendType);
+    }
+
+    @Before
+    public void setup() {
+        baseInterface = dataInterfaceFactory.dataInterface("testQueryPlanner", String.class).caching(type).create();
+        tokenIndex = dataInterfaceFactory.postingListIndex(baseInterface, "queryPlannerTokens", tokenizer);
+        lengthIndex = dataInterfaceFactory.postingListIndex(baseInterface, "queryPlannerLengths", lengthIndexer);
+        planner = new IndexQueryPlanner<>(baseInterface);
+        for (int i = 0; i < 1000; i++) {
+            baseInterface.write(i, "common word" + (i % 10) + (i % 3 == 0 ? " three" : ""));
+        }
+        baseInterface.write(1000, "rare common word");
+        baseInterface.flush();
+    }
+
+    @After
+    public void tearDown() {
+        baseInterface.dropAllData();
+        baseInterface.close();
+    }
+
+    private IndexQuery<String> token(String word) {
+        return IndexQuery.lookup(tokenIndex, tokenHasher.apply(word));
+    }
+
+    @Test
+    public void testAnd() {
+        List<KeyValue<String>> result = planner.find(IndexQuery.and(token("common"), token("rare")));
+        assertEquals(1, result.size());
+        assertEquals(1000, result.get(0).getKey());
+        assertEquals(Arrays.asList(1000l), planner.findKeys(IndexQuery.and(token("common"), token("rare"))).getKeyList());
+        assertEquals(33, planner.find(IndexQuery.and(token("word1"), token("three"))).size());
+        assertEquals(33, planner.findKeys(IndexQuery.and(token("word1"), token("three"))).size());
+    }
+
+    @Test
+    public void testOrAndKeyFilters() {
+        assertEquals(201, planner.find(IndexQuery.or(token("word1"), token("word2"), token("rare"))).size());
+        IndexQuery<String> query = IndexQuery.and(IndexQuery.or(token("word1"), token("word2")), IndexQuery.keys(new RangeKeyFilter(0, 100)));
+        List<KeyValue<String>> result = planner.find(query);
+        assertEquals(20, result.size());
+        assertEquals(1, result.get(0).getKey());
+        assertEquals(Arrays.asList(0l, 10l, 20l), planner.findKeys(IndexQuery.and(IndexQuery.keys(new RangeKeyFilter(0, 30)), token("word0"))).getKeyList());
+        assertEquals(30, planner.find(IndexQuery.keys(new RangeKeyFilter(0, 30))).size());
+    }
+
+    @Test
+    public void testMultipleIndexes() {
+        IndexQuery<String> query = IndexQuery.and(IndexQuery.lookup(lengthIndex, 3), token("word5"));
+        assertEquals(33, planner.find(query).size());
+        assertEquals(1, planner.find(IndexQuery.and(IndexQuery.lookup(lengthIndex, 3), token("rare"))).size());
+    }
+
+    @Test
+    public void testChangedValues() {
+        baseInterface.write(1000, "not so rare");
+        baseInterface.flush();
+        assertEquals(0, planner.find(IndexQuery.and(token("common"), token("rare"))).size());
+        assertEquals(1, planner.find(IndexQuery.and(token("not"), token("rare"))).size());
+    }
+
+}
@@ -1,6 +1,7 @@
 package be.bagofwords.db.experimental.index;
 
 import be.bagofwords.db.BaseTestDataInterface;
+import be.bagofwords.db.DataInterface;
 import be.bagofwords.db.DatabaseBackendType;
 import be.bagofwords.db.DatabaseCachingType;
 import be.bagofwords.db.impl.BaseDataInterface;
@@ -13,6 +14,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -74,4 +76,44 @@ public class TestMultiDataInterfaceIndex extends BaseTestDataInterface {
         assertEquals("yolo and stuff", result.get(0).getValue());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testManyIndexUpdates() {
+        int numOfValues = 20000;
+        for (int i = 0; i < numOfValues; i++) {
+            baseInterface.write(10 + i, "value" + (i % 100) + " many");
+        }
+        baseInterface.flush();
+        assertEquals(numOfValues / 100, indexedInterface.read("value7").size());
+        assertEquals(numOfValues + 1, indexedInterface.read("many test").size());
+    }
+
+    @Test
+    public void testSynchronousIndexUpdates() {
+        DataInterface<String> directInterface = dataInterfaceFactory.dataInterface("testSynchronousIndexed", String.class).caching(DatabaseCachingType.DIRECT).create();
+        List<Long> indexedKeys = new ArrayList<>();
+        MultiDataInterfaceIndex<String> synchronousIndex = new MultiDataInterfaceIndex<String>("synchronousTokens", dataInterfaceFactory, directInterface, tokenizer) {
+            @Override
+            protected void applyUpdates(List<KeyValue<String>> keyValues) {
+                keyValues.forEach(keyValue -> indexedKeys.add(keyValue.getKey()));
+                super.applyUpdates(keyValues);
+            }
+        };
+        directInterface.write(3, "synchronous example");
+        //The index is updated by the thread that writes the value, before the data interface is flushed
+        assertEquals(Collections.singletonList(3l), indexedKeys);
+        directInterface.flush();
+        assertEquals(1, synchronousIndex.read("example").size());
+        directInterface.dropAllData();
+        directInterface.close();
+    }
+
+    @Test
+    public void testAsynchronousIndexUpdates() {
+        MultiDataInterfaceIndex<String> asynchronousIndex = new MultiDataInterfaceIndex<>("asynchronousTokens", dataInterfaceFactory, baseInterface, tokenizer, true);
+        baseInterface.write(3, "asynchronous example");
+        baseInterface.flush();
+        //Values written before the index was created are not indexed
+        assertEquals(1, asynchronousIndex.read("example").size());
+    }
+
+}
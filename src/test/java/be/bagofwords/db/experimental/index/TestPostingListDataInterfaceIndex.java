@@ -0,0 +1,92 @@
+package be.bagofwords.db.experimental.index;
+
+import be.bagofwords.db.BaseTestDataInterface;
+import be.bagofwords.db.DatabaseBackendType;
+import be.bagofwords.db.DatabaseCachingType;
+import be.bagofwords.db.impl.BaseDataInterface;
+import be.bagofwords.util.HashUtils;
+import be.bagofwords.util.KeyValue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(Parameterized.class)
+public class TestPostingListDataInterfaceIndex extends BaseTestDataInterface {
+
+    private final Function<String, Long> tokenHasher = word -> HashUtils.hashCode(word.toLowerCase());
+    private final MultiDataIndexer<String> tokenizer = text -> Arrays.stream(text.split(" ")).map(tokenHasher).collect(toList());
+    private BaseDataInterface<String> baseInterface;
+    private PostingListDataInterfaceIndex<String> indexedInterface;
+
+    public TestPostingListDataInterfaceIndex(DatabaseCachingType type, DatabaseBackendType backendType) throws Exception {
+        super(type, backendType);
+    }
+
+    @Before
+    public void setup() {
+        baseInterface = dataInterfaceFactory.dataInterface("testPostingListIndexed", String.class).caching(type).create();
+        indexedInterface = dataInterfaceFactory.postingListIndex(baseInterface, "postingListTokens", tokenizer);
+        baseInterface.write(1, "This is a test");
+        baseInterface.write(2, "Negative example");
+        baseInterface.write(3, "This example is positive");
+        baseInterface.flush();
+    }
+
+    @After
+    public void tearDown() {
+        baseInterface.dropAllData();
+        baseInterface.close();
+    }
+
+    @Test
+    public void testReadKeys() {
+        assertEquals(Arrays.asList(1l, 3l), indexedInterface.readKeys(tokenHasher.apply("this")).getKeyList());
+        assertEquals(Arrays.asList(3l), indexedInterface.readKeysWithAllIndexes(tokenizer.convertToIndexes("example this")).getKeyList());
+        assertEquals(Arrays.asList(1l, 2l, 3l), indexedInterface.readKeysWithAnyIndex(tokenizer.convertToIndexes("example this")).getKeyList());
+        assertEquals(0, indexedInterface.readKeysWithAllIndexes(tokenizer.convertToIndexes("example unknown")).size());
+    }
+
+    @Test
+    public void testQueryByExample() {
+        List<KeyValue<String>> results = indexedInterface.read("another test");
+        assertEquals(1, results.size());
+        assertEquals("This is a test", results.get(0).getValue());
+        results = indexedInterface.readWithAllIndexes("positive example");
+        assertEquals(1, results.size());
+        assertEquals("This example is positive", results.get(0).getValue());
+    }
+
+    @Test
+    public void testChangedValuesAreNotReturned() {
+        baseInterface.write(1, "Something else");
+        baseInterface.flush();
+        List<KeyValue<String>> results = indexedInterface.read("test");
+        assertEquals(0, results.size());
+        results = indexedInterface.read("else");
+        assertEquals(1, results.size());
+    }
+
+    @Test
+    public void testChangedAndDeletedKeysAreRemoved() {
+        baseInterface.write(1, "Something else");
+        baseInterface.write(2, null);
+        baseInterface.flush();
+        assertEquals(0, indexedInterface.readKeys(tokenHasher.apply("test")).size());
+        assertEquals(0, indexedInterface.readKeys(tokenHasher.apply("negative")).size());
+        assertEquals(Arrays.asList(3l), indexedInterface.readKeys(tokenHasher.apply("example")).getKeyList());
+        assertEquals(Arrays.asList(1l), indexedInterface.readKeys(tokenHasher.apply("else")).getKeyList());
+        assertEquals(1, indexedInterface.estimateNumOfKeys(tokenHasher.apply("example")));
+        assertEquals(1, indexedInterface.estimateNumOfKeys(tokenHasher.apply("this")));
+        assertEquals(0, indexedInterface.estimateNumOfKeys(tokenHasher.apply("negative")));
+    }
+
+}
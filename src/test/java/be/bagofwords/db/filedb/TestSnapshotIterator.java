@@ -0,0 +1,73 @@
+package be.bagofwords.db.filedb;
+
+import be.bagofwords.db.DataInterface;
+import be.bagofwords.db.DatabaseCachingType;
+import be.bagofwords.db.combinator.LongCombinator;
+import be.bagofwords.db.methods.LongObjectSerializer;
+import be.bagofwords.iterator.CloseableIterator;
+import be.bagofwords.minidepi.ApplicationContext;
+import be.bagofwords.util.KeyValue;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+public class TestSnapshotIterator {
+
+    private static final String DIRECTORY = "/tmp/testSnapshotIterator";
+
+    private ApplicationContext applicationContext;
+    private FileDataInterfaceFactory factory;
+
+    @Before
+    public void setup() throws IOException {
+        removeAllData();
+        applicationContext = new ApplicationContext();
+        applicationContext.setProperty("data_directory", DIRECTORY);
+        factory = new FileDataInterfaceFactory(applicationContext);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        applicationContext.close();
+        removeAllData();
+    }
+
+    @Test
+    public void testWritesDuringIterationAreNotVisible() {
+        DataInterface<Long> dataInterface = factory.dataInterface("testSnapshot", Long.class).combinator(new LongCombinator()).serializer(new LongObjectSerializer()).caching(DatabaseCachingType.DIRECT).create();
+        for (long key = 0; key < 10000; key++) {
+            dataInterface.write(key, 1l);
+        }
+        dataInterface.flush();
+        CloseableIterator<KeyValue<Long>> iterator = dataInterface.iterator();
+        for (long key = 0; key < 20000; key++) {
+            dataInterface.write(key, 1l);
+        }
+        dataInterface.flush();
+        dataInterface.optimizeForReading(); //rewrites all files
+        long numOfValues = 0;
+        while (iterator.hasNext()) {
+            Assert.assertEquals(1l, iterator.next().getValue().longValue());
+            numOfValues++;
+        }
+        iterator.close();
+        Assert.assertEquals(10000, numOfValues);
+        Assert.assertEquals(20000, dataInterface.exactSize());
+        Assert.assertEquals(2l, dataInterface.read(42).longValue());
+        File snapshotsDirectory = new File(new File(DIRECTORY, "testSnapshot"), "snapshots");
+        Assert.assertTrue(!snapshotsDirectory.exists() || snapshotsDirectory.list().length == 0);
+    }
+
+    private void removeAllData() throws IOException {
+        File dataDirectory = new File(DIRECTORY);
+        if (dataDirectory.exists()) {
+            FileUtils.deleteDirectory(dataDirectory);
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+package be.bagofwords.db.memory;
+
+import be.bagofwords.db.combinator.LongCombinator;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the write throughput of {@link InMemoryDataInterface} against a {@link ConcurrentHashMap} with boxed keys, the
+ * storage of the previous implementation, for sequential and for random keys. Not a unit test, run it with
+ * {@code java be.bagofwords.db.memory.InMemoryWriteBenchmark [numOfKeys] [numOfThreads]}.
+ */
+
+public class InMemoryWriteBenchmark {
+
+    private static final int NUM_OF_ROUNDS = 3;
+
+    public static void main(String[] args) throws InterruptedException {
+        int numOfKeys = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+        int numOfThreads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        for (int round = 0; round < NUM_OF_ROUNDS; round++) {
+            for (boolean sequential : new boolean[]{true, false}) {
+                String keys = sequential ? "sequential" : "random";
+                double hashMapRate = measure(numOfKeys, numOfThreads, sequential, new ConcurrentHashMapWriter());
+                double dataInterfaceRate = measure(numOfKeys, numOfThreads, sequential, new DataInterfaceWriter());
+                System.out.println(String.format("round %d, %s keys: ConcurrentHashMap %.1fM writes/s, InMemoryDataInterface %.1fM writes/s", round, keys, hashMapRate / 1e6, dataInterfaceRate / 1e6));
+            }
+        }
+    }
+
+    /**
+     * Every key is written twice, the second write combines the values
+     *
+     * @return the number of writes per second
+     */
+
+    private static double measure(int numOfKeys, int numOfThreads, boolean sequential, Writer writer) throws InterruptedException {
+        AtomicLong numOfWrites = new AtomicLong();
+        Thread[] threads = new Thread[numOfThreads];
+        long start = System.nanoTime();
+        for (int i = 0; i < numOfThreads; i++) {
+            int threadInd = i;
+            threads[i] = new Thread(() -> {
+                long writes = 0;
+                for (int pass = 0; pass < 2; pass++) {
+                    for (long ind = threadInd; ind < numOfKeys; ind += numOfThreads) {
+                        long key = sequential ? ind : SortedArrayShard.mixKey(ind);
+                        writer.write(key, 1l);
+                        writes++;
+                    }
+                }
+                numOfWrites.addAndGet(writes);
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long nanos = System.nanoTime() - start;
+        if (writer.size() != numOfKeys) {
+            throw new RuntimeException("Expected " + numOfKeys + " keys but found " + writer.size());
+        }
+        return numOfWrites.get() * 1e9 / nanos;
+    }
+
+    private interface Writer {
+        void write(long key, Long value);
+
+        long size();
+    }
+
+    private static class ConcurrentHashMapWriter implements Writer {
+
+        private final Map<Long, Long> values = new ConcurrentHashMap<>();
+        private final LongCombinator combinator = new LongCombinator();
+
+        @Override
+        public void write(long key, Long value) {
+            values.merge(key, value, combinator::combine);
+        }
+
+        @Override
+        public long size() {
+            return values.size();
+        }
+    }
+
+    private static class DataInterfaceWriter implements Writer {
+
+        private final InMemoryDataInterface<Long> dataInterface = new InMemoryDataInterface<>("benchmark", Long.class, new LongCombinator());
+
+        @Override
+        public void write(long key, Long value) {
+            dataInterface.write(key, value);
+        }
+
+        @Override
+        public long size() {
+            return dataInterface.exactSize();
+        }
+    }
+}
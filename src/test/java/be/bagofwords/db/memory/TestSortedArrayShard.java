@@ -0,0 +1,160 @@
+package be.bagofwords.db.memory;
+
+import be.bagofwords.db.combinator.LongCombinator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class TestSortedArrayShard {
+
+    @Test
+    public void testRandomWritesAndDeletes() {
+        SortedArrayShard<Long> shard = new SortedArrayShard<>(Long.class);
+        TreeMap<Long, Long> expected = new TreeMap<>();
+        LongCombinator combinator = new LongCombinator();
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            long key = random.nextInt(20000) - 10000;
+            Long value = random.nextInt(10) == 0 ? null : (long) random.nextInt(100);
+            shard.write(key, value, combinator);
+            if (value == null) {
+                expected.remove(key);
+            } else {
+                expected.merge(key, value, combinator::combine);
+            }
+        }
+        Assert.assertEquals(expected.size(), shard.size());
+        for (long key = -10000; key < 10000; key++) {
+            Assert.assertEquals(expected.get(key), shard.read(key));
+        }
+        assertSnapshot(expected, takeSnapshot(shard));
+    }
+
+    @Test
+    public void testSnapshotsWhileBlocksChange() {
+        SortedArrayShard<Long> shard = new SortedArrayShard<>(Long.class);
+        TreeMap<Long, Long> expected = new TreeMap<>();
+        LongCombinator combinator = new LongCombinator();
+        Random random = new Random(7);
+        List<TreeMap<Long, Long>> expectedSnapshots = new ArrayList<>();
+        List<SortedArrayShard.Snapshot<Long>> snapshots = new ArrayList<>();
+        for (int i = 0; i < 200000; i++) {
+            //write sequential keys so blocks are split, and delete ranges of keys so blocks are emptied and merged
+            long key = i % 50000 < 40000 ? i : i - random.nextInt(40000);
+            Long value = i % 50000 < 40000 ? (long) i : null;
+            shard.write(key, value, combinator);
+            if (value == null) {
+                expected.remove(key);
+            } else {
+                expected.merge(key, value, combinator::combine);
+            }
+            if (i % 20000 == 0) {
+                expectedSnapshots.add(new TreeMap<>(expected));
+                snapshots.add(takeSnapshot(shard));
+            }
+        }
+        for (int i = 0; i < snapshots.size(); i++) {
+            assertSnapshot(expectedSnapshots.get(i), snapshots.get(i));
+        }
+        assertSnapshot(expected, takeSnapshot(shard));
+        Assert.assertEquals(expected.size(), shard.size());
+    }
+
+    @Test
+    public void testReadsDuringWrites() throws InterruptedException {
+        SortedArrayShard<Long> shard = new SortedArrayShard<>(Long.class);
+        LongCombinator combinator = new LongCombinator();
+        int numOfKeys = 100000;
+        AtomicBoolean failed = new AtomicBoolean(false);
+        Thread reader = new Thread(() -> {
+            for (int i = 0; i < 10 * numOfKeys; i++) {
+                long key = i % numOfKeys;
+                Long value = shard.read(key);
+                //every key is only written once, with a value that equals its key
+                if (value != null && value != key) {
+                    failed.set(true);
+                }
+            }
+        });
+        reader.start();
+        for (long key = 0; key < numOfKeys; key++) {
+            shard.write(key, key, combinator);
+        }
+        reader.join();
+        Assert.assertFalse(failed.get());
+        for (long key = 0; key < numOfKeys; key++) {
+            Assert.assertEquals(key, shard.read(key).longValue());
+        }
+    }
+
+    @Test
+    public void testSnapshotIsNotChangedByWrites() {
+        SortedArrayShard<Long> shard = new SortedArrayShard<>(Long.class);
+        LongCombinator combinator = new LongCombinator();
+        shard.write(1, 10l, combinator);
+        shard.write(2, 20l, combinator);
+        SortedArrayShard.Snapshot<Long> snapshot = takeSnapshot(shard);
+        shard.write(1, 5l, combinator);
+        shard.write(2, null, combinator);
+        shard.write(3, 30l, combinator);
+        Assert.assertEquals(2, snapshot.size());
+        Assert.assertTrue(snapshot.next());
+        Assert.assertEquals(10l, snapshot.getValue().longValue());
+        Assert.assertTrue(snapshot.next());
+        Assert.assertEquals(20l, snapshot.getValue().longValue());
+        Assert.assertFalse(snapshot.next());
+        Assert.assertEquals(15l, shard.read(1).longValue());
+        Assert.assertNull(shard.read(2));
+        Assert.assertEquals(2, takeSnapshot(shard).size());
+    }
+
+    @Test
+    public void testObjectValues() {
+        SortedArrayShard<String> shard = new SortedArrayShard<>(String.class);
+        shard.write(3, "three", (first, second) -> first + second);
+        shard.write(1, "one", (first, second) -> first + second);
+        shard.write(3, "!", (first, second) -> first + second);
+        Assert.assertEquals("three!", shard.read(3));
+        Assert.assertEquals(2, shard.size());
+        shard.write(1, null, null);
+        Assert.assertNull(shard.read(1));
+        Assert.assertFalse(shard.contains(1));
+        Assert.assertEquals(1, shard.size());
+    }
+
+    @Test
+    public void testExtremeLongValues() {
+        SortedArrayShard<Long> shard = new SortedArrayShard<>(Long.class);
+        shard.write(2, Long.MIN_VALUE, new LongCombinator());
+        shard.write(1, Long.MAX_VALUE, new LongCombinator());
+        shard.write(3, 0l, new LongCombinator());
+        Assert.assertEquals(Long.MIN_VALUE, shard.read(2).longValue());
+        Assert.assertEquals(Long.MAX_VALUE, shard.read(1).longValue());
+        Assert.assertEquals(0l, shard.read(3).longValue());
+        shard.write(3, null, null);
+        Assert.assertNull(shard.read(3));
+        Assert.assertEquals(Long.MIN_VALUE, shard.read(2).longValue());
+    }
+
+    private void assertSnapshot(TreeMap<Long, Long> expected, SortedArrayShard.Snapshot<Long> snapshot) {
+        Assert.assertEquals(expected.size(), snapshot.size());
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            Assert.assertTrue(snapshot.next());
+            Assert.assertEquals(entry.getKey().longValue(), snapshot.getKey());
+            Assert.assertEquals(entry.getValue(), snapshot.getValue());
+        }
+        Assert.assertFalse(snapshot.next());
+    }
+
+    private <T> SortedArrayShard.Snapshot<T> takeSnapshot(SortedArrayShard<T> shard) {
+        shard.lockWrite();
+        try {
+            return shard.takeSnapshot();
+        } finally {
+            shard.unlockWrite();
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+package be.bagofwords.db.methods;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestBinaryObjectSerializer {
+
+    @Test
+    public void testRoundTrip() {
+        BinaryObjectSerializer<Event> serializer = new BinaryObjectSerializer<>(Event.class);
+        Event event = new Event();
+        event.userId = -1234567890123l;
+        event.count = 42;
+        event.score = 0.75;
+        event.name = "click";
+        event.type = EventType.VIEW;
+        event.processed = true;
+        event.location = new Location();
+        event.location.latitude = 51.05f;
+        event.location.city = "Ghent";
+        event.payload = new byte[]{1, 2, 3};
+        Event result = roundTrip(serializer, event);
+        Assert.assertEquals(event.userId, result.userId);
+        Assert.assertEquals(event.count, result.count);
+        Assert.assertEquals(event.score, result.score, 0.0);
+        Assert.assertEquals(event.name, result.name);
+        Assert.assertEquals(event.type, result.type);
+        Assert.assertEquals(event.processed, result.processed);
+        Assert.assertEquals(event.location.latitude, result.location.latitude, 0.0);
+        Assert.assertEquals(event.location.city, result.location.city);
+        Assert.assertArrayEquals(event.payload, result.payload);
+        Assert.assertNull(result.comment);
+    }
+
+    @Test
+    public void testNull() {
+        BinaryObjectSerializer<Event> serializer = new BinaryObjectSerializer<>(Event.class);
+        Assert.assertNull(roundTrip(serializer, null));
+    }
+
+    @Test
+    public void testAddedAndRemovedFields() {
+        Event event = new Event();
+        event.userId = 7;
+        event.count = 3;
+        event.name = "purchase";
+        event.type = EventType.VIEW;
+        DataStream ds = new DataStream();
+        int size = DataStreamUtils.writeValue(event, ds, new BinaryObjectSerializer<>(Event.class)) - 4;
+        //EventV2 has no count field, a new amount field and no VIEW event type
+        EventV2 result = new BinaryObjectSerializer<>(EventV2.class).readValue(ds.buffer, 4, size);
+        Assert.assertEquals(7, result.userId);
+        Assert.assertEquals("purchase", result.name);
+        Assert.assertEquals(0, result.amount);
+        Assert.assertNull(result.type);
+    }
+
+    @Test
+    public void testCollectionOfObjects() {
+        BinaryObjectSerializer<Route> serializer = new BinaryObjectSerializer<>(Route.class);
+        Route route = new Route();
+        route.stops = new ArrayList<>();
+        for (String city : new String[]{"Ghent", "Leuven"}) {
+            Location location = new Location();
+            location.city = city;
+            route.stops.add(location);
+        }
+        Route result = roundTrip(serializer, route);
+        Assert.assertEquals(2, result.stops.size());
+        Assert.assertEquals("Ghent", result.stops.get(0).city);
+        Assert.assertEquals("Leuven", result.stops.get(1).city);
+    }
+
+    private <T> T roundTrip(BinaryObjectSerializer<T> serializer, T value) {
+        DataStream ds = new DataStream();
+        DataStreamUtils.writeValue(value, ds, serializer);
+        DataStream input = new DataStream(ds.buffer);
+        int size = DataStreamUtils.getObjectSize(input, serializer);
+        T result = serializer.readValue(input, size);
+        Assert.assertEquals(ds.position, input.position);
+        return result;
+    }
+
+    public enum EventType {
+        CLICK, VIEW
+    }
+
+    public enum EventTypeV2 {
+        CLICK
+    }
+
+    public static class Location {
+        private float latitude;
+        private String city;
+    }
+
+    public static class Event {
+        private long userId;
+        private int count;
+        private double score;
+        private String name;
+        private String comment;
+        private EventType type;
+        private Boolean processed;
+        private Location location;
+        private byte[] payload;
+    }
+
+    public static class EventV2 {
+        private long userId;
+        private String name;
+        private long amount;
+        private EventTypeV2 type;
+    }
+
+    public static class Route {
+        private List<Location> stops;
+    }
+
+}
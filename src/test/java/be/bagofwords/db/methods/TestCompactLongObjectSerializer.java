@@ -0,0 +1,29 @@
+package be.bagofwords.db.methods;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestCompactLongObjectSerializer {
+
+    @Test
+    public void testRoundTrip() {
+        CompactLongObjectSerializer serializer = new CompactLongObjectSerializer();
+        Long[] values = {0l, 1l, 246l, 247l, 255l, 256l, 70000l, null, Long.MAX_VALUE, -1l, Long.MIN_VALUE};
+        int[] expectedSizes = {1, 1, 1, 2, 2, 3, 4, 1, 9, 9, 9};
+        DataStream ds = new DataStream();
+        for (int i = 0; i < values.length; i++) {
+            Assert.assertEquals(expectedSizes[i], DataStreamUtils.writeValue(values[i], ds, serializer));
+        }
+        DataStream input = new DataStream(ds.buffer);
+        for (int i = 0; i < values.length; i++) {
+            int start = input.position;
+            int size = DataStreamUtils.getObjectSize(input, serializer);
+            Assert.assertEquals(expectedSizes[i], size);
+            Assert.assertEquals(values[i], serializer.readValue(input.buffer, start, size));
+            Assert.assertEquals(values[i], serializer.readValue(input, size));
+            Assert.assertEquals(start + size, input.position);
+        }
+        Assert.assertEquals(ds.position, input.position);
+    }
+
+}
@@ -0,0 +1,56 @@
+package be.bagofwords.db.methods;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestFixedWidthSerializers {
+
+    @Test
+    public void testPrimitives() {
+        checkRoundTrip(new DoubleObjectSerializer(), 3.25, null, Double.NaN, Double.NEGATIVE_INFINITY, -0.0);
+        checkRoundTrip(new FloatObjectSerializer(), 3.25f, null, Float.NaN, Float.MAX_VALUE);
+        checkRoundTrip(new IntegerObjectSerializer(), 42, -1, Integer.MAX_VALUE, Integer.MIN_VALUE);
+    }
+
+    @Test
+    public void testRecord() {
+        FixedWidthRecordSerializer<Pair> serializer = new FixedWidthRecordSerializer<>(Pair.class);
+        Assert.assertEquals(1 + 8 + 8 + 2 + 1, serializer.getObjectSize());
+        Pair pair = new Pair();
+        pair.first = -5;
+        pair.second = Long.MAX_VALUE;
+        pair.flag = true;
+        pair.letter = 'x';
+        DataStream ds = new DataStream();
+        serializer.writeValue(pair, ds);
+        serializer.writeValue(null, ds);
+        Assert.assertEquals(2 * serializer.getObjectSize(), ds.position);
+        Pair result = serializer.readValue(ds.buffer, 0, serializer.getObjectSize());
+        Assert.assertEquals(pair.first, result.first);
+        Assert.assertEquals(pair.second, result.second);
+        Assert.assertEquals(pair.flag, result.flag);
+        Assert.assertEquals(pair.letter, result.letter);
+        Assert.assertNull(serializer.readValue(ds.buffer, serializer.getObjectSize(), serializer.getObjectSize()));
+    }
+
+    private <T> void checkRoundTrip(ObjectSerializer<T> serializer, T... values) {
+        DataStream ds = new DataStream();
+        for (T value : values) {
+            serializer.writeValue(value, ds);
+        }
+        Assert.assertEquals(values.length * serializer.getObjectSize(), ds.position);
+        DataStream input = new DataStream(ds.buffer);
+        for (int i = 0; i < values.length; i++) {
+            Assert.assertEquals(values[i], serializer.readValue(input, serializer.getObjectSize()));
+            Assert.assertEquals(values[i], serializer.readValue(ds.buffer, i * serializer.getObjectSize(), serializer.getObjectSize()));
+        }
+    }
+
+    public static class Pair {
+        private long first;
+        private long second;
+        private boolean flag;
+        private char letter;
+    }
+
+}
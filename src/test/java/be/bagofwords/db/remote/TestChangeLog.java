@@ -0,0 +1,52 @@
+package be.bagofwords.db.remote;
+
+import be.bagofwords.util.Utils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestChangeLog {
+
+    @Test
+    public void testChangedKeys() throws InterruptedException {
+        ChangeLog changeLog = new ChangeLog();
+        ChangeLog.Subscription subscription = changeLog.subscribe();
+        changeLog.dateUpdated(5, "a");
+        changeLog.dateUpdated(1, "b");
+        changeLog.dateUpdated(5, "c");
+        ChangeLog.Changes changes = subscription.takeChanges(0);
+        Assert.assertArrayEquals(new long[]{1, 5}, changes.changedKeys);
+        Assert.assertFalse(changes.tooManyChanges);
+        Assert.assertTrue(subscription.takeChanges(1).isEmpty());
+    }
+
+    @Test
+    public void testTooManyChanges() throws InterruptedException {
+        ChangeLog changeLog = new ChangeLog();
+        ChangeLog.Subscription subscription = changeLog.subscribe();
+        for (long key = 0; key <= ChangeLog.MAX_CHANGED_KEYS; key++) {
+            changeLog.dateUpdated(key, "value");
+        }
+        ChangeLog.Changes changes = subscription.takeChanges(0);
+        Assert.assertTrue(changes.tooManyChanges);
+        Assert.assertEquals(0, changes.changedKeys.length);
+        changeLog.dateUpdated(3, "value");
+        Assert.assertArrayEquals(new long[]{3}, subscription.takeChanges(0).changedKeys);
+    }
+
+    @Test
+    public void testWaitForChanges() throws InterruptedException {
+        ChangeLog changeLog = new ChangeLog();
+        ChangeLog.Subscription subscription = changeLog.subscribe();
+        Thread writer = new Thread(() -> {
+            Utils.threadSleep(100);
+            changeLog.dateUpdated(8, "value");
+        });
+        writer.start();
+        Assert.assertArrayEquals(new long[]{8}, subscription.takeChanges(10000).changedKeys);
+        writer.join();
+        changeLog.unsubscribe(subscription);
+        changeLog.dateUpdated(9, "value");
+        Assert.assertTrue(subscription.takeChanges(1).isEmpty());
+    }
+
+}
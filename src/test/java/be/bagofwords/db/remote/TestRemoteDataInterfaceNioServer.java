@@ -0,0 +1,132 @@
+package be.bagofwords.db.remote;
+
+import be.bagofwords.application.MinimalApplicationDependencies;
+import be.bagofwords.db.DataInterface;
+import be.bagofwords.db.DatabaseCachingType;
+import be.bagofwords.db.combinator.LongCombinator;
+import be.bagofwords.db.filedb.FileDataInterfaceFactory;
+import be.bagofwords.db.methods.LongObjectSerializer;
+import be.bagofwords.iterator.CloseableIterator;
+import be.bagofwords.minidepi.ApplicationContext;
+import be.bagofwords.util.KeyValue;
+import be.bagofwords.util.Utils;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+public class TestRemoteDataInterfaceNioServer {
+
+    private static final int STREAMING_THREADS = 2;
+
+    private ApplicationContext context;
+    private RemoteDatabaseInterfaceFactory remoteFactory;
+
+    @Before
+    public void setUp() {
+        Map<String, String> config = new HashMap<>();
+        config.put("data_directory", "/tmp/dbNioServer/" + System.currentTimeMillis());
+        config.put("socket.host", "localhost");
+        config.put("socket.port", "1310");
+        config.put("nio_socket.port", "1310");
+        config.put("nio_server.streaming_threads", Integer.toString(STREAMING_THREADS));
+        context = new ApplicationContext(config);
+        context.registerBean(MinimalApplicationDependencies.class);
+        context.getBean(FileDataInterfaceFactory.class);
+        context.getBean(RemoteDataInterfaceServer.class);
+        context.registerBean(RemoteDataInterfaceNioServer.class);
+        Utils.threadSleep(500); //Make sure server has started
+        remoteFactory = new RemoteDatabaseInterfaceFactory(context);
+        context.registerBean(remoteFactory);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        remoteFactory.closeAllInterfaces();
+        context.terminate();
+        File directory = new File("/tmp/dbNioServer");
+        if (directory.exists()) {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testManyConcurrentClients() throws InterruptedException {
+        final DataInterface<Long> db = remoteFactory.dataInterface("testNioServer", Long.class).combinator(new LongCombinator()).serializer(new LongObjectSerializer()).caching(DatabaseCachingType.DIRECT).create();
+        final int numOfThreads = 40;
+        final int numOfKeys = 100;
+        final CountDownLatch countDownLatch = new CountDownLatch(numOfThreads);
+        for (int i = 0; i < numOfThreads; i++) {
+            new Thread("testNioServerThread") {
+                @Override
+                public void run() {
+                    for (int key = 0; key < numOfKeys; key++) {
+                        db.increaseCount(key);
+                    }
+                    countDownLatch.countDown();
+                }
+            }.start();
+        }
+        countDownLatch.await();
+        db.flush();
+        for (int key = 0; key < numOfKeys; key++) {
+            Assert.assertEquals(numOfThreads, db.readCount(key));
+        }
+        CloseableIterator<KeyValue<Long>> iterator = db.iterator();
+        long numOfValues = 0;
+        while (iterator.hasNext()) {
+            KeyValue<Long> next = iterator.next();
+            Assert.assertEquals(numOfThreads, next.getValue().longValue());
+            numOfValues++;
+        }
+        iterator.close();
+        Assert.assertEquals(numOfKeys, numOfValues);
+    }
+
+    @Test(timeout = 120000)
+    public void testMoreOpenIteratorsThanStreamingThreads() {
+        final DataInterface<Long> db = remoteFactory.dataInterface("testNioServerIterators", Long.class).combinator(new LongCombinator()).serializer(new LongObjectSerializer()).caching(DatabaseCachingType.DIRECT).create();
+        //Enough values to fill the socket buffers, so a stream can not be written completely without the client reading it
+        final int numOfKeys = 500000;
+        List<KeyValue<Long>> values = new ArrayList<>();
+        for (long key = 0; key < numOfKeys; key++) {
+            values.add(new KeyValue<>(key, key));
+        }
+        db.write(values.iterator());
+        db.flush();
+        List<CloseableIterator<KeyValue<Long>>> iterators = new ArrayList<>();
+        for (int i = 0; i < STREAMING_THREADS * 3; i++) {
+            CloseableIterator<KeyValue<Long>> iterator = db.iterator();
+            Assert.assertTrue(iterator.hasNext());
+            iterators.add(iterator);
+        }
+        //Read all iterators in turn
+        long[] numOfValues = new long[iterators.size()];
+        boolean valuesRead = true;
+        while (valuesRead) {
+            valuesRead = false;
+            for (int i = 0; i < iterators.size(); i++) {
+                for (int j = 0; j < 1000 && iterators.get(i).hasNext(); j++) {
+                    KeyValue<Long> next = iterators.get(i).next();
+                    Assert.assertEquals(next.getKey(), next.getValue().longValue());
+                    numOfValues[i]++;
+                    valuesRead = true;
+                }
+            }
+        }
+        for (int i = 0; i < iterators.size(); i++) {
+            iterators.get(i).close();
+            Assert.assertEquals(numOfKeys, numOfValues[i]);
+        }
+    }
+
+}
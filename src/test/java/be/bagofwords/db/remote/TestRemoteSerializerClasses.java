@@ -0,0 +1,88 @@
+package be.bagofwords.db.remote;
+
+import be.bagofwords.application.MinimalApplicationDependencies;
+import be.bagofwords.db.DataInterfaceFactory;
+import be.bagofwords.db.helper.DataInterfaceFactoryFactory;
+import be.bagofwords.db.DatabaseBackendType;
+import be.bagofwords.db.experimental.id.DirectIdDataInterface;
+import be.bagofwords.db.experimental.id.IdObject;
+import be.bagofwords.db.filedb.FileDataInterfaceFactory;
+import be.bagofwords.exec.RemoteObjectClassLoader;
+import be.bagofwords.minidepi.ApplicationContext;
+import be.bagofwords.web.SocketServer;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * Creates a remote interface of a class that is not on the classpath of the server, so the server has to load it from
+ * the class sources of the serializer.
+ */
+
+public class TestRemoteSerializerClasses {
+
+    private static final String CLASS_NAME = "be.bagofwords.db.remote.RemoteOnlyUser";
+
+    private ApplicationContext context;
+    private DataInterfaceFactory dataInterfaceFactory;
+
+    @Before
+    public void setUp() {
+        HashMap<String, String> config = new HashMap<>();
+        config.put("data_directory", "/tmp/dbRemoteClasses/" + System.currentTimeMillis());
+        config.put("socket.host", "localhost");
+        config.put("socket.port", "1308");
+        context = new ApplicationContext(config);
+        context.registerBean(MinimalApplicationDependencies.class);
+        context.getBean(FileDataInterfaceFactory.class);
+        context.getBean(RemoteDataInterfaceServer.class);
+        context.registerBean(SocketServer.class);
+        dataInterfaceFactory = new DataInterfaceFactoryFactory(context).createFactory(DatabaseBackendType.REMOTE);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        dataInterfaceFactory.closeAllInterfaces();
+        context.terminate();
+        File directory = new File("/tmp/dbRemoteClasses");
+        if (directory.exists()) {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDirectIdInterfaceOfRemoteOnlyClass() throws Exception {
+        Class<IdObject> userClass = (Class<IdObject>) loadRemoteOnlyClass();
+        DirectIdDataInterface<IdObject> users = dataInterfaceFactory.createDirectIdDataInterface("remoteOnlyUsers", userClass);
+        IdObject user = userClass.newInstance();
+        userClass.getField("id").set(user, "user-1");
+        userClass.getField("name").set(user, "Koen");
+        users.write(user);
+        users.flush();
+        IdObject readUser = users.read("user-1");
+        Assert.assertNotNull(readUser);
+        Assert.assertEquals("Koen", userClass.getField("name").get(readUser));
+        users.close();
+    }
+
+    private Class<?> loadRemoteOnlyClass() throws IOException, ClassNotFoundException {
+        String resource = "/remote-exec/" + CLASS_NAME.replace('.', '/') + ".java.remote";
+        try (InputStream is = getClass().getResourceAsStream(resource)) {
+            String source = IOUtils.toString(is, StandardCharsets.UTF_8);
+            RemoteObjectClassLoader classLoader = new RemoteObjectClassLoader(this);
+            classLoader.addRemoteClasses(Collections.singletonMap(CLASS_NAME, source));
+            return classLoader.loadClass(CLASS_NAME);
+        }
+    }
+}
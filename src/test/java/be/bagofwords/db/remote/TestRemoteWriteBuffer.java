@@ -0,0 +1,85 @@
+package be.bagofwords.db.remote;
+
+import be.bagofwords.db.combinator.LongCombinator;
+import be.bagofwords.db.data.ListCombinator;
+import be.bagofwords.util.KeyValue;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class TestRemoteWriteBuffer {
+
+    @Test
+    public void testCombineAndSort() {
+        RemoteWriteBuffer<Long> buffer = new RemoteWriteBuffer<>(new LongCombinator(), 3);
+        Assert.assertFalse(buffer.add(5, 1l));
+        Assert.assertFalse(buffer.add(2, 1l));
+        Assert.assertFalse(buffer.add(5, 2l));
+        Assert.assertTrue(buffer.add(-1, 4l));
+        Assert.assertTrue(buffer.contains(5));
+        List<KeyValue<Long>> values = buffer.drain();
+        Assert.assertEquals(3, values.size());
+        Assert.assertEquals(-1, values.get(0).getKey());
+        Assert.assertEquals(2, values.get(1).getKey());
+        Assert.assertEquals(5, values.get(2).getKey());
+        Assert.assertEquals(3l, values.get(2).getValue().longValue());
+        Assert.assertTrue(buffer.isEmpty());
+        Assert.assertFalse(buffer.contains(5));
+    }
+
+    @Test
+    public void testDeleteBeforeWrite() {
+        RemoteWriteBuffer<Long> buffer = new RemoteWriteBuffer<>(new LongCombinator(), 100);
+        buffer.add(1, 10l);
+        buffer.add(1, null);
+        buffer.add(1, 3l);
+        buffer.add(1, 4l);
+        List<KeyValue<Long>> values = buffer.drain();
+        Assert.assertEquals(2, values.size());
+        Assert.assertNull(values.get(0).getValue());
+        Assert.assertEquals(7l, values.get(1).getValue().longValue());
+    }
+
+    @Test
+    public void testRestore() {
+        RemoteWriteBuffer<Long> buffer = new RemoteWriteBuffer<>(new LongCombinator(), 100);
+        buffer.add(1, 1l);
+        buffer.add(2, 2l);
+        buffer.add(3, 3l);
+        List<KeyValue<Long>> drained = buffer.drain();
+        buffer.add(1, 10l);
+        buffer.add(2, null);
+        buffer.add(4, 4l);
+        buffer.restore(drained);
+        List<KeyValue<Long>> values = buffer.drain();
+        Assert.assertEquals(4, values.size());
+        Assert.assertEquals(11l, values.get(0).getValue().longValue());
+        Assert.assertNull(values.get(1).getValue());
+        Assert.assertEquals(3l, values.get(2).getValue().longValue());
+        Assert.assertEquals(4l, values.get(3).getValue().longValue());
+    }
+
+    @Test
+    public void testValuesOfCallerAreNotModified() {
+        RemoteWriteBuffer<List<KeyValue<Long>>> buffer = new RemoteWriteBuffer<>(new ListCombinator<>(new LongCombinator()), 100);
+        List<KeyValue<Long>> firstValue = new ArrayList<>();
+        for (long key = 0; key < 100; key++) {
+            firstValue.add(new KeyValue<>(key, 1l));
+        }
+        buffer.add(1, firstValue);
+        for (long key = 50; key < 150; key++) {
+            buffer.add(1, Collections.singletonList(new KeyValue<>(key, 1l)));
+        }
+        Assert.assertEquals(100, firstValue.size());
+        List<KeyValue<Long>> combined = buffer.drain().get(0).getValue();
+        Assert.assertEquals(150, combined.size());
+        for (int i = 0; i < combined.size(); i++) {
+            Assert.assertEquals(i, combined.get(i).getKey());
+            Assert.assertEquals(i >= 50 && i < 100 ? 2l : 1l, combined.get(i).getValue().longValue());
+        }
+    }
+
+}
@@ -0,0 +1,163 @@
+package be.bagofwords.db.remote;
+
+import be.bagofwords.application.MinimalApplicationDependencies;
+import be.bagofwords.db.DataInterface;
+import be.bagofwords.db.DatabaseCachingType;
+import be.bagofwords.db.combinator.LongCombinator;
+import be.bagofwords.db.filedb.FileDataInterfaceFactory;
+import be.bagofwords.db.methods.LongObjectSerializer;
+import be.bagofwords.minidepi.ApplicationContext;
+import be.bagofwords.util.Utils;
+import be.bagofwords.web.SocketServer;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+public class TestReplicationFollower {
+
+    private static final int PRIMARY_PORT = 1331;
+    private static final int FOLLOWER_PORT = 1332;
+
+    private String followerDirectory;
+    private ApplicationContext primaryContext;
+    private ApplicationContext followerContext;
+    private ApplicationContext primaryClientContext;
+    private ApplicationContext followerClientContext;
+    private RemoteDatabaseInterfaceFactory primaryFactory;
+    private RemoteDatabaseInterfaceFactory followerFactory;
+
+    @Before
+    public void setUp() {
+        followerDirectory = "/tmp/dbReplication/" + FOLLOWER_PORT + "_" + System.currentTimeMillis();
+        primaryContext = createServerContext(PRIMARY_PORT, "/tmp/dbReplication/" + PRIMARY_PORT + "_" + System.currentTimeMillis(), null);
+        followerContext = createServerContext(FOLLOWER_PORT, followerDirectory, "localhost:" + PRIMARY_PORT);
+        Utils.threadSleep(500); //Make sure servers have started
+        primaryClientContext = createClientContext(PRIMARY_PORT);
+        primaryFactory = new RemoteDatabaseInterfaceFactory(primaryClientContext);
+        primaryClientContext.registerBean(primaryFactory);
+        createFollowerClient();
+    }
+
+    private void createFollowerClient() {
+        followerClientContext = createClientContext(FOLLOWER_PORT);
+        followerFactory = new RemoteDatabaseInterfaceFactory(followerClientContext);
+        followerClientContext.registerBean(followerFactory);
+    }
+
+    private ApplicationContext createServerContext(int port, String dataDirectory, String primary) {
+        Map<String, String> config = new HashMap<>();
+        config.put("data_directory", dataDirectory);
+        config.put("socket.port", Integer.toString(port));
+        if (primary != null) {
+            config.put("replication.primary", primary);
+        }
+        ApplicationContext context = new ApplicationContext(config);
+        context.registerBean(MinimalApplicationDependencies.class);
+        context.getBean(FileDataInterfaceFactory.class);
+        context.getBean(RemoteDataInterfaceServer.class);
+        context.registerBean(SocketServer.class);
+        return context;
+    }
+
+    private ApplicationContext createClientContext(int port) {
+        Map<String, String> config = new HashMap<>();
+        config.put("socket.host", "localhost");
+        config.put("socket.port", Integer.toString(port));
+        ApplicationContext context = new ApplicationContext(config);
+        context.registerBean(MinimalApplicationDependencies.class);
+        return context;
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        primaryFactory.closeAllInterfaces();
+        followerFactory.closeAllInterfaces();
+        primaryClientContext.terminate();
+        followerClientContext.terminate();
+        followerContext.terminate();
+        primaryContext.terminate();
+        File directory = new File("/tmp/dbReplication");
+        if (directory.exists()) {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testFollowPrimary() {
+        DataInterface<Long> primary = createDataInterface(primaryFactory);
+        for (long key = 0; key < 100; key++) {
+            primary.write(key, key);
+        }
+        primary.flush();
+        DataInterface<Long> follower = createDataInterface(followerFactory);
+        //The initial snapshot is received before the follower accepts the connection
+        Assert.assertEquals(100, follower.exactSize());
+        Assert.assertEquals(42, follower.readCount(42));
+        primary.increaseCount(42, 10l);
+        primary.write(7, null);
+        primary.flush();
+        waitUntil(() -> follower.readCount(42) == 52 && follower.read(7) == null);
+        Assert.assertEquals(99, follower.exactSize());
+        try {
+            follower.write(1, 1l);
+            follower.flush();
+            Assert.fail("Writes to a follower should fail");
+        } catch (Exception exp) {
+            //expected
+        }
+    }
+
+    @Test
+    public void testResyncKeepsLocalData() {
+        DataInterface<Long> primary = createDataInterface(primaryFactory);
+        for (long key = 0; key < 100; key++) {
+            primary.write(key, key);
+        }
+        primary.flush();
+        Assert.assertEquals(100, createDataInterface(followerFactory).exactSize());
+        //Stop the follower, change the primary and restart the follower on the same data
+        followerFactory.closeAllInterfaces();
+        followerClientContext.terminate();
+        followerContext.terminate();
+        for (long key = 0; key < 10; key++) {
+            primary.write(key, null);
+        }
+        for (long key = 100; key < 110; key++) {
+            primary.write(key, key);
+        }
+        primary.increaseCount(50, 1l);
+        primary.flush();
+        followerContext = createServerContext(FOLLOWER_PORT, followerDirectory, "localhost:" + PRIMARY_PORT);
+        Utils.threadSleep(500); //Make sure server has started
+        createFollowerClient();
+        DataInterface<Long> follower = createDataInterface(followerFactory);
+        Assert.assertEquals(100, follower.exactSize());
+        Assert.assertNull(follower.read(5));
+        Assert.assertEquals(51, follower.readCount(50));
+        Assert.assertEquals(99, follower.readCount(99));
+        Assert.assertEquals(105, follower.readCount(105));
+    }
+
+    private DataInterface<Long> createDataInterface(RemoteDatabaseInterfaceFactory factory) {
+        return factory.dataInterface("testReplication", Long.class).combinator(new LongCombinator()).serializer(new LongObjectSerializer()).caching(DatabaseCachingType.DIRECT).create();
+    }
+
+    private void waitUntil(BooleanSupplier condition) {
+        long start = System.currentTimeMillis();
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() - start > 10000) {
+                Assert.fail("Follower did not receive the changes of the primary");
+            }
+            Utils.threadSleep(50);
+        }
+    }
+
+}
@@ -0,0 +1,134 @@
+package be.bagofwords.db.remote;
+
+import be.bagofwords.application.MinimalApplicationDependencies;
+import be.bagofwords.db.DataInterface;
+import be.bagofwords.db.DatabaseCachingType;
+import be.bagofwords.db.combinator.LongCombinator;
+import be.bagofwords.db.filedb.FileDataInterfaceFactory;
+import be.bagofwords.db.methods.LongObjectSerializer;
+import be.bagofwords.db.methods.SumAggregator;
+import be.bagofwords.iterator.CloseableIterator;
+import be.bagofwords.iterator.IterableUtils;
+import be.bagofwords.minidepi.ApplicationContext;
+import be.bagofwords.util.KeyValue;
+import be.bagofwords.util.Utils;
+import be.bagofwords.web.SocketServer;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+public class TestShardedRemoteDataInterface {
+
+    private static final int[] PORTS = {1321, 1322, 1323};
+
+    private List<ApplicationContext> serverContexts;
+    private ApplicationContext clientContext;
+    private ShardedRemoteDatabaseInterfaceFactory shardedFactory;
+
+    @Before
+    public void setUp() {
+        serverContexts = new ArrayList<>();
+        StringBuilder hosts = new StringBuilder();
+        for (int port : PORTS) {
+            Map<String, String> config = new HashMap<>();
+            config.put("data_directory", "/tmp/dbShardedServer/" + port + "_" + System.currentTimeMillis());
+            config.put("socket.port", Integer.toString(port));
+            ApplicationContext serverContext = new ApplicationContext(config);
+            serverContext.registerBean(MinimalApplicationDependencies.class);
+            serverContext.getBean(FileDataInterfaceFactory.class);
+            serverContext.getBean(RemoteDataInterfaceServer.class);
+            serverContext.registerBean(SocketServer.class);
+            serverContexts.add(serverContext);
+            if (hosts.length() > 0) {
+                hosts.append(",");
+            }
+            hosts.append("localhost:").append(port);
+        }
+        Utils.threadSleep(500); //Make sure servers have started
+        Map<String, String> config = new HashMap<>();
+        config.put("socket.hosts", hosts.toString());
+        clientContext = new ApplicationContext(config);
+        clientContext.registerBean(MinimalApplicationDependencies.class);
+        shardedFactory = new ShardedRemoteDatabaseInterfaceFactory(clientContext);
+        clientContext.registerBean(shardedFactory);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        shardedFactory.closeAllInterfaces();
+        clientContext.terminate();
+        for (ApplicationContext serverContext : serverContexts) {
+            serverContext.terminate();
+        }
+        File directory = new File("/tmp/dbShardedServer");
+        if (directory.exists()) {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testWriteAndIterate() {
+        DataInterface<Long> db = shardedFactory.dataInterface("testSharded", Long.class).combinator(new LongCombinator()).serializer(new LongObjectSerializer()).caching(DatabaseCachingType.DIRECT).create();
+        int numOfKeys = 1000;
+        List<KeyValue<Long>> values = new ArrayList<>();
+        for (long key = 0; key < numOfKeys; key++) {
+            values.add(new KeyValue<>(key * 7 - 500, key));
+        }
+        db.write(IterableUtils.iterator(values));
+        db.increaseCount(-500);
+        db.flush();
+        Assert.assertEquals(1, db.readCount(-500));
+        Assert.assertEquals(10, db.readCount(10 * 7 - 500));
+        Assert.assertEquals(numOfKeys, db.exactSize());
+        CloseableIterator<KeyValue<Long>> iterator = db.iterator();
+        long prevKey = Long.MIN_VALUE;
+        int numOfValues = 0;
+        while (iterator.hasNext()) {
+            KeyValue<Long> next = iterator.next();
+            Assert.assertTrue(next.getKey() > prevKey);
+            prevKey = next.getKey();
+            numOfValues++;
+        }
+        iterator.close();
+        Assert.assertEquals(numOfKeys, numOfValues);
+        long expectedSum = (long) numOfKeys * (numOfKeys - 1) / 2 + 1;
+        Assert.assertEquals(expectedSum, db.aggregate(new SumAggregator()).longValue());
+        CloseableIterator<KeyValue<Long>> readIterator = db.iterator(IterableUtils.iterator(Arrays.asList(13l * 7 - 500, 1l, 2l * 7 - 500)));
+        Assert.assertEquals(13 * 7 - 500, readIterator.next().getKey());
+        Assert.assertEquals(2 * 7 - 500, readIterator.next().getKey());
+        Assert.assertFalse(readIterator.hasNext());
+        readIterator.close();
+        db.dropAllData();
+        db.flush();
+        Assert.assertEquals(0, db.exactSize());
+    }
+
+    @Test
+    public void testHashRingBalanceAndStability() {
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("host1:1208", "host2:1208", "host3:1208"));
+        ConsistentHashRing extendedRing = new ConsistentHashRing(Arrays.asList("host1:1208", "host2:1208", "host3:1208", "host4:1208"));
+        int numOfKeys = 30000;
+        int[] counts = new int[3];
+        int numOfMovedKeys = 0;
+        for (long key = 0; key < numOfKeys; key++) {
+            int shard = ring.getShard(key);
+            counts[shard]++;
+            int newShard = extendedRing.getShard(key);
+            if (newShard != shard) {
+                Assert.assertEquals(3, newShard);
+                numOfMovedKeys++;
+            }
+        }
+        for (int count : counts) {
+            Assert.assertTrue(count > numOfKeys / 3 * 0.8 && count < numOfKeys / 3 * 1.2);
+        }
+        Assert.assertTrue(numOfMovedKeys > numOfKeys / 4 * 0.7 && numOfMovedKeys < numOfKeys / 4 * 1.3);
+    }
+
+}